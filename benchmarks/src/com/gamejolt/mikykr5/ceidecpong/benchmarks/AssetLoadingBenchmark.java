@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.FontAtlasCache;
+
+/**
+ * Measures loading every texture, atlas and asynchronously loaded font of the game, from the first request until the
+ * last asset is ready, like the loading screen does. The baseline uses an {@link AssetManager} and loads the font
+ * on the rendering thread, which is what the game did before the {@link AsyncAssetLoader} decoded assets in
+ * parallel. Every invocation is timed on it's own and both start with the font cache already filled. Runs on a {@link HeadlessContext} from the assets directory, so sounds are not decoded and
+ * textures are not uploaded.
+ * 
+ * @author Miguel Astor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class AssetLoadingBenchmark{
+	private static final String[] TEXTURES = {
+		"data/gfx/gui/Anonymous_Pill_Button_Yellow.png",
+		"data/gfx/gui/Anonymous_Pill_Button_Cyan.png",
+		"data/gfx/gui/Anonymous_Pill_Button_Blue.png",
+		"data/gfx/textures/grass.png",
+		"data/gfx/textures/bckg.png"
+	};
+	private static final String   ATLAS     = "data/gfx/textures/pong_atlas.atlas";
+	private static final String   FONT      = "data/fonts/d-puntillas-B-to-tiptoe.ttf";
+
+	@Setup
+	public void setUp(){
+		HeadlessContext.start();
+
+		// Fill the font cache.
+		loadWithPipeline();
+	}
+
+	@Benchmark
+	public void assetManager(){
+		AssetManager          manager   = new AssetManager();
+		FontAtlasCache        fontCache = new FontAtlasCache(Gdx.files.local(ProjectConstants.FONT_CACHE_DIRECTORY));
+		FreeTypeFontParameter parameter = new FreeTypeFontParameter();
+
+		for(String texture : TEXTURES)
+			manager.load(texture, Texture.class);
+		manager.load(ATLAS, TextureAtlas.class);
+
+		parameter.characters = AsyncAssetLoader.FONT_CHARS;
+		parameter.size = AsyncAssetLoader.BASE_FONT_SIZE;
+		fontCache.load(Gdx.files.internal(FONT), parameter).dispose();
+
+		while(!manager.update())
+			Thread.yield();
+
+		manager.dispose();
+	}
+
+	@Benchmark
+	public void pipeline(){
+		loadWithPipeline();
+	}
+
+	private void loadWithPipeline(){
+		AsyncAssetLoader loader = AsyncAssetLoader.getInstance();
+
+		for(String texture : TEXTURES)
+			loader.addAssetToLoad(texture, Texture.class);
+		loader.addAssetToLoad(ATLAS, TextureAtlas.class);
+		loader.addFontToLoad(FONT, AsyncAssetLoader.BASE_FONT_SIZE);
+
+		while(!loader.loadAssets())
+			Thread.yield();
+
+		// Dispose the loader with it's cache, so the next invocation loads everything again.
+		AsyncAssetLoader.disposeInstance();
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceCache;
+
+/**
+ * Measures looking up fonts and sounds that are already loaded by the {@link AsyncAssetLoader}, which is what the game
+ * does every time a state or system needs one of them, and taking and releasing references to them in it's
+ * {@link ResourceCache}. Runs on a {@link HeadlessContext} from the assets directory.
+ * 
+ * @author Miguel Astor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AssetLookupBenchmark{
+	private static final String FONT_PATH  = "data/fonts/CRYSTAL-Regular.ttf";
+	private static final int    FONT_SIZE  = 180;
+	private static final String SOUND_PATH = "data/sfx/BounceYoFrankie.ogg";
+
+	private AsyncAssetLoader loader;
+
+	@Setup
+	public void setUp(){
+		HeadlessContext.start();
+
+		// Keep a reference to both assets during the whole run so they are never evicted.
+		loader = AsyncAssetLoader.getInstance();
+		loader.loadFont(FONT_PATH, FONT_SIZE);
+		loader.addAssetToLoad(SOUND_PATH, Sound.class);
+		while(!loader.loadAssets())
+			Thread.yield();
+	}
+
+	@TearDown
+	public void tearDown(){
+		AsyncAssetLoader.disposeInstance();
+	}
+
+	@Benchmark
+	public BitmapFont fontLookup(){
+		return loader.getFont(FONT_PATH, FONT_SIZE);
+	}
+
+	/**
+	 * Takes and releases a reference to the font, like the states do.
+	 */
+	@Benchmark
+	public BitmapFont fontLookupWithReference(){
+		BitmapFont font = loader.loadFont(FONT_PATH, FONT_SIZE);
+
+		loader.unloadFont(FONT_PATH, FONT_SIZE);
+
+		return font;
+	}
+
+	@Benchmark
+	public Sound soundLookup(){
+		return loader.getAsset(SOUND_PATH, Sound.class);
+	}
+
+	/**
+	 * Takes and releases a reference to the sound, like the states do.
+	 */
+	@Benchmark
+	public Sound soundLookupWithReference(){
+		Sound sound;
+
+		loader.addAssetToLoad(SOUND_PATH, Sound.class);
+		sound = loader.getAsset(SOUND_PATH, Sound.class);
+		loader.unloadAsset(SOUND_PATH, Sound.class);
+
+		return sound;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.PooledEngine;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.BoundingBoxComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.entities.PongEntityInitializer;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.CollisionDetectionSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+
+/**
+ * Runs one update of the {@link CollisionDetectionSystem}, broad phase included, with both paddles and a number of
+ * balls spread over the screen. Divide the score by the number of balls to see how the cost per ball grows.
+ * 
+ * The balls do not move between updates and never speed up, so every update does the same work.
+ * 
+ * @author Miguel Astor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CollisionBenchmark{
+	private static final float STEP  = 1.0f / 120.0f;
+	private static final float SPEED = 475.0f;
+	private static final long  SEED  = 42L;
+
+	/**
+	 * How many balls bounce around.
+	 */
+	@Param({"1", "10", "100", "1000", "10000"})
+	public int balls;
+
+	private InterSystemMessagingQueue queue;
+	private CollisionDetectionSystem  collision;
+
+	@Setup
+	public void setUp(){
+		PooledEngine engine = new PooledEngine(balls + 2, balls + 2, 4 * (balls + 2), 4 * (balls + 2));
+		Random       random = new Random(SEED);
+		float        angle;
+
+		queue = new InterSystemMessagingQueue();
+		engine.addSystem(queue);
+		engine.addSystem(new RandomNumberSystem(SEED));
+		collision = new CollisionDetectionSystem(engine, 1.0f);
+		engine.addSystem(collision);
+
+		addPaddle(engine, PlayerComponent.HUMAN_PLAYER, -(ProjectConstants.FB_WIDTH / 2.0f));
+		addPaddle(engine, PlayerComponent.COMPUTER_PLAYER, (ProjectConstants.FB_WIDTH / 2.0f) - PongEntityInitializer.HEADLESS_PADDLE_WIDTH);
+
+		for(int i = 0; i < balls; i++){
+			angle = random.nextFloat() * 2.0f * (float)Math.PI;
+			addEntity(
+					engine,
+					(random.nextFloat() - 0.5f) * (ProjectConstants.FB_WIDTH - (4.0f * PongEntityInitializer.HEADLESS_BALL_SIZE)),
+					(random.nextFloat() - 0.5f) * (ProjectConstants.FB_HEIGHT - (4.0f * PongEntityInitializer.HEADLESS_BALL_SIZE)),
+					PongEntityInitializer.HEADLESS_BALL_SIZE,
+					PongEntityInitializer.HEADLESS_BALL_SIZE
+			).getComponent(VelocityComponent.class).setXY(SPEED * (float)Math.cos(angle), SPEED * (float)Math.sin(angle));
+		}
+	}
+
+	@Benchmark
+	public void update(){
+		collision.update(STEP);
+
+		// Nobody reads the messages sent by the collisions, so return them to the pool.
+		queue.clear();
+	}
+
+	private void addPaddle(PooledEngine engine, int id, float x){
+		Entity          paddle = addEntity(engine, x, -(PongEntityInitializer.HEADLESS_PADDLE_HEIGHT / 2.0f), PongEntityInitializer.HEADLESS_PADDLE_WIDTH, PongEntityInitializer.HEADLESS_PADDLE_HEIGHT);
+		PlayerComponent player = engine.createComponent(PlayerComponent.class);
+
+		player.id = id;
+		paddle.add(player);
+	}
+
+	private Entity addEntity(PooledEngine engine, float x, float y, float width, float height){
+		Entity               entity   = engine.createEntity();
+		PositionComponent    position = engine.createComponent(PositionComponent.class);
+		BoundingBoxComponent bounds   = engine.createComponent(BoundingBoxComponent.class);
+
+		position.teleport(x, y);
+		bounds.bbox.setSize(width, height);
+		entity.add(position);
+		entity.add(bounds);
+		entity.add(engine.createComponent(VelocityComponent.class));
+		engine.addEntity(entity);
+
+		return entity;
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.FontAtlasCache;
+
+/**
+ * Measures loading each font of the game the way the old font manager did before fonts were stored on disk,
+ * the first time it is loaded through a {@link FontAtlasCache} and every time after that. Every invocation is timed
+ * on it's own, as loading a font only happens once per run of the game. Runs on a {@link HeadlessContext} from the
+ * assets directory.
+ * 
+ * @author Miguel Astor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+public class FontLoadingBenchmark{
+	private static final String CACHE_DIRECTORY = "benchmarks-fontcache";
+
+	/**
+	 * The fonts loaded by the game and their sizes.
+	 */
+	@Param({"data/fonts/CRYSTAL-Regular.ttf:180", "data/fonts/Big_Bottom_Cartoon.ttf:120", "data/fonts/d-puntillas-B-to-tiptoe.ttf:40"})
+	public String font;
+
+	private FileHandle            file;
+	private FileHandle            cacheDirectory;
+	private FreeTypeFontParameter parameter;
+	private BitmapFont            loaded;
+
+	@Setup
+	public void setUp(){
+		String[] pathAndSize = font.split(":");
+
+		HeadlessContext.start();
+
+		file = Gdx.files.internal(pathAndSize[0]);
+		cacheDirectory = Gdx.files.local(CACHE_DIRECTORY);
+		parameter = new FreeTypeFontParameter();
+		parameter.characters = AsyncAssetLoader.FONT_CHARS;
+		parameter.size = Integer.parseInt(pathAndSize[1]);
+		parameter.flip = false;
+
+		// Store the font once, so the warm benchmark always finds it.
+		cacheDirectory.deleteDirectory();
+		new FontAtlasCache(cacheDirectory).load(file, parameter).dispose();
+	}
+
+	@TearDown
+	public void tearDown(){
+		cacheDirectory.deleteDirectory();
+	}
+
+	@TearDown(Level.Invocation)
+	public void disposeFont(){
+		if(loaded != null)
+			loaded.dispose();
+		loaded = null;
+	}
+
+	/**
+	 * Rasterizes the font without a cache, like the game always did.
+	 */
+	@Benchmark
+	public BitmapFont generate(){
+		FreeTypeFontGenerator generator = new FreeTypeFontGenerator(file);
+
+		loaded = generator.generateFont(parameter);
+		generator.dispose();
+
+		return loaded;
+	}
+
+	/**
+	 * Loads the font the first time the game runs, rasterizing and storing it.
+	 */
+	@Benchmark
+	public BitmapFont cold(ColdCache cache){
+		loaded = cache.atlasCache.load(file, parameter);
+
+		return loaded;
+	}
+
+	/**
+	 * Loads the font every time after the first run.
+	 */
+	@Benchmark
+	public BitmapFont warm(){
+		loaded = new FontAtlasCache(cacheDirectory).load(file, parameter);
+
+		return loaded;
+	}
+
+	/**
+	 * An empty cache for every invocation.
+	 */
+	@State(Scope.Thread)
+	public static class ColdCache{
+		private static final String COLD_DIRECTORY = "benchmarks-fontcache-cold";
+
+		private FontAtlasCache atlasCache;
+
+		@Setup(Level.Invocation)
+		public void setUp(){
+			Gdx.files.local(COLD_DIRECTORY).deleteDirectory();
+			atlasCache = new FontAtlasCache(Gdx.files.local(COLD_DIRECTORY));
+		}
+
+		@TearDown
+		public void tearDown(){
+			Gdx.files.local(COLD_DIRECTORY).deleteDirectory();
+		}
+	}
+}
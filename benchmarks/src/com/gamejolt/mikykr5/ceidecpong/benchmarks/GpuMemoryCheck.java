@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import com.badlogic.gdx.Screen;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.Disposable;
+import com.gamejolt.mikykr5.ceidecpong.GameCore;
+import com.gamejolt.mikykr5.ceidecpong.GameCore.game_states_t;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.states.BaseState;
+import com.gamejolt.mikykr5.ceidecpong.states.ReplayState;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceCache;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.GpuMemoryTracker;
+
+/**
+ * Checks the per owner accounting of the {@link GpuMemoryTracker}, the explicit eviction of the
+ * {@link ResourceCache} used to enforce it's budget, and that the {@link GameCore} never unloads a match in progress
+ * to fit in it. Exits with {@link ProjectConstants#EXIT_FAILURE} and prints the
+ * first failed check if any. Runs on a {@link HeadlessContext}.
+ * 
+ * @author Miguel Astor
+ */
+public class GpuMemoryCheck {
+	private static final int FIRST  = 0;
+	private static final int SECOND = 1;
+
+	/**
+	 * The most frames a state switch can take, including loading the assets of the state.
+	 */
+	private static final int MAX_SWITCH_FRAMES = 2000;
+
+	public static void main (String[] arg) {
+		HeadlessContext.start();
+
+		try{
+			checkAccounting();
+			checkEviction();
+			checkMatchKept();
+		}catch(IllegalStateException e){
+			System.out.println("FAILED: " + e.getMessage());
+			System.exit(ProjectConstants.EXIT_FAILURE);
+		}
+
+		System.out.println("OK");
+		System.exit(ProjectConstants.EXIT_SUCCESS);
+	}
+
+	/**
+	 * Splits cached and tracked allocations between two owners, one of them shared, and checks the totals.
+	 */
+	private static void checkAccounting(){
+		ResourceCache     cache   = new ResourceCache(Long.MAX_VALUE);
+		GpuMemoryTracker  tracker = new GpuMemoryTracker(cache, new String[]{"FIRST", "SECOND"}, 1000L);
+		ResourceCache.Key shared  = new ResourceCache.Key("shared", Texture.class, null);
+		ResourceCache.Key font    = new ResourceCache.Key("font", BitmapFont.class, Integer.valueOf(40));
+		ResourceCache.Key sound   = new ResourceCache.Key("sound", Sound.class, null);
+		Object            buffer  = new Object(), fade = new Object();
+		String            report;
+
+		tracker.setOwner(FIRST);
+		tracker.claim(shared);
+		tracker.claim(sound);
+		tracker.setOwner(SECOND);
+		tracker.claim(shared);
+		tracker.claim(font);
+		tracker.track(buffer, "buffer", 300L);
+		tracker.setOwner(GpuMemoryTracker.NO_OWNER);
+		tracker.track(fade, "fade", 10L);
+
+		// Claims can come before the assets are loaded.
+		cache.put(shared, new Resource(), 400L, 2);
+		cache.put(font, new Resource(), 200L, 1);
+		cache.put(sound, new Resource(), 5000L, 1);
+
+		// Sounds are not in video memory, shared assets count for both owners.
+		check(tracker.getBytes() == 910L, "wrong total: " + tracker.getBytes());
+		check(tracker.getBytes(FIRST) == 400L, "wrong bytes of the first owner: " + tracker.getBytes(FIRST));
+		check(tracker.getBytes(SECOND) == 900L, "wrong bytes of the second owner: " + tracker.getBytes(SECOND));
+		check(!tracker.isOverBudget(), "over a budget that fits");
+
+		report = tracker.dump("Check");
+		check(report.contains("FIRST,SECOND") && report.contains("core") && !report.contains("sound"), "wrong report:\n" + report);
+		System.out.println(report);
+
+		try{
+			tracker.track(buffer, "buffer", 300L);
+			check(false, "tracking a resource twice did not fail");
+		}catch(IllegalStateException e){ }
+
+		// An owner that frees everything stops counting, and untracked resources are gone.
+		tracker.removeOwner(SECOND);
+		check(tracker.getBytes(SECOND) == 0L && tracker.getBytes(FIRST) == 400L, "the removed owner still counts");
+		tracker.untrack(buffer);
+		check(tracker.getBytes() == 610L, "an untracked resource still counts");
+
+		tracker.setBudget(500L);
+		check(tracker.isOverBudget(), "not over a budget that doesn't fit");
+
+		cache.dispose();
+	}
+
+	/**
+	 * Checks that explicit eviction frees the least recently used entries nobody holds, even under the budget.
+	 */
+	private static void checkEviction(){
+		ResourceCache     cache = new ResourceCache(Long.MAX_VALUE);
+		ResourceCache.Key a     = new ResourceCache.Key("a", Texture.class, null);
+		ResourceCache.Key b     = new ResourceCache.Key("b", Texture.class, null);
+		ResourceCache.Key c     = new ResourceCache.Key("c", Texture.class, null);
+		Resource          ra    = new Resource(), rb = new Resource(), rc = new Resource();
+
+		cache.put(a, ra, 100L, 0);
+		cache.put(b, rb, 100L, 1);
+		cache.put(c, rc, 100L, 0);
+
+		check(cache.evictUnreferenced(50L) == 100L && ra.disposed && !rb.disposed && !rc.disposed, "the least recently used entry was not evicted first");
+		check(cache.evictUnreferenced(1000L) == 100L && rc.disposed && !rb.disposed, "a held entry was evicted");
+		check(cache.getBytesResident() == 100L && cache.getEvictions() == 2L, "wrong accounting after evicting");
+
+		cache.dispose();
+	}
+
+	/**
+	 * Plays the game with a budget nothing fits in, so every state that can be unloaded is. Goes from a match back to
+	 * the menu and then to the replays, which leaves the match as the state shown the longest time ago, and checks
+	 * that it is still there when the player comes back. Then visits the replays again, which were unloaded but whose
+	 * assets are still cached, and checks that they are shown instead of sending the player back to the menu.
+	 */
+	private static void checkMatchKept(){
+		GameCore core = new GameCore();
+		Screen   match;
+		long     before;
+
+		core.setGpuMemoryBudget(1L);
+		core.create();
+
+		// Skip the logo as if the player tapped it, then wait for the loading screen to finish.
+		render(core);
+		core.nextState = game_states_t.LOADING;
+		for(int i = 0; i < MAX_SWITCH_FRAMES && !core.startupMetrics.isComplete(); i++)
+			render(core);
+		check(core.startupMetrics.isComplete(), "the game did not reach the main menu");
+
+		switchTo(core, game_states_t.IN_GAME);
+		match = core.getScreen();
+		check(((BaseState)match).holdsProgress(), "the match did not start");
+		before = core.gpuMemory.getBytes(game_states_t.IN_GAME.getValue());
+
+		switchTo(core, game_states_t.MAIN_MENU);
+		switchTo(core, game_states_t.REPLAY);
+		check(core.gpuMemory.getBytes(game_states_t.LOGO_SCREEN.getValue()) == 0L, "the budget did not unload any state");
+		check(core.gpuMemory.getBytes(game_states_t.IN_GAME.getValue()) == before, "the match in progress was unloaded");
+
+		switchTo(core, game_states_t.MAIN_MENU);
+		switchTo(core, game_states_t.IN_GAME);
+		check(core.getScreen() == match, "the match was started again");
+
+		switchTo(core, game_states_t.MAIN_MENU);
+		switchTo(core, game_states_t.REPLAY);
+		check(core.getScreen() instanceof ReplayState, "the replays were left before they were shown");
+
+		core.dispose();
+	}
+
+	/**
+	 * Requests a state and renders until the switch is done.
+	 */
+	private static void switchTo(GameCore core, game_states_t state){
+		core.nextState = state;
+
+		for(int i = 0; i < MAX_SWITCH_FRAMES && core.nextState != null; i++)
+			render(core);
+		check(core.nextState == null, "could not switch to " + state.name());
+
+		// Let the state load it's assets and run for a while.
+		for(int i = 0; i < 100; i++)
+			render(core);
+	}
+
+	/**
+	 * Renders a frame, giving the asset loader threads some time.
+	 */
+	private static void render(GameCore core){
+		core.render();
+
+		try{
+			Thread.sleep(1);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void check(boolean condition, String message) throws IllegalStateException{
+		if(!condition)
+			throw new IllegalStateException(message);
+	}
+
+	/**
+	 * A resource that remembers if it was disposed.
+	 */
+	private static final class Resource implements Disposable{
+		public boolean disposed = false;
+
+		@Override
+		public void dispose(){
+			disposed = true;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+
+/**
+ * Starts a headless libGDX application so benchmarks can load files, fonts and sounds, and installs a
+ * {@link NoOpGL20} so that textures, meshes and shaders can be created without a context. Nothing
+ * drawn this way reaches a screen, which makes it useful to measure the CPU side of rendering code only.
+ * 
+ * @author Miguel Astor
+ */
+public final class HeadlessContext{
+	/**
+	 * Whether the application has been started in this process.
+	 */
+	private static boolean started = false;
+
+	private HeadlessContext(){ }
+
+	/**
+	 * Starts the application if it is not running yet. Files are looked up relative to the working directory, which
+	 * should be the assets directory of the game.
+	 */
+	public static synchronized void start(){
+		HeadlessApplicationConfiguration config;
+
+		if(started)
+			return;
+
+		// The render loop is not needed, benchmarks call the code under test directly.
+		config = new HeadlessApplicationConfiguration();
+		config.renderInterval = 1.0f;
+		new HeadlessApplication(new ApplicationAdapter(){ }, config);
+
+		Gdx.gl = Gdx.gl20 = new NoOpGL20();
+		started = true;
+	}
+}
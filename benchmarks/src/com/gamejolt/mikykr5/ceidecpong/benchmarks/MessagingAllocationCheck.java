@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.PooledEngine;
+import com.badlogic.gdx.utils.Array;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.BoundingBoxComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.SoundComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.entities.PongEntityInitializer;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.CollisionDetectionSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
+
+/**
+ * Checks that sending messages between systems allocates no memory once the message pool and the mailboxes have
+ * grown to their final size. Measures two things after a warm up:
+ * 
+ * - Rounds of obtaining messages from the pool, pushing them with and without a sub-address, draining the mailbox
+ *   and freeing the messages.
+ * - Updates of the {@link CollisionDetectionSystem} with balls bouncing between both paddles and scoring, which
+ *   sends every kind of message the system has.
+ * 
+ * Exits with {@link ProjectConstants#EXIT_FAILURE} if either allocates a single byte.
+ * 
+ * Usage: MessagingAllocationCheck [rounds]
+ * 
+ * @author Miguel Astor
+ */
+public class MessagingAllocationCheck {
+	private static final String RECEIVER = "allocation-check";
+	private static final int    DEPTH    = 64;
+	private static final int    BALLS    = 8;
+	private static final float  STEP     = 1.0f / 120.0f;
+	private static final float  SPEED    = 475.0f;
+	private static final long   SEED     = 42L;
+
+	public static void main (String[] arg) {
+		int                             rounds  = arg.length > 0 ? Integer.parseInt(arg[0]) : 120 * 60;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		InterSystemMessagingQueue       queue;
+		Mailbox                         mailbox;
+		Array<InterSystemMessage>       drained;
+		PooledEngine                    engine;
+		CollisionDetectionSystem        collision;
+		long                            messaging, frames;
+
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		queue = new InterSystemMessagingQueue();
+		mailbox = queue.registerMailbox(RECEIVER);
+		drained = new Array<InterSystemMessage>(false, DEPTH, InterSystemMessage.class);
+
+		engine = new PooledEngine(BALLS + 2, BALLS + 2, 5 * (BALLS + 2), 5 * (BALLS + 2));
+		collision = createMatch(engine);
+
+		// Grow the pools, the mailboxes and the broad phase to their final size, and let the JIT compiler settle.
+		sendMessages(queue, mailbox, drained, rounds, threads);
+		updateCollisions(engine, collision, rounds, threads);
+
+		messaging = sendMessages(queue, mailbox, drained, rounds, threads);
+		frames = updateCollisions(engine, collision, rounds, threads);
+
+		System.out.println(String.format("%d rounds: %d bytes sending messages, %d bytes detecting collisions, %d paddle hits", rounds, messaging, frames, collision.getPaddleHits()));
+
+		System.exit(messaging == 0L && frames == 0L ? ProjectConstants.EXIT_SUCCESS : ProjectConstants.EXIT_FAILURE);
+	}
+
+	/**
+	 * Obtains, pushes, drains and frees {@link #DEPTH} messages per round, a quarter of them for each player.
+	 * 
+	 * @return The bytes allocated.
+	 */
+	private static long sendMessages(InterSystemMessagingQueue queue, Mailbox mailbox, Array<InterSystemMessage> drained, int rounds, com.sun.management.ThreadMXBean threads){
+		InterSystemMessage message;
+		long               start = allocatedBytes(threads);
+
+		for(int i = 0; i < rounds; i++){
+			for(int j = 0; j < DEPTH; j++){
+				message = queue.obtainMessage(mailbox.receiver, message_type_t.SCORE);
+				message.intData = j;
+				if(j % 4 == 1)
+					message.address = PlayerComponent.HUMAN_PLAYER;
+				else if(j % 4 == 3)
+					message.address = PlayerComponent.COMPUTER_PLAYER;
+				mailbox.push(message);
+			}
+
+			mailbox.drain(drained);
+			for(int j = 0; j < drained.size; j++)
+				queue.freeMessage(drained.items[j]);
+			drained.clear();
+		}
+
+		return allocatedBytes(threads) - start;
+	}
+
+	/**
+	 * Updates the collisions once per round. Nobody reads the messages they send, so they are returned to the pool.
+	 * 
+	 * @return The bytes allocated.
+	 */
+	private static long updateCollisions(PooledEngine engine, CollisionDetectionSystem collision, int rounds, com.sun.management.ThreadMXBean threads){
+		InterSystemMessagingQueue queue = InterSystemMessagingQueue.getFor(engine);
+		long                      start = allocatedBytes(threads);
+
+		for(int i = 0; i < rounds; i++){
+			collision.update(STEP);
+			queue.clear();
+		}
+
+		return allocatedBytes(threads) - start;
+	}
+
+	private static CollisionDetectionSystem createMatch(PooledEngine engine){
+		CollisionDetectionSystem collision;
+		float                    angle;
+
+		engine.addSystem(new InterSystemMessagingQueue());
+		engine.addSystem(new RandomNumberSystem(SEED));
+		collision = new CollisionDetectionSystem(engine);
+		engine.addSystem(collision);
+
+		addPaddle(engine, PlayerComponent.HUMAN_PLAYER, -(ProjectConstants.FB_WIDTH / 2.0f) + PongEntityInitializer.HEADLESS_PADDLE_WIDTH);
+		addPaddle(engine, PlayerComponent.COMPUTER_PLAYER, (ProjectConstants.FB_WIDTH / 2.0f) - (2.0f * PongEntityInitializer.HEADLESS_PADDLE_WIDTH));
+
+		// Balls at different heights, so some bounce off the paddles and some score.
+		for(int i = 0; i < BALLS; i++){
+			angle = (float)Math.PI * (i % 2 == 0 ? 0.1f : 0.9f) * (i + 1) / BALLS;
+			addEntity(engine, 0.0f, 0.0f, PongEntityInitializer.HEADLESS_BALL_SIZE, PongEntityInitializer.HEADLESS_BALL_SIZE, true)
+			.getComponent(VelocityComponent.class).setXY(SPEED * (float)Math.cos(angle), SPEED * (float)Math.sin(angle));
+		}
+
+		return collision;
+	}
+
+	private static void addPaddle(PooledEngine engine, int id, float x){
+		Entity          paddle = addEntity(engine, x, -(PongEntityInitializer.HEADLESS_PADDLE_HEIGHT / 2.0f), PongEntityInitializer.HEADLESS_PADDLE_WIDTH, PongEntityInitializer.HEADLESS_PADDLE_HEIGHT, false);
+		PlayerComponent player = engine.createComponent(PlayerComponent.class);
+
+		player.id = id;
+		paddle.add(player);
+	}
+
+	private static Entity addEntity(PooledEngine engine, float x, float y, float width, float height, boolean sound){
+		Entity               entity   = engine.createEntity();
+		PositionComponent    position = engine.createComponent(PositionComponent.class);
+		BoundingBoxComponent bounds   = engine.createComponent(BoundingBoxComponent.class);
+		SoundComponent       effect;
+
+		position.teleport(x, y);
+		bounds.bbox.setSize(width, height);
+		entity.add(position);
+		entity.add(bounds);
+		entity.add(engine.createComponent(VelocityComponent.class));
+		if(sound){
+			effect = engine.createComponent(SoundComponent.class);
+			effect.path = "data/sfx/BounceYoFrankie.ogg";
+			entity.add(effect);
+		}
+		engine.addEntity(entity);
+
+		return entity;
+	}
+
+	private static long allocatedBytes(com.sun.management.ThreadMXBean threads){
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.gdx.utils.Array;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
+
+/**
+ * Fills a mailbox with a number of pooled messages and empties it again, through the different ways systems
+ * have to send and receive messages. The score is the time to move all the messages once. Sub-addressed messages
+ * are measured by the {@link ScoringBenchmark}.
+ * 
+ * @author Miguel Astor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MessagingBenchmark{
+	private static final String RECEIVER = "benchmark";
+
+	/**
+	 * How many messages are waiting in the mailbox at it's fullest.
+	 */
+	@Param({"1", "16", "256", "4096"})
+	public int depth;
+
+	private InterSystemMessagingQueue queue;
+	private Mailbox                   mailbox;
+	private Array<InterSystemMessage> drained;
+
+	@Setup
+	public void setUp(){
+		queue = new InterSystemMessagingQueue();
+		mailbox = queue.registerMailbox(RECEIVER);
+		drained = new Array<InterSystemMessage>(false, depth, InterSystemMessage.class);
+
+		// Grow the message pool and the mailbox to their final size before measuring.
+		fill();
+		mailbox.clear();
+	}
+
+	/**
+	 * Sends through a cached mailbox and receives one message at a time without a sub-address.
+	 */
+	@Benchmark
+	public int mailboxPushPop(){
+		InterSystemMessage message;
+		int                sum = 0;
+
+		fill();
+		while((message = mailbox.pop()) != null){
+			sum += message.intData;
+			queue.freeMessage(message);
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Sends through a cached mailbox and receives all messages at once.
+	 */
+	@Benchmark
+	public int mailboxPushDrain(){
+		int sum = 0;
+
+		fill();
+		mailbox.drain(drained);
+		for(int i = 0; i < drained.size; i++){
+			sum += drained.items[i].intData;
+			queue.freeMessage(drained.items[i]);
+		}
+		drained.clear();
+
+		return sum;
+	}
+
+	/**
+	 * Sends and receives through the queue, which looks up the mailbox by name on every call.
+	 */
+	@Benchmark
+	public int queuePushPop(){
+		InterSystemMessage message;
+		int                sum = 0;
+
+		for(int i = 0; i < depth; i++){
+			message = queue.obtainMessage(RECEIVER, message_type_t.BALL_Y);
+			message.intData = i;
+			queue.pushMessage(message);
+		}
+
+		while((message = queue.popMessage(RECEIVER)) != null){
+			sum += message.intData;
+			queue.freeMessage(message);
+		}
+
+		return sum;
+	}
+
+	private void fill(){
+		InterSystemMessage message;
+
+		for(int i = 0; i < depth; i++){
+			message = queue.obtainMessage(mailbox.receiver, message_type_t.BALL_Y);
+			message.intData = i;
+			mailbox.push(message);
+		}
+	}
+}
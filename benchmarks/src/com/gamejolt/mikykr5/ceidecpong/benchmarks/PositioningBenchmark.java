@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.PooledEngine;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PackedMotionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.PackedMotionSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.PositioningSystem;
+
+/**
+ * Moves the same number of entities with the {@link PositioningSystem}, which reads a {@link PositionComponent} and
+ * a {@link VelocityComponent} per entity, and with the {@link PackedMotionSystem}, which moves packed arrays. Divide
+ * the score by the number of entities to get the cost per entity.
+ * 
+ * @author Miguel Astor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PositioningBenchmark{
+	private static final float STEP = 1.0f / 120.0f;
+
+	/**
+	 * How many entities each system moves.
+	 */
+	@Param({"1000", "100000", "1000000"})
+	public int entities;
+
+	private PositioningSystem  objects;
+	private PackedMotionSystem packed;
+
+	@Setup
+	public void setUp(){
+		PooledEngine      engine = new PooledEngine(2 * entities, 2 * entities, 2 * entities, 2 * entities);
+		Entity            entity;
+		PositionComponent position;
+		VelocityComponent velocity;
+		int               slot;
+
+		objects = new PositioningSystem();
+		packed = new PackedMotionSystem();
+		packed.ensureCapacity(entities);
+		engine.addSystem(objects);
+		engine.addSystem(packed);
+
+		for(int i = 0; i < entities; i++){
+			entity = engine.createEntity();
+			position = engine.createComponent(PositionComponent.class);
+			velocity = engine.createComponent(VelocityComponent.class);
+			position.teleport(i % 1000, i / 1000);
+			velocity.setXY((i % 7) - 3.0f, (i % 11) - 5.0f);
+			entity.add(position);
+			entity.add(velocity);
+			engine.addEntity(entity);
+
+			entity = engine.createEntity();
+			entity.add(engine.createComponent(PackedMotionComponent.class));
+			engine.addEntity(entity);
+			slot = packed.getSlot(entity);
+			packed.teleport(slot, position.x, position.y);
+			packed.setVelocity(slot, velocity.vx, velocity.vy);
+		}
+	}
+
+	@Benchmark
+	public void components(){
+		objects.update(STEP);
+	}
+
+	@Benchmark
+	public void packed(){
+		packed.update(STEP);
+	}
+}
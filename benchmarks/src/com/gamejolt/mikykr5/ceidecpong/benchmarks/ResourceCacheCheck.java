@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.Disposable;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceCache;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceSizes;
+
+/**
+ * Checks the reference counting, the size accounting and the eviction order of the {@link ResourceCache}, and that
+ * the {@link AsyncAssetLoader} caches a font once per size. Exits with {@link ProjectConstants#EXIT_FAILURE} and
+ * prints the first failed check if any. Runs on a {@link HeadlessContext} from the assets directory.
+ * 
+ * @author Miguel Astor
+ */
+public class ResourceCacheCheck {
+	private static final String FONT_PATH  = "data/fonts/d-puntillas-B-to-tiptoe.ttf";
+	private static final String SOUND_PATH = "data/sfx/BounceYoFrankie.ogg";
+
+	public static void main (String[] arg) {
+		HeadlessContext.start();
+
+		try{
+			checkEviction();
+			checkFonts();
+			checkSoundSize();
+		}catch(IllegalStateException e){
+			System.out.println("FAILED: " + e.getMessage());
+			System.exit(ProjectConstants.EXIT_FAILURE);
+		}
+
+		System.out.println("OK");
+		System.exit(ProjectConstants.EXIT_SUCCESS);
+	}
+
+	/**
+	 * Fills a small cache and checks which entries get evicted.
+	 */
+	private static void checkEviction(){
+		ResourceCache     cache = new ResourceCache(100L);
+		ResourceCache.Key a     = new ResourceCache.Key("a", Resource.class, null);
+		ResourceCache.Key b     = new ResourceCache.Key("b", Resource.class, null);
+		ResourceCache.Key c     = new ResourceCache.Key("c", Resource.class, null);
+		ResourceCache.Key d     = new ResourceCache.Key("d", Resource.class, null);
+		Resource          ra    = new Resource(), rb = new Resource(), rc = new Resource(), rd = new Resource();
+
+		// Nobody holds a, b and c, so the least recently used one goes when the third does not fit.
+		cache.put(a, ra, 40L, 0);
+		cache.put(b, rb, 40L, 0);
+		cache.put(c, rc, 40L, 0);
+		check(ra.disposed && !rb.disposed && !rc.disposed, "the least recently used entry was not evicted");
+		check(cache.getBytesResident() == 80L && cache.getEvictions() == 1L, "wrong accounting after evicting");
+
+		// Using b makes c the least recently used.
+		check(cache.acquire(b) == rb, "a resident entry was not found");
+		cache.release(b);
+		cache.put(d, rd, 40L, 1);
+		check(rc.disposed && !rb.disposed, "the entry used last was evicted");
+
+		// Held entries are never evicted, even over the budget.
+		cache.setBudget(0L);
+		check(rb.disposed && !rd.disposed && cache.getBytesResident() == 40L, "a held entry was evicted");
+		cache.release(d);
+		check(rd.disposed && cache.getBytesResident() == 0L, "a released entry over the budget was kept");
+
+		check(cache.acquire(a) == null && cache.getHits() == 1L && cache.getMisses() == 1L, "wrong hit and miss counts");
+
+		try{
+			cache.release(a);
+			check(false, "releasing an entry that is not cached did not fail");
+		}catch(IllegalStateException e){ }
+
+		cache.dispose();
+	}
+
+	/**
+	 * Loads the same font with two sizes and checks they are cached apart.
+	 */
+	private static void checkFonts(){
+		AsyncAssetLoader loader = AsyncAssetLoader.getInstance();
+		ResourceCache    cache  = loader.getCache();
+		BitmapFont       small, big;
+		long             hits;
+
+		small = loader.loadFont(FONT_PATH, AsyncAssetLoader.BASE_FONT_SIZE);
+		big = loader.loadFont(FONT_PATH, AsyncAssetLoader.BASE_FONT_SIZE * 2);
+		check(small != big && big.getLineHeight() > small.getLineHeight(), "the two sizes of a font are the same");
+		check(cache.getBytesResident() == ResourceSizes.of(small) + ResourceSizes.of(big), "wrong size of the fonts");
+
+		// Released fonts stay cached while they fit.
+		loader.unloadFont(FONT_PATH, AsyncAssetLoader.BASE_FONT_SIZE);
+		hits = cache.getHits();
+		check(loader.loadFont(FONT_PATH, AsyncAssetLoader.BASE_FONT_SIZE) == small && cache.getHits() == hits + 1, "a released font was not kept");
+
+		System.out.println(String.format("Fonts: %d entries, %d bytes, hit rate %.2f", cache.getEntryCount(), cache.getBytesResident(), cache.getHitRate()));
+		AsyncAssetLoader.disposeInstance();
+	}
+
+	/**
+	 * Checks that the size of a sound is the size of it's decoded samples.
+	 */
+	private static void checkSoundSize(){
+		FileHandle file  = Gdx.files.internal(SOUND_PATH);
+		long       bytes = ResourceSizes.ofSound(file);
+
+		// Vorbis compresses much more than two to one.
+		check(bytes > 2L * file.length(), "the sound size is not the size of the decoded samples");
+		System.out.println(String.format("%s: %d bytes compressed, %d bytes decoded", SOUND_PATH, file.length(), bytes));
+	}
+
+	private static void check(boolean condition, String message) throws IllegalStateException{
+		if(!condition)
+			throw new IllegalStateException(message);
+	}
+
+	/**
+	 * A resource that remembers if it was disposed.
+	 */
+	private static final class Resource implements Disposable{
+		public boolean disposed = false;
+
+		@Override
+		public void dispose(){
+			disposed = true;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.PooledEngine;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.ScoreComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.ScoringSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+
+/**
+ * Measures the CPU cost of formatting, measuring and drawing the score of both players with the {@link ScoringSystem},
+ * as done every rendered frame. Runs on a {@link HeadlessContext}, so the draw calls go nowhere.
+ * 
+ * @author Miguel Astor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ScoreDrawingBenchmark{
+	private static final float STEP = 1.0f / 120.0f;
+
+	private SpriteBatch    batch;
+	private ScoringSystem  scoring;
+	private ScoreComponent humanScore;
+
+	@Setup
+	public void setUp(){
+		PooledEngine    engine = new PooledEngine();
+		Entity          entity;
+		PlayerComponent player;
+
+		HeadlessContext.start();
+		batch = new SpriteBatch();
+
+		engine.addSystem(new InterSystemMessagingQueue());
+		scoring = new ScoringSystem(batch);
+		engine.addSystem(scoring);
+
+		for(int i = PlayerComponent.HUMAN_PLAYER; i <= PlayerComponent.COMPUTER_PLAYER; i++){
+			entity = engine.createEntity();
+			player = engine.createComponent(PlayerComponent.class);
+			player.id = i;
+			entity.add(player);
+			entity.add(engine.createComponent(ScoreComponent.class));
+			engine.addEntity(entity);
+
+			if(i == PlayerComponent.HUMAN_PLAYER)
+				humanScore = entity.getComponent(ScoreComponent.class);
+		}
+	}
+
+	@TearDown
+	public void tearDown(){
+		batch.dispose();
+	}
+
+	/**
+	 * Draws scores that do not change, which is what almost every frame of a match does.
+	 */
+	@Benchmark
+	public void drawSteadyScore(){
+		batch.begin();
+		scoring.update(STEP);
+		batch.end();
+	}
+
+	/**
+	 * Draws a score that changes every frame, the worst case for any caching.
+	 */
+	@Benchmark
+	public void drawChangingScore(){
+		humanScore.score = (humanScore.score + 1) % 100;
+
+		batch.begin();
+		scoring.update(STEP);
+		batch.end();
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.effects.ScoreHud;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+
+/**
+ * Draws the {@link ScoreHud} for many frames and checks that it allocates no memory, both while the scores stay the
+ * same and while they change within the precomputed range. Exits with {@link ProjectConstants#EXIT_FAILURE} if the
+ * HUD allocates.
+ * 
+ * The JIT compiler may still create a few objects now and then while it recompiles the code, so up to
+ * {@link #MAX_BYTES_PER_FRAME} bytes per frame on average are accepted. Formatting the score text every frame
+ * allocates hundreds.
+ * 
+ * Usage: ScoreHudAllocationCheck [frames]
+ * 
+ * @author Miguel Astor
+ */
+public class ScoreHudAllocationCheck {
+	private static final double MAX_BYTES_PER_FRAME = 1.0;
+
+	public static void main (String[] arg) {
+		int                             frames  = arg.length > 0 ? Integer.parseInt(arg[0]) : 120 * 60;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		SpriteBatch                     batch;
+		ScoreHud                        hud;
+		double                          steady, changing;
+
+		HeadlessContext.start();
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		batch = new SpriteBatch();
+		hud = new ScoreHud(AsyncAssetLoader.getInstance().loadFont("data/fonts/CRYSTAL-Regular.ttf", 180));
+
+		// Lay out every cached score so the glyph caches reach their final size, and let the JIT compiler settle.
+		drawSteady(batch, hud, frames, threads);
+		drawChanging(batch, hud, frames, threads);
+
+		steady = drawSteady(batch, hud, frames, threads) / (double)frames;
+		changing = drawChanging(batch, hud, frames, threads) / (double)frames;
+
+		System.out.println(String.format("%d frames: %.3f bytes per frame with steady scores, %.3f bytes per frame with changing scores", frames, steady, changing));
+
+		AsyncAssetLoader.disposeInstance();
+		batch.dispose();
+
+		System.exit(steady < MAX_BYTES_PER_FRAME && changing < MAX_BYTES_PER_FRAME ? ProjectConstants.EXIT_SUCCESS : ProjectConstants.EXIT_FAILURE);
+	}
+
+	/**
+	 * Draws frames where the scores never change.
+	 * 
+	 * @return The bytes allocated.
+	 */
+	private static long drawSteady(SpriteBatch batch, ScoreHud hud, int frames, com.sun.management.ThreadMXBean threads){
+		long start = allocatedBytes(threads);
+
+		for(int i = 0; i < frames; i++)
+			draw(batch, hud, 7, 11);
+
+		return allocatedBytes(threads) - start;
+	}
+
+	/**
+	 * Draws frames where the scores go through every cached value, the human player's changing every frame.
+	 * 
+	 * @return The bytes allocated.
+	 */
+	private static long drawChanging(SpriteBatch batch, ScoreHud hud, int frames, com.sun.management.ThreadMXBean threads){
+		long start = allocatedBytes(threads);
+
+		for(int i = 0; i < frames; i++)
+			draw(batch, hud, i % (ScoreHud.MAX_CACHED_SCORE + 1), (i / 3) % (ScoreHud.MAX_CACHED_SCORE + 1));
+
+		return allocatedBytes(threads) - start;
+	}
+
+	private static void draw(SpriteBatch batch, ScoreHud hud, int humanScore, int computerScore){
+		batch.begin();
+		hud.draw(batch, PlayerComponent.HUMAN_PLAYER, humanScore);
+		hud.draw(batch, PlayerComponent.COMPUTER_PLAYER, computerScore);
+		batch.end();
+	}
+
+	private static long allocatedBytes(com.sun.management.ThreadMXBean threads){
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
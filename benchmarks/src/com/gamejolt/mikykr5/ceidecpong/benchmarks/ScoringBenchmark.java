@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.benchmarks;
+
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.core.PooledEngine;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.ScoreComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.ScoringSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
+
+/**
+ * Runs a {@link ScoringSystem} without a font over a number of scoring entities, sending score messages to all of
+ * them before every update. Every entity fetches only the messages sent to it's own sub-address, so the cost should
+ * grow with the number of messages and not with entities times messages.
+ * 
+ * The {@link #requeue()} baseline does the same work the way the system did before mailboxes had sub-addresses:
+ * every entity pops every message, keeps the ones with it's id and pushes the rest back through a list.
+ * 
+ * @author Miguel Astor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ScoringBenchmark{
+	private static final float STEP = 1.0f / 120.0f;
+
+	/**
+	 * How many entities keep a score.
+	 */
+	@Param({"2", "64"})
+	public int players;
+
+	/**
+	 * How many score messages are sent to every entity before each update.
+	 */
+	@Param({"1", "4"})
+	public int messagesPerPlayer;
+
+	private InterSystemMessagingQueue queue;
+	private Mailbox                   mailbox;
+	private ScoringSystem             scoring;
+	private ImmutableArray<Entity>    scorers;
+	private Queue<InterSystemMessage> ignoredMessages;
+
+	@SuppressWarnings("unchecked")
+	@Setup
+	public void setUp(){
+		PooledEngine    engine = new PooledEngine();
+		Entity          entity;
+		PlayerComponent player;
+
+		queue = new InterSystemMessagingQueue();
+		engine.addSystem(queue);
+		scoring = new ScoringSystem();
+		engine.addSystem(scoring);
+		mailbox = queue.registerMailbox(ScoringSystem.class.getCanonicalName());
+
+		for(int i = 0; i < players; i++){
+			entity = engine.createEntity();
+			player = engine.createComponent(PlayerComponent.class);
+			player.id = i;
+			entity.add(player);
+			entity.add(engine.createComponent(ScoreComponent.class));
+			engine.addEntity(entity);
+		}
+
+		scorers = engine.getEntitiesFor(Family.getFor(PlayerComponent.class, ScoreComponent.class));
+		ignoredMessages = new LinkedList<InterSystemMessage>();
+	}
+
+	/**
+	 * Sends the score messages to the sub-address of every entity and updates the system.
+	 */
+	@Benchmark
+	public void update(){
+		InterSystemMessage message;
+
+		for(int i = 0; i < messagesPerPlayer; i++){
+			for(int address = 0; address < players; address++){
+				message = queue.obtainMessage(mailbox.receiver, message_type_t.SCORE);
+				message.address = address;
+				mailbox.push(message);
+			}
+		}
+
+		scoring.update(STEP);
+	}
+
+	/**
+	 * Sends the score messages without a sub-address and lets every entity search the whole mailbox for it's own.
+	 */
+	@Benchmark
+	public void requeue(){
+		InterSystemMessage message;
+		PlayerComponent    player;
+		ScoreComponent     score;
+
+		for(int i = 0; i < messagesPerPlayer; i++){
+			for(int id = 0; id < players; id++){
+				message = queue.obtainMessage(mailbox.receiver, message_type_t.SCORE);
+				message.intData = id;
+				mailbox.push(message);
+			}
+		}
+
+		for(int i = 0; i < scorers.size(); i++){
+			player = Mappers.playerMapper.get(scorers.get(i));
+			score = Mappers.scoreMapper.get(scorers.get(i));
+
+			while((message = mailbox.pop()) != null){
+				if(message.type == message_type_t.SCORE && message.intData == player.id){
+					score.score++;
+					queue.freeMessage(message);
+				}else if(message.type == message_type_t.SCORE){
+					ignoredMessages.add(message);
+				}else{
+					queue.freeMessage(message);
+				}
+			}
+
+			for(InterSystemMessage ignored : ignoredMessages)
+				mailbox.push(ignored);
+			ignoredMessages.clear();
+		}
+	}
+}
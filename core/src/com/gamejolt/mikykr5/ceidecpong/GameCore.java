@@ -15,6 +15,8 @@
  */
 package com.gamejolt.mikykr5.ceidecpong;
 
+import java.io.IOException;
+
 import aurelienribon.tweenengine.Tween;
 import aurelienribon.tweenengine.TweenEquations;
 import aurelienribon.tweenengine.primitives.MutableFloat;
@@ -22,25 +24,30 @@ import aurelienribon.tweenengine.primitives.MutableFloat;
 import com.badlogic.gdx.Application;
 import com.badlogic.gdx.Game;
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
-import com.badlogic.gdx.graphics.Pixmap;
-import com.badlogic.gdx.graphics.Pixmap.Format;
-import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
 import com.badlogic.gdx.graphics.glutils.ShaderProgram;
-import com.gamejolt.mikykr5.ceidecpong.interfaces.AssetsLoadedListener;
-import com.gamejolt.mikykr5.ceidecpong.states.BaseState;
-import com.gamejolt.mikykr5.ceidecpong.states.InGameState;
-import com.gamejolt.mikykr5.ceidecpong.states.LoadingState;
-import com.gamejolt.mikykr5.ceidecpong.states.LogoScreenState;
-import com.gamejolt.mikykr5.ceidecpong.states.MainMenuState;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.gamejolt.mikykr5.ceidecpong.effects.FadeTransition;
+import com.gamejolt.mikykr5.ceidecpong.effects.TransitionRenderer;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.AllocationMeter;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.TransitionEffect;
+import com.gamejolt.mikykr5.ceidecpong.states.StateRegistry;
 import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceSizes;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.FrameStatistics;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.GpuMemoryTracker;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.StartupMetrics;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.SystemProfiler;
 
 /**
  * This is the central class of the Game. It is in charge of maintaining the game's
  * life cycle and switching between the different application states. It also renders
- * the fade effects when switching states.
+ * the transition effects when switching states.
  * 
  * @author Miguel Astor
  */
@@ -55,11 +62,21 @@ public class GameCore extends Game {
 	 */
 	private static final String CLASS_NAME = GameCore.class.getSimpleName();
 
+	/**
+	 * The key that shows and hides the profiler overlay.
+	 */
+	private static final int PROFILER_TOGGLE_KEY = Input.Keys.F3;
+
+	/**
+	 * The key that writes the profiler results to a file.
+	 */
+	private static final int PROFILER_DUMP_KEY = Input.Keys.F4;
+
 	/**
 	 * An enumerated type used for state switching.
 	 */
 	public enum game_states_t {
-		LOGO_SCREEN(0), MAIN_MENU(1), IN_GAME(2), QUIT(3), LOADING(4);
+		LOGO_SCREEN(0), MAIN_MENU(1), IN_GAME(2), QUIT(3), LOADING(4), REPLAY(5);
 
 		private int value;
 
@@ -72,7 +89,7 @@ public class GameCore extends Game {
 		}
 
 		public static int getNumStates(){
-			return 5;
+			return 6;
 		}
 	};
 
@@ -87,9 +104,15 @@ public class GameCore extends Game {
 	public game_states_t nextState;
 
 	/**
-	 * An array to hold all application states.
+	 * Holds all application states. Only the logo screen is constructed before the first frame, the rest are
+	 * warmed up while it is shown.
+	 */
+	private StateRegistry states;
+
+	/**
+	 * Whether the first frame has been rendered. It is presented when {@link GameCore#render()} returns.
 	 */
-	private BaseState[] states;
+	private boolean firstFrameRendered;
 
 	/**
 	 * The {@link SpriteBatch} used to render all 2D graphics in the game.
@@ -103,22 +126,27 @@ public class GameCore extends Game {
 
 	// Fade in/out effect fields.
 	/**
-	 * The fade graphic.
+	 * Draws the effect used to switch states.
 	 */
-	private Texture fadeTexture;
+	private TransitionRenderer transition;
 
 	/**
-	 * A {@link MutableFloat} used to interpolate the transparency of {@link GameCore#fadeTexture}.
+	 * The effect used to switch states, see {@link GameCore#setTransitionEffect(TransitionEffect)}.
+	 */
+	private TransitionEffect transitionEffect;
+
+	/**
+	 * A {@link MutableFloat} used to interpolate how much of the screen {@link GameCore#transition} covers.
 	 */
 	private MutableFloat alpha;
 
 	/**
-	 * A {@link Tween} instance used to interpolate between full transparency to no transparency.
+	 * A {@link Tween} instance used to interpolate between not covering the screen to covering it.
 	 */
 	private Tween fadeOut;
 
 	/**
-	 * A {@link Tween} instance used to interpolate between no transparency to full transparency.
+	 * A {@link Tween} instance used to interpolate between covering the screen to not covering it.
 	 */
 	private Tween fadeIn;
 
@@ -127,9 +155,129 @@ public class GameCore extends Game {
 	 */
 	private boolean fading;
 
+	/**
+	 * Measures the cost of the systems of the states. Disabled until {@link GameCore#PROFILER_TOGGLE_KEY} is pressed.
+	 */
+	public final SystemProfiler profiler;
+
+	/**
+	 * Frame time histograms of every state, always recorded.
+	 */
+	public final FrameStatistics frameStatistics;
+
+	/**
+	 * How long the game took to start, measured from the creation of this object.
+	 */
+	public final StartupMetrics startupMetrics;
+
+	/**
+	 * Keeps account of the video memory used by every state. Created along with the OpenGL resources.
+	 */
+	public GpuMemoryTracker gpuMemory;
+
+	/**
+	 * The budget of {@link GameCore#gpuMemory}, in bytes.
+	 */
+	private long gpuMemoryBudget;
+
+	/**
+	 * How many threads besides the render thread update the simulation systems of a match.
+	 */
+	private int simulationWorkers;
+
+	/**
+	 * Where to write {@link GameCore#frameStatistics} when the game ends, relative to the local storage. Null to not
+	 * write them.
+	 */
+	private String frameStatisticsPath;
+
+	/**
+	 * The font used to draw the profiler overlay. Created the first time the overlay is shown.
+	 */
+	private BitmapFont profilerFont;
+
+	/**
+	 * Creates the game without measuring allocations.
+	 */
+	public GameCore(){
+		this(null);
+	}
+
+	/**
+	 * Creates the game.
+	 * 
+	 * @param allocationMeter Used by the profiler to measure the memory allocated by every system. Can be null
+	 * if the platform can't do it.
+	 */
+	public GameCore(AllocationMeter allocationMeter){
+		startupMetrics = new StartupMetrics();
+		profiler = new SystemProfiler(allocationMeter);
+		profilerFont = null;
+		frameStatistics = new FrameStatistics(game_states_t.getNumStates(), ProjectConstants.FRAME_TIME_BUDGET);
+		frameStatisticsPath = null;
+		gpuMemoryBudget = ProjectConstants.GPU_MEMORY_BUDGET;
+		simulationWorkers = 0;
+		transitionEffect = new FadeTransition();
+	}
+
+	/**
+	 * Sets where to write the frame statistics when the game ends.
+	 * 
+	 * @param path The path of the file, relative to the local storage. Null to not write them.
+	 */
+	public void setFrameStatisticsPath(String path){
+		frameStatisticsPath = path;
+	}
+
+	/**
+	 * Sets how much video memory the game should use, {@link ProjectConstants#GPU_MEMORY_BUDGET} by default.
+	 * 
+	 * @param bytes The budget in bytes.
+	 */
+	public void setGpuMemoryBudget(long bytes){
+		gpuMemoryBudget = bytes;
+		if(gpuMemory != null)
+			gpuMemory.setBudget(bytes);
+	}
+
+	/**
+	 * Sets how many threads besides the render thread update the simulation systems of the matches started from now
+	 * on. Zero by default, as a normal match has so few entities that handing the systems over to other threads
+	 * costs more than updating them in order.
+	 * 
+	 * @param workers The number of threads, limited to {@link ProjectConstants#MAX_SIMULATION_WORKERS} and the number
+	 * of processors minus one.
+	 */
+	public void setSimulationWorkers(int workers){
+		simulationWorkers = Math.max(0, Math.min(workers, Math.min(ProjectConstants.MAX_SIMULATION_WORKERS, Runtime.getRuntime().availableProcessors() - 1)));
+	}
+
+	/**
+	 * @return How many threads besides the render thread update the simulation systems. Zero if they are updated on
+	 * the render thread.
+	 */
+	public int getSimulationWorkers(){
+		return simulationWorkers;
+	}
+
+	/**
+	 * Sets the effect used to switch states, a {@link FadeTransition} by default. Takes effect on the next switch.
+	 * 
+	 * @param effect The effect.
+	 * @throws IllegalArgumentException If effect is null or draws more than {@link ProjectConstants#TRANSITION_FILL_BUDGET}.
+	 */
+	public void setTransitionEffect(TransitionEffect effect) throws IllegalArgumentException{
+		if(effect == null)
+			throw new IllegalArgumentException(CLASS_NAME + ": Effect is null.");
+		if(effect.getFillCost() > ProjectConstants.TRANSITION_FILL_BUDGET)
+			throw new IllegalArgumentException(CLASS_NAME + ": The effect goes over the fill budget.");
+
+		transitionEffect = effect;
+	}
+
 	@Override
 	public void create () {
-		AsyncAssetLoader loader = AsyncAssetLoader.getInstance();
+		String[] owners;
 
 		// Set up rendering fields and settings.
 		ShaderProgram.pedantic = false; // Not passing all variables to a shader will not close the game.
@@ -138,48 +286,39 @@ public class GameCore extends Game {
 		batch.setBlendFunction(GL20.GL_SRC_ALPHA, GL20.GL_ONE_MINUS_SRC_ALPHA);
 		pixelPerfectCamera = new OrthographicCamera(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
 
-		// Prepare the fading effect.
-		Pixmap pixmap = new Pixmap(Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), Format.RGBA4444);
-		pixmap.setColor(0, 0, 0, 1);
-		pixmap.fill();
-		fadeTexture = new Texture(pixmap);
-		pixmap.dispose();
+		// Track the video memory of every state, including the assets they request.
+		owners = stateNames();
+		owners[game_states_t.QUIT.getValue()] = null;
+		gpuMemory = new GpuMemoryTracker(AsyncAssetLoader.getInstance().getCache(), owners, gpuMemoryBudget);
+		AsyncAssetLoader.getInstance().setGpuMemoryTracker(gpuMemory);
+
+		// Prepare the transition effect.
+		transition = new TransitionRenderer(transitionEffect, ProjectConstants.TRANSITION_FILL_BUDGET, gpuMemory);
 
 		// Create the initial interpolators and start with a fade in effect.
 		alpha   = new MutableFloat(1.0f);
-		fadeOut = Tween.to(alpha, 0, 0.5f).target(1.0f).ease(TweenEquations.easeInQuint);
+		fadeOut = Tween.to(alpha, 0, transition.getEffect().getOutDuration()).target(1.0f).ease(TweenEquations.easeInQuint);
 		fadeIn  = Tween.to(alpha, 0, 2.5f).target(0.0f).ease(TweenEquations.easeInQuint);
 		fadeIn.start();
 		fading  = true;
 
-		// Create application states.
-		states = new BaseState[game_states_t.getNumStates()];
+		// Create the initial state. The rest are constructed on the following frames.
+		states = new StateRegistry(this);
+		firstFrameRendered = false;
+
+		// Set the initial current and next states.
+		currState = game_states_t.LOGO_SCREEN;
+		nextState = null;
 
 		try{
-			states[game_states_t.LOGO_SCREEN.getValue()] = new LogoScreenState(this);
-			states[game_states_t.MAIN_MENU.getValue()] = new MainMenuState(this);
-			states[game_states_t.IN_GAME.getValue()] = new InGameState(this);
-			states[game_states_t.LOADING.getValue()] = new LoadingState(this);
-			states[game_states_t.QUIT.getValue()] = null;
+			this.setScreen(states.get(currState));
+			states.markShown(currState);
 		}catch(IllegalArgumentException e){
 			Gdx.app.error(TAG, CLASS_NAME + ".create(): Illegal argument caught creating states: ", e);
 			System.exit(1);
 			return;
 		}
 
-		// Register every state as an AssetsLoadedListener if the state implements the interface.
-		for(BaseState state : states){
-			if(state != null && state instanceof AssetsLoadedListener)
-				loader.addListener((AssetsLoadedListener)state);
-		}
-		AsyncAssetLoader.freeInstance();
-		loader = null;
-
-		// Set the initial current and next states.
-		currState = game_states_t.LOGO_SCREEN;
-		nextState = null;
-		this.setScreen(states[currState.getValue()]);
-
 		// Set log level
 		if(ProjectConstants.DEBUG){
 			Gdx.app.setLogLevel(Application.LOG_DEBUG);
@@ -190,29 +329,56 @@ public class GameCore extends Game {
 
 	@Override
 	public void render () {
+		// The previous call rendered the first frame and it got presented after it returned.
+		if(firstFrameRendered && startupMetrics.markFirstFrame())
+			Gdx.app.log(TAG, "Time to first frame: " + startupMetrics.getTimeToFirstFrame() + " s.");
+
+		frameStatistics.beginFrame(currState.getValue());
+		updateProfiler();
+		profiler.beginFrame(batch);
+
+		// Upload the assets requested by the states, including the ones constructed again after being unloaded.
+		AsyncAssetLoader.getInstance().loadAssets();
+
 		super.render();
+		frameStatistics.endState();
 
 		// If the current state set a value for nextState then switch to that state.
 		if(nextState != null){
 			// First disable the current state so that it will no longer catch user inputs.
-			states[currState.getValue()].onStateDisabled();
+			states.get(currState).onStateDisabled();
 
 			if(!fadeOut.isStarted()){
-				// Start the fade out effect.
+				// Start the fade out effect with the current transition effect.
+				if(transitionEffect != transition.getEffect() && !fadeIn.isStarted()){
+					transition.setEffect(transitionEffect);
+					fadeOut.free();
+					fadeOut = Tween.to(alpha, 0, transitionEffect.getOutDuration()).target(1.0f).ease(TweenEquations.easeInQuint);
+					fadeIn.free();
+					fadeIn = Tween.to(alpha, 0, transitionEffect.getInDuration()).target(0.0f).ease(TweenEquations.easeInQuint);
+				}
 				fadeOut.start();
 				fading = true;
 			}else{
 				// Update the fade out effect.
 				fadeOut.update(Gdx.graphics.getDeltaTime());
 
-				// When the fade out effect finishes, change to the requested state and launch the fade in effect.
-				if(fadeOut.isFinished()){
+				// When the fade out effect finishes and the requested state is ready, change to it and launch the fade in effect.
+				if(fadeOut.isFinished() && isReady(nextState)){
 					// Change to the requested state.
 					if(nextState != game_states_t.QUIT){
+						// Keep the last frame of the outgoing state for the effects that blend it.
+						transition.capture();
+
 						currState = nextState;
 						nextState = null;
 						//states[currState.getValue()].onStateEnabled();
-						setScreen(states[currState.getValue()]);
+						setScreen(states.get(currState));
+						states.markShown(currState);
+						enforceGpuMemoryBudget();
+
+						if(Gdx.app.getLogLevel() >= Application.LOG_INFO)
+							Gdx.app.log(TAG, gpuMemory.dump("GPU memory after switching to " + currState.name()));
 					}else{
 						nextState = null;
 						Gdx.app.exit();
@@ -220,7 +386,7 @@ public class GameCore extends Game {
 
 					// Reset the fade out effect and launch the fade in.
 					fadeOut.free();
-					fadeOut = Tween.to(alpha, 0, 0.5f).target(1.0f).ease(TweenEquations.easeInQuint);
+					fadeOut = Tween.to(alpha, 0, transition.getEffect().getOutDuration()).target(1.0f).ease(TweenEquations.easeInQuint);
 					fadeIn.start();
 				}
 			}
@@ -235,34 +401,174 @@ public class GameCore extends Game {
 				// Stop and reset it when done.
 				fading = false;
 				fadeIn.free();
-				fadeIn = Tween.to(alpha, 0, 0.5f).target(0.0f).ease(TweenEquations.easeInQuint);
-				states[currState.getValue()].onStateEnabled();
+				fadeIn = Tween.to(alpha, 0, transition.getEffect().getInDuration()).target(0.0f).ease(TweenEquations.easeInQuint);
+				transition.finish();
+				states.get(currState).onStateEnabled();
+
+				if(currState == game_states_t.MAIN_MENU && startupMetrics.markInteractive())
+					Gdx.app.log(TAG, "Time to interactive: " + startupMetrics.getTimeToInteractive() + " s.");
 			}
 		}
 
-		// Render the fading sprite with alpha blending.
+		// Render the transition effect with alpha blending.
 		if(fading){
 			batch.setProjectionMatrix(pixelPerfectCamera.combined);
 			batch.begin();{
-				batch.setColor(1, 1, 1, alpha.floatValue());
-				batch.draw(fadeTexture, -(Gdx.graphics.getWidth() / 2), -(Gdx.graphics.getHeight() / 2));
-				batch.setColor(1, 1, 1, 1);
+				transition.draw(batch, alpha.floatValue());
+			}batch.end();
+		}
+
+		frameStatistics.endFade();
+		profiler.endFrame(batch);
+
+		// Draw the profiler overlay over everything else.
+		if(profiler.isEnabled()){
+			if(profilerFont == null){
+				profilerFont = new BitmapFont();
+				gpuMemory.track(profilerFont, "BitmapFont profiler", ResourceSizes.of(profilerFont));
+			}
+
+			batch.setProjectionMatrix(pixelPerfectCamera.combined);
+			batch.begin();{
+				profiler.draw(batch, profilerFont, -(Gdx.graphics.getWidth() / 2) + 10, (Gdx.graphics.getHeight() / 2) - 10);
 			}batch.end();
 		}
+
+		// Construct the pending states, but not before the first frame is presented.
+		if(!firstFrameRendered){
+			firstFrameRendered = true;
+		}else if(!states.isWarmedUp()){
+			if(states.warmUp(ProjectConstants.STATE_WARM_UP_BUDGET) && startupMetrics.markWarmedUp())
+				Gdx.app.log(TAG, "Time to warm up: " + startupMetrics.getTimeToWarmUp() + " s.");
+		}
+	}
+
+	/**
+	 * @return True if every state has been constructed, so every asset they need has been requested.
+	 */
+	public boolean areStatesWarmedUp(){
+		return states.isWarmedUp();
+	}
+
+	@Override
+	public void resize(int width, int height){
+		super.resize(width, height);
+		pixelPerfectCamera = new OrthographicCamera(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+	}
+
+	@Override
+	public void pause(){
+		frameStatistics.skipFrame();
+		super.pause();
+	}
+
+	@Override
+	public void resume(){
+		frameStatistics.skipFrame();
+		super.resume();
 	}
 
 	@Override
 	public void dispose(){
 		super.dispose();
+		writeFrameStatistics();
 
-		// Dispose all states.
-		for(BaseState state : states){
-			if(state != null)
-				state.dispose();
-		}
+		// Dispose all states, then the loader they shared.
+		states.dispose();
+		AsyncAssetLoader.disposeInstance();
 
 		// Dispose other graphics.
-		fadeTexture.dispose();
+		profiler.setEnabled(false);
+		if(profilerFont != null)
+			profilerFont.dispose();
+		transition.dispose();
 		batch.dispose();
 	}
+
+	/**
+	 * Frees video memory until {@link GameCore#gpuMemory} fits in it's budget. Released assets are evicted first, then
+	 * the states shown the longest time ago are unloaded. States are not unloaded while assets are loading, as the
+	 * ones waiting for them can't be disposed yet, nor while they hold a match in progress.
+	 */
+	private void enforceGpuMemoryBudget(){
+		AsyncAssetLoader loader = AsyncAssetLoader.getInstance();
+		game_states_t    state;
+		long             excess;
+
+		while((excess = gpuMemory.getBytes() - gpuMemory.getBudget()) > 0L){
+			if(loader.getCache().evictUnreferenced(excess) > 0L)
+				continue;
+
+			state = states.getLeastRecentlyShown(currState);
+			if(state == null || !loader.isDone()){
+				Gdx.app.log(TAG, "Over the GPU memory budget by " + excess + " bytes, nothing else can be unloaded now.");
+				break;
+			}
+
+			states.unload(state);
+		}
+	}
+
+	/**
+	 * Constructs a state if it was unloaded, so it requests it's assets again, and tells if they are all loaded. The
+	 * loader is updated here, as a state whose assets are all cached is done at once but must still be notified.
+	 * 
+	 * @param state The state.
+	 * @return True if the state can be shown.
+	 */
+	private boolean isReady(game_states_t state){
+		if(state == game_states_t.QUIT)
+			return true;
+
+		states.get(state);
+
+		return AsyncAssetLoader.getInstance().loadAssets();
+	}
+
+	/**
+	 * @return The names of the states, indexed by {@link game_states_t#getValue()}.
+	 */
+	private static String[] stateNames(){
+		String[] names = new String[game_states_t.getNumStates()];
+
+		for(game_states_t state : game_states_t.values())
+			names[state.getValue()] = state.name();
+
+		return names;
+	}
+
+	/**
+	 * Checks the profiler keys.
+	 */
+	private void updateProfiler(){
+		FileHandle file;
+
+		if(Gdx.input.isKeyJustPressed(PROFILER_TOGGLE_KEY))
+			profiler.setEnabled(!profiler.isEnabled());
+
+		if(profiler.isEnabled() && Gdx.input.isKeyJustPressed(PROFILER_DUMP_KEY)){
+			file = Gdx.files.local(ProjectConstants.PROFILES_DIRECTORY + "/profile-" + Long.toString(TimeUtils.millis()) + ".csv");
+
+			try{
+				profiler.writeCsv(file);
+				Gdx.app.log(TAG, CLASS_NAME + ".updateProfiler(): Profile written to " + file.path());
+			}catch(IOException e){
+				Gdx.app.error(TAG, CLASS_NAME + ".updateProfiler(): Could not write the profile: ", e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the frame statistics to {@link GameCore#frameStatisticsPath}, if set.
+	 */
+	private void writeFrameStatistics(){
+		if(frameStatisticsPath == null)
+			return;
+
+		try{
+			frameStatistics.writeSummary(Gdx.files.local(frameStatisticsPath), stateNames());
+		}catch(IOException e){
+			Gdx.app.error(TAG, CLASS_NAME + ".writeFrameStatistics(): Could not write the frame statistics: ", e);
+		}
+	}
 }
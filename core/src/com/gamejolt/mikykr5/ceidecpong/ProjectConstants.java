@@ -45,4 +45,79 @@ public abstract class ProjectConstants{
 	 * Logical screen height.
 	 */
 	public static final int     FB_HEIGHT = 1080;
+
+	/**
+	 * The duration of a simulation step in seconds. The simulation runs at this fixed rate no matter the frame rate.
+	 */
+	public static final float   SIMULATION_STEP            = 1.0f / 120.0f;
+
+	/**
+	 * The maximum number of simulation steps run per rendered frame. If a frame takes longer than this many steps
+	 * the simulation slows down instead of trying to catch up.
+	 */
+	public static final int     MAX_SIMULATION_STEPS       = 8;
+
+	/**
+	 * The maximum number of threads, besides the render thread, used to run the simulation systems when enabled with
+	 * {@link GameCore#setSimulationWorkers(int)}. The actual number is also limited by the number of processors minus
+	 * one, so single core devices run everything on one thread.
+	 */
+	public static final int     MAX_SIMULATION_WORKERS     = 3;
+
+	/**
+	 * The maximum number of threads used to decode assets. The actual number is also limited by the number of
+	 * processors minus one, but there is always at least one so decoding never blocks the render thread.
+	 */
+	public static final int     MAX_ASSET_LOADER_WORKERS   = 3;
+
+	/**
+	 * How many seconds per frame can be spent uploading decoded assets to the GPU. At least one asset is uploaded
+	 * every frame no matter how long it takes.
+	 */
+	public static final float   ASSET_UPLOAD_BUDGET        = 0.004f;
+
+	/**
+	 * How many seconds per frame can be spent constructing states ahead of time. At least one state is constructed
+	 * every frame until all of them are, as a state can't be constructed in pieces.
+	 */
+	public static final float   STATE_WARM_UP_BUDGET       = 0.008f;
+
+	/**
+	 * How many bytes of textures, glyph pages and decoded sounds can stay loaded after they are released. Assets in
+	 * use are never evicted, so this can be exceeded while they are.
+	 */
+	public static final long    RESOURCE_CACHE_BUDGET      = 32L << 20;
+
+	/**
+	 * How many bytes of video memory the game should use. When a state is shown and the game uses more, released
+	 * assets are evicted and then the states shown the longest time ago are unloaded.
+	 */
+	public static final long    GPU_MEMORY_BUDGET          = 20L << 20;
+
+	/**
+	 * How many times the transition effects can draw every pixel of the screen per frame. A full screen rectangle
+	 * costs one.
+	 */
+	public static final float   TRANSITION_FILL_BUDGET     = 1.0f;
+
+	/**
+	 * Frames longer than this many seconds are counted as jank. One and a half 60 Hz refreshes, so only frames that
+	 * certainly missed a refresh are counted.
+	 */
+	public static final float   FRAME_TIME_BUDGET          = 1.5f / 60.0f;
+
+	/**
+	 * The directory, relative to the local storage of the game, where replays are saved.
+	 */
+	public static final String  REPLAYS_DIRECTORY          = "replays";
+
+	/**
+	 * The directory, relative to the local storage of the game, where profiler results are saved.
+	 */
+	public static final String  PROFILES_DIRECTORY         = "profiles";
+
+	/**
+	 * The directory, relative to the local storage of the game, where rasterized fonts are saved.
+	 */
+	public static final String  FONT_CACHE_DIRECTORY       = "fontcache";
 }
\ No newline at end of file
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.components;
+
+import com.badlogic.ashley.core.Component;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.PackedMotionSystem;
+
+/**
+ * A tag {@link Component} for entities whose position and velocity are stored packed in a {@link PackedMotionSystem}
+ * instead of in {@link PositionComponent} and {@link VelocityComponent} objects. Meant for large swarms of simple
+ * entities such as particles.
+ * 
+ * @author Miguel Astor
+ */
+public class PackedMotionComponent extends Component { }
@@ -23,7 +23,7 @@ import com.badlogic.gdx.utils.Pool.Poolable;
  * 
  * @author Miguel Astor.
  */
-public class PositionComponent extends Component implements Poolable {
+public strictfp class PositionComponent extends Component implements Poolable {
 	/**
 	 * The X coordinate.
 	 */
@@ -34,6 +34,16 @@ public class PositionComponent extends Component implements Poolable {
 	 */
 	public float y = 0;
 
+	/**
+	 * The X coordinate at the start of the last simulation step. Used to interpolate the rendered position.
+	 */
+	public float previousX = 0;
+
+	/**
+	 * The Y coordinate at the start of the last simulation step. Used to interpolate the rendered position.
+	 */
+	public float previousY = 0;
+
 	/**
 	 * Sets both coordinates simultaneously.
 	 * 
@@ -45,9 +55,47 @@ public class PositionComponent extends Component implements Poolable {
 		this.y = y;
 	}
 
+	/**
+	 * Sets both coordinates simultaneously without interpolating from the previous position. Use it when the
+	 * entity jumps to a new place instead of moving there.
+	 * 
+	 * @param x
+	 * @param y
+	 */
+	public void teleport(float x, float y){
+		setXY(x, y);
+		savePrevious();
+	}
+
+	/**
+	 * Stores the current coordinates as the previous position.
+	 */
+	public void savePrevious(){
+		previousX = x;
+		previousY = y;
+	}
+
+	/**
+	 * @param alpha How far between the previous and the current position, in [0, 1].
+	 * @return The interpolated X coordinate.
+	 */
+	public float getInterpolatedX(float alpha){
+		return previousX + ((x - previousX) * alpha);
+	}
+
+	/**
+	 * @param alpha How far between the previous and the current position, in [0, 1].
+	 * @return The interpolated Y coordinate.
+	 */
+	public float getInterpolatedY(float alpha){
+		return previousY + ((y - previousY) * alpha);
+	}
+
 	@Override
 	public void reset() {
 		x = 0;
 		y = 0;
+		previousX = 0;
+		previousY = 0;
 	}
 }
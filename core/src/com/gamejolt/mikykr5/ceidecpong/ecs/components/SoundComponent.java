@@ -17,7 +17,7 @@ package com.gamejolt.mikykr5.ceidecpong.ecs.components;
 
 import com.badlogic.ashley.core.Component;
 import com.badlogic.gdx.utils.Pool.Poolable;
-import com.gamejolt.mikykr5.ceidecpong.utils.managers.CachedSoundManager;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
 
 /**
  * A sound effect {@link Component}
@@ -26,7 +26,7 @@ import com.gamejolt.mikykr5.ceidecpong.utils.managers.CachedSoundManager;
  */
 public class SoundComponent extends Component implements Poolable {
 	/**
-	 * The path of the sound effect. Used as a key by {@link CachedSoundManager}.
+	 * The path of the sound effect. Used as a key by {@link AsyncAssetLoader}.
 	 */
 	public String path = "";
 
@@ -36,6 +36,9 @@ public abstract class EntityInitializerBase implements Disposable{
 	/**
 	 * Associates all assets loaded to their respective entities. 
 	 * 
+	 * The engine must already hold the {@link com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem}
+	 * of the match.
+	 * 
 	 * @param engine A {@link PooledEngine} instance as used by {@link InGameState}
 	 * @throws IllegalStateException If the entities have not been created before calling this method.
 	 */
@@ -17,10 +17,10 @@ package com.gamejolt.mikykr5.ceidecpong.ecs.entities;
 
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.PooledEngine;
+import com.badlogic.gdx.audio.Sound;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Sprite;
 import com.badlogic.gdx.graphics.g2d.TextureAtlas;
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.BoundingBoxComponent;
@@ -31,8 +31,8 @@ import com.gamejolt.mikykr5.ceidecpong.ecs.components.ScoreComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.SoundComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.SpriteComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem;
 import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
-import com.gamejolt.mikykr5.ceidecpong.utils.managers.CachedSoundManager;
 
 /**
  * A concrete implementation of a {@link EntityInitializerBase} that creates all the entities
@@ -40,7 +40,28 @@ import com.gamejolt.mikykr5.ceidecpong.utils.managers.CachedSoundManager;
  * 
  * @author Miguel Astor
  */
-public class PongEntityInitializer extends EntityInitializerBase{
+public strictfp class PongEntityInitializer extends EntityInitializerBase{
+	/**
+	 * The side length of the ball when running without graphics. Matches the ball sprite.
+	 */
+	public static final float HEADLESS_BALL_SIZE     = 64.0f;
+
+	/**
+	 * The width of the paddles when running without graphics. Matches the paddle sprites.
+	 */
+	public static final float HEADLESS_PADDLE_WIDTH  = 64.0f;
+
+	/**
+	 * The height of the paddles when running without graphics. Matches the paddle sprites.
+	 */
+	public static final float HEADLESS_PADDLE_HEIGHT = 256.0f;
+
+	/**
+	 * Flag that indicates that no assets must be loaded. If set the entities get no sprites or sounds and
+	 * use the fixed dimensions above instead.
+	 */
+	private final boolean    headless;
+
 	/**
 	 * An assets loader instance.
 	 */
@@ -90,22 +111,34 @@ public class PongEntityInitializer extends EntityInitializerBase{
 	 * Create the initializer and set the flags to false.
 	 */
 	public PongEntityInitializer() {
+		this(false);
+	}
+
+	/**
+	 * Create the initializer and set the flags to false.
+	 * 
+	 * @param headless Whether to create the entities without loading any assets, for running matches
+	 * without an OpenGL context or audio device.
+	 */
+	public PongEntityInitializer(boolean headless) {
+		this.headless = headless;
 		entitiesCreated = false;
 		assetsLoaded = false;
 	}
 
 	@Override
 	public void createAllEntities(PooledEngine engine){
-		// Get instances of the needed asset loaders.
-		loader = AsyncAssetLoader.getInstance();
-		CachedSoundManager soundManager = CachedSoundManager.getInstance();
+		if(!headless){
+			// Get an instance of the assets loader.
+			loader = AsyncAssetLoader.getInstance();
 
-		// Load all textures and sound effects.
-		loader.addAssetToLoad("data/gfx/textures/pong_atlas.atlas", TextureAtlas.class);
-		loader.addAssetToLoad("data/gfx/textures/bckg.png", Texture.class);
-		soundManager.loadSound("data/sfx/BounceYoFrankie.ogg");
-		soundManager.loadSound("data/sfx/oh_yeah_wav_cut.ogg");
-		soundManager.loadSound("data/sfx/atari_boom.ogg");
+			// Load all textures and sound effects.
+			loader.addAssetToLoad("data/gfx/textures/pong_atlas.atlas", TextureAtlas.class);
+			loader.addAssetToLoad("data/gfx/textures/bckg.png", Texture.class);
+			loader.addAssetToLoad("data/sfx/BounceYoFrankie.ogg", Sound.class);
+			loader.addAssetToLoad("data/sfx/oh_yeah_wav_cut.ogg", Sound.class);
+			loader.addAssetToLoad("data/sfx/atari_boom.ogg", Sound.class);
+		}
 
 		// Create the entities related to the sound effects.
 		victorySound = engine.createEntity();
@@ -162,42 +195,58 @@ public class PongEntityInitializer extends EntityInitializerBase{
 			throw new IllegalStateException("Entities have not been created before setting assets.");
 
 		// Some variables used to initialize the ball.
-		Vector2      randomVector = new Vector2().set(Vector2.X).setAngle(MathUtils.random(-60, 60));
-		int          randomSign   = MathUtils.random(-1, 1) >= 0 ? 1 : -1;
-		
-		// Fetch the assets.
-		TextureAtlas atlas        = loader.getAsset("data/gfx/textures/pong_atlas.atlas", TextureAtlas.class);
-		Texture      bckg         = loader.getAsset("data/gfx/textures/bckg.png", Texture.class);
+		RandomNumberSystem random       = RandomNumberSystem.getFor(engine);
+		Vector2            randomVector = random.randomDirection(new Vector2(), -60, 60);
+		int                randomSign   = random.random(-1, 1) >= 0 ? 1 : -1;
+		float              ballWidth, ballHeight, userWidth, userHeight, compWidth, compHeight;
+
+		if(!headless){
+			// Fetch the assets.
+			TextureAtlas atlas    = loader.getAsset("data/gfx/textures/pong_atlas.atlas", TextureAtlas.class);
+			Texture      bckg     = loader.getAsset("data/gfx/textures/bckg.png", Texture.class);
+
+			// Set up the sprites.
+			Mappers.spriteMapper.get(background).sprite = new Sprite(bckg);
+			Mappers.spriteMapper.get(ball).sprite = atlas.createSprite("ball");
+			Mappers.spriteMapper.get(paddleUser).sprite = atlas.createSprite("glasspaddle2");
+			Mappers.spriteMapper.get(paddleComp).sprite = atlas.createSprite("paddle");
+
+			ballWidth = Mappers.spriteMapper.get(ball).sprite.getWidth();
+			ballHeight = Mappers.spriteMapper.get(ball).sprite.getHeight();
+			userWidth = Mappers.spriteMapper.get(paddleUser).sprite.getWidth();
+			userHeight = Mappers.spriteMapper.get(paddleUser).sprite.getHeight();
+			compWidth = Mappers.spriteMapper.get(paddleComp).sprite.getWidth();
+			compHeight = Mappers.spriteMapper.get(paddleComp).sprite.getHeight();
+		}else{
+			ballWidth = ballHeight = HEADLESS_BALL_SIZE;
+			userWidth = compWidth = HEADLESS_PADDLE_WIDTH;
+			userHeight = compHeight = HEADLESS_PADDLE_HEIGHT;
+		}
 
 		// Add the sound effects to the entities.
 		Mappers.soundMapper.get(victorySound).path = "data/sfx/oh_yeah_wav_cut.ogg";
 		Mappers.soundMapper.get(defeatSound).path = "data/sfx/atari_boom.ogg";
 
 		// Set up the background.
-		Mappers.spriteMapper.get(background).sprite = new Sprite(bckg);
-		Mappers.positionMapper.get(background).setXY(-(ProjectConstants.FB_WIDTH / 2.0f), -(ProjectConstants.FB_HEIGHT / 2.0f));
+		Mappers.positionMapper.get(background).teleport(-(ProjectConstants.FB_WIDTH / 2.0f), -(ProjectConstants.FB_HEIGHT / 2.0f));
 
 		// Set up the ball.
-		Mappers.spriteMapper.get(ball).sprite = atlas.createSprite("ball");
-		Mappers.positionMapper.get(ball).setXY(-(Mappers.spriteMapper.get(ball).sprite.getWidth() / 2), -(Mappers.spriteMapper.get(ball).sprite.getHeight() / 2));
+		Mappers.positionMapper.get(ball).teleport(-(ballWidth / 2), -(ballHeight / 2));
 		Mappers.velocityMapper.get(ball).setXY(randomVector.x * 475.0f * randomSign, randomVector.y * 475.0f * randomSign);
-		Mappers.bboxMapper.get(ball).bbox.set(Mappers.spriteMapper.get(ball).sprite.getBoundingRectangle());
+		Mappers.bboxMapper.get(ball).bbox.set(0, 0, ballWidth, ballHeight);
 		Mappers.soundMapper.get(ball).path = "data/sfx/BounceYoFrankie.ogg";
 
 		// Set up the human player.
-		Mappers.spriteMapper.get(paddleUser).sprite = atlas.createSprite("glasspaddle2");
-		Mappers.positionMapper.get(paddleUser).setXY(-(ProjectConstants.FB_WIDTH / 2) + 100, -(Mappers.spriteMapper.get(paddleUser).sprite.getHeight() / 2));
-		Mappers.bboxMapper.get(paddleUser).bbox.set(Mappers.spriteMapper.get(paddleUser).sprite.getBoundingRectangle());
+		Mappers.positionMapper.get(paddleUser).teleport(-(ProjectConstants.FB_WIDTH / 2) + 100, -(userHeight / 2));
+		Mappers.bboxMapper.get(paddleUser).bbox.set(0, 0, userWidth, userHeight);
 		Mappers.playerMapper.get(paddleUser).id = PlayerComponent.HUMAN_PLAYER;
 
 		// Set up the computer player.
-		Mappers.spriteMapper.get(paddleComp).sprite = atlas.createSprite("paddle");
-		Mappers.positionMapper.get(paddleComp).setXY(((ProjectConstants.FB_WIDTH / 2) - 1) - 100 - Mappers.spriteMapper.get(paddleComp).sprite.getWidth(), -(Mappers.spriteMapper.get(paddleComp).sprite.getHeight() / 2));
-		Mappers.bboxMapper.get(paddleComp).bbox.set(Mappers.spriteMapper.get(paddleComp).sprite.getBoundingRectangle());
+		Mappers.positionMapper.get(paddleComp).teleport(((ProjectConstants.FB_WIDTH / 2) - 1) - 100 - compWidth, -(compHeight / 2));
+		Mappers.bboxMapper.get(paddleComp).bbox.set(0, 0, compWidth, compHeight);
 		Mappers.playerMapper.get(paddleComp).id = PlayerComponent.COMPUTER_PLAYER;
 
-		// Release the assets loader instance and mark the flag.
-		AsyncAssetLoader.freeInstance();
+		// Mark the flag.
 		assetsLoaded = true;
 	}
 
@@ -209,7 +258,13 @@ public class PongEntityInitializer extends EntityInitializerBase{
 		if(!assetsLoaded)
 			throw new IllegalStateException("Assets have not been loaded before disposing.");
 
-		// Release the sound manager instance.
-		CachedSoundManager.freeInstance();
+		// Release the assets. The sound effects are held until now so they stay loaded while playing.
+		if(!headless){
+			loader.unloadAsset("data/gfx/textures/pong_atlas.atlas", TextureAtlas.class);
+			loader.unloadAsset("data/gfx/textures/bckg.png", Texture.class);
+			loader.unloadAsset("data/sfx/BounceYoFrankie.ogg", Sound.class);
+			loader.unloadAsset("data/sfx/oh_yeah_wav_cut.ogg", Sound.class);
+			loader.unloadAsset("data/sfx/atari_boom.ogg", Sound.class);
+		}
 	}
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.scheduling;
+
+/**
+ * An {@link com.badlogic.ashley.core.EntitySystem} that tells the {@link SystemScheduler} what data it uses, so that it
+ * can run at the same time as other systems that use different data. Systems that do not implement this interface
+ * are assumed to use everything and always run alone.
+ * 
+ * @author Miguel Astor
+ */
+public interface ScheduledSystem{
+	/**
+	 * Declares every component type and shared object this system reads or writes during an update. Called once
+	 * every time the scheduler plans the order of the systems.
+	 * 
+	 * @param access The declaration to fill.
+	 */
+	public void declareAccess(SystemAccess access);
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.scheduling;
+
+import com.badlogic.ashley.core.Family;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.BooleanArray;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * The data used by a {@link ScheduledSystem} during an update. Data is identified by keys, usually the class of a
+ * component or of a shared object like {@link com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem}. Two
+ * systems conflict, and are never run at the same time, if one of them writes a key the other reads or writes.
+ * 
+ * A key can be narrowed to a partition, such as the components of a single player. Accesses to different partitions
+ * of the same key do not conflict, while an access to the whole key conflicts with every partition.
+ * 
+ * @author Miguel Astor
+ */
+public class SystemAccess{
+	/**
+	 * The partition that stands for the whole key.
+	 */
+	public static final int ALL_PARTITIONS = Integer.MIN_VALUE;
+
+	// The declared accesses.
+	private final Array<Object> keys;
+	private final IntArray      partitions;
+	private final BooleanArray  writes;
+
+	/**
+	 * Whether the system uses everything.
+	 */
+	private boolean             exclusive;
+
+	/**
+	 * The family processed one entity at a time, or null if the system can't be split.
+	 */
+	private Family              family;
+
+	/**
+	 * Creates an empty declaration.
+	 */
+	public SystemAccess(){
+		keys = new Array<Object>(8);
+		partitions = new IntArray(8);
+		writes = new BooleanArray(8);
+		clear();
+	}
+
+	/**
+	 * Declares keys that are read.
+	 * 
+	 * @param keys The keys.
+	 * @return This declaration, for chaining.
+	 */
+	public SystemAccess reads(Object... keys){
+		for(Object key : keys)
+			add(key, ALL_PARTITIONS, false);
+
+		return this;
+	}
+
+	/**
+	 * Declares keys that are written. Writing implies reading.
+	 * 
+	 * @param keys The keys.
+	 * @return This declaration, for chaining.
+	 */
+	public SystemAccess writes(Object... keys){
+		for(Object key : keys)
+			add(key, ALL_PARTITIONS, true);
+
+		return this;
+	}
+
+	/**
+	 * Declares a partition of a key that is read.
+	 * 
+	 * @param key The key.
+	 * @param partition The partition.
+	 * @return This declaration, for chaining.
+	 */
+	public SystemAccess readsPartition(Object key, int partition){
+		add(key, partition, false);
+
+		return this;
+	}
+
+	/**
+	 * Declares a partition of a key that is written. Writing implies reading.
+	 * 
+	 * @param key The key.
+	 * @param partition The partition.
+	 * @return This declaration, for chaining.
+	 */
+	public SystemAccess writesPartition(Object key, int partition){
+		add(key, partition, true);
+
+		return this;
+	}
+
+	/**
+	 * Declares that the system does all it's work in {@link com.badlogic.ashley.systems.IteratingSystem#processEntity}
+	 * and that processing an entity only writes the components of that entity. Large families are then split in
+	 * chunks processed at the same time, without calling the update method of the system.
+	 * 
+	 * @param family The family iterated by the system.
+	 * @return This declaration, for chaining.
+	 */
+	public SystemAccess iterates(Family family){
+		this.family = family;
+
+		return this;
+	}
+
+	/**
+	 * Declares that the system uses everything, so it always runs alone.
+	 * 
+	 * @return This declaration, for chaining.
+	 */
+	public SystemAccess exclusive(){
+		exclusive = true;
+
+		return this;
+	}
+
+	/**
+	 * Checks if two systems can't run at the same time.
+	 * 
+	 * @param other The declaration of the other system.
+	 * @return True if either system is exclusive or one of them writes data the other uses.
+	 */
+	public boolean conflictsWith(SystemAccess other){
+		if(exclusive || other.exclusive)
+			return true;
+
+		for(int i = 0; i < keys.size; i++){
+			for(int j = 0; j < other.keys.size; j++){
+				if(!writes.get(i) && !other.writes.get(j))
+					continue;
+
+				if(!keys.get(i).equals(other.keys.get(j)))
+					continue;
+
+				if(partitions.get(i) == ALL_PARTITIONS || other.partitions.get(j) == ALL_PARTITIONS || partitions.get(i) == other.partitions.get(j))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return The family declared with {@link #iterates(Family)}, or null.
+	 */
+	public Family getIteratedFamily(){
+		return family;
+	}
+
+	/**
+	 * @return Whether the system was declared exclusive.
+	 */
+	public boolean isExclusive(){
+		return exclusive;
+	}
+
+	/**
+	 * Forgets all declarations.
+	 */
+	void clear(){
+		keys.clear();
+		partitions.clear();
+		writes.clear();
+		exclusive = false;
+		family = null;
+	}
+
+	/**
+	 * Adds an access.
+	 * 
+	 * @throws IllegalArgumentException If key is null.
+	 */
+	private void add(Object key, int partition, boolean write) throws IllegalArgumentException{
+		if(key == null)
+			throw new IllegalArgumentException("Access key is null.");
+
+		keys.add(key);
+		partitions.add(partition);
+		writes.add(write);
+	}
+}
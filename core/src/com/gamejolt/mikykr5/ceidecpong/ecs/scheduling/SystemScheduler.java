@@ -0,0 +1,452 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.scheduling;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * Updates a list of systems using several threads while producing the same results as updating them one after the
+ * other in order.
+ * 
+ * When the systems are planned every pair of them is checked with {@link SystemAccess#conflictsWith(SystemAccess)}.
+ * A system depends on every earlier system it conflicts with, and it is put in the first stage after all of them.
+ * Stages run one after the other and the systems inside a stage run at the same time. Systems that declare an
+ * iterated family with more than {@link #getChunkSize()} entities are also split in chunks.
+ * 
+ * The thread calling {@link #update(float)} takes part in the work, so a stage with a single task never leaves it.
+ * Idle threads pick the next pending task from a shared counter, so a long task does not hold up the others. The
+ * counter holds the generation of the stage next to the task index, so a thread that is late for a stage can't
+ * claim the tasks of the next one.
+ * 
+ * Systems running at the same time must not add or remove entities or components, as the {@link Engine} is not
+ * thread safe. Systems that do must not implement {@link ScheduledSystem} or must declare themselves exclusive.
+ * 
+ * @author Miguel Astor
+ */
+public class SystemScheduler implements Disposable{
+	/**
+	 * The default smallest number of entities processed by a single task.
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+	/**
+	 * The smallest number of entities processed by a single task.
+	 */
+	private final int           chunkSize;
+
+	/**
+	 * The threads that help the calling thread.
+	 */
+	private final Thread[]      workers;
+
+	// The plan.
+	private final Array<EntitySystem>           systems;
+	private final Array<ImmutableArray<Entity>> iteratedEntities;
+	private final IntArray                      stageStarts;
+	private final SystemAccess                  access;
+
+	// The tasks of the current stage.
+	private final Array<Task>   tasks;
+	private int                 taskCount;
+	private float               deltaTime;
+
+	/**
+	 * The generation of the current stage in the upper 32 bits and the index of it's next task to run in the lower
+	 * 32 bits.
+	 */
+	private final AtomicLong    nextTask;
+
+	/**
+	 * The number of tasks of the current stage that have not finished.
+	 */
+	private final AtomicInteger pendingTasks;
+
+	/**
+	 * The first error thrown by a task of the current stage.
+	 */
+	private volatile Throwable  error;
+
+	// Monitors used to wake up the workers and the calling thread.
+	private final Object        workLock;
+	private final Object        doneLock;
+
+	/**
+	 * Incremented every time a stage is started, so that workers know there is new work.
+	 */
+	private int                 generation;
+
+	/**
+	 * The number of tasks of the stage started last. Unlike {@link #taskCount} it only changes together with
+	 * {@link #generation}, inside {@link #workLock}.
+	 */
+	private int                 generationTasks;
+
+	/**
+	 * Whether the workers must stop.
+	 */
+	private boolean             shutdown;
+
+	/**
+	 * Creates a scheduler with the {@link #DEFAULT_CHUNK_SIZE}.
+	 * 
+	 * @param workerCount The number of threads to start, besides the calling thread. Zero runs everything on the
+	 * calling thread.
+	 * @throws IllegalArgumentException If workerCount is negative.
+	 */
+	public SystemScheduler(int workerCount) throws IllegalArgumentException{
+		this(workerCount, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Creates a scheduler.
+	 * 
+	 * @param workerCount The number of threads to start, besides the calling thread. Zero runs everything on the
+	 * calling thread.
+	 * @param chunkSize The smallest number of entities processed by a single task.
+	 * @throws IllegalArgumentException If workerCount is negative or chunkSize is not positive.
+	 */
+	public SystemScheduler(int workerCount, int chunkSize) throws IllegalArgumentException{
+		if(workerCount < 0)
+			throw new IllegalArgumentException("Worker count is negative.");
+
+		if(chunkSize <= 0)
+			throw new IllegalArgumentException("Chunk size must be positive.");
+
+		this.chunkSize = chunkSize;
+		systems = new Array<EntitySystem>(true, 8, EntitySystem.class);
+		iteratedEntities = new Array<ImmutableArray<Entity>>(true, 8);
+		stageStarts = new IntArray(true, 8);
+		access = new SystemAccess();
+		tasks = new Array<Task>(true, 16, Task.class);
+		taskCount = 0;
+		deltaTime = 0.0f;
+		nextTask = new AtomicLong(0L);
+		pendingTasks = new AtomicInteger(0);
+		error = null;
+		workLock = new Object();
+		doneLock = new Object();
+		generation = 0;
+		generationTasks = 0;
+		shutdown = false;
+
+		workers = new Thread[workerCount];
+		for(int i = 0; i < workerCount; i++){
+			workers[i] = new Thread(new Worker(), "System scheduler " + Integer.toString(i));
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Builds the stages for a list of systems.
+	 * 
+	 * @param systems The systems, in the order they must appear to run.
+	 * @param engine The engine the systems were added to.
+	 */
+	public void plan(Array<EntitySystem> systems, Engine engine){
+		SystemAccess[] accesses = new SystemAccess[systems.size];
+		int[]          stages   = new int[systems.size];
+		int            stageCount = 0;
+
+		// Put every system one stage after the last system it conflicts with.
+		for(int i = 0; i < systems.size; i++){
+			accesses[i] = new SystemAccess();
+			if(systems.get(i) instanceof ScheduledSystem)
+				((ScheduledSystem)systems.get(i)).declareAccess(accesses[i]);
+			else
+				accesses[i].exclusive();
+
+			stages[i] = 0;
+			for(int j = 0; j < i; j++){
+				if(stages[j] >= stages[i] && accesses[i].conflictsWith(accesses[j]))
+					stages[i] = stages[j] + 1;
+			}
+			stageCount = Math.max(stageCount, stages[i] + 1);
+		}
+
+		this.systems.clear();
+		iteratedEntities.clear();
+		stageStarts.clear();
+
+		// Sort the systems by stage, keeping their order inside every stage.
+		for(int stage = 0; stage < stageCount; stage++){
+			stageStarts.add(this.systems.size);
+
+			for(int i = 0; i < systems.size; i++){
+				if(stages[i] != stage)
+					continue;
+
+				this.systems.add(systems.get(i));
+				iteratedEntities.add(accesses[i].getIteratedFamily() != null && systems.get(i) instanceof IteratingSystem ? engine.getEntitiesFor(accesses[i].getIteratedFamily()) : null);
+			}
+		}
+		stageStarts.add(this.systems.size);
+	}
+
+	/**
+	 * Updates every planned system once.
+	 * 
+	 * @param deltaTime The time passed to the systems.
+	 * @throws RuntimeException Any unchecked exception thrown by a system.
+	 * @throws IllegalStateException If the scheduler was disposed.
+	 */
+	public void update(float deltaTime) throws IllegalStateException{
+		if(shutdown)
+			throw new IllegalStateException("The scheduler was disposed.");
+
+		for(int stage = 0; stage + 1 < stageStarts.size; stage++){
+			prepareStage(stageStarts.get(stage), stageStarts.get(stage + 1));
+
+			if(taskCount == 1 || workers.length == 0){
+				for(int i = 0; i < taskCount; i++)
+					tasks.items[i].run(deltaTime);
+			}else{
+				runStage(deltaTime);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of stages in the plan.
+	 */
+	public int getStageCount(){
+		return stageStarts.size > 0 ? stageStarts.size - 1 : 0;
+	}
+
+	/**
+	 * @param stage A stage.
+	 * @return The number of systems in that stage.
+	 */
+	public int getStageSize(int stage){
+		return stageStarts.get(stage + 1) - stageStarts.get(stage);
+	}
+
+	/**
+	 * @return The number of threads started besides the calling thread.
+	 */
+	public int getWorkerCount(){
+		return workers.length;
+	}
+
+	/**
+	 * @return The smallest number of entities processed by a single task.
+	 */
+	public int getChunkSize(){
+		return chunkSize;
+	}
+
+	/**
+	 * Stops the worker threads.
+	 */
+	@Override
+	public void dispose(){
+		synchronized(workLock){
+			shutdown = true;
+			workLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Creates the tasks for the systems in [first, last).
+	 */
+	private void prepareStage(int first, int last){
+		ImmutableArray<Entity> entities;
+		int                    chunks, size;
+
+		taskCount = 0;
+
+		for(int i = first; i < last; i++){
+			entities = iteratedEntities.get(i);
+			size = entities != null ? entities.size() : 0;
+
+			if(entities == null || workers.length == 0 || size < 2 * chunkSize){
+				obtainTask().set(systems.get(i), null, 0, 0);
+			}else{
+				// Several chunks per thread, so that threads that finish early can take more.
+				chunks = Math.min(size / chunkSize, (workers.length + 1) * 4);
+				for(int c = 0; c < chunks; c++)
+					obtainTask().set(systems.get(i), entities, (int)((long)size * c / chunks), (int)((long)size * (c + 1) / chunks));
+			}
+		}
+	}
+
+	/**
+	 * @return A reusable task.
+	 */
+	private Task obtainTask(){
+		if(taskCount == tasks.size)
+			tasks.add(new Task());
+
+		return tasks.items[taskCount++];
+	}
+
+	/**
+	 * Runs the tasks of the current stage on all threads and waits for them to finish.
+	 */
+	private void runStage(float deltaTime){
+		boolean   interrupted = false;
+		int       stage;
+		Throwable failure;
+
+		this.deltaTime = deltaTime;
+		error = null;
+		pendingTasks.set(taskCount);
+
+		synchronized(workLock){
+			stage = ++generation;
+			generationTasks = taskCount;
+
+			// Publishing the first task makes the fields above visible to the workers.
+			nextTask.set(claim(stage, 0));
+			for(int i = 1; i < taskCount && i <= workers.length; i++)
+				workLock.notify();
+		}
+
+		runTasks(stage, taskCount);
+
+		synchronized(doneLock){
+			while(pendingTasks.get() > 0){
+				try{
+					doneLock.wait();
+				}catch(InterruptedException e){
+					// The tasks must finish before returning, so keep waiting.
+					interrupted = true;
+				}
+			}
+		}
+
+		if(interrupted)
+			Thread.currentThread().interrupt();
+
+		if((failure = error) != null){
+			if(failure instanceof RuntimeException)
+				throw (RuntimeException)failure;
+			if(failure instanceof Error)
+				throw (Error)failure;
+			throw new IllegalStateException("A system failed.", failure);
+		}
+	}
+
+	/**
+	 * Runs tasks of a stage until there are none left or a later stage started.
+	 * 
+	 * @param stage The generation of the stage.
+	 * @param count The number of tasks of the stage.
+	 */
+	private void runTasks(int stage, int count){
+		long current;
+		int  index;
+
+		while(true){
+			current = nextTask.get();
+			index = (int)current;
+
+			// The stage is over or every task of it was taken, so the task list may already belong to the next stage.
+			if(current != claim(stage, index) || index >= count)
+				return;
+
+			if(!nextTask.compareAndSet(current, current + 1))
+				continue;
+
+			try{
+				tasks.items[index].run(deltaTime);
+			}catch(Throwable t){
+				if(error == null)
+					error = t;
+			}
+
+			if(pendingTasks.decrementAndGet() == 0){
+				synchronized(doneLock){
+					doneLock.notifyAll();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Packs a generation and a task index in a value of {@link #nextTask}.
+	 */
+	private static long claim(int stage, int index){
+		return ((long)stage << 32) | (index & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * A whole system, or a range of the entities of an {@link IteratingSystem}.
+	 */
+	private static final class Task{
+		private EntitySystem           system;
+		private ImmutableArray<Entity> entities;
+		private int                    from;
+		private int                    to;
+
+		public void set(EntitySystem system, ImmutableArray<Entity> entities, int from, int to){
+			this.system = system;
+			this.entities = entities;
+			this.from = from;
+			this.to = to;
+		}
+
+		public void run(float deltaTime){
+			if(entities == null){
+				system.update(deltaTime);
+			}else{
+				for(int i = from; i < to; i++)
+					((IteratingSystem)system).processEntity(entities.get(i), deltaTime);
+			}
+		}
+	}
+
+	/**
+	 * Waits for stages to start and helps running their tasks.
+	 */
+	private final class Worker implements Runnable{
+		@Override
+		public void run(){
+			int seen = 0;
+			int count;
+
+			while(true){
+				synchronized(workLock){
+					while(generation == seen && !shutdown){
+						try{
+							workLock.wait();
+						}catch(InterruptedException e){
+							return;
+						}
+					}
+
+					if(shutdown)
+						return;
+
+					seen = generation;
+					count = generationTasks;
+				}
+
+				runTasks(seen, count);
+			}
+		}
+	}
+}
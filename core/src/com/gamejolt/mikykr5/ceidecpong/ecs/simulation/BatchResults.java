@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.simulation;
+
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+
+/**
+ * The aggregated results of the matches played by a {@link BatchSimulator}.
+ * 
+ * @author Miguel Astor
+ */
+public class BatchResults{
+	// Match outcomes.
+	private int    matches;
+	private int    humanWins;
+	private int    computerWins;
+
+	// Totals over all matches.
+	private long   points;
+	private long   paddleHits;
+	private long   steps;
+	private double simulatedTime;
+
+	/**
+	 * The real time spent playing the matches, in seconds.
+	 */
+	private double wallTime;
+
+	/**
+	 * Adds the result of a finished match.
+	 * 
+	 * @param match The match.
+	 * @param winner The id of the winning player, or -1 if nobody won.
+	 */
+	public void add(HeadlessMatch match, int winner){
+		matches++;
+
+		if(winner == PlayerComponent.HUMAN_PLAYER)
+			humanWins++;
+		else if(winner == PlayerComponent.COMPUTER_PLAYER)
+			computerWins++;
+
+		points += match.getScore(PlayerComponent.HUMAN_PLAYER) + match.getScore(PlayerComponent.COMPUTER_PLAYER);
+		paddleHits += match.getPaddleHits();
+		steps += match.getSteps();
+		simulatedTime += match.getElapsedTime();
+	}
+
+	/**
+	 * Adds all results of another batch.
+	 * 
+	 * @param other The other batch.
+	 */
+	public void add(BatchResults other){
+		matches += other.matches;
+		humanWins += other.humanWins;
+		computerWins += other.computerWins;
+		points += other.points;
+		paddleHits += other.paddleHits;
+		steps += other.steps;
+		simulatedTime += other.simulatedTime;
+		wallTime += other.wallTime;
+	}
+
+	/**
+	 * @param wallTime The real time spent playing the matches, in seconds.
+	 */
+	public void setWallTime(double wallTime){
+		this.wallTime = wallTime;
+	}
+
+	/**
+	 * @return The number of matches played.
+	 */
+	public int getMatches(){
+		return matches;
+	}
+
+	/**
+	 * @return The fraction of the matches won by the human player.
+	 */
+	public double getHumanWinRate(){
+		return matches > 0 ? (double)humanWins / matches : 0.0;
+	}
+
+	/**
+	 * @return The fraction of the matches won by the computer player.
+	 */
+	public double getComputerWinRate(){
+		return matches > 0 ? (double)computerWins / matches : 0.0;
+	}
+
+	/**
+	 * @return The number of matches that reached the time limit without a winner.
+	 */
+	public int getUnfinishedMatches(){
+		return matches - humanWins - computerWins;
+	}
+
+	/**
+	 * @return The mean number of paddle hits per point.
+	 */
+	public double getMeanRallyLength(){
+		return points > 0 ? (double)paddleHits / points : 0.0;
+	}
+
+	/**
+	 * @return The mean number of points scored per simulated minute.
+	 */
+	public double getPointsPerMinute(){
+		return simulatedTime > 0.0 ? points / (simulatedTime / 60.0) : 0.0;
+	}
+
+	/**
+	 * @return The total number of simulation steps run.
+	 */
+	public long getSteps(){
+		return steps;
+	}
+
+	/**
+	 * @return The total simulated time in seconds.
+	 */
+	public double getSimulatedTime(){
+		return simulatedTime;
+	}
+
+	/**
+	 * @return The real time spent playing the matches, in seconds.
+	 */
+	public double getWallTime(){
+		return wallTime;
+	}
+
+	/**
+	 * @return The number of matches played per real second.
+	 */
+	public double getMatchesPerSecond(){
+		return wallTime > 0.0 ? matches / wallTime : 0.0;
+	}
+
+	@Override
+	public String toString(){
+		return String.format("%d matches: human win rate %.3f, computer win rate %.3f, %d unfinished, rally length %.2f, %.2f points/min, %.1f matches/s (%.0f steps/s)",
+				matches, getHumanWinRate(), getComputerWinRate(), getUnfinishedMatches(), getMeanRallyLength(), getPointsPerMinute(), getMatchesPerSecond(), wallTime > 0.0 ? steps / wallTime : 0.0);
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Plays many {@link HeadlessMatch} instances in parallel using a fixed pool of threads, one match per thread at
+ * a time. Matches share no state, so the throughput grows with the number of cores.
+ * 
+ * @author Miguel Astor
+ */
+public class BatchSimulator implements Disposable{
+	/**
+	 * Creates the input source of every match.
+	 */
+	public interface InputSourceFactory{
+		/**
+		 * @param settings The settings of the match about to be played.
+		 * @return A new input source for the match. May be null.
+		 */
+		public MatchInputSource create(MatchSettings settings);
+	}
+
+	/**
+	 * The threads that play the matches.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * The number of threads in the pool.
+	 */
+	private final int             threads;
+
+	/**
+	 * Creates a simulator with one thread per available processor.
+	 */
+	public BatchSimulator(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a simulator.
+	 * 
+	 * @param threads The number of threads used to play matches.
+	 * @throws IllegalArgumentException If threads is less than 1.
+	 */
+	public BatchSimulator(int threads) throws IllegalArgumentException{
+		if(threads < 1)
+			throw new IllegalArgumentException("At least one thread is needed.");
+
+		this.threads = threads;
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory(){
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "BatchSimulator-" + Integer.toString(count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Plays a number of matches and waits for all of them to finish. Match i is played with the given settings
+	 * and a seed of settings.seed + i, so a batch is reproducible no matter how many threads are used.
+	 * 
+	 * @param matches The number of matches to play.
+	 * @param settings The settings of every match.
+	 * @param inputSources Creates the input source of every match. If null the human player never moves.
+	 * @return The aggregated results.
+	 * @throws IllegalArgumentException If matches is negative or settings is null.
+	 * @throws IllegalStateException If a match failed or the wait was interrupted.
+	 */
+	public BatchResults run(int matches, MatchSettings settings, final InputSourceFactory inputSources) throws IllegalArgumentException, IllegalStateException{
+		List<Future<BatchResults>> futures;
+		BatchResults               results;
+		long                       start;
+
+		if(matches < 0)
+			throw new IllegalArgumentException("Number of matches is negative.");
+
+		if(settings == null)
+			throw new IllegalArgumentException("Settings are null.");
+
+		// Create one match on this thread first, so that Ashley registers all component types and families
+		// before the workers start looking them up concurrently.
+		new HeadlessMatch(null, settings).dispose();
+
+		start = System.nanoTime();
+		futures = new ArrayList<Future<BatchResults>>(threads);
+
+		// Every worker plays a contiguous range of matches and keeps it's own results.
+		for(int t = 0; t < threads; t++){
+			final int           first         = (int)(((long)matches * t) / threads);
+			final int           last          = (int)(((long)matches * (t + 1)) / threads);
+			final MatchSettings matchSettings = new MatchSettings().set(settings);
+
+			futures.add(executor.submit(new Callable<BatchResults>(){
+				@Override
+				public BatchResults call(){
+					BatchResults  partial = new BatchResults();
+					HeadlessMatch match;
+					long          baseSeed = matchSettings.seed;
+
+					for(int i = first; i < last; i++){
+						matchSettings.seed = baseSeed + i;
+						match = playMatch(matchSettings, inputSources);
+						partial.add(match, match.getWinner(matchSettings.targetScore));
+						match.dispose();
+					}
+
+					return partial;
+				}
+			}));
+		}
+
+		results = new BatchResults();
+		try{
+			for(Future<BatchResults> future : futures)
+				results.add(future.get());
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while waiting for the matches.", e);
+		}catch(ExecutionException e){
+			throw new IllegalStateException("A match failed.", e.getCause());
+		}
+
+		results.setWallTime((System.nanoTime() - start) / 1.0e9);
+
+		return results;
+	}
+
+	/**
+	 * @return The number of threads used to play matches.
+	 */
+	public int getThreads(){
+		return threads;
+	}
+
+	@Override
+	public void dispose(){
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Plays a single match to the end.
+	 */
+	private HeadlessMatch playMatch(MatchSettings settings, InputSourceFactory inputSources){
+		HeadlessMatch match = new HeadlessMatch(inputSources != null ? inputSources.create(settings) : null, settings);
+
+		match.play(settings.targetScore, settings.getMaxSteps());
+
+		return match;
+	}
+}
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.simulation;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.utils.Array;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.ScoreComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.SystemScheduler;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.SystemProfiler;
+
+/**
+ * Runs a set of {@link EntitySystem} instances at a fixed rate, independently of the rate at which frames are
+ * rendered. Every frame the elapsed time is added to an accumulator and the systems are updated in order,
+ * once per full step contained in it. The time left over is exposed as an interpolation factor so that the
+ * renderer can draw entities between the last two simulated positions.
+ * 
+ * The systems managed by this class must not be added to the {@link Engine}, as then they would also be
+ * updated once per frame with the variable frame time.
+ * 
+ * Optionally a hash of the state of all entities is computed after every step. Two simulations started from the
+ * same seed and fed the same input must produce the same sequence of hashes, which makes it easy to find where
+ * two runs diverged.
+ * 
+ * Optionally the systems are updated by a {@link SystemScheduler}, which runs the systems that do not share data on
+ * several threads with the same results as running them in order.
+ * 
+ * @author Miguel Astor
+ */
+public class FixedStepSimulation{
+	/**
+	 * The longest frame that is taken into account. Longer frames (like the ones after the application was paused)
+	 * are truncated.
+	 */
+	private static final float           MAX_FRAME_TIME = 0.25f;
+
+	// Parameters of the 64 bit FNV-1a hash.
+	private static final long            FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long            FNV_PRIME        = 0x100000001b3L;
+
+	/**
+	 * The engine holding the simulated entities.
+	 */
+	private final Engine                 engine;
+
+	/**
+	 * The systems to update every step, in order.
+	 */
+	private final Array<EntitySystem>    systems;
+
+	/**
+	 * All entities with a position, used to save the previous position before every step.
+	 */
+	private final ImmutableArray<Entity> positionedEntities;
+
+	/**
+	 * The scheduler that updates the systems, or null to update them in order on the calling thread.
+	 */
+	private SystemScheduler              scheduler;
+
+	/**
+	 * The profiler that measures every system, or null.
+	 */
+	private SystemProfiler               profiler;
+
+	/**
+	 * The duration of a step in seconds.
+	 */
+	private final float                  step;
+
+	/**
+	 * The maximum number of steps run in a single frame.
+	 */
+	private final int                    maxSteps;
+
+	/**
+	 * The time not yet simulated.
+	 */
+	private float                        accumulator;
+
+	// Statistics.
+	private long                         totalSteps;
+	private float                        droppedTime;
+
+	/**
+	 * Whether to compute the state hash after every step.
+	 */
+	private boolean                      hashing;
+
+	/**
+	 * The hash of the state after the last step.
+	 */
+	private long                         stateHash;
+
+	/**
+	 * Creates a new simulation.
+	 * 
+	 * @param engine The engine holding the simulated entities.
+	 * @param step The duration of a step in seconds.
+	 * @param maxSteps The maximum number of steps run per frame. If more steps are due the extra time is
+	 * discarded, so a slow device plays in slow motion instead of falling further and further behind.
+	 * @throws IllegalArgumentException If engine is null, step is not positive or maxSteps is less than 1.
+	 */
+	@SuppressWarnings("unchecked")
+	public FixedStepSimulation(Engine engine, float step, int maxSteps) throws IllegalArgumentException{
+		if(engine == null)
+			throw new IllegalArgumentException("Engine is null.");
+
+		if(step <= 0.0f)
+			throw new IllegalArgumentException("Step must be positive.");
+
+		if(maxSteps < 1)
+			throw new IllegalArgumentException("Max steps must be at least 1.");
+
+		this.engine = engine;
+		this.step = step;
+		this.maxSteps = maxSteps;
+		systems = new Array<EntitySystem>(true, 8, EntitySystem.class);
+		positionedEntities = engine.getEntitiesFor(Family.getFor(PositionComponent.class));
+		accumulator = 0.0f;
+		totalSteps = 0L;
+		droppedTime = 0.0f;
+		hashing = false;
+		stateHash = FNV_OFFSET_BASIS;
+		scheduler = null;
+		profiler = null;
+	}
+
+	/**
+	 * Sets the profiler used to measure every system. While the profiler is enabled the systems are updated in order
+	 * on the calling thread, even if there is a scheduler, so that each one is measured alone.
+	 * 
+	 * @param profiler The profiler, or null.
+	 */
+	public void setProfiler(SystemProfiler profiler){
+		this.profiler = profiler;
+	}
+
+	/**
+	 * Sets the scheduler used to update the systems. The scheduler is not disposed by this simulation.
+	 * 
+	 * @param scheduler The scheduler, or null to update the systems in order on the calling thread.
+	 */
+	public void setScheduler(SystemScheduler scheduler){
+		this.scheduler = scheduler;
+
+		if(scheduler != null)
+			scheduler.plan(systems, engine);
+	}
+
+	/**
+	 * @return The scheduler used to update the systems, or null if there is none.
+	 */
+	public SystemScheduler getScheduler(){
+		return scheduler;
+	}
+
+	/**
+	 * Adds a system to the simulation. Systems are updated in the order they were added.
+	 * 
+	 * @param system The system to add.
+	 * @throws IllegalArgumentException If system is null.
+	 */
+	public void addSystem(EntitySystem system) throws IllegalArgumentException{
+		if(system == null)
+			throw new IllegalArgumentException("System is null.");
+
+		systems.add(system);
+		system.addedToEngine(engine);
+
+		if(scheduler != null)
+			scheduler.plan(systems, engine);
+	}
+
+	/**
+	 * Removes a system from the simulation.
+	 * 
+	 * @param system The system to remove.
+	 * @return True if the system was part of the simulation.
+	 */
+	public boolean removeSystem(EntitySystem system){
+		if(!systems.removeValue(system, true))
+			return false;
+
+		system.removedFromEngine(engine);
+
+		if(scheduler != null)
+			scheduler.plan(systems, engine);
+
+		return true;
+	}
+
+	/**
+	 * Removes all systems from the simulation.
+	 */
+	public void removeAllSystems(){
+		for(int i = 0; i < systems.size; i++)
+			systems.items[i].removedFromEngine(engine);
+		systems.clear();
+
+		if(scheduler != null)
+			scheduler.plan(systems, engine);
+	}
+
+	/**
+	 * Advances the simulation by as many steps as fit in the time accumulated so far.
+	 * 
+	 * @param frameTime The time elapsed since the last frame in seconds.
+	 * @return The number of steps run.
+	 */
+	public int update(float frameTime){
+		int steps = 0;
+
+		accumulator += frameTime > MAX_FRAME_TIME ? MAX_FRAME_TIME : (frameTime < 0.0f ? 0.0f : frameTime);
+
+		while(accumulator >= step && steps < maxSteps){
+			tick();
+			accumulator -= step;
+			steps++;
+		}
+
+		// Spiral of death guard. Keep only the fraction of a step needed for interpolation.
+		if(accumulator >= step){
+			droppedTime += accumulator - (accumulator % step);
+			accumulator %= step;
+		}
+
+		return steps;
+	}
+
+	/**
+	 * Runs a single step, regardless of the accumulated time.
+	 */
+	public void tick(){
+		for(int i = 0; i < positionedEntities.size(); i++)
+			Mappers.positionMapper.get(positionedEntities.get(i)).savePrevious();
+
+		if(profiler != null && profiler.isEnabled()){
+			for(int i = 0; i < systems.size; i++)
+				profiler.updateSystem(systems.items[i], step);
+		}else if(scheduler != null){
+			scheduler.update(step);
+		}else{
+			for(int i = 0; i < systems.size; i++)
+				systems.items[i].update(step);
+		}
+
+		totalSteps++;
+
+		if(hashing)
+			stateHash = hashState();
+	}
+
+	/**
+	 * Enables or disables the computation of the state hash after every step.
+	 * 
+	 * @param hashing True to compute the hash.
+	 */
+	public void setStateHashing(boolean hashing){
+		this.hashing = hashing;
+	}
+
+	/**
+	 * @return The hash of the position, velocity and score of every entity with a position, the step count and
+	 * the state of the random number generator, as they were after the last step. Only valid if state hashing was
+	 * enabled before that step.
+	 */
+	public long getStateHash(){
+		return stateHash;
+	}
+
+	/**
+	 * @return How far the current frame is between the last two simulated steps, in [0, 1).
+	 */
+	public float getAlpha(){
+		return accumulator / step;
+	}
+
+	/**
+	 * @return The duration of a step in seconds.
+	 */
+	public float getStep(){
+		return step;
+	}
+
+	/**
+	 * @return How many steps have been run.
+	 */
+	public long getTotalSteps(){
+		return totalSteps;
+	}
+
+	/**
+	 * Sets the step count, discarding any accumulated time, and recomputes the state hash if enabled. Used when the
+	 * state of the entities is replaced by a previously saved one.
+	 * 
+	 * @param totalSteps The number of steps that had been run when the state was saved.
+	 */
+	public void setTotalSteps(long totalSteps){
+		this.totalSteps = totalSteps;
+		accumulator = 0.0f;
+
+		if(hashing)
+			stateHash = hashState();
+	}
+
+	/**
+	 * @return How much time in seconds was discarded by the spiral of death guard.
+	 */
+	public float getDroppedTime(){
+		return droppedTime;
+	}
+
+	/**
+	 * Computes the hash of the current state.
+	 */
+	private long hashState(){
+		long               hash   = FNV_OFFSET_BASIS;
+		RandomNumberSystem random = engine.getSystem(RandomNumberSystem.class);
+		Entity             entity;
+		VelocityComponent  velocity;
+		ScoreComponent     score;
+		PositionComponent  position;
+
+		hash = hash(hash, totalSteps);
+		if(random != null)
+			hash = hash(hash, random.getDraws());
+
+		for(int i = 0; i < positionedEntities.size(); i++){
+			entity = positionedEntities.get(i);
+			position = Mappers.positionMapper.get(entity);
+			velocity = Mappers.velocityMapper.get(entity);
+			score = Mappers.scoreMapper.get(entity);
+
+			hash = hash(hash, Float.floatToIntBits(position.x));
+			hash = hash(hash, Float.floatToIntBits(position.y));
+
+			if(velocity != null){
+				hash = hash(hash, Float.floatToIntBits(velocity.vx));
+				hash = hash(hash, Float.floatToIntBits(velocity.vy));
+			}
+
+			if(score != null)
+				hash = hash(hash, score.score);
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Adds the bytes of an integer to a FNV-1a hash.
+	 */
+	private static long hash(long hash, int value){
+		for(int shift = 0; shift < 32; shift += 8){
+			hash ^= (value >>> shift) & 0xFF;
+			hash *= FNV_PRIME;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Adds the bytes of a long to a FNV-1a hash.
+	 */
+	private static long hash(long hash, long value){
+		return hash(hash(hash, (int)value), (int)(value >>> 32));
+	}
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.simulation;
+
+import com.badlogic.ashley.core.ComponentType;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.core.PooledEngine;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.utils.Disposable;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.BoundingBoxComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.ScoreComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.entities.PongEntityInitializer;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.CollisionDetectionSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.ComputerPlayerPositioningSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.HumanPlayerPositioningSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.PositioningSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.ScoringSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.SoundSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputEventRing;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputSampler;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
+import com.gamejolt.mikykr5.ceidecpong.replay.MatchSnapshot;
+
+/**
+ * A match of Pong that runs without rendering or audio, and so without an OpenGL context. It builds the
+ * same entities and simulation systems as the in game state, with the sprite dimensions replaced by fixed
+ * values, and steps them as fast as possible. The human player is driven by a {@link MatchInputSource}.
+ * 
+ * Every match owns it's engine, {@link InterSystemMessagingQueue} and {@link RandomNumberSystem}, so matches
+ * can run at the same time as long as each one is only used by one thread.
+ * 
+ * @author Miguel Astor
+ */
+public class HeadlessMatch implements Disposable{
+	/**
+	 * The engine holding the entities of the match.
+	 */
+	private final PooledEngine              engine;
+
+	/**
+	 * Runs the simulation systems.
+	 */
+	private final FixedStepSimulation       simulation;
+
+	/**
+	 * The queue the systems of this match communicate through.
+	 */
+	private final InterSystemMessagingQueue messagingQueue;
+
+	/**
+	 * Detects collisions and counts paddle hits.
+	 */
+	private final CollisionDetectionSystem  collisionSystem;
+
+	/**
+	 * The entity creator.
+	 */
+	private final PongEntityInitializer     entityInitializer;
+
+	/**
+	 * The channel used to feed the human player positioning system.
+	 */
+	private final InputEventRing            inputEvents;
+
+	/**
+	 * Reduces the events in {@link HeadlessMatch#inputEvents} to one sample per step.
+	 */
+	private final InputSampler              inputSampler;
+
+	/**
+	 * Generates the human player's input. May be null.
+	 */
+	private final MatchInputSource          inputSource;
+
+	/**
+	 * The mailbox of the sound system, which is emptied every step as no sound is played.
+	 */
+	private final Mailbox                   soundMailbox;
+
+	/**
+	 * The entities with a score.
+	 */
+	private final ImmutableArray<Entity>    players;
+
+	/**
+	 * The entities that move and bounce without being players.
+	 */
+	private final ImmutableArray<Entity>    balls;
+
+	/**
+	 * The number of steps run so far.
+	 */
+	private long                            steps;
+
+	/**
+	 * Creates a new match with the default settings.
+	 * 
+	 * @param inputSource Generates the human player's input. If null the human player never moves.
+	 */
+	public HeadlessMatch(MatchInputSource inputSource){
+		this(inputSource, new MatchSettings());
+	}
+
+	/**
+	 * Creates a new match.
+	 * 
+	 * @param inputSource Generates the human player's input. If null the human player never moves.
+	 * @param settings The parameters of the match.
+	 * @throws IllegalArgumentException If settings is null or the step is not positive.
+	 */
+	@SuppressWarnings("unchecked")
+	public HeadlessMatch(MatchInputSource inputSource, MatchSettings settings) throws IllegalArgumentException{
+		if(settings == null)
+			throw new IllegalArgumentException("Settings are null.");
+
+		this.inputSource = inputSource;
+		steps = 0L;
+
+		// Create the services used by the systems of this match.
+		engine = new PooledEngine();
+		messagingQueue = new InterSystemMessagingQueue();
+		engine.addSystem(messagingQueue);
+		engine.addSystem(new RandomNumberSystem(settings.seed));
+		soundMailbox = messagingQueue.registerMailbox(SoundSystem.class.getCanonicalName());
+
+		// Create the entities without loading any assets.
+		entityInitializer = new PongEntityInitializer(true);
+		entityInitializer.createAllEntities(engine);
+		entityInitializer.setLoadableAssets(engine);
+
+		// Add the same simulation systems as the in game state, plus the score keeping.
+		inputEvents = new InputEventRing(64);
+		inputSampler = new InputSampler(inputEvents);
+		collisionSystem = new CollisionDetectionSystem(engine, settings.ballAcceleration);
+		simulation = new FixedStepSimulation(engine, settings.step, 1);
+		simulation.addSystem(new HumanPlayerPositioningSystem(inputSampler));
+		simulation.addSystem(new ComputerPlayerPositioningSystem(settings.computerSpeed));
+		simulation.addSystem(new PositioningSystem());
+		simulation.addSystem(collisionSystem);
+		simulation.addSystem(new ScoringSystem());
+		simulation.setStateHashing(true);
+
+		players = engine.getEntitiesFor(Family.getFor(PlayerComponent.class, ScoreComponent.class));
+		balls = engine.getEntitiesFor(Family.getFor(ComponentType.getBitsFor(PositionComponent.class, BoundingBoxComponent.class, VelocityComponent.class), ComponentType.getBitsFor(), ComponentType.getBitsFor(PlayerComponent.class)));
+	}
+
+	/**
+	 * Runs a single simulation step.
+	 */
+	public void step(){
+		if(inputSource != null)
+			inputSource.update(this, inputEvents);
+
+		simulation.tick();
+		soundMailbox.clear();
+		steps++;
+	}
+
+	/**
+	 * Saves the state of the match.
+	 * 
+	 * @param snapshot The snapshot to save the state to.
+	 */
+	public void capture(MatchSnapshot snapshot){
+		snapshot.capture(engine, steps);
+	}
+
+	/**
+	 * Replaces the state of the match with a saved one, including the step count. Queued input is discarded.
+	 * 
+	 * @param snapshot The state to restore.
+	 * @throws IllegalStateException If the snapshot was not taken from a match with the same entities.
+	 */
+	public void restore(MatchSnapshot snapshot) throws IllegalStateException{
+		snapshot.restore(engine);
+		soundMailbox.clear();
+		inputSampler.reset();
+		simulation.setTotalSteps(snapshot.tick);
+		steps = snapshot.tick;
+	}
+
+	/**
+	 * Runs the match until a player reaches the given score or the step limit is reached.
+	 * 
+	 * @param targetScore The score that wins the match.
+	 * @param maxSteps The maximum number of steps to run.
+	 * @return The id of the winning player, or -1 if the step limit was reached first.
+	 */
+	public int play(int targetScore, long maxSteps){
+		int winner = getWinner(targetScore);
+
+		while(winner < 0 && steps < maxSteps){
+			step();
+			winner = getWinner(targetScore);
+		}
+
+		return winner;
+	}
+
+	/**
+	 * @param targetScore The score that wins the match.
+	 * @return The id of the first player with at least the given score, or -1 if there is none.
+	 */
+	public int getWinner(int targetScore){
+		for(int i = 0; i < players.size(); i++){
+			if(Mappers.scoreMapper.get(players.get(i)).score >= targetScore)
+				return Mappers.playerMapper.get(players.get(i)).id;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @param playerId One of the player ids in {@link PlayerComponent}.
+	 * @return The player entity with the given id.
+	 * @throws IllegalArgumentException If there is no such player.
+	 */
+	public Entity getPlayer(int playerId) throws IllegalArgumentException{
+		for(int i = 0; i < players.size(); i++){
+			if(Mappers.playerMapper.get(players.get(i)).id == playerId)
+				return players.get(i);
+		}
+
+		throw new IllegalArgumentException("No player with id " + Integer.toString(playerId));
+	}
+
+	/**
+	 * @param playerId One of the player ids in {@link PlayerComponent}.
+	 * @return The score of the player.
+	 * @throws IllegalArgumentException If there is no such player.
+	 */
+	public int getScore(int playerId) throws IllegalArgumentException{
+		return Mappers.scoreMapper.get(getPlayer(playerId)).score;
+	}
+
+	/**
+	 * @return The hash of the state of the match after the last step. See {@link FixedStepSimulation#getStateHash()}.
+	 */
+	public long getStateHash(){
+		return simulation.getStateHash();
+	}
+
+	/**
+	 * @return How many times the ball bounced off a paddle.
+	 */
+	public long getPaddleHits(){
+		return collisionSystem.getPaddleHits();
+	}
+
+	/**
+	 * @return The ball entity.
+	 */
+	public Entity getBall(){
+		return balls.get(0);
+	}
+
+	/**
+	 * @return The engine holding the entities of the match.
+	 */
+	public PooledEngine getEngine(){
+		return engine;
+	}
+
+	/**
+	 * @return The simulation running the systems of the match.
+	 */
+	public FixedStepSimulation getSimulation(){
+		return simulation;
+	}
+
+	/**
+	 * @return The sampler feeding the human player positioning system.
+	 */
+	public InputSampler getInputSampler(){
+		return inputSampler;
+	}
+
+	/**
+	 * @return The duration of a simulation step in seconds.
+	 */
+	public float getStep(){
+		return simulation.getStep();
+	}
+
+	/**
+	 * @return The number of steps run so far.
+	 */
+	public long getSteps(){
+		return steps;
+	}
+
+	/**
+	 * @return The simulated time in seconds.
+	 */
+	public double getElapsedTime(){
+		return steps * (double)simulation.getStep();
+	}
+
+	/**
+	 * @return The simulated time in nanoseconds.
+	 */
+	public long getElapsedNanos(){
+		return (long)(getElapsedTime() * 1.0e9);
+	}
+
+	@Override
+	public void dispose(){
+		simulation.removeAllSystems();
+		engine.removeAllEntities();
+		entityInitializer.dispose();
+		messagingQueue.clear();
+	}
+}
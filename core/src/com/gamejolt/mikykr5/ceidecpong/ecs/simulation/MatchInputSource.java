@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.simulation;
+
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputEventRing;
+
+/**
+ * Generates the input of the human player in a {@link HeadlessMatch}, taking the place of the touch screen.
+ * 
+ * @author Miguel Astor
+ */
+public interface MatchInputSource{
+	/**
+	 * Called before every simulation step. Implementations may offer any number of events to the ring, with
+	 * the Y coordinate in frame buffer coordinates, just like the input callbacks of the in game state do.
+	 * 
+	 * @param match The match being simulated.
+	 * @param inputEvents The ring read by the human player positioning system.
+	 */
+	public void update(HeadlessMatch match, InputEventRing inputEvents);
+}
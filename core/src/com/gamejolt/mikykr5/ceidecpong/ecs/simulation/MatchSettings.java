@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.simulation;
+
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.CollisionDetectionSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.ComputerPlayerPositioningSystem;
+
+/**
+ * The parameters of a {@link HeadlessMatch}. The defaults match the game as played in the in game state.
+ * 
+ * @author Miguel Astor
+ */
+public class MatchSettings{
+	/**
+	 * The seed of the random number generator of the match.
+	 */
+	public long  seed             = 0L;
+
+	/**
+	 * The duration of a simulation step in seconds.
+	 */
+	public float step             = ProjectConstants.SIMULATION_STEP;
+
+	/**
+	 * The speed of the computer player's paddle in pixels per second.
+	 */
+	public float computerSpeed    = ComputerPlayerPositioningSystem.DEFAULT_SPEED;
+
+	/**
+	 * The factor applied to the velocity of the ball every time it bounces.
+	 */
+	public float ballAcceleration = CollisionDetectionSystem.DEFAULT_ACCELERATION;
+
+	/**
+	 * The score that wins the match.
+	 */
+	public int   targetScore      = 10;
+
+	/**
+	 * The maximum simulated duration of the match in seconds.
+	 */
+	public float maxTime          = 60.0f * 60.0f;
+
+	/**
+	 * Copies all fields of another settings object.
+	 * 
+	 * @param other The settings to copy.
+	 * @return This object.
+	 */
+	public MatchSettings set(MatchSettings other){
+		this.seed = other.seed;
+		this.step = other.step;
+		this.computerSpeed = other.computerSpeed;
+		this.ballAcceleration = other.ballAcceleration;
+		this.targetScore = other.targetScore;
+		this.maxTime = other.maxTime;
+
+		return this;
+	}
+
+	/**
+	 * @return The maximum number of steps of the match.
+	 */
+	public long getMaxSteps(){
+		return (long)Math.ceil(maxTime / step);
+	}
+}
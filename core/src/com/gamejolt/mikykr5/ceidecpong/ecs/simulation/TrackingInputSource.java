@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.simulation;
+
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputEventRing;
+
+/**
+ * A {@link MatchInputSource} that moves the human player's paddle towards the ball at a limited speed,
+ * to stand in for a human in headless matches.
+ * 
+ * @author Miguel Astor
+ */
+public class TrackingInputSource implements MatchInputSource{
+	/**
+	 * The maximum speed of the paddle in pixels per second.
+	 */
+	private final float maxSpeed;
+
+	/**
+	 * Creates a new input source.
+	 * 
+	 * @param maxSpeed The maximum speed of the paddle in pixels per second.
+	 * @throws IllegalArgumentException If maxSpeed is not positive.
+	 */
+	public TrackingInputSource(float maxSpeed) throws IllegalArgumentException{
+		if(maxSpeed <= 0.0f)
+			throw new IllegalArgumentException("Max speed must be positive.");
+
+		this.maxSpeed = maxSpeed;
+	}
+
+	@Override
+	public void update(HeadlessMatch match, InputEventRing inputEvents){
+		PositionComponent ball   = Mappers.positionMapper.get(match.getBall());
+		PositionComponent paddle = Mappers.positionMapper.get(match.getPlayer(PlayerComponent.HUMAN_PLAYER));
+		float             target, maxDistance;
+
+		// Try to center the paddle on the ball.
+		target = (ball.y + (Mappers.bboxMapper.get(match.getBall()).bbox.height / 2.0f)) - (Mappers.bboxMapper.get(match.getPlayer(PlayerComponent.HUMAN_PLAYER)).bbox.height / 2.0f);
+		maxDistance = maxSpeed * match.getStep();
+
+		if(target > paddle.y + maxDistance)
+			target = paddle.y + maxDistance;
+		else if(target < paddle.y - maxDistance)
+			target = paddle.y - maxDistance;
+
+		inputEvents.offer(0, target, match.getElapsedNanos());
+	}
+}
@@ -21,30 +21,75 @@ import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
 import com.badlogic.ashley.utils.ImmutableArray;
-import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.IntArray;
 import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.BoundingBoxComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.SoundComponent;
-import com.gamejolt.mikykr5.ceidecpong.ecs.components.SpriteComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.ScheduledSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.SystemAccess;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.collision.SpatialHashGrid;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
 
-public class CollisionDetectionSystem extends IteratingSystem {
-	private ImmutableArray<Entity> collidables;
-	private final float            screenLeftBorder;
-	private final float            screenRightBorder;
-	private final float            screenTopBorder;
-	private final float            screenBottomBorder;
-	private final Vector2          randomVector = new Vector2();
+public strictfp class CollisionDetectionSystem extends IteratingSystem implements ScheduledSystem {
+	/**
+	 * The side length of the cells of the broad phase grid. Twice the size of the ball.
+	 */
+	private static final float     GRID_CELL_SIZE = 128.0f;
+
+	/**
+	 * The default factor applied to the velocity of an entity every time it bounces.
+	 */
+	public static final float      DEFAULT_ACCELERATION = 1.03f;
+
+	/**
+	 * The maximum number of bounces resolved for a single entity in one update.
+	 */
+	private static final int       MAX_SWEEP_ITERATIONS = 4;
+
+	// Collision normals reported by the time of impact test.
+	private static final int       AXIS_NONE = 0;
+	private static final int       AXIS_X    = 1;
+	private static final int       AXIS_Y    = 2;
+
+	private ImmutableArray<Entity>    collidables;
+	private final SpatialHashGrid     grid;
+	private final IntArray            candidates = new IntArray(false, 16);
+	private final Rectangle           sweptBounds = new Rectangle();
+	private int                       impactAxis;
+	private final float               screenLeftBorder;
+	private final float               screenRightBorder;
+	private final float               screenTopBorder;
+	private final float               screenBottomBorder;
+	private final Vector2             randomVector = new Vector2();
+	private final float               acceleration;
+	private InterSystemMessagingQueue messagingQueue;
+	private RandomNumberSystem        random;
+	private Mailbox                   scoringMailbox;
+	private Mailbox                   soundMailbox;
+	private Mailbox                   computerPlayerMailbox;
+	private long                      paddleHits;
 
-	@SuppressWarnings("unchecked")
 	public CollisionDetectionSystem(Engine engine){
+		this(engine, DEFAULT_ACCELERATION);
+	}
+
+	/**
+	 * Creates the system.
+	 * 
+	 * @param engine The engine holding the collidable entities.
+	 * @param acceleration The factor applied to the velocity of an entity every time it bounces.
+	 */
+	@SuppressWarnings("unchecked")
+	public CollisionDetectionSystem(Engine engine, float acceleration){
 		super(Family.getFor(ComponentType.getBitsFor(PositionComponent.class, BoundingBoxComponent.class, VelocityComponent.class), ComponentType.getBitsFor(), ComponentType.getBitsFor(PlayerComponent.class)));
 
 		collidables = engine.getEntitiesFor(Family.getFor(BoundingBoxComponent.class));
@@ -52,6 +97,64 @@ public class CollisionDetectionSystem extends IteratingSystem {
 		screenRightBorder = ((float)ProjectConstants.FB_WIDTH / 2.0f) - 1.0f;
 		screenTopBorder = ((float)ProjectConstants.FB_HEIGHT / 2.0f) - 1.0f;
 		screenBottomBorder = -((float)ProjectConstants.FB_HEIGHT / 2.0f);
+
+		// Cover the screen plus one cell on every side so entities that are leaving the screen are still found.
+		grid = new SpatialHashGrid(
+				screenLeftBorder - GRID_CELL_SIZE,
+				screenBottomBorder - GRID_CELL_SIZE,
+				ProjectConstants.FB_WIDTH + (2.0f * GRID_CELL_SIZE),
+				ProjectConstants.FB_HEIGHT + (2.0f * GRID_CELL_SIZE),
+				GRID_CELL_SIZE
+		);
+		this.acceleration = acceleration;
+		paddleHits = 0L;
+	}
+
+	@Override
+	public void addedToEngine(Engine engine){
+		super.addedToEngine(engine);
+
+		messagingQueue = InterSystemMessagingQueue.getFor(engine);
+		random = RandomNumberSystem.getFor(engine);
+		scoringMailbox = messagingQueue.registerMailbox(ScoringSystem.class.getCanonicalName());
+		soundMailbox = messagingQueue.registerMailbox(SoundSystem.class.getCanonicalName());
+		computerPlayerMailbox = messagingQueue.registerMailbox(ComputerPlayerPositioningSystem.class.getCanonicalName());
+	}
+
+	/**
+	 * @return How many times an entity bounced off another collidable, which are the paddles in a normal match.
+	 */
+	public long getPaddleHits(){
+		return paddleHits;
+	}
+
+	@Override
+	public void declareAccess(SystemAccess access){
+		access.writes(PositionComponent.class, VelocityComponent.class, BoundingBoxComponent.class, RandomNumberSystem.class, InterSystemMessagingQueue.class);
+		access.reads(PlayerComponent.class, SoundComponent.class);
+	}
+
+	@Override
+	public void update(float deltaTime){
+		Entity               collidable;
+		PositionComponent    colPosition;
+		BoundingBoxComponent colBounds;
+
+		// Rebuild the broad phase with the positions at the end of this step, after the positioning system moved
+		// everything. The sweeps treat the other collidables as static at these positions.
+		grid.clear();
+		for(int i = 0; i < collidables.size(); i++){
+			collidable = collidables.get(i);
+			colPosition = Mappers.positionMapper.get(collidable);
+			if(colPosition == null)
+				continue;
+
+			colBounds = Mappers.bboxMapper.get(collidable);
+			colBounds.bbox.setPosition(colPosition.x, colPosition.y);
+			grid.insert(i, colBounds.bbox);
+		}
+
+		super.update(deltaTime);
 	}
 
 	@Override
@@ -62,99 +165,238 @@ public class CollisionDetectionSystem extends IteratingSystem {
 		VelocityComponent    velocity = Mappers.velocityMapper.get(entity);
 		SoundComponent       sound    = Mappers.soundMapper.get(entity);
 
+		// Move the entity along the path it followed during this update and bounce at the earliest impacts,
+		// so fast entities cannot pass through paddles or borders between two updates.
+		boolean              bounced  = sweep(entity, position, bounds, velocity, sound, deltaTime);
+
 		// Check if this entity is within the screen.
 		// If the entity collides with any of the borders then bounce or score as needed.
 		if(position.x < screenLeftBorder){
 			resetEntity(entity);
 
-			message = new InterSystemMessage(ScoringSystem.class.getCanonicalName());
-			message.data.put("SCORE", 1);
-			InterSystemMessagingQueue.pushMessage(message);
+			message = messagingQueue.obtainMessage(scoringMailbox.receiver, message_type_t.SCORE);
+			message.address = PlayerComponent.COMPUTER_PLAYER;
+			scoringMailbox.push(message);
 
-			message = new InterSystemMessage(SoundSystem.class.getCanonicalName());
-			message.data.put("PLAY", "data/sfx/atari_boom.ogg");
-			InterSystemMessagingQueue.pushMessage(message);
+			message = messagingQueue.obtainMessage(soundMailbox.receiver, message_type_t.PLAY);
+			message.objectData = "data/sfx/atari_boom.ogg";
+			soundMailbox.push(message);
 		}
 
 		if(position.x + bounds.bbox.getWidth() >= screenRightBorder){
 			resetEntity(entity);
 
-			message = new InterSystemMessage(ScoringSystem.class.getCanonicalName());
-			message.data.put("SCORE", 0);
-			InterSystemMessagingQueue.pushMessage(message);
+			message = messagingQueue.obtainMessage(scoringMailbox.receiver, message_type_t.SCORE);
+			message.address = PlayerComponent.HUMAN_PLAYER;
+			scoringMailbox.push(message);
 
-			message = new InterSystemMessage(SoundSystem.class.getCanonicalName());
-			message.data.put("PLAY", "data/sfx/oh_yeah_wav_cut.ogg");
-			InterSystemMessagingQueue.pushMessage(message);
+			message = messagingQueue.obtainMessage(soundMailbox.receiver, message_type_t.PLAY);
+			message.objectData = "data/sfx/oh_yeah_wav_cut.ogg";
+			soundMailbox.push(message);
 		}
 
+		// The sweep already bounces off the top and bottom borders, these only catch entities that started
+		// the update outside of the screen.
 		if(position.y < screenBottomBorder){
 			position.y = screenBottomBorder;
 			velocity.vy = velocity.vy < 0.0f ? -velocity.vy : velocity.vy;
 			accelerate(velocity);
-			if(sound != null){
-				message = new InterSystemMessage(SoundSystem.class.getCanonicalName());
-				message.data.put("PLAY", sound.path);
-				InterSystemMessagingQueue.pushMessage(message);
-			}
+			playBounceSound(sound);
 		}
 
-		if(position.y + bounds.bbox.getHeight() >= screenTopBorder){
+		if(position.y + bounds.bbox.getHeight() > screenTopBorder){
 			position.y = screenTopBorder - bounds.bbox.getHeight();
 			velocity.vy = velocity.vy > 0.0f ? -velocity.vy : velocity.vy;
 			accelerate(velocity);
-			if(sound != null){
-				message = new InterSystemMessage(SoundSystem.class.getCanonicalName());
-				message.data.put("PLAY", sound.path);
-				InterSystemMessagingQueue.pushMessage(message);
-			}
+			playBounceSound(sound);
 		}
 
-		for(int i = 0; i < collidables.size(); i++){
-			BoundingBoxComponent collidable;
-			PositionComponent    colPosition;
+		// If the sweep did not hit anything then check if a paddle moved into this entity.
+		if(!bounced){
+			bounds.bbox.setPosition(position.x, position.y);
+			candidates.clear();
+			grid.query(bounds.bbox, candidates);
 
-			if(collidables.get(i).getIndex() == entity.getIndex()){
-				continue;
-			}else{
-				collidable = Mappers.bboxMapper.get(collidables.get(i));
-				colPosition = Mappers.positionMapper.get(collidables.get(i));
-				if(colPosition == null)
+			for(int i = 0; i < candidates.size; i++){
+				Entity               other = collidables.get(candidates.items[i]);
+				BoundingBoxComponent collidable;
+
+				if(other == entity)
 					continue;
 
-				bounds.bbox.setPosition(position.x, position.y);
-				collidable.bbox.setPosition(colPosition.x, colPosition.y);
+				collidable = Mappers.bboxMapper.get(other);
 
 				if(collidesLeft(bounds.bbox, collidable.bbox)){
 					velocity.vx = velocity.vx < 0.0f ? -velocity.vx : velocity.vx;
 					accelerate(velocity);
-
-					if(sound != null){
-						message = new InterSystemMessage(SoundSystem.class.getCanonicalName());
-						message.data.put("PLAY", sound.path);
-						InterSystemMessagingQueue.pushMessage(message);
-					}
+					playBounceSound(sound);
+					paddleHits++;
 				}else if(collidesRight(bounds.bbox, collidable.bbox)){
 					velocity.vx = velocity.vx > 0.0f ? -velocity.vx : velocity.vx;
 					accelerate(velocity);
+					playBounceSound(sound);
+					paddleHits++;
+				}
+			}
+		}
 
-					if(sound != null){
-						message = new InterSystemMessage(SoundSystem.class.getCanonicalName());
-						message.data.put("PLAY", sound.path);
-						InterSystemMessagingQueue.pushMessage(message);
-					}
+		message = messagingQueue.obtainMessage(computerPlayerMailbox.receiver, message_type_t.BALL_Y);
+		message.floatData = position.y;
+		computerPlayerMailbox.push(message);
+	}
+
+	/**
+	 * Moves an entity from where it was at the start of the update to where it is now, resolving the earliest
+	 * impact against the other collidables and the top and bottom borders along the way. After every impact
+	 * the entity bounces and continues with its new velocity for the rest of the update.
+	 *
+	 * @return True if the entity bounced off another collidable.
+	 */
+	private boolean sweep(Entity entity, PositionComponent position, BoundingBoxComponent bounds, VelocityComponent velocity, SoundComponent sound, float deltaTime){
+		boolean hitCollidable = false;
+		float   remaining     = deltaTime;
+		float   width         = bounds.bbox.getWidth();
+		float   height        = bounds.bbox.getHeight();
+		float   x             = position.x - (velocity.vx * deltaTime);
+		float   y             = position.y - (velocity.vy * deltaTime);
+		float   dx, dy, earliest, t;
+		int     axis;
+		boolean earliestIsCollidable;
+
+		for(int iteration = 0; iteration < MAX_SWEEP_ITERATIONS && remaining > 0.0f; iteration++){
+			dx = velocity.vx * remaining;
+			dy = velocity.vy * remaining;
+			earliest = Float.MAX_VALUE;
+			axis = AXIS_NONE;
+			earliestIsCollidable = false;
+
+			// Top and bottom borders.
+			if(dy < 0.0f && y >= screenBottomBorder){
+				t = (screenBottomBorder - y) / dy;
+				if(t <= 1.0f){
+					earliest = t;
+					axis = AXIS_Y;
 				}
+			}else if(dy > 0.0f && y + height <= screenTopBorder){
+				t = (screenTopBorder - (y + height)) / dy;
+				if(t <= 1.0f){
+					earliest = t;
+					axis = AXIS_Y;
+				}
+			}
+
+			// Other collidables along the path.
+			sweptBounds.set(Math.min(x, x + dx), Math.min(y, y + dy), width + Math.abs(dx), height + Math.abs(dy));
+			candidates.clear();
+			grid.query(sweptBounds, candidates);
+
+			for(int i = 0; i < candidates.size; i++){
+				Entity other = collidables.get(candidates.items[i]);
+
+				if(other == entity)
+					continue;
+
+				t = timeOfImpact(x, y, width, height, dx, dy, Mappers.bboxMapper.get(other).bbox);
+				if(impactAxis != AXIS_NONE && t < earliest){
+					earliest = t;
+					axis = impactAxis;
+					earliestIsCollidable = true;
+				}
+			}
+
+			if(axis == AXIS_NONE){
+				x += dx;
+				y += dy;
+				break;
+			}
+
+			// Advance to the impact and bounce.
+			x += dx * earliest;
+			y += dy * earliest;
+
+			if(axis == AXIS_X)
+				velocity.vx = dx > 0.0f ? -Math.abs(velocity.vx) : Math.abs(velocity.vx);
+			else
+				velocity.vy = dy > 0.0f ? -Math.abs(velocity.vy) : Math.abs(velocity.vy);
+
+			accelerate(velocity);
+			playBounceSound(sound);
+
+			if(earliestIsCollidable){
+				hitCollidable = true;
+				paddleHits++;
 			}
+			remaining *= 1.0f - earliest;
 		}
 
-		message = new InterSystemMessage(ComputerPlayerPositioningSystem.class.getCanonicalName());
-		message.data.put("BALL_Y", position.y);
-		InterSystemMessagingQueue.pushMessage(message);
+		position.setXY(x, y);
+		bounds.bbox.setPosition(x, y);
+
+		return hitCollidable;
+	}
+
+	/**
+	 * Computes when a moving box first touches a static box. The axis of the impact is stored in
+	 * {@link #impactAxis}, which is {@link #AXIS_NONE} if the boxes do not touch during the movement or if they
+	 * already overlap at the start of it.
+	 *
+	 * @return The fraction of the movement done before the impact, in [0, 1].
+	 */
+	private float timeOfImpact(float x, float y, float width, float height, float dx, float dy, Rectangle b){
+		float xEntry, xExit, yEntry, yExit, entry, exit;
+
+		impactAxis = AXIS_NONE;
+
+		if(dx > 0.0f){
+			xEntry = (b.x - (x + width)) / dx;
+			xExit = ((b.x + b.width) - x) / dx;
+		}else if(dx < 0.0f){
+			xEntry = ((b.x + b.width) - x) / dx;
+			xExit = (b.x - (x + width)) / dx;
+		}else if(x < b.x + b.width && x + width > b.x){
+			xEntry = Float.NEGATIVE_INFINITY;
+			xExit = Float.POSITIVE_INFINITY;
+		}else{
+			return 1.0f;
+		}
+
+		if(dy > 0.0f){
+			yEntry = (b.y - (y + height)) / dy;
+			yExit = ((b.y + b.height) - y) / dy;
+		}else if(dy < 0.0f){
+			yEntry = ((b.y + b.height) - y) / dy;
+			yExit = (b.y - (y + height)) / dy;
+		}else if(y < b.y + b.height && y + height > b.y){
+			yEntry = Float.NEGATIVE_INFINITY;
+			yExit = Float.POSITIVE_INFINITY;
+		}else{
+			return 1.0f;
+		}
+
+		entry = Math.max(xEntry, yEntry);
+		exit = Math.min(xExit, yExit);
+
+		if(entry > exit || entry < 0.0f || entry > 1.0f)
+			return 1.0f;
+
+		impactAxis = xEntry > yEntry ? AXIS_X : AXIS_Y;
+
+		return entry;
+	}
+
+	private void playBounceSound(SoundComponent sound){
+		InterSystemMessage message;
+
+		if(sound != null){
+			message = messagingQueue.obtainMessage(soundMailbox.receiver, message_type_t.PLAY);
+			message.objectData = sound.path;
+			soundMailbox.push(message);
+		}
 	}
 
 	private void accelerate(VelocityComponent velocity){
-		velocity.vx *= 1.03f;
-		velocity.vy *= 1.03f;
+		velocity.vx *= acceleration;
+		velocity.vy *= acceleration;
 	}
 
 	private boolean collidesLeft(Rectangle a, Rectangle b){
@@ -179,20 +421,16 @@ public class CollisionDetectionSystem extends IteratingSystem {
 	}
 
 	private void resetEntity(Entity entity){
-		PositionComponent position     = Mappers.positionMapper.get(entity);
-		SpriteComponent   sprite       = Mappers.spriteMapper.get(entity);
-		VelocityComponent velocity     = Mappers.velocityMapper.get(entity);
-		int               randomSign   = MathUtils.random(-1, 1) >= 0 ? 1 : -1;
+		PositionComponent    position   = Mappers.positionMapper.get(entity);
+		BoundingBoxComponent bounds     = Mappers.bboxMapper.get(entity);
+		VelocityComponent    velocity   = Mappers.velocityMapper.get(entity);
+		int                  randomSign = random.random(-1, 1) >= 0 ? 1 : -1;
 
-		randomVector.set(Vector2.X).setAngle(MathUtils.random(-60, 60));
+		random.randomDirection(randomVector, -60, 60);
 		velocity.setXY(randomVector.x * -475 * randomSign, randomVector.y * 475 * randomSign);
 
-		if(position != null){
-			if(sprite != null){
-				position.setXY(-(sprite.sprite.getWidth() / 2), -(sprite.sprite.getHeight() / 2));
-			}else{
-				position.setXY(0, 0);
-			}
-		}
+		// Center the entity using its bounding box, as the sprite is not available when running headless.
+		if(position != null)
+			position.teleport(-(bounds.bbox.getWidth() / 2), -(bounds.bbox.getHeight() / 2));
 	}
 }
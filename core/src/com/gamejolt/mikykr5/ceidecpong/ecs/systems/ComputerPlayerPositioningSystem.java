@@ -15,28 +15,69 @@
  */
 package com.gamejolt.mikykr5.ceidecpong.ecs.systems;
 
+import com.badlogic.ashley.core.Engine;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
+import com.badlogic.gdx.utils.Array;
 import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.BoundingBoxComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.ScheduledSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.SystemAccess;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
 
-public class ComputerPlayerPositioningSystem extends IteratingSystem {
+public strictfp class ComputerPlayerPositioningSystem extends IteratingSystem implements ScheduledSystem {
+	/**
+	 * The default speed of the computer player's paddle in pixels per second.
+	 */
+	public static final float DEFAULT_SPEED = 550.0f;
+
 	private final float screenTopBorder;
 	private final float screenBottomBorder;
+	private final float speed;
+	private InterSystemMessagingQueue messagingQueue;
+	private Mailbox mailbox;
+	private final Array<InterSystemMessage> messages;
 
-	@SuppressWarnings("unchecked")
 	public ComputerPlayerPositioningSystem() {
+		this(DEFAULT_SPEED);
+	}
+
+	/**
+	 * Creates the system.
+	 * 
+	 * @param speed The speed of the computer player's paddle in pixels per second.
+	 */
+	@SuppressWarnings("unchecked")
+	public ComputerPlayerPositioningSystem(float speed) {
 		super(Family.getFor(PlayerComponent.class, VelocityComponent.class, PositionComponent.class, BoundingBoxComponent.class));
 
 		screenTopBorder = ((float)ProjectConstants.FB_HEIGHT / 2.0f) - 1.0f;
 		screenBottomBorder = -((float)ProjectConstants.FB_HEIGHT / 2.0f);
+		this.speed = speed;
+		messages = new Array<InterSystemMessage>(false, 16, InterSystemMessage.class);
+	}
+
+	@Override
+	public void addedToEngine(Engine engine) {
+		super.addedToEngine(engine);
+
+		messagingQueue = InterSystemMessagingQueue.getFor(engine);
+		mailbox = messagingQueue.registerMailbox(ComputerPlayerPositioningSystem.class.getCanonicalName());
+	}
+
+	@Override
+	public void declareAccess(SystemAccess access) {
+		// Only the paddle of the computer player is moved, so this can run along the human player.
+		access.writes(InterSystemMessagingQueue.class).reads(PlayerComponent.class, BoundingBoxComponent.class);
+		access.writesPartition(PositionComponent.class, PlayerComponent.COMPUTER_PLAYER).writesPartition(VelocityComponent.class, PlayerComponent.COMPUTER_PLAYER);
 	}
 
 	@Override
@@ -48,16 +89,19 @@ public class ComputerPlayerPositioningSystem extends IteratingSystem {
 		BoundingBoxComponent bounds   = Mappers.bboxMapper.get(entity);
 
 		if(player.id == PlayerComponent.COMPUTER_PLAYER){
-			while((message = InterSystemMessagingQueue.popMessage(ComputerPlayerPositioningSystem.class.getCanonicalName())) != null){
+			mailbox.drain(messages);
+			for(int i = 0; i < messages.size; i++){
 				float ballY;
 
-				if(message.data.containsKey("BALL_Y")){
-					ballY = (Float) message.data.get("BALL_Y");
+				message = messages.items[i];
+
+				if(message.type == message_type_t.BALL_Y){
+					ballY = message.floatData;
 
 					if(ballY > position.y + (bounds.bbox.height / 2.0f)){
-						velocity.vy = 550.0f;
+						velocity.vy = speed;
 					}else if (ballY < position.y + (bounds.bbox.height / 2.0f)){
-						velocity.vy = -550.0f;
+						velocity.vy = -speed;
 					}
 
 					if(position.y < screenBottomBorder)
@@ -66,7 +110,10 @@ public class ComputerPlayerPositioningSystem extends IteratingSystem {
 					if(position.y + bounds.bbox.getHeight() >= screenTopBorder)
 						position.y = screenTopBorder - bounds.bbox.getHeight();
 				}
+
+				messagingQueue.freeMessage(message);
 			}
+			messages.clear();
 		}
 	}
 }
\ No newline at end of file
@@ -23,42 +23,55 @@ import com.gamejolt.mikykr5.ceidecpong.ecs.components.BoundingBoxComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
-import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
-import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.ScheduledSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.SystemAccess;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputSampler;
 
-public class HumanPlayerPositioningSystem extends IteratingSystem {
-	private final float screenTopBorder;
-	private final float screenBottomBorder;
+public strictfp class HumanPlayerPositioningSystem extends IteratingSystem implements ScheduledSystem {
+	private final float        screenTopBorder;
+	private final float        screenBottomBorder;
+	private final InputSampler inputSampler;
 
 	@SuppressWarnings("unchecked")
-	public HumanPlayerPositioningSystem() {
+	public HumanPlayerPositioningSystem(InputSampler inputSampler) throws IllegalArgumentException {
 		super(Family.getFor(PlayerComponent.class, PositionComponent.class, BoundingBoxComponent.class));
 
+		if(inputSampler == null)
+			throw new IllegalArgumentException("Input sampler is null.");
+
 		screenTopBorder = ((float)ProjectConstants.FB_HEIGHT / 2.0f) - 1.0f;
 		screenBottomBorder = -((float)ProjectConstants.FB_HEIGHT / 2.0f);
+		this.inputSampler = inputSampler;
+	}
+
+	@Override
+	public void declareAccess(SystemAccess access) {
+		// Only the paddle of the human player is moved, so this can run along the computer player.
+		access.writes(inputSampler).writesPartition(PositionComponent.class, PlayerComponent.HUMAN_PLAYER).reads(PlayerComponent.class, BoundingBoxComponent.class);
+	}
+
+	@Override
+	public void update(float deltaTime) {
+		// Take a single input sample per update, no matter how many touch events arrived since the last one.
+		inputSampler.sample();
+		super.update(deltaTime);
 	}
 
 	@Override
 	public void processEntity(Entity entity, float deltaTime) {
-		InterSystemMessage   message;
 		PositionComponent    position = Mappers.positionMapper.get(entity);
 		PlayerComponent      player   = Mappers.playerMapper.get(entity);
 		BoundingBoxComponent bounds   = Mappers.bboxMapper.get(entity);
 
 		if(player.id == PlayerComponent.HUMAN_PLAYER){
-			while((message = InterSystemMessagingQueue.popMessage(HumanPlayerPositioningSystem.class.getCanonicalName())) != null){
-				float playerY;
-
-				if(message.data.containsKey("INPUT_Y")){
-					playerY = (Float) message.data.get("INPUT_Y");
-					position.y = playerY;
+			if(inputSampler.hasFreshSample()){
+				position.y = inputSampler.getSample().y;
 
-					if(position.y < screenBottomBorder)
-						position.y = screenBottomBorder;
+				if(position.y < screenBottomBorder)
+					position.y = screenBottomBorder;
 
-					if(position.y + bounds.bbox.getHeight() >= screenTopBorder)
-						position.y = screenTopBorder - bounds.bbox.getHeight();
-				}
+				if(position.y + bounds.bbox.getHeight() >= screenTopBorder)
+					position.y = screenTopBorder - bounds.bbox.getHeight();
 			}
 		}
 	}
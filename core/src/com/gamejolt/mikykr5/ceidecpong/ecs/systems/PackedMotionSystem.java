@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.systems;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.EntityListener;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PackedMotionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.ScheduledSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.SystemAccess;
+
+/**
+ * Stores the position and velocity of every entity with a {@link PackedMotionComponent} in parallel float arrays
+ * and moves them all at once. Compared to the {@link PositioningSystem} there is no component lookup and no pointer
+ * chasing per entity, the integration is a plain loop over contiguous arrays that the JIT compiler can unroll and
+ * vectorize.
+ * 
+ * Every entity gets a dense slot when it enters the family, either by being added to the engine or by getting the
+ * component. When it leaves the family the last slot is moved into the freed one, so slots are always in
+ * [0, {@link #getCount()}) but they change when other entities are removed. Look them up with {@link #getSlot(Entity)}
+ * instead of keeping them around. New entities start at rest at the origin.
+ * 
+ * The previous positions used for render interpolation are saved at the start of every update, so this system must
+ * run before any other system that moves packed entities in the same step.
+ * 
+ * @author Miguel Astor
+ */
+public strictfp class PackedMotionSystem extends EntitySystem implements EntityListener, ScheduledSystem{
+	/**
+	 * The initial capacity of the arrays.
+	 */
+	private static final int  INITIAL_CAPACITY = 64;
+
+	/**
+	 * The entities stored.
+	 */
+	@SuppressWarnings("unchecked")
+	private final Family      family = Family.getFor(PackedMotionComponent.class);
+
+	/**
+	 * The slot of every stored entity.
+	 */
+	private final ObjectIntMap<Entity> slots;
+
+	/**
+	 * The entity stored in every slot.
+	 */
+	private Entity[]          entities;
+
+	// The packed motion state, indexed by slot.
+	private float[]           xs;
+	private float[]           ys;
+	private float[]           vxs;
+	private float[]           vys;
+	private float[]           previousXs;
+	private float[]           previousYs;
+
+	/**
+	 * The number of used slots.
+	 */
+	private int               count;
+
+	/**
+	 * The engine the listener is registered with.
+	 */
+	private Engine            engine;
+
+	/**
+	 * Creates an empty store.
+	 */
+	public PackedMotionSystem(){
+		this(0);
+	}
+
+	/**
+	 * Creates an empty store with the given priority.
+	 * 
+	 * @param priority The priority of this system.
+	 */
+	public PackedMotionSystem(int priority){
+		super(priority);
+
+		slots = new ObjectIntMap<Entity>(INITIAL_CAPACITY);
+		entities = new Entity[INITIAL_CAPACITY];
+		xs = new float[INITIAL_CAPACITY];
+		ys = new float[INITIAL_CAPACITY];
+		vxs = new float[INITIAL_CAPACITY];
+		vys = new float[INITIAL_CAPACITY];
+		previousXs = new float[INITIAL_CAPACITY];
+		previousYs = new float[INITIAL_CAPACITY];
+		count = 0;
+		engine = null;
+	}
+
+	@Override
+	public void addedToEngine(Engine engine){
+		ImmutableArray<Entity> members = engine.getEntitiesFor(family);
+
+		this.engine = engine;
+		engine.addEntityListener(family, this);
+
+		for(int i = 0; i < members.size(); i++)
+			entityAdded(members.get(i));
+	}
+
+	@Override
+	public void removedFromEngine(Engine engine){
+		engine.removeEntityListener(this);
+		this.engine = null;
+
+		for(int i = 0; i < count; i++)
+			entities[i] = null;
+		slots.clear();
+		count = 0;
+	}
+
+	@Override
+	public void entityAdded(Entity entity){
+		if(slots.containsKey(entity))
+			return;
+
+		if(count == entities.length)
+			grow(count * 2);
+
+		entities[count] = entity;
+		xs[count] = ys[count] = 0.0f;
+		vxs[count] = vys[count] = 0.0f;
+		previousXs[count] = previousYs[count] = 0.0f;
+		slots.put(entity, count);
+		count++;
+	}
+
+	@Override
+	public void entityRemoved(Entity entity){
+		int slot = slots.remove(entity, -1);
+		int last = count - 1;
+
+		if(slot < 0)
+			return;
+
+		// Fill the hole with the last slot to keep the arrays dense.
+		if(slot != last){
+			entities[slot] = entities[last];
+			xs[slot] = xs[last];
+			ys[slot] = ys[last];
+			vxs[slot] = vxs[last];
+			vys[slot] = vys[last];
+			previousXs[slot] = previousXs[last];
+			previousYs[slot] = previousYs[last];
+			slots.put(entities[slot], slot);
+		}
+
+		entities[last] = null;
+		count--;
+	}
+
+	@Override
+	public void declareAccess(SystemAccess access){
+		access.writes(PackedMotionComponent.class);
+	}
+
+	@Override
+	public void update(float deltaTime){
+		System.arraycopy(xs, 0, previousXs, 0, count);
+		System.arraycopy(ys, 0, previousYs, 0, count);
+		integrate(xs, vxs, count, deltaTime);
+		integrate(ys, vys, count, deltaTime);
+	}
+
+	/**
+	 * Moves every position along it's velocity. Kept as a single flat loop so that it gets vectorized.
+	 * 
+	 * @param positions The coordinates to move.
+	 * @param velocities The velocities along the same axis.
+	 * @param count How many elements to process.
+	 * @param deltaTime The time to move.
+	 */
+	public static void integrate(float[] positions, float[] velocities, int count, float deltaTime){
+		for(int i = 0; i < count; i++)
+			positions[i] += velocities[i] * deltaTime;
+	}
+
+	/**
+	 * @return The number of stored entities.
+	 */
+	public int getCount(){
+		return count;
+	}
+
+	/**
+	 * @param entity An entity.
+	 * @return The slot of the entity, or -1 if it is not stored.
+	 */
+	public int getSlot(Entity entity){
+		return slots.get(entity, -1);
+	}
+
+	/**
+	 * @param slot A slot in [0, {@link #getCount()}).
+	 * @return The entity stored in that slot.
+	 */
+	public Entity getEntity(int slot){
+		return entities[slot];
+	}
+
+	/**
+	 * Sets the position of an entity without interpolating from it's previous position.
+	 * 
+	 * @param slot The slot of the entity.
+	 * @param x The X coordinate.
+	 * @param y The Y coordinate.
+	 */
+	public void teleport(int slot, float x, float y){
+		xs[slot] = previousXs[slot] = x;
+		ys[slot] = previousYs[slot] = y;
+	}
+
+	/**
+	 * Sets the velocity of an entity.
+	 * 
+	 * @param slot The slot of the entity.
+	 * @param vx The velocity in the X axis.
+	 * @param vy The velocity in the Y axis.
+	 */
+	public void setVelocity(int slot, float vx, float vy){
+		vxs[slot] = vx;
+		vys[slot] = vy;
+	}
+
+	/**
+	 * @param slot The slot of an entity.
+	 * @return The X coordinate of the entity.
+	 */
+	public float getX(int slot){
+		return xs[slot];
+	}
+
+	/**
+	 * @param slot The slot of an entity.
+	 * @return The Y coordinate of the entity.
+	 */
+	public float getY(int slot){
+		return ys[slot];
+	}
+
+	/**
+	 * @param slot The slot of an entity.
+	 * @return The velocity of the entity in the X axis.
+	 */
+	public float getVelocityX(int slot){
+		return vxs[slot];
+	}
+
+	/**
+	 * @param slot The slot of an entity.
+	 * @return The velocity of the entity in the Y axis.
+	 */
+	public float getVelocityY(int slot){
+		return vys[slot];
+	}
+
+	/**
+	 * @param slot The slot of an entity.
+	 * @param alpha How far between the previous and the current position, in [0, 1].
+	 * @return The interpolated X coordinate of the entity.
+	 */
+	public float getInterpolatedX(int slot, float alpha){
+		return previousXs[slot] + ((xs[slot] - previousXs[slot]) * alpha);
+	}
+
+	/**
+	 * @param slot The slot of an entity.
+	 * @param alpha How far between the previous and the current position, in [0, 1].
+	 * @return The interpolated Y coordinate of the entity.
+	 */
+	public float getInterpolatedY(int slot, float alpha){
+		return previousYs[slot] + ((ys[slot] - previousYs[slot]) * alpha);
+	}
+
+	/**
+	 * Makes room for more entities, so that adding them later does not allocate.
+	 * 
+	 * @param capacity The number of entities to make room for.
+	 */
+	public void ensureCapacity(int capacity){
+		if(capacity > entities.length)
+			grow(capacity);
+	}
+
+	/**
+	 * Reallocates the arrays with the given capacity, keeping the used slots.
+	 */
+	private void grow(int capacity){
+		Entity[] newEntities = new Entity[capacity];
+
+		System.arraycopy(entities, 0, newEntities, 0, count);
+		entities = newEntities;
+		xs = copy(xs, capacity);
+		ys = copy(ys, capacity);
+		vxs = copy(vxs, capacity);
+		vys = copy(vys, capacity);
+		previousXs = copy(previousXs, capacity);
+		previousYs = copy(previousYs, capacity);
+		slots.ensureCapacity(capacity - count);
+	}
+
+	/**
+	 * @return A copy of the used slots of the array with the given capacity.
+	 */
+	private float[] copy(float[] array, int capacity){
+		float[] larger = new float[capacity];
+
+		System.arraycopy(array, 0, larger, 0, count);
+
+		return larger;
+	}
+}
@@ -21,13 +21,22 @@ import com.badlogic.ashley.systems.IteratingSystem;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.ScheduledSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.SystemAccess;
 
-public class PositioningSystem extends IteratingSystem{
+public strictfp class PositioningSystem extends IteratingSystem implements ScheduledSystem{
 	@SuppressWarnings("unchecked")
 	public PositioningSystem(){
 		super(Family.getFor(PositionComponent.class, VelocityComponent.class));
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public void declareAccess(SystemAccess access){
+		// Every entity only moves itself, so large families can be split.
+		access.reads(VelocityComponent.class).writes(PositionComponent.class).iterates(Family.getFor(PositionComponent.class, VelocityComponent.class));
+	}
+
 	@Override
 	public void processEntity(Entity entity, float deltaTime){
 		PositionComponent position = Mappers.positionMapper.get(entity);
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.systems;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.gdx.math.Vector2;
+
+/**
+ * Provides the random numbers used by a match. Every match adds it's own instance to it's {@link Engine}, so
+ * matches running at the same time do not share a generator, and systems fetch it with {@link #getFor(Engine)}.
+ * This system does nothing when updated.
+ * 
+ * Given the same seed the same sequence of numbers is produced on every platform. Trigonometry is done with
+ * {@link StrictMath} instead of the lookup tables of {@link com.badlogic.gdx.math.MathUtils}, which are built with
+ * the platform dependent {@link Math} functions.
+ * 
+ * @author Miguel Astor
+ */
+public strictfp class RandomNumberSystem extends EntitySystem{
+	// Parameters of the MurmurHash3 finalizer used to expand the seed.
+	private static final long MURMUR_MULTIPLIER_1 = 0xff51afd7ed558ccdL;
+	private static final long MURMUR_MULTIPLIER_2 = 0xc4ceb9fe1a85ec53L;
+
+	/**
+	 * The seed the generator was created with.
+	 */
+	private final long        seed;
+
+	// The state of the generator.
+	private long              state0;
+	private long              state1;
+
+	/**
+	 * How many numbers have been drawn.
+	 */
+	private long              draws;
+
+	/**
+	 * Creates a generator with a seed taken from the system clock.
+	 */
+	public RandomNumberSystem(){
+		this(System.nanoTime());
+	}
+
+	/**
+	 * Creates a generator with the given seed.
+	 * 
+	 * @param seed The seed.
+	 */
+	public RandomNumberSystem(long seed){
+		this.seed = seed;
+		state0 = murmurHash3(seed == 0L ? Long.MIN_VALUE : seed);
+		state1 = murmurHash3(state0);
+		draws = 0L;
+	}
+
+	/**
+	 * Fetches the generator added to an engine.
+	 * 
+	 * @param engine The engine.
+	 * @return The generator.
+	 * @throws IllegalStateException If no generator has been added to the engine.
+	 */
+	public static RandomNumberSystem getFor(Engine engine) throws IllegalStateException{
+		RandomNumberSystem random = engine.getSystem(RandomNumberSystem.class);
+
+		if(random == null)
+			throw new IllegalStateException("No random number generator has been added to the engine.");
+
+		return random;
+	}
+
+	/**
+	 * @param start The lower bound.
+	 * @param end The upper bound.
+	 * @return A random number between start and end, both inclusive.
+	 */
+	public int random(int start, int end){
+		long bound = end - start + 1;
+		long bits, value;
+
+		draws++;
+
+		// Reject the values that would make the result biased.
+		do{
+			bits = nextLong() >>> 1;
+			value = bits % bound;
+		}while(bits - value + (bound - 1) < 0L);
+
+		return start + (int)value;
+	}
+
+	/**
+	 * @return A random number between 0 (inclusive) and 1 (exclusive).
+	 */
+	public float random(){
+		draws++;
+		return (float)((nextLong() >>> 40) * 0x1.0p-24);
+	}
+
+	/**
+	 * Sets a vector to a unit vector pointing in a random direction.
+	 * 
+	 * @param out The vector to set.
+	 * @param minDegrees The minimum angle in whole degrees, counterclockwise from the positive X axis.
+	 * @param maxDegrees The maximum angle in whole degrees, inclusive.
+	 * @return The vector.
+	 */
+	public Vector2 randomDirection(Vector2 out, int minDegrees, int maxDegrees){
+		double radians = StrictMath.toRadians(random(minDegrees, maxDegrees));
+
+		return out.set((float)StrictMath.cos(radians), (float)StrictMath.sin(radians));
+	}
+
+	/**
+	 * @return The seed the generator was created with.
+	 */
+	public long getSeed(){
+		return seed;
+	}
+
+	/**
+	 * @return How many numbers have been drawn. Two generators with the same seed and the same number of draws
+	 * are in the same state.
+	 */
+	public long getDraws(){
+		return draws;
+	}
+
+	/**
+	 * @return The first half of the state of the generator.
+	 */
+	public long getState0(){
+		return state0;
+	}
+
+	/**
+	 * @return The second half of the state of the generator.
+	 */
+	public long getState1(){
+		return state1;
+	}
+
+	/**
+	 * Restores a state saved with {@link #getState0()}, {@link #getState1()} and {@link #getDraws()}.
+	 * 
+	 * @param state0 The first half of the state.
+	 * @param state1 The second half of the state.
+	 * @param draws How many numbers had been drawn when the state was saved.
+	 * @throws IllegalArgumentException If both halves of the state are zero.
+	 */
+	public void setState(long state0, long state1, long draws) throws IllegalArgumentException{
+		if(state0 == 0L && state1 == 0L)
+			throw new IllegalArgumentException("The state of the generator can't be all zeros.");
+
+		this.state0 = state0;
+		this.state1 = state1;
+		this.draws = draws;
+	}
+
+	/**
+	 * Advances the generator.
+	 * 
+	 * @return The next 64 random bits.
+	 */
+	private long nextLong(){
+		long s1 = state0;
+		long s0 = state1;
+
+		state0 = s0;
+		s1 ^= s1 << 23;
+		state1 = s1 ^ s0 ^ (s1 >>> 17) ^ (s0 >>> 26);
+
+		return state1 + s0;
+	}
+
+	/**
+	 * The MurmurHash3 finalizer, used to spread the bits of the seed.
+	 */
+	private static long murmurHash3(long x){
+		x ^= x >>> 33;
+		x *= MURMUR_MULTIPLIER_1;
+		x ^= x >>> 33;
+		x *= MURMUR_MULTIPLIER_2;
+		x ^= x >>> 33;
+
+		return x;
+	}
+}
@@ -25,12 +25,23 @@ import com.gamejolt.mikykr5.ceidecpong.ecs.components.SpriteComponent;
 
 public class RenderingSystem extends IteratingSystem{
 	private final SpriteBatch batch;
+	private float             alpha;
 
 	@SuppressWarnings("unchecked")
 	public RenderingSystem(SpriteBatch batch){
 		super(Family.getFor(PositionComponent.class, SpriteComponent.class));
 
 		this.batch = batch;
+		this.alpha = 1.0f;
+	}
+
+	/**
+	 * Sets how far between their previous and current positions the entities are drawn.
+	 * 
+	 * @param alpha The interpolation factor, in [0, 1]. 1 draws the entities at their current positions.
+	 */
+	public void setInterpolationAlpha(float alpha){
+		this.alpha = alpha;
 	}
 
 	@Override
@@ -42,7 +53,7 @@ public class RenderingSystem extends IteratingSystem{
 			throw new IllegalStateException("Sprite batch did not call begin before processing entites.");
 
 		if(sprite.sprite != null){
-			batch.draw(sprite.sprite, position.x, position.y);
+			batch.draw(sprite.sprite, position.getInterpolatedX(alpha), position.getInterpolatedY(alpha));
 		}
 	}
 }
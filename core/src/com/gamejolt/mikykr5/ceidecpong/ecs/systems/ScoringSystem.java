@@ -15,75 +15,80 @@
  */
 package com.gamejolt.mikykr5.ceidecpong.ecs.systems;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
+import com.badlogic.ashley.core.Engine;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
-import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.g2d.BitmapFont;
-import com.badlogic.gdx.graphics.g2d.BitmapFont.TextBounds;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
-import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.badlogic.gdx.utils.Disposable;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.ScoreComponent;
+import com.gamejolt.mikykr5.ceidecpong.effects.ScoreHud;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
-import com.gamejolt.mikykr5.ceidecpong.utils.managers.CachedFontManager;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+
+public class ScoringSystem extends IteratingSystem implements Disposable {
+	private static final String       FONT_PATH = "data/fonts/CRYSTAL-Regular.ttf";
+	private static final int          FONT_SIZE = 180;
 
-public class ScoringSystem extends IteratingSystem {
 	private final SpriteBatch         batch;
-	private BitmapFont                font;
-	private Queue<InterSystemMessage> ignoredMessages;
+	private final ScoreHud            hud;
+	private InterSystemMessagingQueue messagingQueue;
+	private Mailbox                   mailbox;
+
+	/**
+	 * Creates a scoring system that keeps the score without drawing it. Needs no OpenGL context.
+	 */
+	@SuppressWarnings("unchecked")
+	public ScoringSystem(){
+		super(Family.getFor(ScoreComponent.class, PlayerComponent.class));
+		this.batch = null;
+		this.hud = null;
+	}
 
 	@SuppressWarnings("unchecked")
 	public ScoringSystem(final SpriteBatch batch){
 		super(Family.getFor(ScoreComponent.class, PlayerComponent.class));
 		this.batch = batch;
-		this.font = CachedFontManager.getInstance().loadFont("data/fonts/CRYSTAL-Regular.ttf", 180);
-		CachedFontManager.freeInstance();
-		ignoredMessages = new LinkedList<InterSystemMessage>();
+		this.hud = new ScoreHud(AsyncAssetLoader.getInstance().loadFont(FONT_PATH, FONT_SIZE));
 	}
 
+	/**
+	 * Releases the font of the score display, if any.
+	 */
 	@Override
-	public void processEntity(Entity entity, float deltaTime) {
-		TextBounds bounds;
-		float x, y;
+	public void dispose(){
+		if(hud != null)
+			AsyncAssetLoader.getInstance().unloadFont(FONT_PATH, FONT_SIZE);
+	}
 
+	@Override
+	public void addedToEngine(Engine engine) {
+		super.addedToEngine(engine);
+
+		messagingQueue = InterSystemMessagingQueue.getFor(engine);
+		mailbox = messagingQueue.registerMailbox(ScoringSystem.class.getCanonicalName());
+	}
+
+	@Override
+	public void processEntity(Entity entity, float deltaTime) {
 		InterSystemMessage message;
 		ScoreComponent score = Mappers.scoreMapper.get(entity);
 		PlayerComponent player = Mappers.playerMapper.get(entity);
 
-		while((message = InterSystemMessagingQueue.popMessage(ScoringSystem.class.getCanonicalName())) != null){
-			int playerId;
-
-			if(message.data.containsKey("SCORE")){
-				playerId = (Integer) message.data.get("SCORE");
+		// Score messages are sent to the player id of the scoring player, so only this player's messages are fetched.
+		while((message = mailbox.pop(player.id)) != null){
+			if(message.type == message_type_t.SCORE)
+				score.score++;
 
-				if(playerId == player.id){
-					score.score++;
-				}else{
-					ignoredMessages.add(message);
-				}
-			}
+			messagingQueue.freeMessage(message);
 		}
 
-		for(InterSystemMessage msg : ignoredMessages)
-			InterSystemMessagingQueue.pushMessage(msg);
-		ignoredMessages.clear();
-
-		bounds = font.getBounds(String.format("%02d", score.score));
-		y = (ProjectConstants.FB_HEIGHT / 2.0f) - (bounds.height / 2.0f) - 20;
-		if(player.id == 0){
-			x = -(ProjectConstants.FB_WIDTH / 4.0f) - (bounds.width / 2.0f);
-		}else if(player.id == 1){
-			x = (ProjectConstants.FB_WIDTH / 4.0f) - (bounds.width / 2.0f);;
-		}else
-			return;
-
-		font.setColor(Color.WHITE);
-		font.draw(batch, String.format("%02d", score.score), x, y);
+		if(hud != null)
+			hud.draw(batch, player.id, score.score);
 	}
 }
@@ -1,25 +1,51 @@
 package com.gamejolt.mikykr5.ceidecpong.ecs.systems;
 
-import java.util.LinkedList;
-import java.util.Queue;
-
+import com.badlogic.ashley.core.Engine;
 import com.badlogic.ashley.core.Entity;
 import com.badlogic.ashley.core.Family;
 import com.badlogic.ashley.systems.IteratingSystem;
 import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.utils.Array;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
 import com.gamejolt.mikykr5.ceidecpong.ecs.components.SoundComponent;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
-import com.gamejolt.mikykr5.ceidecpong.utils.managers.CachedSoundManager;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
 
 public class SoundSystem extends IteratingSystem {
-	private Queue<InterSystemMessage> ignoredMessages;
+	private InterSystemMessagingQueue       messagingQueue;
+	private Mailbox                         mailbox;
+	private final Array<InterSystemMessage> messages;
 
 	@SuppressWarnings("unchecked")
 	public SoundSystem() {
 		super(Family.getFor(SoundComponent.class));
-		ignoredMessages = new LinkedList<InterSystemMessage>();
+		messages = new Array<InterSystemMessage>(false, 16, InterSystemMessage.class);
+	}
+
+	@Override
+	public void addedToEngine(Engine engine) {
+		super.addedToEngine(engine);
+
+		messagingQueue = InterSystemMessagingQueue.getFor(engine);
+		mailbox = messagingQueue.registerMailbox(SoundSystem.class.getCanonicalName());
+	}
+
+	@Override
+	public void update(float deltaTime) {
+		// Fetch all pending messages once, let every sound entity play the ones meant for it
+		// and then discard the messages that no entity wanted.
+		mailbox.drain(messages);
+
+		super.update(deltaTime);
+
+		for(int i = 0; i < messages.size; i++){
+			if(messages.items[i] != null)
+				messagingQueue.freeMessage(messages.items[i]);
+		}
+		messages.clear();
 	}
 
 	@Override
@@ -29,22 +55,19 @@ public class SoundSystem extends IteratingSystem {
 		Sound sfx;
 		SoundComponent sound = Mappers.soundMapper.get(entity);
 
-		while((message = InterSystemMessagingQueue.popMessage(SoundSystem.class.getCanonicalName())) != null){
-			if(message.data.containsKey("PLAY")){
-				path = (String) message.data.get("PLAY");
+		for(int i = 0; i < messages.size; i++){
+			message = messages.items[i];
+
+			if(message != null && message.type == message_type_t.PLAY){
+				path = (String) message.objectData;
 
 				if(sound.path.compareTo(path) == 0){
-					sfx = CachedSoundManager.getInstance().loadSound(path);
+					sfx = AsyncAssetLoader.getInstance().getAsset(path, Sound.class);
 					sfx.play();
-					CachedSoundManager.freeInstance();
-				}else{
-					ignoredMessages.add(message);
+					messagingQueue.freeMessage(message);
+					messages.items[i] = null;
 				}
 			}
 		}
-
-		for(InterSystemMessage msg : ignoredMessages)
-			InterSystemMessagingQueue.pushMessage(msg);
-		ignoredMessages.clear();
 	}
 }
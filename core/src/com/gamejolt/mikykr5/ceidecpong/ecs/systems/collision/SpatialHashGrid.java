@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.systems.collision;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * A uniform grid used as the broad phase of collision detection. Items are identified by small non-negative
+ * integers chosen by the caller and are stored in every cell their bounding rectangle overlaps. Querying a
+ * rectangle returns every item sharing at least one cell with it, each item only once.
+ * 
+ * The grid covers a fixed area. Rectangles that fall partially or completely outside of it are stored in
+ * the border cells, so they are still found but with less precision.
+ * 
+ * After the cells and the item stamps have grown to fit the largest frame, neither rebuilding the grid nor
+ * querying it allocates memory.
+ * 
+ * @author Miguel Astor
+ */
+public strictfp class SpatialHashGrid{
+	/**
+	 * The left border of the covered area.
+	 */
+	private final float    originX;
+
+	/**
+	 * The bottom border of the covered area.
+	 */
+	private final float    originY;
+
+	/**
+	 * The side length of every cell.
+	 */
+	private final float    cellSize;
+
+	/**
+	 * The number of columns.
+	 */
+	private final int      columns;
+
+	/**
+	 * The number of rows.
+	 */
+	private final int      rows;
+
+	/**
+	 * The items stored in every cell, in row major order.
+	 */
+	private final IntArray[] cells;
+
+	/**
+	 * The indices of the cells that are not empty, used to clear the grid without visiting every cell.
+	 */
+	private final IntArray occupiedCells;
+
+	/**
+	 * The query in which each item was last reported, used to avoid reporting an item twice.
+	 */
+	private int[]          itemStamps;
+
+	/**
+	 * The identifier of the current query.
+	 */
+	private int            currentStamp;
+
+	/**
+	 * Creates a new empty grid.
+	 * 
+	 * @param x The left border of the covered area.
+	 * @param y The bottom border of the covered area.
+	 * @param width The width of the covered area.
+	 * @param height The height of the covered area.
+	 * @param cellSize The side length of every cell. Should be about the size of the largest common item.
+	 * @throws IllegalArgumentException If any dimension is not positive.
+	 */
+	public SpatialHashGrid(float x, float y, float width, float height, float cellSize) throws IllegalArgumentException{
+		if(width <= 0.0f || height <= 0.0f || cellSize <= 0.0f)
+			throw new IllegalArgumentException("Grid dimensions must be positive.");
+
+		this.originX = x;
+		this.originY = y;
+		this.cellSize = cellSize;
+		this.columns = (int)Math.ceil(width / cellSize);
+		this.rows = (int)Math.ceil(height / cellSize);
+
+		cells = new IntArray[columns * rows];
+		for(int i = 0; i < cells.length; i++)
+			cells[i] = new IntArray(false, 4);
+
+		occupiedCells = new IntArray(false, cells.length);
+		itemStamps = new int[16];
+		currentStamp = 0;
+	}
+
+	/**
+	 * Removes all items from the grid.
+	 */
+	public void clear(){
+		for(int i = 0; i < occupiedCells.size; i++)
+			cells[occupiedCells.items[i]].clear();
+		occupiedCells.clear();
+	}
+
+	/**
+	 * Stores an item in every cell overlapped by the given rectangle.
+	 * 
+	 * @param item The identifier of the item. Must not be negative.
+	 * @param bounds The bounding rectangle of the item.
+	 * @throws IllegalArgumentException If item is negative.
+	 */
+	public void insert(int item, Rectangle bounds) throws IllegalArgumentException{
+		int minColumn, maxColumn, minRow, maxRow, cell;
+
+		if(item < 0)
+			throw new IllegalArgumentException("Item identifiers must not be negative.");
+
+		if(item >= itemStamps.length){
+			int[] stamps = new int[Math.max(item + 1, itemStamps.length * 2)];
+			System.arraycopy(itemStamps, 0, stamps, 0, itemStamps.length);
+			itemStamps = stamps;
+		}
+
+		minColumn = column(bounds.x);
+		maxColumn = column(bounds.x + bounds.width);
+		minRow = row(bounds.y);
+		maxRow = row(bounds.y + bounds.height);
+
+		for(int r = minRow; r <= maxRow; r++){
+			for(int c = minColumn; c <= maxColumn; c++){
+				cell = (r * columns) + c;
+
+				if(cells[cell].size == 0)
+					occupiedCells.add(cell);
+				cells[cell].add(item);
+			}
+		}
+	}
+
+	/**
+	 * Finds all items that share at least one cell with the given rectangle. These are only candidates, the
+	 * caller must still check if they actually collide.
+	 * 
+	 * @param bounds The rectangle to check.
+	 * @param out The array where the identifiers of the candidates are added. It is not cleared.
+	 * @return How many candidates were added.
+	 */
+	public int query(Rectangle bounds, IntArray out){
+		int minColumn, maxColumn, minRow, maxRow, item, found = 0;
+		IntArray cell;
+
+		minColumn = column(bounds.x);
+		maxColumn = column(bounds.x + bounds.width);
+		minRow = row(bounds.y);
+		maxRow = row(bounds.y + bounds.height);
+
+		nextStamp();
+
+		for(int r = minRow; r <= maxRow; r++){
+			for(int c = minColumn; c <= maxColumn; c++){
+				cell = cells[(r * columns) + c];
+
+				for(int i = 0; i < cell.size; i++){
+					item = cell.items[i];
+
+					if(itemStamps[item] != currentStamp){
+						itemStamps[item] = currentStamp;
+						out.add(item);
+						found++;
+					}
+				}
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * @return How many cells have at least one item.
+	 */
+	public int getOccupiedCellCount(){
+		return occupiedCells.size;
+	}
+
+	/**
+	 * Starts a new query, resetting the item stamps when the stamp counter wraps around.
+	 */
+	private void nextStamp(){
+		currentStamp++;
+
+		if(currentStamp == Integer.MAX_VALUE){
+			for(int i = 0; i < itemStamps.length; i++)
+				itemStamps[i] = 0;
+			currentStamp = 1;
+		}
+	}
+
+	/**
+	 * @param x An X coordinate.
+	 * @return The column containing that coordinate, clamped to the grid.
+	 */
+	private int column(float x){
+		int column = (int)Math.floor((x - originX) / cellSize);
+
+		return column < 0 ? 0 : (column >= columns ? columns - 1 : column);
+	}
+
+	/**
+	 * @param y A Y coordinate.
+	 * @return The row containing that coordinate, clamped to the grid.
+	 */
+	private int row(float y){
+		int row = (int)Math.floor((y - originY) / cellSize);
+
+		return row < 0 ? 0 : (row >= rows ? rows - 1 : row);
+	}
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging;
+
+/**
+ * A pointer event read from an {@link InputEventRing}. Instances are meant to be allocated once by the
+ * consumer and reused for every read.
+ * 
+ * @author Miguel Astor
+ */
+public class InputEvent{
+	/**
+	 * The pointer (finger) that generated the event.
+	 */
+	public int pointer;
+
+	/**
+	 * The Y coordinate of the pointer in frame buffer coordinates.
+	 */
+	public float y;
+
+	/**
+	 * When the event was generated, in nanoseconds.
+	 */
+	public long timestamp;
+
+	/**
+	 * Copies all fields of another event.
+	 * 
+	 * @param other The event to copy.
+	 */
+	public void set(InputEvent other){
+		this.pointer = other.pointer;
+		this.y = other.y;
+		this.timestamp = other.timestamp;
+	}
+}
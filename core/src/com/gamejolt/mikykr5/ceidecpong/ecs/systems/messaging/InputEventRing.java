@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free, single producer and single consumer ring buffer used to hand pointer events from the
+ * input thread to the game thread. All slots are allocated when the ring is created, so neither
+ * {@link #offer(int, float, long)} nor {@link #poll(InputEvent)} allocate or take monitor locks.
+ * 
+ * The producer only writes slots past the tail, and publishes them by advancing the head, so the consumer never
+ * reads a slot while it is being written. When the ring is full the oldest event is dropped by advancing the tail
+ * with a compare and set, which makes the consumer discard it's copy if it was reading that event. Merging
+ * consecutive events is left to the {@link InputSampler}, which keeps only the latest position of every pointer.
+ * 
+ * @author Miguel Astor
+ */
+public class InputEventRing{
+	/**
+	 * The number of slots. Always a power of two.
+	 */
+	private final int capacity;
+
+	/**
+	 * Mask used to map a sequence to a slot.
+	 */
+	private final int mask;
+
+	// Slot storage.
+	private final int[]   pointers;
+	private final float[] ys;
+	private final long[]  timestamps;
+
+	/**
+	 * The sequence of the next slot to write. Only advanced by the producer.
+	 */
+	private final AtomicLong head;
+
+	/**
+	 * The sequence of the next slot to read. Advanced by the consumer, and by the producer when dropping events.
+	 */
+	private final AtomicLong tail;
+
+	// Counters. Only written by the producer.
+	private volatile long offeredEvents;
+	private volatile long droppedEvents;
+
+	/**
+	 * Creates a new ring.
+	 * 
+	 * @param capacity The minimum number of events the ring can hold. Rounded up to a power of two.
+	 * @throws IllegalArgumentException If capacity is less than 1.
+	 */
+	public InputEventRing(int capacity) throws IllegalArgumentException{
+		if(capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive.");
+
+		this.capacity = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+		this.mask = this.capacity - 1;
+
+		pointers = new int[this.capacity];
+		ys = new float[this.capacity];
+		timestamps = new long[this.capacity];
+		head = new AtomicLong(0L);
+		tail = new AtomicLong(0L);
+
+		offeredEvents = 0L;
+		droppedEvents = 0L;
+	}
+
+	/**
+	 * Adds an event to the ring, dropping the oldest queued event if the ring is full. Must only be called from the
+	 * producer thread.
+	 * 
+	 * @param pointer The pointer that generated the event.
+	 * @param y The Y coordinate of the pointer.
+	 * @param timestamp When the event happened, in nanoseconds.
+	 */
+	public void offer(int pointer, float y, long timestamp){
+		long h = head.get();
+		long t = tail.get();
+		int  slot;
+
+		offeredEvents++;
+
+		// If the consumer advanced in the mean time then there is room already.
+		if(h - t >= capacity && tail.compareAndSet(t, t + 1))
+			droppedEvents++;
+
+		// The slot is past the tail now, so the consumer will not keep anything it reads from it.
+		slot = (int)(h & mask);
+		pointers[slot] = pointer;
+		ys[slot] = y;
+		timestamps[slot] = timestamp;
+		head.lazySet(h + 1);
+	}
+
+	/**
+	 * Removes the oldest event from the ring. Must only be called from the consumer thread.
+	 * 
+	 * @param out The event to copy the data to.
+	 * @return True if an event was read, false if the ring was empty.
+	 */
+	public boolean poll(InputEvent out){
+		long t;
+		int  slot;
+
+		while(true){
+			t = tail.get();
+			if(t >= head.get())
+				return false;
+
+			slot = (int)(t & mask);
+			out.pointer = pointers[slot];
+			out.y = ys[slot];
+			out.timestamp = timestamps[slot];
+
+			// If the producer dropped the event while it was being copied then the copy may be torn, so retry.
+			if(tail.compareAndSet(t, t + 1))
+				return true;
+		}
+	}
+
+	/**
+	 * Discards all queued events. Must only be called from the consumer thread.
+	 */
+	public void clear(){
+		long t;
+
+		do{
+			t = tail.get();
+		}while(t < head.get() && !tail.compareAndSet(t, head.get()));
+	}
+
+	/**
+	 * @return An estimate of how many events are queued.
+	 */
+	public int size(){
+		long size = head.get() - tail.get();
+
+		return (int)(size < 0 ? 0 : (size > capacity ? capacity : size));
+	}
+
+	/**
+	 * @return How many events the ring can hold.
+	 */
+	public int getCapacity(){
+		return capacity;
+	}
+
+	/**
+	 * @return How many events have been offered to this ring.
+	 */
+	public long getOfferedEvents(){
+		return offeredEvents;
+	}
+
+	/**
+	 * @return How many events were dropped because the ring was full.
+	 */
+	public long getDroppedEvents(){
+		return droppedEvents;
+	}
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Reduces the pointer events queued in an {@link InputEventRing} to a single sample per simulation tick.
+ * The latest position of every pointer is kept in a preallocated slot and the most recent of them is published
+ * as the sample of the tick, so high rate touch panels cost the same as any other input device.
+ * 
+ * Optionally keeps a history of the last published samples together with the time they were published,
+ * which can be used to measure the latency between a touch and the tick that used it.
+ * 
+ * @author Miguel Astor
+ */
+public class InputSampler{
+	/**
+	 * The maximum number of simultaneous pointers tracked. Events from higher pointers are ignored.
+	 */
+	public static final int MAX_POINTERS = 20;
+
+	/**
+	 * The ring the events are read from.
+	 */
+	private final InputEventRing inputEvents;
+
+	/**
+	 * Auxiliary event used to read from the ring.
+	 */
+	private final InputEvent event;
+
+	/**
+	 * The sample published in the last call to {@link #sample()}.
+	 */
+	private final InputEvent currentSample;
+
+	/**
+	 * Whether the last call to {@link #sample()} published a new sample.
+	 */
+	private boolean fresh;
+
+	// Latest position of every pointer.
+	private final boolean[] pointerSeen;
+	private final float[]   pointerYs;
+	private final long[]    pointerTimestamps;
+
+	// Counters.
+	private long rawEvents;
+	private long publishedSamples;
+
+	// Sample history. Empty arrays if the history is disabled.
+	private final int[]   historyPointers;
+	private final float[] historyYs;
+	private final long[]  historyEventTimestamps;
+	private final long[]  historySampleTimestamps;
+	private int           historyNext;
+	private int           historyCount;
+
+	/**
+	 * Creates a sampler without history.
+	 * 
+	 * @param inputEvents The ring to read events from.
+	 * @throws IllegalArgumentException If inputEvents is null.
+	 */
+	public InputSampler(InputEventRing inputEvents) throws IllegalArgumentException{
+		this(inputEvents, 0);
+	}
+
+	/**
+	 * Creates a sampler.
+	 * 
+	 * @param inputEvents The ring to read events from.
+	 * @param historySize How many published samples to remember. Zero disables the history.
+	 * @throws IllegalArgumentException If inputEvents is null or historySize is negative.
+	 */
+	public InputSampler(InputEventRing inputEvents, int historySize) throws IllegalArgumentException{
+		if(inputEvents == null)
+			throw new IllegalArgumentException("Input event ring is null.");
+
+		if(historySize < 0)
+			throw new IllegalArgumentException("History size is negative.");
+
+		this.inputEvents = inputEvents;
+		event = new InputEvent();
+		currentSample = new InputEvent();
+		fresh = false;
+
+		pointerSeen = new boolean[MAX_POINTERS];
+		pointerYs = new float[MAX_POINTERS];
+		pointerTimestamps = new long[MAX_POINTERS];
+
+		rawEvents = 0L;
+		publishedSamples = 0L;
+
+		historyPointers = new int[historySize];
+		historyYs = new float[historySize];
+		historyEventTimestamps = new long[historySize];
+		historySampleTimestamps = new long[historySize];
+		historyNext = 0;
+		historyCount = 0;
+	}
+
+	/**
+	 * Reads every queued event and publishes the most recent pointer position as the sample of this tick.
+	 * Must be called once per simulation tick from the game thread.
+	 * 
+	 * @return True if a new sample was published, false if there were no new events.
+	 */
+	public boolean sample(){
+		int latest = -1;
+
+		fresh = false;
+
+		while(inputEvents.poll(event)){
+			rawEvents++;
+
+			if(event.pointer < 0 || event.pointer >= MAX_POINTERS)
+				continue;
+
+			pointerSeen[event.pointer] = true;
+			pointerYs[event.pointer] = event.y;
+			pointerTimestamps[event.pointer] = event.timestamp;
+
+			// Events arrive in order, so the last valid one is the most recent.
+			latest = event.pointer;
+		}
+
+		if(latest >= 0){
+			currentSample.pointer = latest;
+			currentSample.y = pointerYs[latest];
+			currentSample.timestamp = pointerTimestamps[latest];
+			fresh = true;
+			publishedSamples++;
+
+			if(historySampleTimestamps.length > 0)
+				record(TimeUtils.nanoTime());
+		}
+
+		return fresh;
+	}
+
+	/**
+	 * @return True if the last call to {@link #sample()} published a new sample.
+	 */
+	public boolean hasFreshSample(){
+		return fresh;
+	}
+
+	/**
+	 * @return The last published sample. Must not be modified.
+	 */
+	public InputEvent getSample(){
+		return currentSample;
+	}
+
+	/**
+	 * Checks if a pointer has produced any events.
+	 * 
+	 * @param pointer The pointer.
+	 * @return True if the pointer is valid and has been seen.
+	 */
+	public boolean isPointerSeen(int pointer){
+		return pointer >= 0 && pointer < MAX_POINTERS && pointerSeen[pointer];
+	}
+
+	/**
+	 * @param pointer The pointer.
+	 * @return The last known Y coordinate of the pointer.
+	 * @throws IllegalArgumentException If the pointer has not been seen.
+	 */
+	public float getPointerY(int pointer) throws IllegalArgumentException{
+		if(!isPointerSeen(pointer))
+			throw new IllegalArgumentException("Pointer " + Integer.toString(pointer) + " has not been seen.");
+
+		return pointerYs[pointer];
+	}
+
+	/**
+	 * @return How many events have been read from the ring.
+	 */
+	public long getRawEvents(){
+		return rawEvents;
+	}
+
+	/**
+	 * @return How many samples have been published.
+	 */
+	public long getPublishedSamples(){
+		return publishedSamples;
+	}
+
+	/**
+	 * @return How many events were read but not published because a newer event arrived in the same tick.
+	 */
+	public long getCoalescedEvents(){
+		return rawEvents - publishedSamples;
+	}
+
+	/**
+	 * @return How many samples are stored in the history.
+	 */
+	public int getHistoryCount(){
+		return historyCount;
+	}
+
+	/**
+	 * Fetches a sample from the history.
+	 * 
+	 * @param index The sample to fetch, 0 being the oldest stored.
+	 * @param out The event to copy the sample to.
+	 * @return The time the sample was published, in nanoseconds.
+	 * @throws IndexOutOfBoundsException If index is not in [0, {@link #getHistoryCount()}).
+	 */
+	public long getHistorySample(int index, InputEvent out) throws IndexOutOfBoundsException{
+		int slot;
+
+		if(index < 0 || index >= historyCount)
+			throw new IndexOutOfBoundsException("History index " + Integer.toString(index));
+
+		slot = (historyNext - historyCount + index + historySampleTimestamps.length) % historySampleTimestamps.length;
+		out.pointer = historyPointers[slot];
+		out.y = historyYs[slot];
+		out.timestamp = historyEventTimestamps[slot];
+
+		return historySampleTimestamps[slot];
+	}
+
+	/**
+	 * Forgets all pointers, counters and history.
+	 */
+	public void reset(){
+		inputEvents.clear();
+
+		for(int i = 0; i < MAX_POINTERS; i++)
+			pointerSeen[i] = false;
+
+		fresh = false;
+		rawEvents = 0L;
+		publishedSamples = 0L;
+		historyNext = 0;
+		historyCount = 0;
+	}
+
+	/**
+	 * Stores the current sample in the history.
+	 * 
+	 * @param now The time the sample was published.
+	 */
+	private void record(long now){
+		historyPointers[historyNext] = currentSample.pointer;
+		historyYs[historyNext] = currentSample.y;
+		historyEventTimestamps[historyNext] = currentSample.timestamp;
+		historySampleTimestamps[historyNext] = now;
+
+		historyNext = (historyNext + 1) % historySampleTimestamps.length;
+		if(historyCount < historySampleTimestamps.length)
+			historyCount++;
+	}
+}
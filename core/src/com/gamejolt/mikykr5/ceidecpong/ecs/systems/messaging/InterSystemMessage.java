@@ -1,26 +1,70 @@
 package com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.gdx.utils.Pool.Poolable;
 
 /**
- * A message from a {@link EntitySystem }to another.
+ * A message from a {@link EntitySystem }to another. Messages are pooled, so they must be obtained with
+ * {@link InterSystemMessagingQueue#obtainMessage(String, message_type_t)} and given back with
+ * {@link InterSystemMessagingQueue#freeMessage(InterSystemMessage)} once the receiver is done with them.
  * 
  * @author Miguel Astor
  */
-public class InterSystemMessage{
+public class InterSystemMessage implements Poolable{
+	/**
+	 * The value of {@link #address} for messages meant for the receiver as a whole.
+	 */
+	public static final int ANY_ADDRESS = -1;
+
+	/**
+	 * An enumerated type used to tell the receiver how to interpret the payload of a message.
+	 */
+	public enum message_type_t {
+		NONE, SCORE, PLAY, BALL_Y;
+	};
+
 	/**
 	 * A string to identify the receiver of the message. Can contain anything so long as the intended receiver
 	 * knows.
 	 */
-	public final String target;
+	public String target;
+
+	/**
+	 * A sub-address inside the receiver, such as a player or entity identifier. See {@link Mailbox}.
+	 */
+	public int address;
+
+	/**
+	 * What this message means.
+	 */
+	public message_type_t type;
+
+	/**
+	 * An integer payload slot.
+	 */
+	public int intData;
+
+	/**
+	 * A floating point payload slot.
+	 */
+	public float floatData;
+
+	/**
+	 * A long integer payload slot.
+	 */
+	public long longData;
 
 	/**
-	 * A holder for arbitrary data.
+	 * A reference payload slot for data that does not fit the primitive slots.
 	 */
-	public final Map<String, Object> data;
+	public Object objectData;
+
+	/**
+	 * Creates a new empty message object. Used by the message pool.
+	 */
+	public InterSystemMessage(){
+		reset();
+	}
 
 	/**
 	 * Creates a new message object.
@@ -28,7 +72,18 @@ public class InterSystemMessage{
 	 * @param target The receiver of the message.
 	 */
 	public InterSystemMessage(String target){
+		reset();
 		this.target = target;
-		this.data = new HashMap<String, Object>();
 	}
-}
\ No newline at end of file
+
+	@Override
+	public void reset(){
+		target = null;
+		address = ANY_ADDRESS;
+		type = message_type_t.NONE;
+		intData = 0;
+		floatData = 0.0f;
+		longData = 0L;
+		objectData = null;
+	}
+}
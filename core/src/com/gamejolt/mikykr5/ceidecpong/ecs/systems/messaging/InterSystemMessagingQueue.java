@@ -1,59 +1,201 @@
 package com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.util.HashMap;
+import java.util.Map;
 
+import com.badlogic.ashley.core.Engine;
 import com.badlogic.ashley.core.EntitySystem;
-import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Pool;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
 
 /**
- * A messaging queue to communicate two {@link EntitySystem} instances.
+ * A messaging queue to communicate two {@link EntitySystem} instances. Every receiver owns a {@link Mailbox}
+ * that can be fetched once with {@link #registerMailbox(String)} and used directly afterwards. The
+ * {@link #pushMessage(InterSystemMessage)} and {@link #popMessage(String)} methods are kept for code that
+ * addresses receivers by name.
+ * 
+ * Every match owns it's own queue, which is added to the {@link Engine} before any other system so that the
+ * systems can fetch it with {@link #getFor(Engine)} when they are added. This way several matches can run
+ * at the same time in different threads without sharing any messages.
+ * 
+ * Only mailbox registration is synchronized. Sending, receiving and pooling messages must happen on the thread
+ * that runs the match, see {@link Mailbox}.
  * 
  * @author Miguel Astor
  */
-public abstract class InterSystemMessagingQueue{
+public class InterSystemMessagingQueue extends EntitySystem{
+	/**
+	 * The registered mailboxes indexed by receiver name.
+	 */
+	private final Map<String, Mailbox> mailboxes;
+
+	/**
+	 * The registered mailboxes indexed by their identifier.
+	 */
+	private final Array<Mailbox> mailboxesById;
+
+	/**
+	 * The pool all messages are taken from and returned to.
+	 */
+	private final Pool<InterSystemMessage> messagePool;
+
+	/**
+	 * Creates an empty queue.
+	 */
+	public InterSystemMessagingQueue(){
+		mailboxes = new HashMap<String, Mailbox>();
+		mailboxesById = new Array<Mailbox>(false, 8, Mailbox.class);
+		messagePool = new Pool<InterSystemMessage>(){
+			@Override
+			protected InterSystemMessage newObject(){
+				return new InterSystemMessage();
+			}
+		};
+	}
+
+	/**
+	 * Fetches the queue added to an engine.
+	 * 
+	 * @param engine The engine.
+	 * @return The queue.
+	 * @throws IllegalStateException If no queue has been added to the engine.
+	 */
+	public static InterSystemMessagingQueue getFor(Engine engine) throws IllegalStateException{
+		InterSystemMessagingQueue queue = engine.getSystem(InterSystemMessagingQueue.class);
+
+		if(queue == null)
+			throw new IllegalStateException("No messaging queue has been added to the engine.");
+
+		return queue;
+	}
+
+	/**
+	 * Takes a clean message from the message pool.
+	 * 
+	 * @param target The receiver of the message.
+	 * @param type What the message means.
+	 * @return The message.
+	 * @throws IllegalArgumentException If either argument is null.
+	 */
+	public InterSystemMessage obtainMessage(String target, message_type_t type) throws IllegalArgumentException{
+		InterSystemMessage message;
+
+		if(target == null)
+			throw new IllegalArgumentException("Target is null.");
+
+		if(type == null)
+			throw new IllegalArgumentException("Type is null.");
+
+		message = messagePool.obtain();
+		message.target = target;
+		message.type = type;
+
+		return message;
+	}
+
+	/**
+	 * Returns a message to the message pool. The message must not be used after calling this method.
+	 * 
+	 * @param message The message to return.
+	 * @throws IllegalArgumentException If message is null.
+	 */
+	public void freeMessage(InterSystemMessage message) throws IllegalArgumentException{
+		if(message == null)
+			throw new IllegalArgumentException("Message is null");
+
+		messagePool.free(message);
+	}
+
 	/**
-	 * The message queue.
+	 * Fetches the mailbox of a receiver, creating it if this is the first time the receiver is seen.
+	 * 
+	 * @param receiver The name of the receiver.
+	 * @return The mailbox.
+	 * @throws IllegalArgumentException If receiver is null.
 	 */
-	private static Queue<InterSystemMessage> queue = new LinkedList<InterSystemMessage>();
+	public synchronized Mailbox registerMailbox(String receiver) throws IllegalArgumentException{
+		Mailbox mailbox;
+
+		if(receiver == null)
+			throw new IllegalArgumentException("Receiver is null.");
+
+		mailbox = mailboxes.get(receiver);
+		if(mailbox == null){
+			mailbox = new Mailbox(this, receiver.intern(), mailboxesById.size);
+			mailboxes.put(mailbox.receiver, mailbox);
+			mailboxesById.add(mailbox);
+		}
+
+		return mailbox;
+	}
 
 	/**
-	 * Adds a message to the queue.
+	 * Fetches a mailbox by it's identifier.
+	 * 
+	 * @param id The identifier returned in {@link Mailbox#id}.
+	 * @return The mailbox.
+	 * @throws IllegalArgumentException If there is no mailbox with the given identifier.
+	 */
+	public synchronized Mailbox getMailbox(int id) throws IllegalArgumentException{
+		if(id < 0 || id >= mailboxesById.size)
+			throw new IllegalArgumentException("No mailbox with id " + Integer.toString(id));
+
+		return mailboxesById.items[id];
+	}
+
+	/**
+	 * @return How many mailboxes have been registered. Mailbox identifiers go from zero to this value minus one.
+	 */
+	public synchronized int getMailboxCount(){
+		return mailboxesById.size;
+	}
+
+	/**
+	 * @return How many messages are waiting in all mailboxes. Must be called from the thread that runs the match.
+	 */
+	public int getPendingMessageCount(){
+		int count = 0;
+
+		for(int i = 0; i < mailboxesById.size; i++)
+			count += mailboxesById.items[i].size();
+
+		return count;
+	}
+
+	/**
+	 * Discards the pending messages of every mailbox.
+	 */
+	public synchronized void clear(){
+		for(int i = 0; i < mailboxesById.size; i++)
+			mailboxesById.items[i].clear();
+	}
+
+	/**
+	 * Adds a message to the mailbox of it's target.
 	 * 
 	 * @param message The message to add.
 	 * @throws IllegalArgumentException If message is null.
 	 */
-	public static synchronized void pushMessage(InterSystemMessage message) throws IllegalArgumentException{
+	public void pushMessage(InterSystemMessage message) throws IllegalArgumentException{
 		if(message == null)
 			throw new IllegalArgumentException("Message is null");
 
-		queue.add(message);
+		registerMailbox(message.target).push(message);
 	}
 
 	/**
-	 * Fetches a message from the queue if it's intended receiver is the caller of this method. A message is removed from the
+	 * Fetches the oldest message whose intended receiver is the caller of this method. A message is removed from the
 	 * queue only if it was successfully retrieved.
 	 * 
 	 * @param receiver The intended receiver.
 	 * @return The message.
 	 * @throws IllegalArgumentException If receiver is null.
 	 */
-	public static synchronized InterSystemMessage popMessage(String receiver) throws IllegalArgumentException{
-		InterSystemMessage message = null;
-
+	public InterSystemMessage popMessage(String receiver) throws IllegalArgumentException{
 		if(receiver == null)
 			throw new IllegalArgumentException("Target is null.");
 
-		for(InterSystemMessage msg : queue){
-			if(msg.target.compareTo(receiver) == 0){
-				message = msg;
-				break;
-			}
-		}
-		if(message != null && !queue.remove(message)){
-			Gdx.app.error("MESSAGING_QUEUE", "Queue did not contain message?");
-		}
-
-		return message;
+		return registerMailbox(receiver).pop();
 	}
 }
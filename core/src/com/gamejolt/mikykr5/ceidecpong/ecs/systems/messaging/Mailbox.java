@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging;
+
+import java.util.ArrayDeque;
+
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * A FIFO queue holding the messages sent to a single receiver. Mailboxes are created and registered by
+ * {@link InterSystemMessagingQueue} and are meant to be fetched once by their {@link EntitySystem} and
+ * kept, so that sending or receiving a message never needs to search for the receiver.
+ * 
+ * Messages whose {@link InterSystemMessage#address} is not {@link InterSystemMessage#ANY_ADDRESS} are kept
+ * in a separate queue for that sub-address, so that a receiver handling many entities can fetch only the
+ * messages meant for one of them with {@link #pop(int)}. Sub-addresses are expected to be small non-negative
+ * integers such as player or entity identifiers.
+ * 
+ * Mailboxes are not thread safe. All systems of a match run on the same thread, and events coming from other
+ * threads must be handed over through an {@link InputEventRing} instead.
+ * 
+ * @author Miguel Astor
+ */
+public final class Mailbox{
+	/**
+	 * The interned name of the receiver that owns this mailbox.
+	 */
+	public final String receiver;
+
+	/**
+	 * The integer identifier assigned to this mailbox by {@link InterSystemMessagingQueue}.
+	 */
+	public final int id;
+
+	/**
+	 * The queue that created this mailbox, which owns the message pool.
+	 */
+	private final InterSystemMessagingQueue queue;
+
+	/**
+	 * The pending messages in arrival order.
+	 */
+	private final ArrayDeque<InterSystemMessage> messages;
+
+	/**
+	 * The pending sub-addressed messages in arrival order, indexed by sub-address. Created on demand.
+	 */
+	private final Array<ArrayDeque<InterSystemMessage>> addressedMessages;
+
+	/**
+	 * How many messages are waiting in this mailbox, counting all sub-addresses.
+	 */
+	private int count;
+
+	/**
+	 * Creates an empty mailbox. Only {@link InterSystemMessagingQueue} can create mailboxes.
+	 * 
+	 * @param queue The queue creating this mailbox.
+	 * @param receiver The interned name of the receiver.
+	 * @param id The identifier of the mailbox.
+	 */
+	Mailbox(InterSystemMessagingQueue queue, String receiver, int id){
+		this.queue = queue;
+		this.receiver = receiver;
+		this.id = id;
+		this.messages = new ArrayDeque<InterSystemMessage>();
+		this.addressedMessages = new Array<ArrayDeque<InterSystemMessage>>();
+		this.count = 0;
+	}
+
+	/**
+	 * Adds a message at the end of this mailbox, or at the end of the queue of it's sub-address if it has one.
+	 * 
+	 * @param message The message to add.
+	 * @throws IllegalArgumentException If message is null or it's address is invalid.
+	 */
+	public void push(InterSystemMessage message) throws IllegalArgumentException{
+		if(message == null)
+			throw new IllegalArgumentException("Message is null");
+
+		if(message.address == InterSystemMessage.ANY_ADDRESS){
+			messages.addLast(message);
+		}else{
+			if(message.address < 0)
+				throw new IllegalArgumentException("Invalid address " + Integer.toString(message.address));
+
+			while(addressedMessages.size <= message.address)
+				addressedMessages.add(null);
+			if(addressedMessages.get(message.address) == null)
+				addressedMessages.set(message.address, new ArrayDeque<InterSystemMessage>());
+
+			addressedMessages.get(message.address).addLast(message);
+		}
+		count++;
+	}
+
+	/**
+	 * Removes and returns the oldest message in this mailbox without a sub-address. If there are none then
+	 * the oldest message of the lowest non-empty sub-address is returned instead.
+	 * 
+	 * @return The message or null if the mailbox is empty.
+	 */
+	public InterSystemMessage pop(){
+		InterSystemMessage message = messages.pollFirst();
+
+		for(int i = 0; message == null && count > 0 && i < addressedMessages.size; i++){
+			if(addressedMessages.get(i) != null)
+				message = addressedMessages.get(i).pollFirst();
+		}
+
+		if(message != null)
+			count--;
+
+		return message;
+	}
+
+	/**
+	 * Removes and returns the oldest message sent to the given sub-address.
+	 * 
+	 * @param address The sub-address.
+	 * @return The message or null if there are no messages for that sub-address.
+	 */
+	public InterSystemMessage pop(int address){
+		InterSystemMessage message;
+
+		if(address < 0 || address >= addressedMessages.size || addressedMessages.get(address) == null)
+			return null;
+
+		message = addressedMessages.get(address).pollFirst();
+		if(message != null)
+			count--;
+
+		return message;
+	}
+
+	/**
+	 * Moves all pending messages to the given array, leaving this mailbox empty. Messages without a sub-address
+	 * come first in arrival order, followed by the messages of each sub-address in ascending order.
+	 * 
+	 * @param out The array that will receive the messages.
+	 * @return How many messages were moved.
+	 * @throws IllegalArgumentException If out is null.
+	 */
+	public int drain(Array<InterSystemMessage> out) throws IllegalArgumentException{
+		int drained = count;
+
+		if(out == null)
+			throw new IllegalArgumentException("Output array is null");
+
+		out.ensureCapacity(drained);
+		while(!messages.isEmpty())
+			out.add(messages.pollFirst());
+
+		for(int i = 0; i < addressedMessages.size; i++){
+			ArrayDeque<InterSystemMessage> queue = addressedMessages.get(i);
+
+			while(queue != null && !queue.isEmpty())
+				out.add(queue.pollFirst());
+		}
+		count = 0;
+
+		return drained;
+	}
+
+	/**
+	 * @return How many messages are waiting in this mailbox, counting all sub-addresses.
+	 */
+	public int size(){
+		return count;
+	}
+
+	/**
+	 * Discards all pending messages, returning them to the message pool.
+	 */
+	public void clear(){
+		InterSystemMessage message;
+
+		while((message = pop()) != null)
+			queue.freeMessage(message);
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.effects;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.TransitionEffect;
+
+/**
+ * Blends the last frame of the outgoing state into the incoming state. The switch is immediate, as there is nothing
+ * to cover. Without a snapshot, like when the game starts, it fades from black instead.
+ * 
+ * @author Miguel Astor
+ */
+public class CrossfadeTransition implements TransitionEffect{
+	private final float duration;
+
+	/**
+	 * @param duration How many seconds the blend lasts.
+	 */
+	public CrossfadeTransition(float duration){
+		this.duration = duration;
+	}
+
+	@Override
+	public float getOutDuration(){
+		return 0.0f;
+	}
+
+	@Override
+	public float getInDuration(){
+		return duration;
+	}
+
+	@Override
+	public boolean needsSnapshot(){
+		return true;
+	}
+
+	@Override
+	public float getFillCost(){
+		return 1.0f;
+	}
+
+	@Override
+	public void draw(SpriteBatch batch, Texture texel, TextureRegion snapshot, float coverage, float width, float height){
+		if(snapshot == null){
+			FadeTransition.fill(batch, texel, coverage, -(width / 2), -(height / 2), width, height);
+		}else{
+			batch.setColor(1, 1, 1, coverage);
+			batch.draw(snapshot, -(width / 2), -(height / 2), width, height);
+			batch.setColor(1, 1, 1, 1);
+		}
+	}
+}
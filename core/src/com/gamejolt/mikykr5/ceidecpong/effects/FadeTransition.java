@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.effects;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.TransitionEffect;
+
+/**
+ * Fades to black and back with a single stretched texel.
+ * 
+ * @author Miguel Astor
+ */
+public class FadeTransition implements TransitionEffect{
+	private final float outDuration;
+	private final float inDuration;
+
+	/**
+	 * Creates a fade with the default durations of the game.
+	 */
+	public FadeTransition(){
+		this(0.5f, 0.5f);
+	}
+
+	/**
+	 * @param outDuration How many seconds it takes to fade to black.
+	 * @param inDuration How many seconds it takes to fade from black.
+	 */
+	public FadeTransition(float outDuration, float inDuration){
+		this.outDuration = outDuration;
+		this.inDuration = inDuration;
+	}
+
+	@Override
+	public float getOutDuration(){
+		return outDuration;
+	}
+
+	@Override
+	public float getInDuration(){
+		return inDuration;
+	}
+
+	@Override
+	public boolean needsSnapshot(){
+		return false;
+	}
+
+	@Override
+	public float getFillCost(){
+		return 1.0f;
+	}
+
+	@Override
+	public void draw(SpriteBatch batch, Texture texel, TextureRegion snapshot, float coverage, float width, float height){
+		fill(batch, texel, coverage, -(width / 2), -(height / 2), width, height);
+	}
+
+	/**
+	 * Draws a black rectangle.
+	 * 
+	 * @param alpha The opacity of the rectangle.
+	 */
+	static void fill(SpriteBatch batch, Texture texel, float alpha, float x, float y, float width, float height){
+		batch.setColor(0, 0, 0, alpha);
+		batch.draw(texel, x, y, width, height);
+		batch.setColor(1, 1, 1, 1);
+	}
+}
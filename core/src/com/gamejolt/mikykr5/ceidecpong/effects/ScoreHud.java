@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.effects;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.TextBounds;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+
+/**
+ * Draws the score of both players at the top of the screen. The text of every score from 00 to
+ * {@link #MAX_CACHED_SCORE} and it's size are computed once, and the glyphs of each player's score are laid out in a
+ * {@link BitmapFontCache} that is only rebuilt when that score changes. Drawing an unchanged score just copies the
+ * cached vertices to the batch, so the HUD allocates no memory while the score stays the same.
+ * 
+ * @author Miguel Astor
+ */
+public class ScoreHud{
+	/**
+	 * The highest score with a precomputed text. Higher scores are formatted when they change.
+	 */
+	public static final int         MAX_CACHED_SCORE = 99;
+
+	/**
+	 * The vertical distance between the top of the screen and the top of the scores, in pixels.
+	 */
+	private static final float      TOP_MARGIN       = 20.0f;
+
+	/**
+	 * The text of every score up to {@link #MAX_CACHED_SCORE}, padded to two digits.
+	 */
+	private static final String[]   SCORE_TEXTS;
+
+	static{
+		SCORE_TEXTS = new String[MAX_CACHED_SCORE + 1];
+		for(int i = 0; i <= MAX_CACHED_SCORE; i++)
+			SCORE_TEXTS[i] = (i < 10 ? "0" : "") + Integer.toString(i);
+	}
+
+	/**
+	 * The width of the text of every score up to {@link #MAX_CACHED_SCORE}.
+	 */
+	private final float[]           widths;
+
+	/**
+	 * The height of the text of every score up to {@link #MAX_CACHED_SCORE}.
+	 */
+	private final float[]           heights;
+
+	/**
+	 * The laid out glyphs of the score of every player, indexed by player id.
+	 */
+	private final BitmapFontCache[] caches;
+
+	/**
+	 * The score currently laid out in each cache, or -1 if the cache is empty.
+	 */
+	private final int[]             shownScores;
+
+	/**
+	 * The font used to draw the scores.
+	 */
+	private final BitmapFont        font;
+
+	/**
+	 * Creates the HUD and measures the text of all cached scores.
+	 * 
+	 * @param font The font used to draw the scores. Must not be disposed while the HUD is in use.
+	 * @throws IllegalArgumentException If font is null.
+	 */
+	public ScoreHud(BitmapFont font) throws IllegalArgumentException{
+		TextBounds bounds;
+
+		if(font == null)
+			throw new IllegalArgumentException("Font is null.");
+
+		this.font = font;
+		widths = new float[MAX_CACHED_SCORE + 1];
+		heights = new float[MAX_CACHED_SCORE + 1];
+
+		for(int i = 0; i <= MAX_CACHED_SCORE; i++){
+			bounds = font.getBounds(SCORE_TEXTS[i]);
+			widths[i] = bounds.width;
+			heights[i] = bounds.height;
+		}
+
+		caches = new BitmapFontCache[PlayerComponent.COMPUTER_PLAYER + 1];
+		shownScores = new int[caches.length];
+		for(int i = 0; i < caches.length; i++){
+			caches[i] = new BitmapFontCache(font, font.usesIntegerPositions());
+			caches[i].setColor(Color.WHITE);
+			shownScores[i] = -1;
+		}
+	}
+
+	/**
+	 * Draws the score of a player on it's half of the screen.
+	 * 
+	 * @param batch The batch to draw to. Must be between calls to begin and end.
+	 * @param player The id of the player, either {@link PlayerComponent#HUMAN_PLAYER} or
+	 * {@link PlayerComponent#COMPUTER_PLAYER}. Other players are not drawn.
+	 * @param score The score to draw. Must not be negative.
+	 */
+	public void draw(Batch batch, int player, int score){
+		if(player < 0 || player >= caches.length || score < 0)
+			return;
+
+		if(shownScores[player] != score)
+			layout(player, score);
+
+		caches[player].draw(batch);
+	}
+
+	/**
+	 * Lays out the glyphs of a score centered on the half of the screen of a player.
+	 */
+	private void layout(int player, int score){
+		String     text;
+		float      width, height, x, y;
+		TextBounds bounds;
+
+		if(score <= MAX_CACHED_SCORE){
+			text = SCORE_TEXTS[score];
+			width = widths[score];
+			height = heights[score];
+		}else{
+			text = Integer.toString(score);
+			bounds = font.getBounds(text);
+			width = bounds.width;
+			height = bounds.height;
+		}
+
+		y = (ProjectConstants.FB_HEIGHT / 2.0f) - (height / 2.0f) - TOP_MARGIN;
+		if(player == PlayerComponent.HUMAN_PLAYER)
+			x = -(ProjectConstants.FB_WIDTH / 4.0f) - (width / 2.0f);
+		else
+			x = (ProjectConstants.FB_WIDTH / 4.0f) - (width / 2.0f);
+
+		caches[player].setText(text, x, y);
+		shownScores[player] = score;
+	}
+}
@@ -102,7 +102,7 @@ public class ScrollingBackground implements Disposable, AssetsLoadedListener{
 	 * Creates a new effect using a default scaling and displacement.
 	 * 
 	 * @param texturePath The internal path of the texture to use.
-	 * @param loadAsync Whether to use {@link AsyncAssetLoader} or not.
+	 * @param loadAsync Whether to wait for {@link AsyncAssetLoader#loadAssets()} or to load the texture right away.
 	 */
 	public ScrollingBackground(String texturePath, boolean loadAsync){
 		this(texturePath, 2.0f, 0.0f, loadAsync);
@@ -124,7 +124,7 @@ public class ScrollingBackground implements Disposable, AssetsLoadedListener{
 	 * 
 	 * @param texturePath The internal path of the texture to use.
 	 * @param scaling The scaling to apply to the texture.
-	 * @param loadAsync Whether to use {@link AsyncAssetLoader} or not.
+	 * @param loadAsync Whether to wait for {@link AsyncAssetLoader#loadAssets()} or to load the texture right away.
 	 */
 	public ScrollingBackground(String texturePath, float scaling, boolean loadAsync){
 		this(texturePath, scaling, 0.0f, loadAsync);
@@ -136,17 +136,17 @@ public class ScrollingBackground implements Disposable, AssetsLoadedListener{
 	 * @param texturePath The internal path of the texture to use.
 	 * @param scaling The scaling to apply to the texture.
 	 * @param displacement The displacement to apply to the texture.
-	 * @param loadAsync Whether to use {@link AsyncAssetLoader} or not.
+	 * @param loadAsync Whether to wait for {@link AsyncAssetLoader#loadAssets()} or to load the texture right away.
 	 */
 	public ScrollingBackground(String texturePath, float scaling, float displacement, boolean loadAsync){
+		loader = AsyncAssetLoader.getInstance();
 		if(loadAsync){
-			// If an asynchronous load was requested then use the assets loader.
-			loader = AsyncAssetLoader.getInstance();
+			// If an asynchronous load was requested then wait for the assets loader.
 			loader.addAssetToLoad(texturePath, Texture.class);
 			loader.addListener(this);
 		}else{
-			// Else load the texture manually.
-			backgroundTexture = new Texture(Gdx.files.internal(texturePath));
+			// Else load the texture right away.
+			backgroundTexture = loader.loadTexture(texturePath);
 			initGraphics();
 		}
 
@@ -201,18 +201,17 @@ public class ScrollingBackground implements Disposable, AssetsLoadedListener{
 
 	@Override
 	public void dispose(){
-		// Dispose all graphic assets.
-		backgroundTexture.dispose();
+		// Dispose all graphic assets. The texture belongs to the loader.
+		loader.unloadAsset(texturePath, Texture.class);
 		if(shader != null)
 			shader.dispose();
 	}
 
 	@Override
 	public void onAssetsLoaded(){
-		// Get the graphics and initialize them. Then release the assets loader.
+		// Get the graphics and initialize them.
 		backgroundTexture = loader.getAsset(texturePath, Texture.class);
 		initGraphics();
-		AsyncAssetLoader.freeInstance();
 	}
 
 	/**
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.effects;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.Disposable;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.TransitionEffect;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceSizes;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.GpuMemoryTracker;
+
+/**
+ * Draws the {@link TransitionEffect} used to switch states. Solid rectangles are drawn with a single stretched white
+ * texel, so no screen sized texture is needed for them, and nothing is drawn while the effect is invisible.
+ * 
+ * Effects that need an image of the outgoing state get it copied from the screen by {@link #capture()}. The copy is
+ * kept only until {@link #finish()}, as it is as big as the screen.
+ * 
+ * @author Miguel Astor
+ */
+public class TransitionRenderer implements Disposable{
+	/**
+	 * Coverages below this are not visible in an 8 bit color buffer.
+	 */
+	private static final float MIN_COVERAGE = 1.0f / 255.0f;
+
+	/**
+	 * A single white texel.
+	 */
+	private final Texture          texel;
+
+	/**
+	 * Used to account for the snapshots. Can be null.
+	 */
+	private final GpuMemoryTracker gpuMemory;
+
+	/**
+	 * How many times the effects can draw every pixel of the screen per frame.
+	 */
+	private final float            fillBudget;
+
+	/**
+	 * The effect to draw.
+	 */
+	private TransitionEffect       effect;
+
+	/**
+	 * The image of the outgoing state. Null when not captured.
+	 */
+	private Texture                snapshot;
+	private TextureRegion          snapshotRegion;
+
+	/**
+	 * Creates the renderer.
+	 * 
+	 * @param effect The effect to draw.
+	 * @param fillBudget How many times the effects can draw every pixel of the screen per frame.
+	 * @param gpuMemory Used to account for the textures of the renderer. Can be null.
+	 * @throws IllegalArgumentException If the effect is null or goes over the fill budget.
+	 */
+	public TransitionRenderer(TransitionEffect effect, float fillBudget, GpuMemoryTracker gpuMemory) throws IllegalArgumentException{
+		Pixmap pixmap = new Pixmap(1, 1, Format.RGBA8888);
+
+		this.fillBudget = fillBudget;
+		this.gpuMemory = gpuMemory;
+		setEffect(effect);
+
+		pixmap.setColor(Color.WHITE);
+		pixmap.fill();
+		texel = new Texture(pixmap);
+		pixmap.dispose();
+
+		if(gpuMemory != null)
+			gpuMemory.track(texel, "Texture transition texel 1x1 RGBA8888", ResourceSizes.of(texel));
+
+		snapshot = null;
+		snapshotRegion = null;
+	}
+
+	/**
+	 * Changes the effect. Must not be called while a transition is in progress.
+	 * 
+	 * @param effect The effect to draw.
+	 * @throws IllegalArgumentException If the effect is null or goes over the fill budget.
+	 */
+	public void setEffect(TransitionEffect effect) throws IllegalArgumentException{
+		if(effect == null)
+			throw new IllegalArgumentException("Effect is null.");
+		if(effect.getFillCost() > fillBudget)
+			throw new IllegalArgumentException("The effect draws " + effect.getFillCost() + " screens per frame, the budget is " + fillBudget + ".");
+
+		this.effect = effect;
+	}
+
+	public TransitionEffect getEffect(){
+		return effect;
+	}
+
+	/**
+	 * Copies the screen as it is now if the effect needs it. Call it right after the outgoing state renders it's last
+	 * frame.
+	 */
+	public void capture(){
+		int width  = Gdx.graphics.getWidth();
+		int height = Gdx.graphics.getHeight();
+
+		if(!effect.needsSnapshot() || width <= 0 || height <= 0)
+			return;
+
+		if(snapshot == null){
+			snapshot = new Texture(width, height, Format.RGB888);
+			if(gpuMemory != null)
+				gpuMemory.track(snapshot, "Texture transition snapshot " + width + "x" + height + " RGB888", ResourceSizes.of(snapshot));
+
+			// The rows of the screen go from the bottom to the top.
+			snapshotRegion = new TextureRegion(snapshot);
+			snapshotRegion.flip(false, true);
+		}
+
+		snapshot.bind();
+		Gdx.gl.glCopyTexSubImage2D(GL20.GL_TEXTURE_2D, 0, 0, 0, 0, 0, width, height);
+	}
+
+	/**
+	 * Draws the effect, unless it is invisible. Must be called between {@link SpriteBatch#begin()} and
+	 * {@link SpriteBatch#end()} with a pixel perfect projection centered on the screen.
+	 * 
+	 * @param batch The batch to draw with.
+	 * @param coverage How much of the state being shown is covered, from 0 to 1.
+	 */
+	public void draw(SpriteBatch batch, float coverage){
+		if(coverage < MIN_COVERAGE)
+			return;
+
+		effect.draw(batch, texel, snapshotRegion, Math.min(coverage, 1.0f), Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+	}
+
+	/**
+	 * Frees the snapshot once the transition ends.
+	 */
+	public void finish(){
+		if(snapshot == null)
+			return;
+
+		if(gpuMemory != null)
+			gpuMemory.untrack(snapshot);
+		snapshot.dispose();
+		snapshot = null;
+		snapshotRegion = null;
+	}
+
+	@Override
+	public void dispose(){
+		finish();
+		texel.dispose();
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.effects;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.TransitionEffect;
+
+/**
+ * Covers the screen with black from the left to the right, and uncovers it from the right to the left. Only the
+ * covered part is drawn.
+ * 
+ * @author Miguel Astor
+ */
+public class WipeTransition implements TransitionEffect{
+	private final float duration;
+
+	/**
+	 * @param duration How many seconds it takes to cover and to uncover the screen.
+	 */
+	public WipeTransition(float duration){
+		this.duration = duration;
+	}
+
+	@Override
+	public float getOutDuration(){
+		return duration;
+	}
+
+	@Override
+	public float getInDuration(){
+		return duration;
+	}
+
+	@Override
+	public boolean needsSnapshot(){
+		return false;
+	}
+
+	@Override
+	public float getFillCost(){
+		return 1.0f;
+	}
+
+	@Override
+	public void draw(SpriteBatch batch, Texture texel, TextureRegion snapshot, float coverage, float width, float height){
+		FadeTransition.fill(batch, texel, 1.0f, -(width / 2), -(height / 2), width * coverage, height);
+	}
+}
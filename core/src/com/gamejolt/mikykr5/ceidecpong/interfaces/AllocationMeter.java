@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.interfaces;
+
+/**
+ * Measures the memory allocated by the calling thread. Implemented by the platforms that can do it, such as the
+ * desktop through {@link java.lang.management.ThreadMXBean}.
+ * 
+ * @author Miguel Astor
+ */
+public interface AllocationMeter{
+	/**
+	 * @return The number of bytes allocated by the calling thread since it started. Only differences between two
+	 * calls are meaningful.
+	 */
+	public long getAllocatedBytes();
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.interfaces;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+/**
+ * An effect drawn over the screen while switching states. The effect first covers the outgoing state, then the
+ * states are switched and the effect uncovers the incoming one.
+ * 
+ * @author Miguel Astor
+ */
+public interface TransitionEffect{
+	/**
+	 * @return How many seconds it takes to cover the outgoing state.
+	 */
+	public float getOutDuration();
+
+	/**
+	 * @return How many seconds it takes to uncover the incoming state.
+	 */
+	public float getInDuration();
+
+	/**
+	 * @return True if the effect needs an image of the outgoing state, captured right before the states switch.
+	 */
+	public boolean needsSnapshot();
+
+	/**
+	 * @return How many times the effect draws every pixel of the screen per frame at most.
+	 */
+	public float getFillCost();
+
+	/**
+	 * Draws the effect. Called between {@link SpriteBatch#begin()} and {@link SpriteBatch#end()} with a pixel perfect
+	 * projection centered on the screen. Must leave the color of the batch white.
+	 * 
+	 * @param batch The batch to draw with.
+	 * @param texel A single white texel, to draw solid rectangles with.
+	 * @param snapshot The image of the outgoing state, or null if the effect doesn't need it or it was not captured yet.
+	 * @param coverage How much of the state being shown is covered, from 0 to 1.
+	 * @param width The width of the screen.
+	 * @param height The height of the screen.
+	 */
+	public void draw(SpriteBatch batch, Texture texel, TextureRegion snapshot, float coverage, float width, float height);
+}
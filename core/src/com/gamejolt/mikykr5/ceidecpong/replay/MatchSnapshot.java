@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.utils.Array;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.ScoreComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage.message_type_t;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.Mailbox;
+
+/**
+ * The complete simulation state of a match at the start of a tick: the position, velocity and score of every
+ * entity with a position, the state of the {@link RandomNumberSystem} and the messages waiting in the
+ * {@link InterSystemMessagingQueue}. Restoring a snapshot into an engine holding the same entities and then
+ * feeding it the same input produces the same match from that tick on.
+ * 
+ * Entities are matched by their order in the engine, so both engines must have been populated by the same
+ * entity initializer. The payload of messages is only kept if it is a primitive or a string.
+ * 
+ * Snapshots can be reused, capturing a new state only allocates if there are more entities or messages than
+ * ever before.
+ * 
+ * @author Miguel Astor
+ */
+public class MatchSnapshot{
+	// Entity flags.
+	private static final int     HAS_VELOCITY = 1;
+	private static final int     HAS_SCORE    = 2;
+
+	/**
+	 * The encoding of the strings stored in snapshots.
+	 */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The tick this snapshot was taken at.
+	 */
+	public long                  tick;
+
+	// State of the random number generator.
+	private long                 randomState0;
+	private long                 randomState1;
+	private long                 randomDraws;
+
+	// State of the entities.
+	private int                  entityCount;
+	private int[]                flags;
+	private float[]              xs;
+	private float[]              ys;
+	private float[]              vxs;
+	private float[]              vys;
+	private int[]                scores;
+
+	/**
+	 * Copies of the pending messages. Only the first {@link MatchSnapshot#messageCount} are in use.
+	 */
+	private final Array<InterSystemMessage> messages;
+	private int                  messageCount;
+
+	/**
+	 * Auxiliary array used to read the contents of the mailboxes.
+	 */
+	private final Array<InterSystemMessage> drained;
+
+	/**
+	 * Creates an empty snapshot.
+	 */
+	public MatchSnapshot(){
+		tick = 0L;
+		entityCount = 0;
+		resize(8);
+		messages = new Array<InterSystemMessage>(true, 8, InterSystemMessage.class);
+		messageCount = 0;
+		drained = new Array<InterSystemMessage>(true, 8, InterSystemMessage.class);
+	}
+
+	/**
+	 * Saves the state of a match.
+	 * 
+	 * @param engine The engine of the match.
+	 * @param tick The number of ticks run so far.
+	 * @throws IllegalStateException If the engine has no {@link RandomNumberSystem} or {@link InterSystemMessagingQueue}.
+	 */
+	@SuppressWarnings("unchecked")
+	public void capture(Engine engine, long tick) throws IllegalStateException{
+		ImmutableArray<Entity>    entities = engine.getEntitiesFor(Family.getFor(PositionComponent.class));
+		RandomNumberSystem        random   = RandomNumberSystem.getFor(engine);
+		InterSystemMessagingQueue queue    = InterSystemMessagingQueue.getFor(engine);
+		Entity                    entity;
+		PositionComponent         position;
+		VelocityComponent         velocity;
+		ScoreComponent            score;
+		Mailbox                   mailbox;
+
+		this.tick = tick;
+		randomState0 = random.getState0();
+		randomState1 = random.getState1();
+		randomDraws = random.getDraws();
+
+		if(entities.size() > xs.length)
+			resize(entities.size());
+
+		entityCount = entities.size();
+		for(int i = 0; i < entityCount; i++){
+			entity = entities.get(i);
+			position = Mappers.positionMapper.get(entity);
+			velocity = Mappers.velocityMapper.get(entity);
+			score = Mappers.scoreMapper.get(entity);
+
+			flags[i] = (velocity != null ? HAS_VELOCITY : 0) | (score != null ? HAS_SCORE : 0);
+			xs[i] = position.x;
+			ys[i] = position.y;
+			vxs[i] = velocity != null ? velocity.vx : 0.0f;
+			vys[i] = velocity != null ? velocity.vy : 0.0f;
+			scores[i] = score != null ? score.score : 0;
+		}
+
+		// Copy the pending messages, putting them back in their mailboxes in the same order.
+		messageCount = 0;
+		for(int i = 0; i < queue.getMailboxCount(); i++){
+			mailbox = queue.getMailbox(i);
+			mailbox.drain(drained);
+
+			for(int j = 0; j < drained.size; j++){
+				copyMessage(drained.items[j], nextMessage());
+				mailbox.push(drained.items[j]);
+			}
+			drained.clear();
+		}
+	}
+
+	/**
+	 * Replaces the state of a match with the one saved in this snapshot. The previous position of every entity is
+	 * set to the current one.
+	 * 
+	 * @param engine The engine of the match.
+	 * @throws IllegalStateException If the engine has no {@link RandomNumberSystem} or {@link InterSystemMessagingQueue},
+	 * or if it does not hold the same entities as the snapshot.
+	 */
+	@SuppressWarnings("unchecked")
+	public void restore(Engine engine) throws IllegalStateException{
+		ImmutableArray<Entity>    entities = engine.getEntitiesFor(Family.getFor(PositionComponent.class));
+		RandomNumberSystem        random   = RandomNumberSystem.getFor(engine);
+		InterSystemMessagingQueue queue    = InterSystemMessagingQueue.getFor(engine);
+		Entity                    entity;
+		VelocityComponent         velocity;
+		ScoreComponent            score;
+		InterSystemMessage        message;
+
+		if(entities.size() != entityCount)
+			throw new IllegalStateException("The snapshot has " + Integer.toString(entityCount) + " entities but the engine has " + Integer.toString(entities.size()));
+
+		for(int i = 0; i < entityCount; i++){
+			entity = entities.get(i);
+			velocity = Mappers.velocityMapper.get(entity);
+			score = Mappers.scoreMapper.get(entity);
+
+			if((velocity != null) != ((flags[i] & HAS_VELOCITY) != 0) || (score != null) != ((flags[i] & HAS_SCORE) != 0))
+				throw new IllegalStateException("Entity " + Integer.toString(i) + " does not match the snapshot.");
+
+			Mappers.positionMapper.get(entity).teleport(xs[i], ys[i]);
+			if(velocity != null)
+				velocity.setXY(vxs[i], vys[i]);
+			if(score != null)
+				score.score = scores[i];
+		}
+
+		random.setState(randomState0, randomState1, randomDraws);
+
+		queue.clear();
+		for(int i = 0; i < messageCount; i++){
+			message = queue.obtainMessage(messages.items[i].target, messages.items[i].type);
+			copyMessage(messages.items[i], message);
+			queue.pushMessage(message);
+		}
+	}
+
+	/**
+	 * Checks if two snapshots hold the same positions, velocities and random number generator state. Scores and
+	 * messages are ignored, as the in game state processes them once per frame instead of once per tick.
+	 * 
+	 * @param other The snapshot to compare with.
+	 * @return True if the simulated motion of both snapshots is the same.
+	 */
+	public boolean sameMotion(MatchSnapshot other){
+		if(other.entityCount != entityCount || other.randomState0 != randomState0 || other.randomState1 != randomState1)
+			return false;
+
+		for(int i = 0; i < entityCount; i++){
+			if(Float.floatToIntBits(xs[i]) != Float.floatToIntBits(other.xs[i]) || Float.floatToIntBits(ys[i]) != Float.floatToIntBits(other.ys[i]))
+				return false;
+
+			if(Float.floatToIntBits(vxs[i]) != Float.floatToIntBits(other.vxs[i]) || Float.floatToIntBits(vys[i]) != Float.floatToIntBits(other.vys[i]))
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Serializes this snapshot. The tick is not written, as it is stored in the header of the keyframe record.
+	 * 
+	 * @param out The buffer to write to.
+	 * @throws java.nio.BufferOverflowException If the buffer is too small.
+	 */
+	public void write(ByteBuffer out){
+		InterSystemMessage message;
+
+		out.putLong(randomState0);
+		out.putLong(randomState1);
+		VarIntCodec.writeUnsigned(out, randomDraws);
+
+		VarIntCodec.writeUnsigned(out, entityCount);
+		for(int i = 0; i < entityCount; i++){
+			out.put((byte)flags[i]);
+			out.putFloat(xs[i]);
+			out.putFloat(ys[i]);
+
+			if((flags[i] & HAS_VELOCITY) != 0){
+				out.putFloat(vxs[i]);
+				out.putFloat(vys[i]);
+			}
+
+			if((flags[i] & HAS_SCORE) != 0)
+				VarIntCodec.writeSigned(out, scores[i]);
+		}
+
+		VarIntCodec.writeUnsigned(out, messageCount);
+		for(int i = 0; i < messageCount; i++){
+			message = messages.items[i];
+
+			writeString(out, message.target);
+			out.put((byte)message.type.ordinal());
+			VarIntCodec.writeSigned(out, message.address);
+			VarIntCodec.writeSigned(out, message.intData);
+			out.putFloat(message.floatData);
+			VarIntCodec.writeSigned(out, message.longData);
+
+			if(message.objectData instanceof String){
+				out.put((byte)1);
+				writeString(out, (String)message.objectData);
+			}else{
+				out.put((byte)0);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the contents of this snapshot with a serialized one.
+	 * 
+	 * @param in The buffer to read from.
+	 * @param tick The tick the snapshot was taken at.
+	 * @throws IllegalArgumentException If the data is malformed.
+	 * @throws java.nio.BufferUnderflowException If the data is truncated.
+	 */
+	public void read(ByteBuffer in, long tick) throws IllegalArgumentException{
+		InterSystemMessage message;
+		message_type_t[]   types = message_type_t.values();
+		int                count, type;
+
+		this.tick = tick;
+		randomState0 = in.getLong();
+		randomState1 = in.getLong();
+		randomDraws = VarIntCodec.readUnsigned(in);
+
+		count = VarIntCodec.readLength(in);
+		if(count > xs.length)
+			resize(count);
+
+		entityCount = count;
+		for(int i = 0; i < entityCount; i++){
+			flags[i] = in.get();
+			xs[i] = in.getFloat();
+			ys[i] = in.getFloat();
+
+			if((flags[i] & HAS_VELOCITY) != 0){
+				vxs[i] = in.getFloat();
+				vys[i] = in.getFloat();
+			}else{
+				vxs[i] = vys[i] = 0.0f;
+			}
+
+			scores[i] = (flags[i] & HAS_SCORE) != 0 ? (int)VarIntCodec.readSigned(in) : 0;
+		}
+
+		count = VarIntCodec.readLength(in);
+		messageCount = 0;
+		for(int i = 0; i < count; i++){
+			message = nextMessage();
+
+			message.target = readString(in).intern();
+			type = in.get();
+			if(type < 0 || type >= types.length)
+				throw new IllegalArgumentException("Unknown message type " + Integer.toString(type));
+			message.type = types[type];
+			message.address = (int)VarIntCodec.readSigned(in);
+			message.intData = (int)VarIntCodec.readSigned(in);
+			message.floatData = in.getFloat();
+			message.longData = VarIntCodec.readSigned(in);
+			message.objectData = in.get() != 0 ? readString(in) : null;
+		}
+	}
+
+	/**
+	 * @return How many entities are stored in this snapshot.
+	 */
+	public int getEntityCount(){
+		return entityCount;
+	}
+
+	/**
+	 * @param index The index of an entity in [0, {@link #getEntityCount()}).
+	 * @return The score of the entity, or 0 if it has no score.
+	 */
+	public int getScore(int index){
+		return scores[index];
+	}
+
+	/**
+	 * @param index The index of an entity in [0, {@link #getEntityCount()}).
+	 * @return True if the entity has a score.
+	 */
+	public boolean hasScore(int index){
+		return (flags[index] & HAS_SCORE) != 0;
+	}
+
+	/**
+	 * @return How many messages were pending.
+	 */
+	public int getMessageCount(){
+		return messageCount;
+	}
+
+	/**
+	 * Takes the next unused message copy, creating it if needed.
+	 */
+	private InterSystemMessage nextMessage(){
+		if(messageCount == messages.size)
+			messages.add(new InterSystemMessage());
+
+		return messages.items[messageCount++];
+	}
+
+	/**
+	 * Copies all fields of a message, keeping the payload object only if it is a string.
+	 */
+	private static void copyMessage(InterSystemMessage from, InterSystemMessage to){
+		to.target = from.target;
+		to.type = from.type;
+		to.address = from.address;
+		to.intData = from.intData;
+		to.floatData = from.floatData;
+		to.longData = from.longData;
+		to.objectData = from.objectData instanceof String ? from.objectData : null;
+	}
+
+	/**
+	 * Grows the entity arrays.
+	 */
+	private void resize(int capacity){
+		int[]   newFlags  = new int[capacity];
+		float[] newXs     = new float[capacity];
+		float[] newYs     = new float[capacity];
+		float[] newVxs    = new float[capacity];
+		float[] newVys    = new float[capacity];
+		int[]   newScores = new int[capacity];
+
+		if(flags != null){
+			System.arraycopy(flags, 0, newFlags, 0, entityCount);
+			System.arraycopy(xs, 0, newXs, 0, entityCount);
+			System.arraycopy(ys, 0, newYs, 0, entityCount);
+			System.arraycopy(vxs, 0, newVxs, 0, entityCount);
+			System.arraycopy(vys, 0, newVys, 0, entityCount);
+			System.arraycopy(scores, 0, newScores, 0, entityCount);
+		}
+
+		flags = newFlags;
+		xs = newXs;
+		ys = newYs;
+		vxs = newVxs;
+		vys = newVys;
+		scores = newScores;
+	}
+
+	/**
+	 * Writes a length prefixed UTF-8 string.
+	 */
+	private static void writeString(ByteBuffer out, String string){
+		byte[] bytes = string.getBytes(UTF_8);
+
+		VarIntCodec.writeUnsigned(out, bytes.length);
+		out.put(bytes);
+	}
+
+	/**
+	 * Reads a length prefixed UTF-8 string.
+	 */
+	private static String readString(ByteBuffer in){
+		byte[] bytes = new byte[VarIntCodec.readLength(in)];
+
+		in.get(bytes);
+
+		return new String(bytes, UTF_8);
+	}
+}
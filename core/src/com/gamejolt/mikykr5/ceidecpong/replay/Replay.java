@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings;
+
+/**
+ * A replay held in a {@link ByteBuffer}, either loaded from a file or mapped from a {@link ReplayArchive}, together
+ * with a table of it's keyframes. Only the header is decoded up front, keyframes are decoded when requested and
+ * the input is read with a {@link ReplayCursor}, so opening a replay and jumping to any tick costs the same no matter
+ * how long the replay is. Use a {@link ReplayPlayer} to watch it.
+ * 
+ * Replays whose recording was interrupted before the end record was written can still be read, all complete
+ * records are kept and {@link #isComplete()} returns false.
+ * 
+ * @author Miguel Astor
+ */
+public class Replay{
+	/**
+	 * The contents of the replay. Position 0 is the start of the replay.
+	 */
+	private final ByteBuffer    data;
+
+	/**
+	 * The parameters of the recorded match.
+	 */
+	private final MatchSettings settings;
+
+	/**
+	 * The number of ticks between keyframes.
+	 */
+	private final int           keyframeInterval;
+
+	/**
+	 * The keyframe table, see {@link ReplayFormat#KEYFRAME_ENTRY_SIZE}.
+	 */
+	private final ByteBuffer    keyframes;
+
+	/**
+	 * The number of rows of {@link Replay#keyframes}.
+	 */
+	private final int           keyframeCount;
+
+	/**
+	 * The tick after the last one recorded.
+	 */
+	private final long          totalTicks;
+
+	/**
+	 * Whether the end record was found.
+	 */
+	private final boolean       complete;
+
+	/**
+	 * Reads a replay, indexing it's keyframes.
+	 * 
+	 * @param data The contents of a replay file, from it's current position to it's limit. The position is advanced
+	 * past the last complete record.
+	 * @throws IllegalArgumentException If the data is not a replay, has an unsupported version or is malformed.
+	 */
+	public Replay(ByteBuffer data) throws IllegalArgumentException{
+		ReplayCursor cursor;
+		LongArray    ticks  = new LongArray(true, 64);
+		IntArray     values = new IntArray(true, 64 * 3);
+		int          end;
+		long         lastTick;
+
+		this.data = data.slice();
+		settings = new MatchSettings();
+		keyframeInterval = readHeader(this.data, settings);
+
+		// Find all keyframes.
+		cursor = new ReplayCursor(this.data);
+		cursor.reset(this.data.position(), 0L, 0);
+		end = cursor.getPosition();
+		lastTick = 0L;
+
+		while(cursor.next()){
+			if(cursor.getKind() == ReplayFormat.RECORD_KEYFRAME){
+				ticks.add(cursor.getTick());
+				values.add(cursor.getKeyframeOffset());
+				values.add(cursor.getKeyframeLength());
+				values.add(cursor.getInputBits());
+			}
+
+			// Without the end record the last tick known to have run is the one that received the last input.
+			lastTick = cursor.getTick() + (cursor.getKind() == ReplayFormat.RECORD_INPUT ? 1 : 0);
+			end = cursor.getPosition();
+		}
+
+		if(ticks.size == 0)
+			throw new IllegalArgumentException("The replay has no keyframes.");
+
+		keyframeCount = ticks.size;
+		keyframes = ByteBuffer.allocate(keyframeCount * ReplayFormat.KEYFRAME_ENTRY_SIZE);
+		for(int i = 0; i < keyframeCount; i++){
+			keyframes.putLong(ticks.get(i));
+			keyframes.putInt(values.get(3 * i));
+			keyframes.putInt(values.get((3 * i) + 1));
+			keyframes.putInt(values.get((3 * i) + 2));
+		}
+		keyframes.flip();
+
+		complete = !cursor.isTruncated();
+		totalTicks = lastTick;
+		this.data.limit(end);
+		data.position(data.position() + end);
+	}
+
+	/**
+	 * Wraps a replay whose keyframes have already been indexed.
+	 * 
+	 * @param data The contents of the replay, from position 0 to the limit.
+	 * @param keyframes The keyframe table of the replay, from position 0 to the limit.
+	 * @param totalTicks The tick after the last one recorded.
+	 * @param complete Whether the replay has an end record.
+	 * @throws IllegalArgumentException If the header is not valid or the table is empty.
+	 */
+	Replay(ByteBuffer data, ByteBuffer keyframes, long totalTicks, boolean complete) throws IllegalArgumentException{
+		this.data = data;
+		this.data.position(0);
+		this.keyframes = keyframes;
+		this.totalTicks = totalTicks;
+		this.complete = complete;
+		settings = new MatchSettings();
+		keyframeInterval = readHeader(this.data, settings);
+		keyframeCount = keyframes.limit() / ReplayFormat.KEYFRAME_ENTRY_SIZE;
+
+		if(keyframeCount == 0)
+			throw new IllegalArgumentException("The replay has no keyframes.");
+	}
+
+	/**
+	 * Loads a replay file.
+	 * 
+	 * @param file The file to load.
+	 * @return The replay.
+	 * @throws IOException If the file can't be read.
+	 * @throws IllegalArgumentException If the file is not a valid replay.
+	 */
+	public static Replay load(File file) throws IOException, IllegalArgumentException{
+		FileInputStream stream = new FileInputStream(file);
+		FileChannel     channel;
+		ByteBuffer      data;
+
+		try{
+			channel = stream.getChannel();
+			if(channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Replay too large: " + file.getPath());
+
+			data = ByteBuffer.allocate((int)channel.size());
+			while(data.hasRemaining() && channel.read(data) >= 0);
+			data.flip();
+		}finally{
+			stream.close();
+		}
+
+		return new Replay(data);
+	}
+
+	/**
+	 * @return The parameters of the recorded match. Must not be modified.
+	 */
+	public MatchSettings getSettings(){
+		return settings;
+	}
+
+	/**
+	 * @return The number of ticks between keyframes.
+	 */
+	public int getKeyframeInterval(){
+		return keyframeInterval;
+	}
+
+	/**
+	 * @return The tick of the first keyframe, where playback starts.
+	 */
+	public long getFirstTick(){
+		return getKeyframeTick(0);
+	}
+
+	/**
+	 * @return The tick after the last one recorded, where playback ends.
+	 */
+	public long getTotalTicks(){
+		return totalTicks;
+	}
+
+	/**
+	 * @return True if the recording finished normally.
+	 */
+	public boolean isComplete(){
+		return complete;
+	}
+
+	/**
+	 * @return The size of the replay in bytes.
+	 */
+	public int getLength(){
+		return data.limit();
+	}
+
+	/**
+	 * @return A read only view of the contents of the replay, from position 0 to the limit.
+	 */
+	public ByteBuffer getData(){
+		ByteBuffer view = data.asReadOnlyBuffer();
+
+		view.position(0);
+
+		return view;
+	}
+
+	/**
+	 * @return A read only view of the keyframe table, see {@link ReplayFormat#KEYFRAME_ENTRY_SIZE}.
+	 */
+	public ByteBuffer getKeyframeTable(){
+		ByteBuffer view = keyframes.asReadOnlyBuffer();
+
+		view.position(0);
+
+		return view;
+	}
+
+	/**
+	 * @return How many keyframes the replay has. Always at least one.
+	 */
+	public int getKeyframeCount(){
+		return keyframeCount;
+	}
+
+	/**
+	 * @param index A keyframe index in [0, {@link #getKeyframeCount()}).
+	 * @return The tick the keyframe was taken at.
+	 */
+	public long getKeyframeTick(int index){
+		return keyframes.getLong((index * ReplayFormat.KEYFRAME_ENTRY_SIZE) + ReplayFormat.KEYFRAME_TICK);
+	}
+
+	/**
+	 * Finds the keyframe to start from to reach a tick. Keyframes are taken at regular intervals, so the index is
+	 * computed directly and only corrected if the interval was broken, like it is by the last keyframe.
+	 * 
+	 * @param tick A tick.
+	 * @return The index of the last keyframe taken at or before the given tick, or 0 if the tick is before the first one.
+	 */
+	public int findKeyframe(long tick){
+		long guess = (tick - getFirstTick()) / keyframeInterval;
+		int  index = (int)Math.max(0L, Math.min(guess, keyframeCount - 1));
+
+		while(index > 0 && getKeyframeTick(index) > tick)
+			index--;
+
+		while(index + 1 < keyframeCount && getKeyframeTick(index + 1) <= tick)
+			index++;
+
+		return index;
+	}
+
+	/**
+	 * Decodes a keyframe.
+	 * 
+	 * @param index A keyframe index in [0, {@link #getKeyframeCount()}).
+	 * @param out The snapshot to decode the keyframe to.
+	 * @throws IllegalArgumentException If the keyframe is malformed.
+	 */
+	public void readKeyframe(int index, MatchSnapshot out) throws IllegalArgumentException{
+		int        row    = index * ReplayFormat.KEYFRAME_ENTRY_SIZE;
+		int        offset = keyframes.getInt(row + ReplayFormat.KEYFRAME_OFFSET);
+		ByteBuffer view   = data.duplicate();
+
+		view.limit(offset + keyframes.getInt(row + ReplayFormat.KEYFRAME_LENGTH));
+		view.position(offset);
+
+		try{
+			out.read(view, getKeyframeTick(index));
+		}catch(BufferUnderflowException e){
+			throw new IllegalArgumentException("Truncated keyframe " + Integer.toString(index));
+		}
+	}
+
+	/**
+	 * Places a cursor on the first record after a keyframe.
+	 * 
+	 * @param index A keyframe index in [0, {@link #getKeyframeCount()}).
+	 * @param cursor A cursor created for this replay with {@link #newCursor()}.
+	 */
+	public void seekCursor(int index, ReplayCursor cursor){
+		int row = index * ReplayFormat.KEYFRAME_ENTRY_SIZE;
+
+		cursor.reset(keyframes.getInt(row + ReplayFormat.KEYFRAME_OFFSET) + keyframes.getInt(row + ReplayFormat.KEYFRAME_LENGTH), getKeyframeTick(index), keyframes.getInt(row + ReplayFormat.KEYFRAME_INPUT_BITS));
+	}
+
+	/**
+	 * @return A new cursor over this replay. See {@link #seekCursor(int, ReplayCursor)}.
+	 */
+	public ReplayCursor newCursor(){
+		return new ReplayCursor(data);
+	}
+
+	/**
+	 * Reads the header of a replay.
+	 * 
+	 * @param data The replay, positioned at the start. Left positioned at the first record.
+	 * @param settings The settings to fill.
+	 * @return The keyframe interval.
+	 * @throws IllegalArgumentException If the header is not valid.
+	 */
+	private static int readHeader(ByteBuffer data, MatchSettings settings) throws IllegalArgumentException{
+		int keyframeInterval;
+
+		try{
+			if(data.getInt() != ReplayFormat.MAGIC)
+				throw new IllegalArgumentException("Not a replay.");
+
+			if(data.get() != ReplayFormat.VERSION)
+				throw new IllegalArgumentException("Unsupported replay version.");
+
+			keyframeInterval = VarIntCodec.readLength(data);
+			settings.seed = data.getLong();
+			settings.step = data.getFloat();
+			settings.computerSpeed = data.getFloat();
+			settings.ballAcceleration = data.getFloat();
+			settings.targetScore = VarIntCodec.readLength(data);
+			settings.maxTime = data.getFloat();
+		}catch(BufferUnderflowException e){
+			throw new IllegalArgumentException("Truncated replay header.");
+		}
+
+		if(keyframeInterval < 1)
+			throw new IllegalArgumentException("Invalid keyframe interval.");
+
+		return keyframeInterval;
+	}
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+
+/**
+ * A read only view of many replays concatenated in a single file. The file is memory mapped and has an index at
+ * the end, so listing the matches, filtering them by score and opening any replay at any tick take the same time
+ * no matter how large the archive is, and only the pages actually touched are read from disk.
+ * 
+ * Layout of the file, all numbers big endian:
+ * 
+ * <ul>
+ * <li>A header with {@link #MAGIC} and {@link #VERSION} as ints.</li>
+ * <li>The replays, each one preceded by it's match id (long) and length (int).</li>
+ * <li>The index: one {@link #ENTRY_SIZE} byte entry per replay, followed by the keyframe tables of all the replays
+ * (see {@link ReplayFormat#KEYFRAME_ENTRY_SIZE}).</li>
+ * <li>A trailer with the offset of the index (long), the number of entries (int), the number of keyframe rows (int)
+ * and {@link #INDEX_MAGIC} (int).</li>
+ * </ul>
+ * 
+ * Archives are written with a {@link ReplayArchiveWriter}.
+ * 
+ * @author Miguel Astor
+ */
+public class ReplayArchive implements Disposable{
+	/**
+	 * The first four bytes of every archive, "CPRA".
+	 */
+	public static final int  MAGIC = 0x43505241;
+
+	/**
+	 * The last four bytes of an archive with a valid index, "CPRI".
+	 */
+	public static final int  INDEX_MAGIC = 0x43505249;
+
+	/**
+	 * The version of the format written by this code.
+	 */
+	public static final int  VERSION = 1;
+
+	/**
+	 * The size of the file header.
+	 */
+	public static final int  HEADER_SIZE = 8;
+
+	/**
+	 * The size of the match id and length stored before every replay.
+	 */
+	public static final int  REPLAY_PREFIX_SIZE = 12;
+
+	/**
+	 * The size of the trailer.
+	 */
+	public static final int  TRAILER_SIZE = 20;
+
+	/**
+	 * The size of an index entry.
+	 */
+	public static final int  ENTRY_SIZE = 64;
+
+	// Offsets of the fields of an index entry.
+	public static final int  ENTRY_MATCH_ID       = 0;
+	public static final int  ENTRY_SEED           = 8;
+	public static final int  ENTRY_OFFSET         = 16;
+	public static final int  ENTRY_LENGTH         = 24;
+	public static final int  ENTRY_FLAGS          = 28;
+	public static final int  ENTRY_FIRST_TICK     = 32;
+	public static final int  ENTRY_TOTAL_TICKS    = 40;
+	public static final int  ENTRY_SCORES         = 48;
+	public static final int  ENTRY_FIRST_KEYFRAME = 56;
+	public static final int  ENTRY_KEYFRAMES      = 60;
+
+	/**
+	 * Entry flag set if the replay has an end record.
+	 */
+	public static final int  FLAG_COMPLETE = 1;
+
+	/**
+	 * The number of scores stored per entry.
+	 */
+	public static final int  SCORES = 2;
+
+	/**
+	 * The nominal size of the mappings covering the replays. Each mapping extends past this size by the length of the
+	 * longest replay, so every replay fits entirely in one mapping.
+	 */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	/**
+	 * The open file.
+	 */
+	private final RandomAccessFile   file;
+
+	/**
+	 * The index entries.
+	 */
+	private final ByteBuffer         entries;
+
+	/**
+	 * The keyframe tables of all replays.
+	 */
+	private final ByteBuffer         keyframes;
+
+	/**
+	 * The number of replays.
+	 */
+	private final int                entryCount;
+
+	/**
+	 * The mappings covering the replays.
+	 */
+	private final MappedByteBuffer[] segments;
+
+	/**
+	 * Opens an archive.
+	 * 
+	 * @param path The archive file.
+	 * @throws IOException If the file can't be read.
+	 * @throws IllegalArgumentException If the file is not an archive or it's index is missing or damaged. Opening it with
+	 * a {@link ReplayArchiveWriter} rebuilds the index.
+	 */
+	public ReplayArchive(File path) throws IOException, IllegalArgumentException{
+		FileChannel channel;
+		ByteBuffer  trailer;
+		long        size, indexOffset, maxLength = 0L, start;
+		int         keyframeRows;
+
+		file = new RandomAccessFile(path, "r");
+
+		try{
+			channel = file.getChannel();
+			size = channel.size();
+			trailer = readTrailer(channel);
+			if(trailer == null)
+				throw new IllegalArgumentException("The archive " + path.getPath() + " has no valid index.");
+
+			indexOffset = trailer.getLong(0);
+			entryCount = trailer.getInt(8);
+			keyframeRows = trailer.getInt(12);
+
+			// Map the index.
+			MappedByteBuffer index = channel.map(MapMode.READ_ONLY, indexOffset, size - TRAILER_SIZE - indexOffset);
+			index.limit(entryCount * ENTRY_SIZE);
+			entries = index.slice();
+			index.limit(index.capacity());
+			index.position(entryCount * ENTRY_SIZE);
+			keyframes = index.slice();
+			keyframes.limit(keyframeRows * ReplayFormat.KEYFRAME_ENTRY_SIZE);
+
+			// Map the replays in segments that overlap by the length of the longest replay.
+			for(int i = 0; i < entryCount; i++)
+				maxLength = Math.max(maxLength, getLength(i));
+
+			segments = new MappedByteBuffer[(int)((Math.max(indexOffset - HEADER_SIZE, 1L) + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+			for(int i = 0; i < segments.length; i++){
+				start = HEADER_SIZE + (i * SEGMENT_SIZE);
+				segments[i] = channel.map(MapMode.READ_ONLY, start, Math.min(indexOffset - start, SEGMENT_SIZE + maxLength));
+			}
+		}catch(IOException e){
+			file.close();
+			throw e;
+		}catch(IllegalArgumentException e){
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads and validates the trailer of an archive.
+	 * 
+	 * @param channel The archive.
+	 * @return The trailer, or null if the file is not an archive or has no valid index.
+	 * @throws IOException If the file can't be read.
+	 */
+	static ByteBuffer readTrailer(FileChannel channel) throws IOException{
+		ByteBuffer header  = ByteBuffer.allocate(HEADER_SIZE);
+		ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+		long       size    = channel.size(), indexOffset;
+		int        entries, keyframeRows;
+
+		if(size < HEADER_SIZE + TRAILER_SIZE)
+			return null;
+
+		while(header.hasRemaining() && channel.read(header, header.position()) >= 0);
+		if(header.getInt(0) != MAGIC)
+			throw new IllegalArgumentException("Not a replay archive.");
+		if(header.getInt(4) != VERSION)
+			throw new IllegalArgumentException("Unsupported replay archive version.");
+
+		while(trailer.hasRemaining() && channel.read(trailer, size - TRAILER_SIZE + trailer.position()) >= 0);
+		indexOffset = trailer.getLong(0);
+		entries = trailer.getInt(8);
+		keyframeRows = trailer.getInt(12);
+
+		if(trailer.getInt(16) != INDEX_MAGIC || indexOffset < HEADER_SIZE || entries < 0 || keyframeRows < 0)
+			return null;
+
+		if(indexOffset + ((long)entries * ENTRY_SIZE) + ((long)keyframeRows * ReplayFormat.KEYFRAME_ENTRY_SIZE) + TRAILER_SIZE != size)
+			return null;
+
+		return trailer;
+	}
+
+	/**
+	 * @return The number of replays in the archive.
+	 */
+	public int getMatchCount(){
+		return entryCount;
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return The identifier given to the match when it was archived.
+	 */
+	public long getMatchId(int match){
+		return entries.getLong((match * ENTRY_SIZE) + ENTRY_MATCH_ID);
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return The seed of the match.
+	 */
+	public long getSeed(int match){
+		return entries.getLong((match * ENTRY_SIZE) + ENTRY_SEED);
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return The size of the replay in bytes.
+	 */
+	public int getLength(int match){
+		return entries.getInt((match * ENTRY_SIZE) + ENTRY_LENGTH);
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return True if the recording of the match finished normally.
+	 */
+	public boolean isComplete(int match){
+		return (entries.getInt((match * ENTRY_SIZE) + ENTRY_FLAGS) & FLAG_COMPLETE) != 0;
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return The tick where the replay starts.
+	 */
+	public long getFirstTick(int match){
+		return entries.getLong((match * ENTRY_SIZE) + ENTRY_FIRST_TICK);
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return The tick where the replay ends.
+	 */
+	public long getTotalTicks(int match){
+		return entries.getLong((match * ENTRY_SIZE) + ENTRY_TOTAL_TICKS);
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return The number of ticks recorded.
+	 */
+	public long getDuration(int match){
+		return getTotalTicks(match) - getFirstTick(match);
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @param slot Which score to fetch, in [0, {@link #SCORES}). Scores are stored in the order of the entities that have
+	 * one, which is the human player first and the computer player second.
+	 * @return The score at the end of the replay.
+	 */
+	public int getScore(int match, int slot){
+		return entries.getInt((match * ENTRY_SIZE) + ENTRY_SCORES + (4 * slot));
+	}
+
+	/**
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return The number of keyframes of the replay.
+	 */
+	public int getKeyframeCount(int match){
+		return entries.getInt((match * ENTRY_SIZE) + ENTRY_KEYFRAMES);
+	}
+
+	/**
+	 * Finds the matches whose final score for a player is in a range.
+	 * 
+	 * @param slot Which score to check, see {@link #getScore(int, int)}.
+	 * @param minScore The minimum score, inclusive.
+	 * @param maxScore The maximum score, inclusive.
+	 * @param out The array the indices of the matches are added to. It is not cleared.
+	 * @return How many matches were found.
+	 */
+	public int findByScore(int slot, int minScore, int maxScore, IntArray out){
+		int found = 0, score;
+
+		for(int i = 0; i < entryCount; i++){
+			score = getScore(i, slot);
+
+			if(score >= minScore && score <= maxScore){
+				out.add(i);
+				found++;
+			}
+		}
+
+		return found;
+	}
+
+	/**
+	 * Opens a replay without copying it. The returned replay reads straight from the mapped file.
+	 * 
+	 * @param match A replay index in [0, {@link #getMatchCount()}).
+	 * @return The replay.
+	 * @throws IllegalArgumentException If the replay is damaged.
+	 */
+	public Replay getReplay(int match) throws IllegalArgumentException{
+		int        entry   = match * ENTRY_SIZE;
+		long       offset  = entries.getLong(entry + ENTRY_OFFSET) - HEADER_SIZE;
+		int        segment = (int)(offset / SEGMENT_SIZE);
+		int        first   = entries.getInt(entry + ENTRY_FIRST_KEYFRAME);
+		ByteBuffer data    = segments[segment].duplicate();
+		ByteBuffer table   = keyframes.duplicate();
+
+		data.position((int)(offset - (segment * SEGMENT_SIZE)));
+		data.limit(data.position() + getLength(match));
+		table.position(first * ReplayFormat.KEYFRAME_ENTRY_SIZE);
+		table.limit((first + getKeyframeCount(match)) * ReplayFormat.KEYFRAME_ENTRY_SIZE);
+
+		return new Replay(data.slice(), table.slice(), getTotalTicks(match), isComplete(match));
+	}
+
+	@Override
+	public void dispose(){
+		try{
+			file.close();
+		}catch(IOException e){ }
+	}
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * Appends replays to a {@link ReplayArchive}. Replays are written right away, over the index of the archive, and the
+ * index is kept in memory and written back at the end of the file by {@link #flush()} and {@link #dispose()}.
+ * 
+ * If the program stops before the index is written the archive can't be opened for reading, but it is not lost:
+ * every replay is stored with it's match id and length, so opening the archive with a writer scans the replays and
+ * rebuilds the index, discarding a replay that was not completely written.
+ * 
+ * @author Miguel Astor
+ */
+public class ReplayArchiveWriter implements Disposable{
+	/**
+	 * The open file.
+	 */
+	private RandomAccessFile    file;
+
+	/**
+	 * The channel of {@link ReplayArchiveWriter#file}.
+	 */
+	private FileChannel         channel;
+
+	/**
+	 * The index entries.
+	 */
+	private ByteBuffer          entries;
+
+	/**
+	 * The keyframe tables of all replays.
+	 */
+	private ByteBuffer          keyframes;
+
+	/**
+	 * Where the next replay is written, which is also where the index starts.
+	 */
+	private long                writePosition;
+
+	/**
+	 * Whether the index in the file is out of date.
+	 */
+	private boolean             dirty;
+
+	/**
+	 * The error that happened while closing the archive, if any.
+	 */
+	private IOException         error;
+
+	/**
+	 * Auxiliary buffer used to write the headers.
+	 */
+	private final ByteBuffer    header;
+
+	/**
+	 * Auxiliary snapshot used to read the final scores.
+	 */
+	private final MatchSnapshot snapshot;
+
+	/**
+	 * Opens an archive for appending, creating it if it does not exist and rebuilding it's index if it is damaged.
+	 * 
+	 * @param path The archive file.
+	 * @throws IOException If the file can't be read or written.
+	 * @throws IllegalArgumentException If the file exists and is not an archive.
+	 */
+	public ReplayArchiveWriter(File path) throws IOException, IllegalArgumentException{
+		ByteBuffer trailer;
+		int        entryCount, keyframeRows;
+
+		header = ByteBuffer.allocate(Math.max(ReplayArchive.HEADER_SIZE, ReplayArchive.TRAILER_SIZE));
+		snapshot = new MatchSnapshot();
+		entries = ByteBuffer.allocate(64 * ReplayArchive.ENTRY_SIZE);
+		keyframes = ByteBuffer.allocate(1024 * ReplayFormat.KEYFRAME_ENTRY_SIZE);
+		error = null;
+
+		file = new RandomAccessFile(path, "rw");
+		channel = file.getChannel();
+
+		try{
+			if(channel.size() == 0L){
+				header.clear();
+				header.putInt(ReplayArchive.MAGIC);
+				header.putInt(ReplayArchive.VERSION);
+				header.flip();
+				write(header, 0L);
+				writePosition = ReplayArchive.HEADER_SIZE;
+				dirty = true;
+			}else if((trailer = ReplayArchive.readTrailer(channel)) != null){
+				writePosition = trailer.getLong(0);
+				entryCount = trailer.getInt(8);
+				keyframeRows = trailer.getInt(12);
+
+				entries = read(writePosition, entryCount * ReplayArchive.ENTRY_SIZE);
+				keyframes = read(writePosition + entries.limit(), keyframeRows * ReplayFormat.KEYFRAME_ENTRY_SIZE);
+				entries.position(entries.limit());
+				keyframes.position(keyframes.limit());
+				dirty = false;
+			}else{
+				recover();
+			}
+		}catch(IOException e){
+			file.close();
+			throw e;
+		}catch(IllegalArgumentException e){
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds a replay at the end of the archive.
+	 * 
+	 * @param matchId An identifier for the match, such as the time it was played.
+	 * @param replay The replay to add.
+	 * @throws IOException If the replay can't be written.
+	 * @throws IllegalStateException If the archive was closed.
+	 */
+	public void append(long matchId, Replay replay) throws IOException, IllegalStateException{
+		ByteBuffer data = replay.getData();
+
+		if(channel == null)
+			throw new IllegalStateException("The archive is closed.");
+
+		header.clear();
+		header.putLong(matchId);
+		header.putInt(data.remaining());
+		header.flip();
+
+		dirty = true;
+		write(header, writePosition);
+		write(data, writePosition + ReplayArchive.REPLAY_PREFIX_SIZE);
+		addEntry(matchId, writePosition + ReplayArchive.REPLAY_PREFIX_SIZE, replay);
+		writePosition += ReplayArchive.REPLAY_PREFIX_SIZE + replay.getLength();
+	}
+
+	/**
+	 * Adds a replay file at the end of the archive.
+	 * 
+	 * @param matchId An identifier for the match, such as the time it was played.
+	 * @param replay The replay file to add.
+	 * @throws IOException If the replay can't be read or written.
+	 * @throws IllegalArgumentException If the file is not a valid replay.
+	 * @throws IllegalStateException If the archive was closed.
+	 */
+	public void append(long matchId, File replay) throws IOException, IllegalArgumentException, IllegalStateException{
+		append(matchId, Replay.load(replay));
+	}
+
+	/**
+	 * Writes the index at the end of the archive, making the replays appended so far visible to readers.
+	 * 
+	 * @throws IOException If the index can't be written.
+	 * @throws IllegalStateException If the archive was closed.
+	 */
+	public void flush() throws IOException, IllegalStateException{
+		ByteBuffer view;
+		long       position = writePosition;
+
+		if(channel == null)
+			throw new IllegalStateException("The archive is closed.");
+
+		if(!dirty)
+			return;
+
+		view = entries.duplicate();
+		view.flip();
+		write(view, position);
+		position += view.limit();
+
+		view = keyframes.duplicate();
+		view.flip();
+		write(view, position);
+		position += view.limit();
+
+		header.clear();
+		header.putLong(writePosition);
+		header.putInt(getMatchCount());
+		header.putInt(keyframes.position() / ReplayFormat.KEYFRAME_ENTRY_SIZE);
+		header.putInt(ReplayArchive.INDEX_MAGIC);
+		header.flip();
+		write(header, position);
+		position += ReplayArchive.TRAILER_SIZE;
+
+		channel.truncate(position);
+		channel.force(false);
+		dirty = false;
+	}
+
+	/**
+	 * @return The number of replays in the archive.
+	 */
+	public int getMatchCount(){
+		return entries.position() / ReplayArchive.ENTRY_SIZE;
+	}
+
+	/**
+	 * @return The error that happened while writing the index in {@link #dispose()}, or null if there was none.
+	 */
+	public IOException getError(){
+		return error;
+	}
+
+	/**
+	 * Writes the index and closes the archive. Errors can be fetched with {@link #getError()}.
+	 */
+	@Override
+	public void dispose(){
+		if(channel == null)
+			return;
+
+		try{
+			flush();
+		}catch(IOException e){
+			error = e;
+		}
+
+		try{
+			file.close();
+		}catch(IOException e){
+			if(error == null)
+				error = e;
+		}
+
+		file = null;
+		channel = null;
+	}
+
+	/**
+	 * Adds a replay to the index.
+	 */
+	private void addEntry(long matchId, long offset, Replay replay){
+		ByteBuffer table = replay.getKeyframeTable();
+		int        scores = 0;
+
+		// Take the final scores from the last keyframe.
+		replay.readKeyframe(replay.getKeyframeCount() - 1, snapshot);
+
+		entries = ensureCapacity(entries, ReplayArchive.ENTRY_SIZE);
+		keyframes = ensureCapacity(keyframes, table.remaining());
+
+		entries.putLong(matchId);
+		entries.putLong(replay.getSettings().seed);
+		entries.putLong(offset);
+		entries.putInt(replay.getLength());
+		entries.putInt(replay.isComplete() ? ReplayArchive.FLAG_COMPLETE : 0);
+		entries.putLong(replay.getFirstTick());
+		entries.putLong(replay.getTotalTicks());
+		for(int i = 0; i < snapshot.getEntityCount() && scores < ReplayArchive.SCORES; i++){
+			if(snapshot.hasScore(i)){
+				entries.putInt(snapshot.getScore(i));
+				scores++;
+			}
+		}
+		for(; scores < ReplayArchive.SCORES; scores++)
+			entries.putInt(0);
+		entries.putInt(keyframes.position() / ReplayFormat.KEYFRAME_ENTRY_SIZE);
+		entries.putInt(replay.getKeyframeCount());
+
+		keyframes.put(table);
+	}
+
+	/**
+	 * Rebuilds the index by scanning the replays, stopping at the first one that is missing or damaged.
+	 */
+	private void recover() throws IOException{
+		long       size     = channel.size();
+		long       position = ReplayArchive.HEADER_SIZE;
+		long       matchId;
+		int        length;
+		Replay     replay;
+
+		while(position + ReplayArchive.REPLAY_PREFIX_SIZE <= size){
+			header.clear();
+			header.limit(ReplayArchive.REPLAY_PREFIX_SIZE);
+			while(header.hasRemaining() && channel.read(header, position + header.position()) >= 0);
+			matchId = header.getLong(0);
+			length = header.getInt(8);
+
+			if(length <= 0 || position + ReplayArchive.REPLAY_PREFIX_SIZE + length > size)
+				break;
+
+			try{
+				replay = new Replay(channel.map(MapMode.READ_ONLY, position + ReplayArchive.REPLAY_PREFIX_SIZE, length));
+			}catch(IllegalArgumentException e){
+				break;
+			}
+
+			addEntry(matchId, position + ReplayArchive.REPLAY_PREFIX_SIZE, replay);
+			position += ReplayArchive.REPLAY_PREFIX_SIZE + length;
+		}
+
+		writePosition = position;
+		dirty = true;
+	}
+
+	/**
+	 * Reads a region of the file.
+	 */
+	private ByteBuffer read(long position, int length) throws IOException{
+		ByteBuffer buffer = ByteBuffer.allocate(Math.max(length, 64));
+
+		buffer.limit(length);
+		while(buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) >= 0);
+		buffer.flip();
+
+		return buffer;
+	}
+
+	/**
+	 * Writes a buffer to the file.
+	 */
+	private void write(ByteBuffer buffer, long position) throws IOException{
+		while(buffer.hasRemaining())
+			position += channel.write(buffer, position);
+	}
+
+	/**
+	 * Returns a buffer with room for the given number of bytes, copying the contents of the given one if it is too small.
+	 */
+	private static ByteBuffer ensureCapacity(ByteBuffer buffer, int bytes){
+		ByteBuffer larger;
+
+		if(buffer.remaining() >= bytes)
+			return buffer;
+
+		larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+		buffer.flip();
+		larger.put(buffer);
+
+		return larger;
+	}
+}
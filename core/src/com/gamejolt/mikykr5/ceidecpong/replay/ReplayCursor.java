@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the records of a replay one at a time, keeping track of the tick and the last input so that the delta
+ * encoded values can be decoded. The payload of keyframes is skipped, it's position is reported instead.
+ * 
+ * A cursor can be placed right after any keyframe with {@link #reset(int, long, int)}, using the values stored in the
+ * keyframe table of the replay, so reading can start anywhere without decoding the records before it.
+ * 
+ * @author Miguel Astor
+ */
+public class ReplayCursor{
+	/**
+	 * The replay being read. Position 0 is the start of the replay.
+	 */
+	private final ByteBuffer data;
+
+	// The current record.
+	private int              kind;
+	private long             tick;
+	private int              inputBits;
+	private int              keyframeOffset;
+	private int              keyframeLength;
+
+	/**
+	 * Whether the last record read was the end of the replay, or the data ended before it.
+	 */
+	private boolean          finished;
+
+	/**
+	 * Whether the data ended in the middle of a record or without an end record.
+	 */
+	private boolean          truncated;
+
+	/**
+	 * Creates a cursor. It must be placed with {@link #reset(int, long, int)} before reading.
+	 * 
+	 * @param replay The replay to read. The cursor reads from position 0 to the limit of the buffer, independently
+	 * of the position and limit of the given buffer, which are not modified.
+	 */
+	public ReplayCursor(ByteBuffer replay){
+		data = replay.duplicate();
+		data.position(0);
+		finished = true;
+		truncated = false;
+	}
+
+	/**
+	 * Places the cursor.
+	 * 
+	 * @param position The offset of the next record from the start of the replay.
+	 * @param tick The tick of the previous record.
+	 * @param inputBits The bits of the last input recorded before that position.
+	 */
+	public void reset(int position, long tick, int inputBits){
+		data.position(position);
+		this.tick = tick;
+		this.inputBits = inputBits;
+		kind = -1;
+		finished = false;
+		truncated = false;
+	}
+
+	/**
+	 * Reads the next record.
+	 * 
+	 * @return False if there are no more records, because the end record was reached or the data ended.
+	 * @throws IllegalArgumentException If the record is malformed.
+	 */
+	public boolean next() throws IllegalArgumentException{
+		long header;
+
+		if(finished)
+			return false;
+
+		if(!data.hasRemaining()){
+			finished = truncated = true;
+			return false;
+		}
+
+		try{
+			header = VarIntCodec.readUnsigned(data);
+			kind = (int)(header & ReplayFormat.RECORD_KIND_MASK);
+
+			switch(kind){
+			case ReplayFormat.RECORD_INPUT:
+				inputBits += (int)VarIntCodec.readSigned(data);
+				break;
+
+			case ReplayFormat.RECORD_KEYFRAME:
+				keyframeLength = VarIntCodec.readLength(data);
+				keyframeOffset = data.position();
+
+				if(keyframeLength > data.remaining())
+					throw new BufferUnderflowException();
+
+				data.position(keyframeOffset + keyframeLength);
+				break;
+
+			case ReplayFormat.RECORD_END:
+				finished = true;
+				break;
+
+			default:
+				throw new IllegalArgumentException("Unknown record kind at tick " + Long.toString(tick));
+			}
+		}catch(BufferUnderflowException e){
+			finished = truncated = true;
+			return false;
+		}
+
+		tick += header >>> ReplayFormat.RECORD_KIND_BITS;
+
+		return true;
+	}
+
+	/**
+	 * @return The kind of the last record read, one of the record constants of {@link ReplayFormat}.
+	 */
+	public int getKind(){
+		return kind;
+	}
+
+	/**
+	 * @return The tick of the last record read.
+	 */
+	public long getTick(){
+		return tick;
+	}
+
+	/**
+	 * @return The paddle position of the last input record read.
+	 */
+	public float getInputValue(){
+		return Float.intBitsToFloat(inputBits);
+	}
+
+	/**
+	 * @return The bits of the last input read.
+	 */
+	public int getInputBits(){
+		return inputBits;
+	}
+
+	/**
+	 * @return The offset of the snapshot of the last keyframe record read, from the start of the replay.
+	 */
+	public int getKeyframeOffset(){
+		return keyframeOffset;
+	}
+
+	/**
+	 * @return The length of the snapshot of the last keyframe record read.
+	 */
+	public int getKeyframeLength(){
+		return keyframeLength;
+	}
+
+	/**
+	 * @return The offset of the next record from the start of the replay.
+	 */
+	public int getPosition(){
+		return data.position();
+	}
+
+	/**
+	 * @return True if the replay ended without an end record.
+	 */
+	public boolean isTruncated(){
+		return truncated;
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+/**
+ * Constants of the replay file format.
+ * 
+ * A replay starts with a header holding {@link #MAGIC}, {@link #VERSION}, the keyframe interval and the
+ * {@link com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings} of the match. It is followed by a
+ * sequence of records, each one starting with an unsigned variable length integer whose two lowest bits are
+ * the kind of the record and whose remaining bits are the number of ticks since the previous record:
+ * 
+ * <ul>
+ * <li>{@link #RECORD_INPUT}: the human player's paddle position consumed in that tick, stored as the zigzag
+ * encoded difference between the bits of this float and the bits of the previous one.</li>
+ * <li>{@link #RECORD_KEYFRAME}: the length of a {@link MatchSnapshot} followed by the snapshot, taken before
+ * that tick was run.</li>
+ * <li>{@link #RECORD_END}: the end of the replay. It's tick is the total number of ticks recorded.</li>
+ * </ul>
+ * 
+ * The first record is always a keyframe, so replays can start in the middle of a match. Ticks without input
+ * take no space at all.
+ * 
+ * Readers index the keyframes of a replay in a table of {@link #KEYFRAME_ENTRY_SIZE} byte rows holding the tick
+ * (long), the offset of the snapshot from the start of the replay (int), the length of the snapshot (int) and
+ * the bits of the last input recorded before the keyframe (int), which the next input is relative to. The same
+ * table is stored in the index of a {@link ReplayArchive}.
+ * 
+ * @author Miguel Astor
+ */
+public final class ReplayFormat{
+	/**
+	 * The first four bytes of every replay, "CPRP".
+	 */
+	public static final int    MAGIC = 0x43505250;
+
+	/**
+	 * The version of the format written by this code.
+	 */
+	public static final int    VERSION = 1;
+
+	/**
+	 * The extension of replay files.
+	 */
+	public static final String EXTENSION = ".cprp";
+
+	/**
+	 * The number of ticks between keyframes when not specified, five seconds at the default step.
+	 */
+	public static final int    DEFAULT_KEYFRAME_INTERVAL = 600;
+
+	// Record kinds.
+	public static final int    RECORD_INPUT    = 0;
+	public static final int    RECORD_KEYFRAME = 1;
+	public static final int    RECORD_END      = 2;
+
+	/**
+	 * The number of bits of a record header used for the kind.
+	 */
+	public static final int    RECORD_KIND_BITS = 2;
+
+	/**
+	 * Mask used to extract the kind from a record header.
+	 */
+	public static final int    RECORD_KIND_MASK = (1 << RECORD_KIND_BITS) - 1;
+
+	/**
+	 * The size of a row of a keyframe table.
+	 */
+	public static final int    KEYFRAME_ENTRY_SIZE = 20;
+
+	// Offsets of the fields of a keyframe table row.
+	public static final int    KEYFRAME_TICK        = 0;
+	public static final int    KEYFRAME_OFFSET      = 8;
+	public static final int    KEYFRAME_LENGTH      = 12;
+	public static final int    KEYFRAME_INPUT_BITS  = 16;
+
+	private ReplayFormat(){ }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.HeadlessMatch;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchInputSource;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputEventRing;
+
+/**
+ * Plays a {@link Replay} back by feeding it's input to a {@link HeadlessMatch}. Playback can run as fast as the
+ * simulation allows or be paced by the caller, and can jump to any tick by restoring the closest previous
+ * keyframe and simulating the ticks left.
+ * 
+ * The match has no renderer of it's own. To watch the replay add a rendering system to the engine returned by
+ * {@link HeadlessMatch#getEngine()} and update it once per frame.
+ * 
+ * @author Miguel Astor
+ */
+public class ReplayPlayer implements MatchInputSource, Disposable{
+	/**
+	 * The replay being played.
+	 */
+	private final Replay        replay;
+
+	/**
+	 * The match the replay is played on.
+	 */
+	private final HeadlessMatch match;
+
+	/**
+	 * Reads the input of the replay.
+	 */
+	private final ReplayCursor  cursor;
+
+	/**
+	 * Whether the cursor holds a record that has not been used yet.
+	 */
+	private boolean             pending;
+
+	// Auxiliary snapshots used to restore and verify keyframes.
+	private final MatchSnapshot keyframe;
+	private final MatchSnapshot snapshot;
+
+	/**
+	 * Creates a player positioned at the start of a replay.
+	 * 
+	 * @param replay The replay to play.
+	 * @throws IllegalArgumentException If replay is null.
+	 * @throws IllegalStateException If the keyframes of the replay do not match the entities of a headless match.
+	 */
+	public ReplayPlayer(Replay replay) throws IllegalArgumentException, IllegalStateException{
+		if(replay == null)
+			throw new IllegalArgumentException("Replay is null.");
+
+		this.replay = replay;
+		match = new HeadlessMatch(this, replay.getSettings());
+		cursor = replay.newCursor();
+		keyframe = new MatchSnapshot();
+		snapshot = new MatchSnapshot();
+		restart(0);
+	}
+
+	@Override
+	public void update(HeadlessMatch match, InputEventRing inputEvents){
+		long tick = match.getSteps();
+
+		// Skip keyframes and anything before this tick.
+		while(pending && (cursor.getKind() != ReplayFormat.RECORD_INPUT || cursor.getTick() < tick))
+			pending = cursor.next();
+
+		if(pending && cursor.getTick() == tick){
+			inputEvents.offer(0, cursor.getInputValue(), 0L);
+			pending = cursor.next();
+		}
+	}
+
+	/**
+	 * Runs a single tick.
+	 * 
+	 * @return False if the end of the replay had already been reached.
+	 */
+	public boolean step(){
+		if(isFinished())
+			return false;
+
+		match.step();
+
+		return true;
+	}
+
+	/**
+	 * Runs several ticks, stopping at the end of the replay.
+	 * 
+	 * @param ticks How many ticks to run.
+	 * @return How many ticks were run.
+	 */
+	public long advance(long ticks){
+		long run = 0L;
+
+		while(run < ticks && step())
+			run++;
+
+		return run;
+	}
+
+	/**
+	 * Moves the playback to the given tick. Going backwards, or forward past a keyframe, restores the closest keyframe
+	 * first, so seeking never simulates more than a keyframe interval worth of ticks.
+	 * 
+	 * @param tick The tick to move to. Clamped to the recorded range.
+	 */
+	public void seek(long tick){
+		int keyframe;
+
+		tick = Math.max(replay.getFirstTick(), Math.min(tick, replay.getTotalTicks()));
+		keyframe = replay.findKeyframe(tick);
+
+		if(tick < match.getSteps() || replay.getKeyframeTick(keyframe) > match.getSteps())
+			restart(keyframe);
+
+		while(match.getSteps() < tick)
+			match.step();
+	}
+
+	/**
+	 * Plays the whole replay, checking that the simulation reaches the state saved in every keyframe. A replay that
+	 * fails this check was recorded with a different version of the game or on a platform where the simulation is not
+	 * deterministic.
+	 * 
+	 * @return The index of the first keyframe that was not reached, or -1 if all were. The player is left at the
+	 * end of the replay, or at the failed keyframe.
+	 */
+	public int verify(){
+		restart(0);
+
+		for(int i = 1; i < replay.getKeyframeCount(); i++){
+			while(match.getSteps() < replay.getKeyframeTick(i))
+				match.step();
+
+			match.capture(snapshot);
+			replay.readKeyframe(i, keyframe);
+			if(!snapshot.sameMotion(keyframe))
+				return i;
+		}
+
+		advance(replay.getTotalTicks());
+
+		return -1;
+	}
+
+	/**
+	 * @return The tick the playback is at.
+	 */
+	public long getTick(){
+		return match.getSteps();
+	}
+
+	/**
+	 * @return True if the end of the replay has been reached.
+	 */
+	public boolean isFinished(){
+		return match.getSteps() >= replay.getTotalTicks();
+	}
+
+	/**
+	 * @return The replay being played.
+	 */
+	public Replay getReplay(){
+		return replay;
+	}
+
+	/**
+	 * @return The match the replay is played on.
+	 */
+	public HeadlessMatch getMatch(){
+		return match;
+	}
+
+	@Override
+	public void dispose(){
+		match.dispose();
+	}
+
+	/**
+	 * Restores a keyframe and positions the input at it's tick.
+	 */
+	private void restart(int index){
+		replay.readKeyframe(index, keyframe);
+		match.restore(keyframe);
+		replay.seekCursor(index, cursor);
+		pending = cursor.next();
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.gdx.utils.Disposable;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.FixedStepSimulation;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputSampler;
+
+/**
+ * Records a match to a replay file. It must be the last system added to a {@link FixedStepSimulation}, so that
+ * every update sees the input sample consumed by the tick that just ran and the state it left behind.
+ * 
+ * A keyframe is written when the recorder is added to the simulation and then every few ticks, the rest of
+ * the file is the human player's input, which is the only thing needed to simulate the ticks in between.
+ * Records are encoded into a direct buffer that is written to the file only when it is full, so a tick
+ * usually costs a handful of byte writes. See {@link ReplayFormat} for the layout of the file.
+ * 
+ * I/O errors do not interrupt the game: the recording stops and the error can be fetched with {@link #getError()}.
+ * 
+ * @author Miguel Astor
+ */
+public class ReplayRecorder extends EntitySystem implements Disposable{
+	/**
+	 * The size of the output buffer.
+	 */
+	private static final int  BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The largest input record: a record header plus the encoded difference.
+	 */
+	private static final int  MAX_INPUT_RECORD = 2 * VarIntCodec.MAX_LONG_BYTES;
+
+	/**
+	 * The file being written.
+	 */
+	private FileOutputStream  stream;
+
+	/**
+	 * The channel of {@link ReplayRecorder#stream}.
+	 */
+	private FileChannel       channel;
+
+	/**
+	 * Records waiting to be written to the file.
+	 */
+	private final ByteBuffer  buffer;
+
+	/**
+	 * The encoded keyframe being written.
+	 */
+	private ByteBuffer        keyframeBuffer;
+
+	/**
+	 * Auxiliary snapshot used to take keyframes.
+	 */
+	private final MatchSnapshot snapshot;
+
+	/**
+	 * The sampler whose samples are recorded.
+	 */
+	private final InputSampler inputSampler;
+
+	/**
+	 * The number of ticks between keyframes.
+	 */
+	private final int         keyframeInterval;
+
+	/**
+	 * The engine of the recorded match.
+	 */
+	private Engine            engine;
+
+	/**
+	 * The number of ticks recorded.
+	 */
+	private long              ticks;
+
+	/**
+	 * The tick of the last record written.
+	 */
+	private long              lastRecordTick;
+
+	/**
+	 * The bits of the last input recorded.
+	 */
+	private int               lastInputBits;
+
+	/**
+	 * How many bytes have been written to the file.
+	 */
+	private long              bytesWritten;
+
+	/**
+	 * The error that stopped the recording, if any.
+	 */
+	private IOException       error;
+
+	/**
+	 * Creates the replay file and writes it's header.
+	 * 
+	 * @param file The file to create. Overwritten if it exists.
+	 * @param settings The parameters of the recorded match.
+	 * @param inputSampler The sampler used by the human player positioning system of the recorded match.
+	 * @param keyframeInterval The number of ticks between keyframes.
+	 * @throws IllegalArgumentException If any argument is null or keyframeInterval is less than 1.
+	 * @throws IOException If the file can't be created.
+	 */
+	public ReplayRecorder(File file, MatchSettings settings, InputSampler inputSampler, int keyframeInterval) throws IllegalArgumentException, IOException{
+		if(file == null)
+			throw new IllegalArgumentException("File is null.");
+
+		if(settings == null)
+			throw new IllegalArgumentException("Settings are null.");
+
+		if(inputSampler == null)
+			throw new IllegalArgumentException("Input sampler is null.");
+
+		if(keyframeInterval < 1)
+			throw new IllegalArgumentException("Keyframe interval must be at least 1.");
+
+		this.inputSampler = inputSampler;
+		this.keyframeInterval = keyframeInterval;
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		keyframeBuffer = ByteBuffer.allocate(1024);
+		snapshot = new MatchSnapshot();
+		ticks = 0L;
+		lastRecordTick = 0L;
+		lastInputBits = 0;
+		bytesWritten = 0L;
+		error = null;
+
+		if(file.getParentFile() != null)
+			file.getParentFile().mkdirs();
+		stream = new FileOutputStream(file);
+		channel = stream.getChannel();
+
+		buffer.putInt(ReplayFormat.MAGIC);
+		buffer.put((byte)ReplayFormat.VERSION);
+		VarIntCodec.writeUnsigned(buffer, keyframeInterval);
+		buffer.putLong(settings.seed);
+		buffer.putFloat(settings.step);
+		buffer.putFloat(settings.computerSpeed);
+		buffer.putFloat(settings.ballAcceleration);
+		VarIntCodec.writeUnsigned(buffer, settings.targetScore);
+		buffer.putFloat(settings.maxTime);
+	}
+
+	@Override
+	public void addedToEngine(Engine engine){
+		this.engine = engine;
+		writeKeyframe();
+	}
+
+	@Override
+	public void removedFromEngine(Engine engine){
+		this.engine = null;
+	}
+
+	@Override
+	public void update(float deltaTime){
+		float y;
+		int   bits;
+
+		if(channel == null)
+			return;
+
+		if(inputSampler.hasFreshSample()){
+			y = inputSampler.getSample().y;
+			bits = Float.floatToIntBits(y);
+
+			if(buffer.remaining() < MAX_INPUT_RECORD)
+				flush();
+
+			if(channel != null){
+				writeRecordHeader(ReplayFormat.RECORD_INPUT);
+				VarIntCodec.writeSigned(buffer, (long)bits - (long)lastInputBits);
+				lastInputBits = bits;
+			}
+		}
+
+		ticks++;
+
+		if(ticks % keyframeInterval == 0L)
+			writeKeyframe();
+	}
+
+	/**
+	 * Writes a final keyframe and the end record, and closes the file. Does nothing if already closed.
+	 */
+	@Override
+	public void dispose(){
+		if(channel == null)
+			return;
+
+		if(engine != null && ticks % keyframeInterval != 0L)
+			writeKeyframe();
+
+		if(channel != null){
+			if(buffer.remaining() < VarIntCodec.MAX_LONG_BYTES)
+				flush();
+
+			if(channel != null){
+				writeRecordHeader(ReplayFormat.RECORD_END);
+				flush();
+			}
+		}
+
+		closeFile();
+	}
+
+	/**
+	 * @return True if the file is still open.
+	 */
+	public boolean isRecording(){
+		return channel != null;
+	}
+
+	/**
+	 * @return The number of ticks recorded.
+	 */
+	public long getTicks(){
+		return ticks;
+	}
+
+	/**
+	 * @return How many bytes have been written to the file so far, not counting the buffered ones.
+	 */
+	public long getBytesWritten(){
+		return bytesWritten;
+	}
+
+	/**
+	 * @return The error that stopped the recording, or null if there was none.
+	 */
+	public IOException getError(){
+		return error;
+	}
+
+	/**
+	 * Writes a keyframe of the current state.
+	 */
+	private void writeKeyframe(){
+		snapshot.capture(engine, ticks);
+
+		while(true){
+			try{
+				keyframeBuffer.clear();
+				snapshot.write(keyframeBuffer);
+				break;
+			}catch(BufferOverflowException e){
+				keyframeBuffer = ByteBuffer.allocate(keyframeBuffer.capacity() * 2);
+			}
+		}
+		keyframeBuffer.flip();
+
+		if(buffer.remaining() < (2 * VarIntCodec.MAX_LONG_BYTES) + keyframeBuffer.remaining())
+			flush();
+
+		if(channel == null)
+			return;
+
+		writeRecordHeader(ReplayFormat.RECORD_KEYFRAME);
+		VarIntCodec.writeUnsigned(buffer, keyframeBuffer.remaining());
+
+		if(buffer.remaining() >= keyframeBuffer.remaining()){
+			buffer.put(keyframeBuffer);
+		}else{
+			// Larger than the whole buffer, write it directly.
+			flush();
+			try{
+				while(channel != null && keyframeBuffer.hasRemaining())
+					bytesWritten += channel.write(keyframeBuffer);
+			}catch(IOException e){
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the header of a record, advancing the tick of the last record to the current one.
+	 */
+	private void writeRecordHeader(int kind){
+		VarIntCodec.writeUnsigned(buffer, ((ticks - lastRecordTick) << ReplayFormat.RECORD_KIND_BITS) | kind);
+		lastRecordTick = ticks;
+	}
+
+	/**
+	 * Writes the buffered records to the file.
+	 */
+	private void flush(){
+		if(channel == null){
+			buffer.clear();
+			return;
+		}
+
+		buffer.flip();
+
+		try{
+			while(buffer.hasRemaining())
+				bytesWritten += channel.write(buffer);
+		}catch(IOException e){
+			fail(e);
+		}
+
+		buffer.clear();
+	}
+
+	/**
+	 * Stops the recording because of an error.
+	 */
+	private void fail(IOException e){
+		error = e;
+		closeFile();
+	}
+
+	/**
+	 * Closes the file, ignoring errors.
+	 */
+	private void closeFile(){
+		try{
+			if(stream != null)
+				stream.close();
+		}catch(IOException e){
+			if(error == null)
+				error = e;
+		}
+
+		stream = null;
+		channel = null;
+	}
+}
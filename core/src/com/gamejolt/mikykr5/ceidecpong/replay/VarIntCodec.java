@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.replay;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes variable length integers in the LEB128 format: seven bits per byte, least significant group
+ * first, with the high bit of every byte but the last one set. Signed values are zigzag encoded first so that
+ * small negative numbers are as short as small positive ones.
+ * 
+ * @author Miguel Astor
+ */
+public final class VarIntCodec{
+	/**
+	 * The maximum number of bytes used by an encoded long.
+	 */
+	public static final int MAX_LONG_BYTES = 10;
+
+	private VarIntCodec(){ }
+
+	/**
+	 * Writes an unsigned variable length integer.
+	 * 
+	 * @param out The buffer to write to.
+	 * @param value The value, interpreted as unsigned.
+	 */
+	public static void writeUnsigned(ByteBuffer out, long value){
+		while((value & ~0x7FL) != 0L){
+			out.put((byte)((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte)value);
+	}
+
+	/**
+	 * Writes a signed variable length integer.
+	 * 
+	 * @param out The buffer to write to.
+	 * @param value The value.
+	 */
+	public static void writeSigned(ByteBuffer out, long value){
+		writeUnsigned(out, (value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 * 
+	 * @param in The buffer to read from.
+	 * @return The value.
+	 * @throws IllegalArgumentException If the value is longer than {@link #MAX_LONG_BYTES}.
+	 */
+	public static long readUnsigned(ByteBuffer in) throws IllegalArgumentException{
+		long value = 0L;
+		int  b;
+
+		for(int shift = 0; shift < MAX_LONG_BYTES * 7; shift += 7){
+			b = in.get();
+			value |= (long)(b & 0x7F) << shift;
+
+			if((b & 0x80) == 0)
+				return value;
+		}
+
+		throw new IllegalArgumentException("Malformed variable length integer.");
+	}
+
+	/**
+	 * Reads a signed variable length integer.
+	 * 
+	 * @param in The buffer to read from.
+	 * @return The value.
+	 * @throws IllegalArgumentException If the value is longer than {@link #MAX_LONG_BYTES}.
+	 */
+	public static long readSigned(ByteBuffer in) throws IllegalArgumentException{
+		long value = readUnsigned(in);
+
+		return (value >>> 1) ^ -(value & 1L);
+	}
+
+	/**
+	 * Reads an unsigned variable length integer that must fit in an int.
+	 * 
+	 * @param in The buffer to read from.
+	 * @return The value.
+	 * @throws IllegalArgumentException If the value is malformed or does not fit in a non-negative int.
+	 */
+	public static int readLength(ByteBuffer in) throws IllegalArgumentException{
+		long value = readUnsigned(in);
+
+		if(value < 0L || value > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Length out of range: " + Long.toString(value));
+
+		return (int)value;
+	}
+}
@@ -100,6 +100,16 @@ public abstract class BaseState implements Screen, InputProcessor{
 		Gdx.input.setCatchMenuKey(false);
 	}
 
+	/**
+	 * Tells if disposing this state would lose something the player did, like a match in progress. Such states are
+	 * never unloaded to save memory.
+	 * 
+	 * @return False by default.
+	 */
+	public boolean holdsProgress(){
+		return false;
+	}
+
 	/*;;;;;;;;;;;;;;;;;;
 	  ; SCREEN METHODS ;
 	  ;;;;;;;;;;;;;;;;;;*/
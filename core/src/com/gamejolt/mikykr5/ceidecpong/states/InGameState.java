@@ -15,6 +15,8 @@
  */
 package com.gamejolt.mikykr5.ceidecpong.states;
 
+import java.io.IOException;
+
 import com.badlogic.ashley.core.Engine;
 import com.badlogic.ashley.core.PooledEngine;
 import com.badlogic.gdx.Gdx;
@@ -25,21 +27,30 @@ import com.badlogic.gdx.graphics.Pixmap.Format;
 import com.badlogic.gdx.graphics.glutils.FrameBuffer;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.TimeUtils;
 import com.gamejolt.mikykr5.ceidecpong.GameCore;
 import com.gamejolt.mikykr5.ceidecpong.GameCore.game_states_t;
 import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
 import com.gamejolt.mikykr5.ceidecpong.ecs.entities.EntityInitializerBase;
 import com.gamejolt.mikykr5.ceidecpong.ecs.entities.PongEntityInitializer;
+import com.gamejolt.mikykr5.ceidecpong.ecs.scheduling.SystemScheduler;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.FixedStepSimulation;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.CollisionDetectionSystem;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.ComputerPlayerPositioningSystem;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.HumanPlayerPositioningSystem;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.PositioningSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RandomNumberSystem;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RenderingSystem;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.ScoringSystem;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.SoundSystem;
-import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessage;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputEventRing;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InputSampler;
 import com.gamejolt.mikykr5.ceidecpong.ecs.systems.messaging.InterSystemMessagingQueue;
 import com.gamejolt.mikykr5.ceidecpong.interfaces.AssetsLoadedListener;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayFormat;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayRecorder;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceSizes;
 
 /**
  * The state in charge of executing and handling the game itself.
@@ -47,11 +58,46 @@ import com.gamejolt.mikykr5.ceidecpong.interfaces.AssetsLoadedListener;
  * @author Miguel Astor
  */
 public class InGameState extends BaseState implements AssetsLoadedListener{
+	/**
+	 * Tag used for logging.
+	 */
+	private static final String   TAG = "IN_GAME_STATE";
+
+	/**
+	 * Class name used for logging.
+	 */
+	private static final String   CLASS_NAME = InGameState.class.getSimpleName();
+
 	/**
 	 * The {@link Engine} responsible for handling the ECS design pattern.
 	 */
 	private PooledEngine          engine;
 
+	/**
+	 * Runs the game logic systems at a fixed rate, independently of the frame rate.
+	 */
+	private FixedStepSimulation   simulation;
+
+	/**
+	 * Runs the independent game logic systems on several threads.
+	 */
+	private SystemScheduler       scheduler;
+
+	/**
+	 * The queue used by the systems to talk to each other.
+	 */
+	private final InterSystemMessagingQueue messagingQueue;
+
+	/**
+	 * The system that draws the entities, interpolating between simulation steps.
+	 */
+	private RenderingSystem       renderingSystem;
+
+	/**
+	 * The system that keeps and draws the score. Holds the font of the score display.
+	 */
+	private ScoringSystem         scoringSystem;
+
 	/**
 	 * The entity creator.
 	 */
@@ -98,6 +144,26 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 	 */
 	private final Vector3         temp;
 
+	/**
+	 * The channel used to hand touch events from the input callbacks to the {@link HumanPlayerPositioningSystem}.
+	 */
+	private final InputEventRing  inputEvents;
+
+	/**
+	 * Reduces the touch events in {@link InGameState#inputEvents} to one sample per update.
+	 */
+	private final InputSampler    inputSampler;
+
+	/**
+	 * Records the match while this state is shown. Null when not recording.
+	 */
+	private ReplayRecorder        replayRecorder;
+
+	/**
+	 * Flag to indicate that a replay file could not be created, so that it is not retried every frame.
+	 */
+	private boolean               replayFailed;
+
 	/**
 	 * Creates the state and the entity processing systems.
 	 * 
@@ -109,13 +175,19 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 
 		// Initialize all fields.
 		engine = new PooledEngine();
+		simulation = new FixedStepSimulation(engine, ProjectConstants.SIMULATION_STEP, ProjectConstants.MAX_SIMULATION_STEPS);
 		w = Gdx.graphics.getWidth();
 		w = Gdx.graphics.getHeight();
 		assetsLoaded = false;
 		temp = new Vector3();
+		inputEvents = new InputEventRing(64);
+		inputSampler = new InputSampler(inputEvents, ProjectConstants.DEBUG ? 256 : 0);
+		replayRecorder = null;
+		replayFailed = false;
 
 		// Create the framebuffer.
 		frameBuffer = new FrameBuffer(Format.RGB565, ProjectConstants.FB_WIDTH, ProjectConstants.FB_HEIGHT, false);
+		core.gpuMemory.track(frameBuffer, "FrameBuffer " + ProjectConstants.FB_WIDTH + "x" + ProjectConstants.FB_HEIGHT + " RGB565", ResourceSizes.of(frameBuffer, false));
 		fbAspectRatio = aspectRatio(ProjectConstants.FB_WIDTH, ProjectConstants.FB_HEIGHT);
 		fbCamera = new OrthographicCamera(ProjectConstants.FB_WIDTH, ProjectConstants.FB_HEIGHT);
 		fbBounds = new Rectangle();
@@ -124,14 +196,32 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 		entityInitializer = new PongEntityInitializer();
 		entityInitializer.createAllEntities(engine);
 
-		// Add systems in the order they will be processed.
-		engine.addSystem(new HumanPlayerPositioningSystem());
-		engine.addSystem(new ComputerPlayerPositioningSystem());
-		engine.addSystem(new PositioningSystem());
-		engine.addSystem(new CollisionDetectionSystem(engine));
+		// Add the services used by the other systems.
+		messagingQueue = new InterSystemMessagingQueue();
+		engine.addSystem(messagingQueue);
+		engine.addSystem(new RandomNumberSystem());
+
+		// Add the game logic systems in the order they will be processed every simulation step.
+		simulation.addSystem(new HumanPlayerPositioningSystem(inputSampler));
+		simulation.addSystem(new ComputerPlayerPositioningSystem());
+		simulation.addSystem(new PositioningSystem());
+		simulation.addSystem(new CollisionDetectionSystem(engine));
+
+		// Spread the game logic over the idle processors if asked to.
+		if(core.getSimulationWorkers() > 0){
+			scheduler = new SystemScheduler(core.getSimulationWorkers());
+			simulation.setScheduler(scheduler);
+		}else{
+			scheduler = null;
+		}
+		simulation.setProfiler(core.profiler);
+
+		// Add the presentation systems in the order they will be processed every frame.
+		renderingSystem = new RenderingSystem(core.batch);
 		engine.addSystem(new SoundSystem());
-		engine.addSystem(new RenderingSystem(core.batch));
-		engine.addSystem(new ScoringSystem(core.batch));
+		engine.addSystem(renderingSystem);
+		scoringSystem = new ScoringSystem(core.batch);
+		engine.addSystem(scoringSystem);
 	}
 
 	@Override
@@ -139,6 +229,17 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 		float x, y, renderW, renderH;
 
 		if(assetsLoaded){
+			// Start a new replay every time the game is shown.
+			if(replayRecorder == null && !replayFailed)
+				startReplay();
+
+			// Advance the game logic and draw the entities between the last two steps.
+			simulation.update(delta);
+			renderingSystem.setInterpolationAlpha(simulation.getAlpha());
+			core.frameStatistics.markUpdateDone();
+			if(core.profiler.isEnabled())
+				core.profiler.recordQueueDepth(messagingQueue.getPendingMessageCount());
+
 			// Clear the screen.
 			Gdx.gl.glClearColor(0, 0, 0, 1);
 			Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
@@ -148,10 +249,10 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 				Gdx.gl.glClearColor(0.2f, 0.2f, 0.5f, 1);
 				Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
 
-				// Update the game using the ECS pattern.
+				// Render the game using the ECS pattern.
 				core.batch.setProjectionMatrix(fbCamera.combined);
 				core.batch.begin();{
-					engine.update(delta);
+					core.profiler.updateEngine(engine, delta);
 				}core.batch.end();
 
 			}frameBuffer.end();
@@ -172,11 +273,34 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 		}
 	}
 
+	@Override
+	public boolean holdsProgress(){
+		// The match starts with the first simulation step and is kept until the game quits.
+		return simulation.getTotalSteps() > 0L;
+	}
+
+	@Override
+	public void hide(){
+		stopReplay();
+	}
+
+	@Override
+	public void pause(){
+		// The application may be killed while paused, so finish the replay now. A new one starts on the next frame.
+		stopReplay();
+	}
+
 	@Override
 	public void dispose(){
+		stopReplay();
+		core.gpuMemory.untrack(frameBuffer);
 		frameBuffer.dispose();
 		entityInitializer.dispose();
+		simulation.removeAllSystems();
+		if(scheduler != null)
+			scheduler.dispose();
 		engine.removeAllEntities();
+		scoringSystem.dispose();
 	}
 
 	@Override
@@ -202,13 +326,9 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 
 	@Override
 	public boolean touchDown(int screenX, int screenY, int pointer, int button){
-		InterSystemMessage message;
-
 		// If the user touched the screen inside the frame buffer then notify the player positioning system.
 		if(touchInsideFrameBuffer(screenX, screenY)){
-			message = new InterSystemMessage(HumanPlayerPositioningSystem.class.getCanonicalName());
-			message.data.put("INPUT_Y", convertWorldYToFrameBufferY(screenY));
-			InterSystemMessagingQueue.pushMessage(message);
+			inputEvents.offer(pointer, convertWorldYToFrameBufferY(screenY), TimeUtils.nanoTime());
 		}
 
 		return true;
@@ -216,13 +336,9 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 
 	@Override
 	public boolean touchDragged(int screenX, int screenY, int pointer){
-		InterSystemMessage message;
-
 		// If the user touched the screen inside the frame buffer then notify the player positioning system.
 		if(touchInsideFrameBuffer(screenX, screenY)){
-			message = new InterSystemMessage(HumanPlayerPositioningSystem.class.getCanonicalName());
-			message.data.put("INPUT_Y", convertWorldYToFrameBufferY(screenY));
-			InterSystemMessagingQueue.pushMessage(message);
+			inputEvents.offer(pointer, convertWorldYToFrameBufferY(screenY), TimeUtils.nanoTime());
 		}
 
 		return true;
@@ -234,6 +350,40 @@ public class InGameState extends BaseState implements AssetsLoadedListener{
 		assetsLoaded = true;
 	}
 
+	/**
+	 * Creates a new replay file and starts recording the match to it.
+	 */
+	private void startReplay(){
+		MatchSettings settings = new MatchSettings();
+
+		settings.seed = RandomNumberSystem.getFor(engine).getSeed();
+
+		try{
+			replayRecorder = new ReplayRecorder(Gdx.files.local(ProjectConstants.REPLAYS_DIRECTORY + "/replay-" + Long.toString(TimeUtils.millis()) + ReplayFormat.EXTENSION).file(), settings, inputSampler, ReplayFormat.DEFAULT_KEYFRAME_INTERVAL);
+			simulation.addSystem(replayRecorder);
+		}catch(IOException e){
+			Gdx.app.error(TAG, CLASS_NAME + ".startReplay(): Could not create the replay file: ", e);
+			replayFailed = true;
+		}
+	}
+
+	/**
+	 * Finishes the current replay, if any.
+	 */
+	private void stopReplay(){
+		if(replayRecorder == null)
+			return;
+
+		// Finish the file before removing the recorder, so that it can still take the last keyframe.
+		replayRecorder.dispose();
+		simulation.removeSystem(replayRecorder);
+
+		if(replayRecorder.getError() != null)
+			Gdx.app.error(TAG, CLASS_NAME + ".stopReplay(): The replay could not be written: ", replayRecorder.getError());
+
+		replayRecorder = null;
+	}
+
 	/**
 	 *  Checks if the user clicked or touched a point inside the frame buffer.
 	 * 
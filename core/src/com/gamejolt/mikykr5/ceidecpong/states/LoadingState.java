@@ -18,34 +18,43 @@ package com.gamejolt.mikykr5.ceidecpong.states;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.Color;
 import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.BitmapFont.TextBounds;
 import com.gamejolt.mikykr5.ceidecpong.GameCore;
 import com.gamejolt.mikykr5.ceidecpong.GameCore.game_states_t;
 import com.gamejolt.mikykr5.ceidecpong.effects.ScrollingBackground;
 import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
-import com.gamejolt.mikykr5.ceidecpong.utils.managers.CachedFontManager;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceSizes;
 
 /**
- * A state that shows a loading screen and updates the {@link AsyncAssetLoader}.
+ * A state that shows a loading screen until the {@link AsyncAssetLoader} is done.
  * 
  * @author Miguel Astor
  */
 public class LoadingState extends BaseState{
 	/**
-	 * The {@link AsyncAssetLoader} instance that must be updated.
+	 * The size of the progress bar relative to the size of the screen.
+	 */
+	private static final float PROGRESS_BAR_WIDTH  = 0.5f;
+	private static final float PROGRESS_BAR_HEIGHT = 0.02f;
+
+	/**
+	 * The {@link AsyncAssetLoader} instance to wait for.
 	 */
 	private AsyncAssetLoader  loader;
 
 	/**
-	 * An instance of the {@link CachedFontManager} used to render the loading screen.
+	 * The path of {@link LoadingState#font}.
 	 */
-	private CachedFontManager fontManager;
+	private static final String FONT_PATH = "data/fonts/Big_Bottom_Cartoon.ttf";
 
 	/**
-	 * A time counter to avoid changing this state too quickly.
+	 * The size of {@link LoadingState#font}.
 	 */
-	private float             timeSinceShown;
+	private static final int    FONT_SIZE = AsyncAssetLoader.BASE_FONT_SIZE * 3;
 
 	/**
 	 * A flag to indicate that this state is finished.
@@ -62,6 +71,11 @@ public class LoadingState extends BaseState{
 	 */
 	private ScrollingBackground scrollingBckg;
 
+	/**
+	 * A single white texel, stretched to draw the progress bar.
+	 */
+	private Texture             progressTexture;
+
 	/**
 	 * Creates the loading screen.
 	 * 
@@ -71,29 +85,34 @@ public class LoadingState extends BaseState{
 	public LoadingState(final GameCore core) throws IllegalArgumentException{
 		super(core);
 
-		// Get the singleton instances.
+		// Get the loader instance.
 		loader = AsyncAssetLoader.getInstance();
-		fontManager = CachedFontManager.getInstance();
 
-		// Create the start button font.
-		font = fontManager.loadFont("data/fonts/Big_Bottom_Cartoon.ttf", CachedFontManager.BASE_FONT_SIZE * 3);
+		// Load the font right away, it is needed as soon as this state is shown.
+		font = loader.loadFont(FONT_PATH, FONT_SIZE);
 
 		// Set up the background.
 		scrollingBckg = new ScrollingBackground("data/gfx/textures/floortiles.png", false);
 
+		// Create the progress bar.
+		Pixmap pixmap = new Pixmap(1, 1, Format.RGBA8888);
+		pixmap.setColor(Color.WHITE);
+		pixmap.fill();
+		progressTexture = new Texture(pixmap);
+		pixmap.dispose();
+		core.gpuMemory.track(progressTexture, "Texture progress bar 1x1 RGBA8888", ResourceSizes.of(progressTexture));
+
 		// Set the flags.
 		stateEnabled = false;
 		loadingDone = false;
 	}
 
-	@Override
-	public void show(){
-		timeSinceShown = 0.0f;
-	}
-
 	@Override
 	public void render(float delta){
-		TextBounds bounds = font.getBounds("Loading");
+		TextBounds bounds   = font.getBounds("Loading");
+		float      width    = Gdx.graphics.getWidth() * PROGRESS_BAR_WIDTH;
+		float      height   = Gdx.graphics.getHeight() * PROGRESS_BAR_HEIGHT;
+		float      progress = loader != null ? loader.getProgress() : 1.0f;
 
 		Gdx.gl.glClearColor(1, 1, 1, 1);
 		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
@@ -105,30 +124,37 @@ public class LoadingState extends BaseState{
 
 			font.setColor(Color.BLACK);
 			font.draw(core.batch, "Loading", -(bounds.width / 2), -(bounds.height / 2));
+
+			// Render the progress bar under the text.
+			core.batch.setColor(0, 0, 0, 0.25f);
+			core.batch.draw(progressTexture, -(width / 2), -bounds.height - (2 * height), width, height);
+			core.batch.setColor(Color.BLACK);
+			core.batch.draw(progressTexture, -(width / 2), -bounds.height - (2 * height), width * progress, height);
+			core.batch.setColor(Color.WHITE);
 		}core.batch.end();
 
-		// If the loader has not finished loading then update it.
+		// The core updates the loader every frame. States still being warmed up will request
+		// more assets, so loading is only done once all of them are constructed.
 		if(!loadingDone && loader != null){
-			// Update the loader and check if it finished.
-			if(loader.loadAssets()){
+			if(loader.isDone() && core.areStatesWarmedUp()){
 				loadingDone = true;
 			}
 		}
 
-		// If it has been at least 3 seconds since this state got enabled then
-		// change to the next state if the loader is finished. This is to avoid
-		// a graphics bug that happens in the core if a state transition is scheduled
-		// while another effect is already in place. 
-		timeSinceShown += delta;
-		if(loadingDone && timeSinceShown >= 3.0f)
+		// Change to the next state once the loader is finished, but only after the fade in
+		// effect ended and this state got enabled. This is to avoid a graphics bug that
+		// happens in the core if a state transition is scheduled while another effect is
+		// already in place.
+		if(loadingDone && stateEnabled)
 			core.nextState = game_states_t.MAIN_MENU;
 	}
 
 	@Override
 	public void dispose(){
 		scrollingBckg.dispose();
-		CachedFontManager.freeInstance();
-		AsyncAssetLoader.freeInstance();
+		core.gpuMemory.untrack(progressTexture);
+		progressTexture.dispose();
+		loader.unloadFont(FONT_PATH, FONT_SIZE);
 		loader = null;
 	}
 }
@@ -20,6 +20,7 @@ import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.Texture;
 import com.gamejolt.mikykr5.ceidecpong.GameCore;
 import com.gamejolt.mikykr5.ceidecpong.GameCore.game_states_t;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
 
 /**
  * A simple state that just shows a logo.
@@ -30,7 +31,12 @@ public class LogoScreenState extends BaseState{
 	/**
 	 * The maximum amount of time to show the logo.
 	 */
-	private static final long MAX_TIME = 8000L;
+	private static final long   MAX_TIME  = 8000L;
+
+	/**
+	 * The path of {@link LogoScreenState#logo}.
+	 */
+	private static final String LOGO_PATH = "data/gfx/textures/monkey.png";
 
 	/**
 	 * The logo to show.
@@ -51,7 +57,7 @@ public class LogoScreenState extends BaseState{
 	public LogoScreenState(final GameCore core) throws IllegalArgumentException{
 		super(core);
 		then = System.currentTimeMillis();
-		logo = new Texture(Gdx.files.internal("data/gfx/textures/monkey.png"));
+		logo = AsyncAssetLoader.getInstance().loadTexture(LOGO_PATH);
 	}
 
 	@Override
@@ -78,7 +84,7 @@ public class LogoScreenState extends BaseState{
 
 	@Override
 	public void dispose() {
-		logo.dispose();
+		AsyncAssetLoader.getInstance().unloadAsset(LOGO_PATH, Texture.class);
 	}
 
 	@Override
@@ -32,7 +32,6 @@ import com.gamejolt.mikykr5.ceidecpong.GameCore.game_states_t;
 import com.gamejolt.mikykr5.ceidecpong.effects.ScrollingBackground;
 import com.gamejolt.mikykr5.ceidecpong.interfaces.AssetsLoadedListener;
 import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
-import com.gamejolt.mikykr5.ceidecpong.utils.managers.CachedFontManager;
 
 /**
  * A state in charge of rendering and handling the main menu of the game.
@@ -45,11 +44,6 @@ public class MainMenuState extends BaseState implements AssetsLoadedListener{
 	 */
 	private AsyncAssetLoader  loader;
 
-	/**
-	 * An instance of the {@link CachedFontManager} used to render the buttons.
-	 */
-	private CachedFontManager fontManager;
-
 	/**
 	 * A flag to indicate that all assets have been loaded.
 	 */
@@ -103,14 +97,14 @@ public class MainMenuState extends BaseState implements AssetsLoadedListener{
 		super(core);
 
 		loader = AsyncAssetLoader.getInstance();
-		fontManager = CachedFontManager.getInstance();
 		assetsLoaded = false;
 
-		// Load graphic resources.
-		loader.addAssetToLoad("data/gfx/gui/Anonymous_Pill_Button_Yellow.png", Texture.class);
-		loader.addAssetToLoad("data/gfx/gui/Anonymous_Pill_Button_Cyan.png", Texture.class);
-		loader.addAssetToLoad("data/gfx/gui/Anonymous_Pill_Button_Blue.png", Texture.class);
-		buttonFont = fontManager.loadFont("data/fonts/d-puntillas-B-to-tiptoe.ttf");
+		// Load graphic resources. This is the first state shown after loading, so it's assets go first.
+		loader.addAssetToLoad("data/gfx/gui/Anonymous_Pill_Button_Yellow.png", Texture.class, AsyncAssetLoader.HIGH_PRIORITY);
+		loader.addAssetToLoad("data/gfx/gui/Anonymous_Pill_Button_Cyan.png", Texture.class, AsyncAssetLoader.HIGH_PRIORITY);
+		loader.addAssetToLoad("data/gfx/gui/Anonymous_Pill_Button_Blue.png", Texture.class, AsyncAssetLoader.HIGH_PRIORITY);
+		loader.addAssetToLoad("data/gfx/textures/grass.png", Texture.class, AsyncAssetLoader.HIGH_PRIORITY);
+		loader.addFontToLoad("data/fonts/d-puntillas-B-to-tiptoe.ttf", AsyncAssetLoader.BASE_FONT_SIZE, AsyncAssetLoader.HIGH_PRIORITY);
 
 		// Set up the background.
 		scrollingBckg = new ScrollingBackground("data/gfx/textures/grass.png");
@@ -145,11 +139,12 @@ public class MainMenuState extends BaseState implements AssetsLoadedListener{
 
 	@Override
 	public void dispose(){
-		menuButtonEnabledTexture.dispose();
-		menuButtonDisabledTexture.dispose();
-		menuButtonPressedTexture.dispose();
+		loader.unloadAsset("data/gfx/gui/Anonymous_Pill_Button_Yellow.png", Texture.class);
+		loader.unloadAsset("data/gfx/gui/Anonymous_Pill_Button_Cyan.png", Texture.class);
+		loader.unloadAsset("data/gfx/gui/Anonymous_Pill_Button_Blue.png", Texture.class);
+		loader.unloadAsset("data/gfx/textures/grass.png", Texture.class);
+		loader.unloadFont("data/fonts/d-puntillas-B-to-tiptoe.ttf", AsyncAssetLoader.BASE_FONT_SIZE);
 		scrollingBckg.dispose();
-		CachedFontManager.freeInstance();
 	}
 
 	/*;;;;;;;;;;;;;;;;;;;;;;;;;;
@@ -222,6 +217,12 @@ public class MainMenuState extends BaseState implements AssetsLoadedListener{
 			Gdx.app.exit();
 			return true;
 		}
+
+		// If the user pressed R and there is a saved replay then watch it.
+		if(keycode == Input.Keys.R && ReplayState.findLatestReplay() != null){
+			core.nextState = game_states_t.REPLAY;
+			return true;
+		}
 		return false;
 	}
 
@@ -233,6 +234,7 @@ public class MainMenuState extends BaseState implements AssetsLoadedListener{
 		menuButtonEnabledTexture = loader.getAsset("data/gfx/gui/Anonymous_Pill_Button_Yellow.png", Texture.class);
 		menuButtonDisabledTexture = loader.getAsset("data/gfx/gui/Anonymous_Pill_Button_Cyan.png", Texture.class);
 		menuButtonPressedTexture = loader.getAsset("data/gfx/gui/Anonymous_Pill_Button_Blue.png", Texture.class);
+		buttonFont = loader.getFont("data/fonts/d-puntillas-B-to-tiptoe.ttf", AsyncAssetLoader.BASE_FONT_SIZE);
 
 		menuButtonEnabled9p = new NinePatch(new TextureRegion(menuButtonEnabledTexture, 0, 0, menuButtonEnabledTexture.getWidth(), menuButtonEnabledTexture.getHeight()), 49, 49, 45, 45);
 		menuButtonDisabled9p = new NinePatch(new TextureRegion(menuButtonDisabledTexture, 0, 0, menuButtonDisabledTexture.getWidth(), menuButtonDisabledTexture.getHeight()), 49, 49, 45, 45);
@@ -263,6 +265,5 @@ public class MainMenuState extends BaseState implements AssetsLoadedListener{
 		quitButtonBBox.setPosition(quitButton.getX(), quitButton.getY());
 
 		assetsLoaded = true;
-		AsyncAssetLoader.freeInstance();
 	}
 }
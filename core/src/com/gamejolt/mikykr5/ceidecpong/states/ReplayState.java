@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.states;
+
+import java.io.IOException;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.Family;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.Sprite;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.gamejolt.mikykr5.ceidecpong.GameCore;
+import com.gamejolt.mikykr5.ceidecpong.GameCore.game_states_t;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.SpriteComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.HeadlessMatch;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.RenderingSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.ScoringSystem;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.AssetsLoadedListener;
+import com.gamejolt.mikykr5.ceidecpong.replay.Replay;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayFormat;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayPlayer;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+
+/**
+ * A state that plays back the most recent replay saved by the {@link InGameState}. The replay runs at normal
+ * or four times the normal speed, and can be rewound or fast forwarded.
+ * 
+ * Controls: space or touch toggles the speed, left and right arrows seek five seconds, home restarts and
+ * escape or back returns to the main menu.
+ * 
+ * @author Miguel Astor
+ */
+public class ReplayState extends BaseState implements AssetsLoadedListener{
+	/**
+	 * Tag used for logging.
+	 */
+	private static final String   TAG = "REPLAY_STATE";
+
+	/**
+	 * Class name used for logging.
+	 */
+	private static final String   CLASS_NAME = ReplayState.class.getSimpleName();
+
+	/**
+	 * The speed of the fast playback.
+	 */
+	private static final int      FAST_SPEED = 4;
+
+	/**
+	 * How many seconds to move when seeking.
+	 */
+	private static final float    SEEK_SECONDS = 5.0f;
+
+	/**
+	 * An {@link AsyncAssetLoader} instance.
+	 */
+	private AsyncAssetLoader      loader;
+
+	/**
+	 * Flag to indicate that all assets have been successfully loaded.
+	 */
+	private boolean               assetsLoaded;
+
+	// Graphics shared by every replay.
+	private TextureAtlas          atlas;
+	private Texture               background;
+	private BitmapFont            font;
+
+	/**
+	 * A camera showing the whole logical screen, stretched to the window.
+	 */
+	private OrthographicCamera    fbCamera;
+
+	/**
+	 * Draws the entities of the replayed match.
+	 */
+	private final RenderingSystem renderingSystem;
+
+	/**
+	 * Draws the score of the replayed match.
+	 */
+	private final ScoringSystem   scoreDisplay;
+
+	/**
+	 * The player of the replay being shown. Null if there is none.
+	 */
+	private ReplayPlayer          player;
+
+	/**
+	 * The playback speed, 1 or {@link ReplayState#FAST_SPEED}.
+	 */
+	private int                   speed;
+
+	/**
+	 * The replay time not yet simulated.
+	 */
+	private float                 accumulator;
+
+	/**
+	 * Creates the state and loads all related assets.
+	 * 
+	 * @param core A game core. See {@link BaseState#BaseState(GameCore)} for details.
+	 * @throws IllegalArgumentException If core is null.
+	 */
+	public ReplayState(final GameCore core) throws IllegalArgumentException{
+		super(core);
+
+		loader = AsyncAssetLoader.getInstance();
+		loader.addAssetToLoad("data/gfx/textures/pong_atlas.atlas", TextureAtlas.class);
+		loader.addAssetToLoad("data/gfx/textures/bckg.png", Texture.class);
+		loader.addFontToLoad("data/fonts/d-puntillas-B-to-tiptoe.ttf", AsyncAssetLoader.BASE_FONT_SIZE);
+
+		fbCamera = new OrthographicCamera(ProjectConstants.FB_WIDTH, ProjectConstants.FB_HEIGHT);
+		renderingSystem = new RenderingSystem(core.batch);
+		scoreDisplay = new ScoringSystem(core.batch);
+		assetsLoaded = false;
+		player = null;
+		speed = 1;
+		accumulator = 0.0f;
+	}
+
+	/**
+	 * @return The most recently modified replay file, or null if there are none.
+	 */
+	public static FileHandle findLatestReplay(){
+		FileHandle latest = null;
+
+		for(FileHandle file : Gdx.files.local(ProjectConstants.REPLAYS_DIRECTORY).list(ReplayFormat.EXTENSION)){
+			if(latest == null || file.lastModified() > latest.lastModified())
+				latest = file;
+		}
+
+		return latest;
+	}
+
+	@Override
+	public void show(){
+		FileHandle file = assetsLoaded ? findLatestReplay() : null;
+
+		if(file == null){
+			core.nextState = game_states_t.MAIN_MENU;
+			return;
+		}
+
+		try{
+			player = new ReplayPlayer(Replay.load(file.file()));
+		}catch(IOException e){
+			Gdx.app.error(TAG, CLASS_NAME + ".show(): Could not read the replay " + file.path() + ": ", e);
+		}catch(IllegalArgumentException e){
+			Gdx.app.error(TAG, CLASS_NAME + ".show(): Invalid replay " + file.path() + ": ", e);
+		}catch(IllegalStateException e){
+			Gdx.app.error(TAG, CLASS_NAME + ".show(): The replay " + file.path() + " does not match this version of the game: ", e);
+		}
+
+		if(player == null){
+			core.nextState = game_states_t.MAIN_MENU;
+			return;
+		}
+
+		setSprites(player.getMatch());
+		player.getMatch().getEngine().addSystem(renderingSystem);
+		player.getMatch().getEngine().addSystem(scoreDisplay);
+		speed = 1;
+		accumulator = 0.0f;
+	}
+
+	@Override
+	public void render(float delta){
+		HeadlessMatch match;
+		float         step;
+		int           steps = 0;
+
+		Gdx.gl.glClearColor(0, 0, 0, 1);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+		if(!assetsLoaded || player == null)
+			return;
+
+		// Advance the replay at the selected speed and draw the entities between the last two ticks.
+		match = player.getMatch();
+		step = match.getStep();
+		accumulator += Math.min(delta, 0.25f) * speed;
+		while(accumulator >= step && steps < ProjectConstants.MAX_SIMULATION_STEPS * FAST_SPEED){
+			if(!player.step())
+				accumulator = 0.0f;
+			else
+				accumulator -= step;
+			steps++;
+		}
+		accumulator %= step;
+		renderingSystem.setInterpolationAlpha(player.isFinished() ? 1.0f : accumulator / step);
+		core.frameStatistics.markUpdateDone();
+
+		core.batch.setProjectionMatrix(fbCamera.combined);
+		core.batch.begin();{
+			match.getEngine().update(delta);
+
+			font.setColor(Color.WHITE);
+			font.draw(core.batch, formatTime(match.getElapsedTime()) + " / " + formatTime(player.getReplay().getTotalTicks() * (double)step) + "  " + Integer.toString(speed) + "x", -(ProjectConstants.FB_WIDTH / 2.0f) + 20, -(ProjectConstants.FB_HEIGHT / 2.0f) + font.getLineHeight() + 20);
+		}core.batch.end();
+	}
+
+	@Override
+	public void hide(){
+		if(player != null){
+			player.getMatch().getEngine().removeSystem(renderingSystem);
+			player.getMatch().getEngine().removeSystem(scoreDisplay);
+			player.dispose();
+			player = null;
+		}
+	}
+
+	@Override
+	public void dispose(){
+		hide();
+		scoreDisplay.dispose();
+
+		loader.unloadAsset("data/gfx/textures/pong_atlas.atlas", TextureAtlas.class);
+		loader.unloadAsset("data/gfx/textures/bckg.png", Texture.class);
+		loader.unloadFont("data/fonts/d-puntillas-B-to-tiptoe.ttf", AsyncAssetLoader.BASE_FONT_SIZE);
+	}
+
+	@Override
+	public boolean keyDown(int keycode){
+		if(keycode == Input.Keys.BACK || keycode == Input.Keys.ESCAPE){
+			core.nextState = game_states_t.MAIN_MENU;
+			return true;
+		}
+
+		if(player == null)
+			return false;
+
+		switch(keycode){
+		case Input.Keys.SPACE:
+			toggleSpeed();
+			return true;
+
+		case Input.Keys.LEFT:
+			seekBy(-SEEK_SECONDS);
+			return true;
+
+		case Input.Keys.RIGHT:
+			seekBy(SEEK_SECONDS);
+			return true;
+
+		case Input.Keys.HOME:
+			player.seek(0L);
+			accumulator = 0.0f;
+			return true;
+
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public boolean touchDown(int screenX, int screenY, int pointer, int button){
+		if(player != null)
+			toggleSpeed();
+
+		return true;
+	}
+
+	@Override
+	public void onAssetsLoaded(){
+		atlas = loader.getAsset("data/gfx/textures/pong_atlas.atlas", TextureAtlas.class);
+		background = loader.getAsset("data/gfx/textures/bckg.png", Texture.class);
+		font = loader.getFont("data/fonts/d-puntillas-B-to-tiptoe.ttf", AsyncAssetLoader.BASE_FONT_SIZE);
+		assetsLoaded = true;
+	}
+
+	/**
+	 * Switches between normal and fast playback.
+	 */
+	private void toggleSpeed(){
+		speed = speed == 1 ? FAST_SPEED : 1;
+	}
+
+	/**
+	 * Moves the playback forward or backward from the current tick.
+	 * 
+	 * @param seconds How many seconds to move, negative to go back.
+	 */
+	private void seekBy(float seconds){
+		player.seek(player.getTick() + (long)(seconds / player.getMatch().getStep()));
+		accumulator = 0.0f;
+	}
+
+	/**
+	 * Gives the entities of a headless match the same sprites they have in the game.
+	 * 
+	 * @param match The match.
+	 */
+	@SuppressWarnings("unchecked")
+	private void setSprites(HeadlessMatch match){
+		ImmutableArray<Entity> entities = match.getEngine().getEntitiesFor(Family.getFor(SpriteComponent.class));
+		Entity                 entity;
+		PlayerComponent        playerComponent;
+
+		for(int i = 0; i < entities.size(); i++){
+			entity = entities.get(i);
+			playerComponent = Mappers.playerMapper.get(entity);
+
+			if(entity == match.getBall())
+				Mappers.spriteMapper.get(entity).sprite = atlas.createSprite("ball");
+			else if(playerComponent != null && playerComponent.id == PlayerComponent.HUMAN_PLAYER)
+				Mappers.spriteMapper.get(entity).sprite = atlas.createSprite("glasspaddle2");
+			else if(playerComponent != null)
+				Mappers.spriteMapper.get(entity).sprite = atlas.createSprite("paddle");
+			else
+				Mappers.spriteMapper.get(entity).sprite = new Sprite(background);
+		}
+	}
+
+	/**
+	 * @param seconds A duration.
+	 * @return The duration as minutes and seconds.
+	 */
+	private static String formatTime(double seconds){
+		int total = (int)seconds;
+
+		return Integer.toString(total / 60) + ":" + (total % 60 < 10 ? "0" : "") + Integer.toString(total % 60);
+	}
+}
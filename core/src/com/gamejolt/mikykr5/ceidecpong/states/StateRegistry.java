@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.states;
+
+import java.util.Arrays;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.gamejolt.mikykr5.ceidecpong.GameCore;
+import com.gamejolt.mikykr5.ceidecpong.GameCore.game_states_t;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.AssetsLoadedListener;
+import com.gamejolt.mikykr5.ceidecpong.utils.AsyncAssetLoader;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.GpuMemoryTracker;
+
+/**
+ * Holds the states of the game and constructs them lazily, so that the first frame only has to wait for the
+ * state it shows. The rest are constructed either the first time they are requested with
+ * {@link #get(game_states_t)} or ahead of time, a few per frame, with {@link #warmUp(float)}.
+ * 
+ * States that implement {@link AssetsLoadedListener} are registered with the {@link AsyncAssetLoader} as soon
+ * as they are constructed. Everything a state allocates while it is constructed is owned by it in the
+ * {@link GpuMemoryTracker} of the core. States can be unloaded with {@link #unload(game_states_t)} to free that memory, and
+ * are constructed again when next requested.
+ * 
+ * @author Miguel Astor
+ */
+public class StateRegistry implements Disposable{
+	/**
+	 * Tag used for logging.
+	 */
+	private static final String TAG = "STATE_REGISTRY";
+
+	/**
+	 * Class name used for logging.
+	 */
+	private static final String CLASS_NAME = StateRegistry.class.getSimpleName();
+
+	/**
+	 * The order in which {@link #warmUp(float)} constructs the states, roughly the order in which the player
+	 * reaches them.
+	 */
+	private static final game_states_t[] WARM_UP_ORDER = {
+		game_states_t.LOGO_SCREEN, game_states_t.LOADING, game_states_t.MAIN_MENU, game_states_t.IN_GAME, game_states_t.REPLAY
+	};
+
+	/**
+	 * The game core passed to every state.
+	 */
+	private final GameCore    core;
+
+	/**
+	 * The constructed states, indexed by {@link game_states_t#getValue()}. Null until constructed.
+	 */
+	private final BaseState[] states;
+
+	/**
+	 * When every state was last shown, as a sequence number. {@link Long#MAX_VALUE} for the ones never shown.
+	 */
+	private final long[]      lastShown;
+
+	/**
+	 * The index in {@link #WARM_UP_ORDER} of the first state that may not have been constructed yet.
+	 */
+	private int               nextWarmUp;
+
+	/**
+	 * Incremented every time a state is shown.
+	 */
+	private long              showCount;
+
+	/**
+	 * Creates an empty registry. No state is constructed.
+	 * 
+	 * @param core The game core passed to every state.
+	 * @throws IllegalArgumentException If core is null.
+	 */
+	public StateRegistry(final GameCore core) throws IllegalArgumentException{
+		if(core == null)
+			throw new IllegalArgumentException(CLASS_NAME + ": Core is null.");
+
+		this.core = core;
+		states = new BaseState[game_states_t.getNumStates()];
+		lastShown = new long[game_states_t.getNumStates()];
+		Arrays.fill(lastShown, Long.MAX_VALUE);
+		nextWarmUp = 0;
+		showCount = 0L;
+	}
+
+	/**
+	 * Gets a state, constructing it first if needed.
+	 * 
+	 * @param state The state to get.
+	 * @return The state, or null for {@link game_states_t#QUIT}.
+	 */
+	public BaseState get(game_states_t state){
+		if(state == game_states_t.QUIT)
+			return null;
+
+		if(states[state.getValue()] == null)
+			construct(state);
+
+		return states[state.getValue()];
+	}
+
+	/**
+	 * Records that a state is being shown, for {@link #getLeastRecentlyShown(game_states_t)}.
+	 * 
+	 * @param state The state.
+	 */
+	public void markShown(game_states_t state){
+		lastShown[state.getValue()] = showCount++;
+	}
+
+	/**
+	 * Finds the constructed state that was shown the longest time ago. States never shown are skipped, as they were
+	 * warmed up because they are about to be needed, and so are the ones that {@link BaseState#holdsProgress()}.
+	 * 
+	 * @param except A state to skip, usually the one being shown. Can be null.
+	 * @return The state, or null if no other state can be unloaded.
+	 */
+	public game_states_t getLeastRecentlyShown(game_states_t except){
+		game_states_t oldest = null;
+
+		for(game_states_t state : WARM_UP_ORDER){
+			if(state == except || states[state.getValue()] == null || lastShown[state.getValue()] == Long.MAX_VALUE || states[state.getValue()].holdsProgress())
+				continue;
+
+			if(oldest == null || lastShown[state.getValue()] < lastShown[oldest.getValue()])
+				oldest = state;
+		}
+
+		return oldest;
+	}
+
+	/**
+	 * Disposes a state to free everything it holds. It will be constructed again the next time it is requested, but
+	 * not warmed up. Must not be called while it's assets are still loading.
+	 * 
+	 * @param state The state to unload.
+	 */
+	public void unload(game_states_t state){
+		BaseState instance = states[state.getValue()];
+
+		if(instance == null)
+			return;
+
+		if(instance instanceof AssetsLoadedListener)
+			AsyncAssetLoader.getInstance().removeListener((AssetsLoadedListener)instance);
+
+		instance.dispose();
+		states[state.getValue()] = null;
+		core.gpuMemory.removeOwner(state.getValue());
+
+		Gdx.app.log(TAG, "Unloaded " + state.name() + ".");
+	}
+
+	/**
+	 * Constructs pending states in {@link #WARM_UP_ORDER} until the time budget runs out. At least one state is
+	 * constructed on every call, as a state can't be constructed in pieces.
+	 * 
+	 * @param budget How many seconds can be spent.
+	 * @return True if every state has been constructed.
+	 */
+	public boolean warmUp(float budget){
+		long start = TimeUtils.nanoTime();
+		long limit = (long)(budget * 1.0e9f);
+
+		do{
+			// Skip the states constructed on demand.
+			while(nextWarmUp < WARM_UP_ORDER.length && states[WARM_UP_ORDER[nextWarmUp].getValue()] != null)
+				nextWarmUp++;
+
+			if(nextWarmUp >= WARM_UP_ORDER.length)
+				return true;
+
+			construct(WARM_UP_ORDER[nextWarmUp++]);
+		}while(TimeUtils.nanoTime() - start < limit);
+
+		return isWarmedUp();
+	}
+
+	/**
+	 * @return True if every state has been constructed, or unloaded after that.
+	 */
+	public boolean isWarmedUp(){
+		for(int i = nextWarmUp; i < WARM_UP_ORDER.length; i++){
+			if(states[WARM_UP_ORDER[i].getValue()] == null)
+				return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Disposes every constructed state.
+	 */
+	@Override
+	public void dispose(){
+		for(int i = 0; i < states.length; i++){
+			if(states[i] != null){
+				states[i].dispose();
+				states[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * Constructs a state and registers it with the asset loader if it needs to.
+	 * 
+	 * @param state The state to construct.
+	 */
+	private void construct(game_states_t state){
+		long      start = TimeUtils.nanoTime();
+		int       owner = core.gpuMemory.getOwner();
+		BaseState instance;
+
+		// Everything allocated by the constructor belongs to the state.
+		core.gpuMemory.setOwner(state.getValue());
+
+		try{
+			switch(state){
+			case LOGO_SCREEN:
+				instance = new LogoScreenState(core);
+				break;
+			case LOADING:
+				instance = new LoadingState(core);
+				break;
+			case MAIN_MENU:
+				instance = new MainMenuState(core);
+				break;
+			case IN_GAME:
+				instance = new InGameState(core);
+				break;
+			case REPLAY:
+				instance = new ReplayState(core);
+				break;
+			default:
+				throw new IllegalArgumentException(CLASS_NAME + ": Cannot construct state " + state.name());
+			}
+		}finally{
+			core.gpuMemory.setOwner(owner);
+		}
+
+		states[state.getValue()] = instance;
+
+		if(instance instanceof AssetsLoadedListener)
+			AsyncAssetLoader.getInstance().addListener((AssetsLoadedListener)instance);
+
+		Gdx.app.log(TAG, "Constructed " + state.name() + " in " + (TimeUtils.nanoTime() - start) / 1000000 + " ms.");
+	}
+}
@@ -15,78 +15,198 @@
  */
 package com.gamejolt.mikykr5.ceidecpong.utils;
 
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.audio.Sound;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas.TextureAtlasData.Page;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.graphics.glutils.FileTextureData;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
 import com.gamejolt.mikykr5.ceidecpong.interfaces.AssetsLoadedListener;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.FontAtlasCache;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.FontAtlasCache.PreparedFont;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceCache;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceSizes;
+import com.gamejolt.mikykr5.ceidecpong.utils.profiling.GpuMemoryTracker;
 
 /**
- * An singleton wrapper around an {@link AssetManager} object.
+ * The asset loader of the game. Assets are decoded in parallel by a pool of worker threads as soon as they are
+ * requested, and only uploaded to the GPU on the rendering thread by {@link AsyncAssetLoader#loadAssets()}, which
+ * spends at most {@link ProjectConstants#ASSET_UPLOAD_BUDGET} seconds per call doing so. Assets with a higher priority
+ * are decoded and uploaded first.
+ * 
+ * Loaded assets are kept in a {@link ResourceCache}. Every request takes a reference to the asset that must be
+ * released with {@link AsyncAssetLoader#unloadAsset(String, Class)} or {@link AsyncAssetLoader#unloadFont(String, int)}
+ * when it is no longer used. Released assets stay loaded until the cache goes over
+ * {@link ProjectConstants#RESOURCE_CACHE_BUDGET}, so requesting them again is free until then. Every request is also
+ * claimed for the current owner of the {@link GpuMemoryTracker}, if there is one.
+ * 
+ * Supports {@link Texture}, {@link TextureAtlas} and {@link Sound} assets, and TrueType fonts through
+ * {@link AsyncAssetLoader#addFontToLoad(String, int, int)}. All methods must be called from the rendering thread.
  * 
  * @author Miguel Astor
- *
+ * 
  */
 public final class AsyncAssetLoader implements Disposable{
+	/**
+	 * Tag used for logging.
+	 */
+	private static final String TAG             = "ASYNC_LOADER";
+
+	/**
+	 * Class name used for logging.
+	 */
+	private static final String CLASS_NAME      = AsyncAssetLoader.class.getSimpleName();
+
+	/**
+	 * The characters rasterized for every font.
+	 */
+	public static final String  FONT_CHARS      = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ1234567890:,";
+
+	/**
+	 * The standard font size.
+	 */
+	public static final int     BASE_FONT_SIZE  = 40;
+
+	/**
+	 * The priority of assets needed by the next state shown.
+	 */
+	public static final int     HIGH_PRIORITY   = 0;
+
+	/**
+	 * The priority of all other assets.
+	 */
+	public static final int     NORMAL_PRIORITY = 1;
+
+	/**
+	 * The instance shared by the whole game. Created when first needed and kept until
+	 * {@link AsyncAssetLoader#disposeInstance()}.
+	 */
+	private static AsyncAssetLoader instance = null;
+
 	/**
 	 * A list of all listeners registered with this loader.
 	 */
 	private LinkedList<AssetsLoadedListener> listeners;
 
 	/**
-	 * The {@link AssetManager} used to load the assets.
+	 * The requested assets that are not loaded yet.
 	 */
-	private AssetManager manager;
+	private final Map<ResourceCache.Key, Request<?>> requests;
 
 	/**
-	 * Creates the listeners list and the assets manager. Made private so that this class cannot be
+	 * The requests already decoded and waiting to be uploaded, by priority.
+	 */
+	private final PriorityBlockingQueue<Request<?>> decoded;
+
+	/**
+	 * The threads that decode the assets. Pending requests are run by priority.
+	 */
+	private final ThreadPoolExecutor workers;
+
+	/**
+	 * The loaded assets.
+	 */
+	private final ResourceCache cache;
+
+	/**
+	 * The rasterized fonts stored on disk. Null if there is no local storage.
+	 */
+	private final FontAtlasCache fontCache;
+
+	/**
+	 * Records who requests every asset. Can be null.
+	 */
+	private GpuMemoryTracker gpuMemory;
+
+	/**
+	 * How many assets have been requested, decoded and uploaded so far. Assets found in the cache are not counted.
+	 */
+	private int requestedCount;
+	private final AtomicInteger decodedCount;
+	private int loadedCount;
+
+	/**
+	 * Used to keep requests with the same priority in order.
+	 */
+	private int sequence;
+
+	/**
+	 * Creates the listeners list, the cache and the worker threads. Made private so that this class cannot be
 	 * instantiated outside of itself.
 	 */
 	private AsyncAssetLoader(){
+		int threads = Math.max(1, Math.min(ProjectConstants.MAX_ASSET_LOADER_WORKERS, Runtime.getRuntime().availableProcessors() - 1));
+
 		listeners = new LinkedList<AssetsLoadedListener>();
-		manager = new AssetManager();
-	}
+		requests = new HashMap<ResourceCache.Key, Request<?>>();
+		decoded = new PriorityBlockingQueue<Request<?>>();
+		cache = new ResourceCache(ProjectConstants.RESOURCE_CACHE_BUDGET);
+		gpuMemory = null;
+		requestedCount = 0;
+		decodedCount = new AtomicInteger(0);
+		loadedCount = 0;
+		sequence = 0;
 
-	/**
-	 * A holder for the singleton instance of {@link AsyncAssetLoader}.
-	 */
-	private static final class SingletonHolder{
-		/**
-		 * How many references to the singleton instance there are.
-		 */
-		public static int REF_COUNT = 0;
+		if(Gdx.files.isLocalStorageAvailable())
+			fontCache = new FontAtlasCache(Gdx.files.local(ProjectConstants.FONT_CACHE_DIRECTORY));
+		else
+			fontCache = null;
 
-		/**
-		 * The singleton instance.
-		 */
-		public static AsyncAssetLoader INSTANCE;
+		workers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new PriorityBlockingQueue<Runnable>(), new ThreadFactory(){
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable runnable){
+				Thread thread = new Thread(runnable, "AsyncAssetLoader-" + Integer.toString(count++));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		// Idle threads take requests from the queue, so the first ones are prioritized like the rest. Threads started
+		// on demand would run them in submission order instead.
+		workers.prestartAllCoreThreads();
 	}
 
 	/**
-	 * Gets a reference to the singleton instance of this class.
+	 * Gets the instance shared by the whole game, creating it if needed.
 	 * 
-	 * @return The singleton instance.
+	 * @return The instance.
 	 */
 	public static AsyncAssetLoader getInstance(){
-		// If the instance does not exists then create it and update it's reference counter.
-		if(SingletonHolder.REF_COUNT == 0)
-			SingletonHolder.INSTANCE = new AsyncAssetLoader();
-		SingletonHolder.REF_COUNT++;
+		if(instance == null)
+			instance = new AsyncAssetLoader();
 
-		return SingletonHolder.INSTANCE;
+		return instance;
 	}
 
 	/**
-	 * Releases a reference to the singleton instance of this class.
+	 * Disposes the shared instance and every asset it loaded. Must be called only once the game ends, as assets are
+	 * disposed even if someone still holds them.
 	 */
-	public static void freeInstance(){
-		SingletonHolder.REF_COUNT--;
-
-		// If there are no more references to the instance then delete it.
-		if(SingletonHolder.REF_COUNT <= 0){
-			SingletonHolder.INSTANCE.dispose();
-			SingletonHolder.INSTANCE = null;
+	public static void disposeInstance(){
+		if(instance != null){
+			instance.dispose();
+			instance = null;
 		}
 	}
 
@@ -107,56 +227,385 @@ public final class AsyncAssetLoader implements Disposable{
 	}
 
 	/**
-	 * Requests a new asset to be loaded.
+	 * Removes a listener that has not been notified yet.
+	 * 
+	 * @param listener The listener.
+	 */
+	public void removeListener(AssetsLoadedListener listener){
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Sets the tracker that records who requests every asset.
+	 * 
+	 * @param gpuMemory The tracker. Null to not record anything.
+	 */
+	public void setGpuMemoryTracker(GpuMemoryTracker gpuMemory){
+		this.gpuMemory = gpuMemory;
+	}
+
+	/**
+	 * Requests a new asset to be loaded with {@link AsyncAssetLoader#NORMAL_PRIORITY}.
 	 * 
 	 * @param path The internal path of the asset.
-	 * @param assetClass The class of the asset to load. Must be a class recognized by {@link AssetManager}.
-	 * @throws IllegalArgumentException If either argument is null.
+	 * @param assetClass The class of the asset to load. Either {@link Texture}, {@link TextureAtlas} or {@link Sound}.
+	 * @throws IllegalArgumentException If either argument is null or the class is not supported.
 	 */
 	public <T> void addAssetToLoad(String path, Class<T> assetClass) throws IllegalArgumentException{
+		addAssetToLoad(path, assetClass, NORMAL_PRIORITY);
+	}
+
+	/**
+	 * Requests a new asset to be loaded and takes a reference to it. Requesting an asset again only raises it's
+	 * priority if needed.
+	 * 
+	 * @param path The internal path of the asset.
+	 * @param assetClass The class of the asset to load. Either {@link Texture}, {@link TextureAtlas} or {@link Sound}.
+	 * @param priority Assets with lower values are loaded first.
+	 * @throws IllegalArgumentException If either argument is null or the class is not supported.
+	 */
+	public <T> void addAssetToLoad(String path, Class<T> assetClass, int priority) throws IllegalArgumentException{
 		try{
 			checkParametes(path, "path");
-			checkParametes(path, "assetClass");
+			checkParametes(assetClass, "assetClass");
 		}catch(IllegalArgumentException e){
 			throw e;
 		}
 
-		manager.load(path, assetClass);
+		if(assetClass == Texture.class)
+			request(new TextureRequest(path, priority));
+		else if(assetClass == TextureAtlas.class)
+			request(new AtlasRequest(path, priority));
+		else if(assetClass == Sound.class)
+			request(new SoundRequest(path, priority));
+		else
+			throw new IllegalArgumentException("Assets of type " + assetClass.getSimpleName() + " can't be loaded.");
 	}
 
 	/**
-	 * Fetches an asset from the manager after it has been loaded.
+	 * Requests a TrueType font to be rasterized with the characters in {@link AsyncAssetLoader#FONT_CHARS} and
+	 * {@link AsyncAssetLoader#NORMAL_PRIORITY}. Fetch it with {@link AsyncAssetLoader#getFont(String, int)}.
+	 * 
+	 * @param path The internal path of the font.
+	 * @param size The size of the font.
+	 * @throws IllegalArgumentException If path is null.
+	 */
+	public void addFontToLoad(String path, int size) throws IllegalArgumentException{
+		addFontToLoad(path, size, NORMAL_PRIORITY);
+	}
+
+	/**
+	 * Requests a TrueType font to be rasterized with the characters in {@link AsyncAssetLoader#FONT_CHARS} and takes a
+	 * reference to it. Fetch it with {@link AsyncAssetLoader#getFont(String, int)}. Every size is a different asset.
+	 * 
+	 * @param path The internal path of the font.
+	 * @param size The size of the font.
+	 * @param priority Assets with lower values are loaded first.
+	 * @throws IllegalArgumentException If path is null.
+	 */
+	public void addFontToLoad(String path, int size, int priority) throws IllegalArgumentException{
+		try{
+			checkParametes(path, "path");
+		}catch(IllegalArgumentException e){
+			throw e;
+		}
+
+		request(new FontRequest(path, size, priority));
+	}
+
+	/**
+	 * Loads a TrueType font right away and takes a reference to it, for the few places that can't wait for
+	 * {@link AsyncAssetLoader#loadAssets()}. Blocks until the font is rasterized or read from disk.
+	 * 
+	 * @param path The internal path of the font.
+	 * @param size The size of the font.
+	 * @return The font.
+	 * @throws IllegalArgumentException If path is null.
+	 * @throws GdxRuntimeException If the font could not be loaded.
+	 */
+	public BitmapFont loadFont(String path, int size) throws IllegalArgumentException, GdxRuntimeException{
+		try{
+			checkParametes(path, "path");
+		}catch(IllegalArgumentException e){
+			throw e;
+		}
+
+		return (BitmapFont)loadNow(new FontRequest(path, size, HIGH_PRIORITY));
+	}
+
+	/**
+	 * Loads a texture right away and takes a reference to it, for the few places that can't wait for
+	 * {@link AsyncAssetLoader#loadAssets()}. Release it with {@link AsyncAssetLoader#unloadAsset(String, Class)}.
+	 * 
+	 * @param path The internal path of the texture.
+	 * @return The texture.
+	 * @throws IllegalArgumentException If path is null.
+	 * @throws GdxRuntimeException If the texture could not be loaded.
+	 */
+	public Texture loadTexture(String path) throws IllegalArgumentException, GdxRuntimeException{
+		try{
+			checkParametes(path, "path");
+		}catch(IllegalArgumentException e){
+			throw e;
+		}
+
+		return (Texture)loadNow(new TextureRequest(path, HIGH_PRIORITY));
+	}
+
+	/**
+	 * Fetches an asset from the loader after it has been loaded.
 	 * 
 	 * @param path The internal path of the asset.
-	 * @param assetClass The class of the asset to load. Must be a class recognized by {@link AssetManager}.
+	 * @param assetClass The class of the asset.
 	 * @return The asset.
 	 * @throws IllegalArgumentException If either argument is null.
+	 * @throws GdxRuntimeException If the asset has not been loaded yet or has a different class.
+	 */
+	public <T> T getAsset(String path, Class<T> assetClass) throws IllegalArgumentException, GdxRuntimeException{
+		try{
+			checkParametes(path, "path");
+			checkParametes(assetClass, "assetClass");
+		}catch(IllegalArgumentException e){
+			throw e;
+		}
+
+		return assetClass.cast(get(new ResourceCache.Key(path, assetClass, null)));
+	}
+
+	/**
+	 * Fetches a font from the loader after it has been loaded.
+	 * 
+	 * @param path The internal path of the font.
+	 * @param size The size of the font.
+	 * @return The font.
+	 * @throws IllegalArgumentException If path is null.
+	 * @throws GdxRuntimeException If the font has not been loaded yet.
+	 */
+	public BitmapFont getFont(String path, int size) throws IllegalArgumentException, GdxRuntimeException{
+		try{
+			checkParametes(path, "path");
+		}catch(IllegalArgumentException e){
+			throw e;
+		}
+
+		return (BitmapFont)get(fontKey(path, size));
+	}
+
+	/**
+	 * Releases a reference taken by {@link AsyncAssetLoader#addAssetToLoad(String, Class, int)} or
+	 * {@link AsyncAssetLoader#loadTexture(String)}. The asset must not be used after this.
+	 * 
+	 * @param path The internal path of the asset.
+	 * @param assetClass The class of the asset.
+	 * @throws IllegalArgumentException If either argument is null.
+	 * @throws IllegalStateException If the asset was released more times than requested.
 	 */
-	public <T> T getAsset(String path, Class<T> assetClass) throws IllegalArgumentException{
+	public <T> void unloadAsset(String path, Class<T> assetClass) throws IllegalArgumentException, IllegalStateException{
 		try{
 			checkParametes(path, "path");
-			checkParametes(path, "assetClass");
+			checkParametes(assetClass, "assetClass");
 		}catch(IllegalArgumentException e){
 			throw e;
 		}
 
-		return manager.get(path, assetClass);
+		release(new ResourceCache.Key(path, assetClass, null));
 	}
 
 	/**
-	 * Updates the {@link AssetManager}. Notifies all the registered listeners if the loading finished.
+	 * Releases a reference taken by {@link AsyncAssetLoader#addFontToLoad(String, int, int)} or
+	 * {@link AsyncAssetLoader#loadFont(String, int)}. The font must not be used after this.
+	 * 
+	 * @param path The internal path of the font.
+	 * @param size The size of the font.
+	 * @throws IllegalArgumentException If path is null.
+	 * @throws IllegalStateException If the font was released more times than requested.
+	 */
+	public void unloadFont(String path, int size) throws IllegalArgumentException, IllegalStateException{
+		try{
+			checkParametes(path, "path");
+		}catch(IllegalArgumentException e){
+			throw e;
+		}
+
+		release(fontKey(path, size));
+	}
+
+	/**
+	 * Uploads decoded assets until the time budget runs out. Notifies all the registered listeners if the loading
+	 * finished.
 	 * 
 	 * @return True if all assets are loaded.
+	 * @throws GdxRuntimeException If an asset could not be decoded.
 	 */
-	public boolean loadAssets(){
-		boolean done = manager.update();
+	public boolean loadAssets() throws GdxRuntimeException{
+		long       start = TimeUtils.nanoTime();
+		long       budget = (long)(ProjectConstants.ASSET_UPLOAD_BUDGET * 1.0e9f);
+		Request<?> request;
+		boolean    done;
 
+		while((request = decoded.poll()) != null){
+			upload(request);
+
+			if(TimeUtils.nanoTime() - start >= budget)
+				break;
+		}
+
+		done = requests.isEmpty();
 		if(done)
 			notifyListeners();
 
 		return done;
 	}
 
+	/**
+	 * @return True if no requested asset is waiting to be loaded.
+	 */
+	public boolean isDone(){
+		return requests.isEmpty();
+	}
+
+	/**
+	 * Decoding and uploading count as half of the work of an asset each.
+	 * 
+	 * @return How much of the requested work is done, between 0 and 1.
+	 */
+	public float getProgress(){
+		if(requestedCount == 0)
+			return 1.0f;
+
+		return (float)(decodedCount.get() + loadedCount) / (float)(2 * requestedCount);
+	}
+
+	/**
+	 * @return The cache of loaded assets, to read it's statistics.
+	 */
+	public ResourceCache getCache(){
+		return cache;
+	}
+
+	/**
+	 * Starts decoding a new request. If the asset was already requested takes another reference to it, raising the
+	 * priority of the pending request if needed.
+	 */
+	private void request(Request<?> request){
+		Request<?> previous = requests.get(request.key);
+
+		if(gpuMemory != null)
+			gpuMemory.claim(request.key);
+
+		if(previous != null){
+			previous.references++;
+
+			// Requests can only be reordered while they are waiting in one of the queues.
+			if(request.priority < previous.priority){
+				if(workers.remove(previous)){
+					previous.priority = request.priority;
+					workers.execute(previous);
+				}else if(decoded.remove(previous)){
+					previous.priority = request.priority;
+					decoded.add(previous);
+				}
+			}
+
+			return;
+		}
+
+		if(cache.acquire(request.key) != null)
+			return;
+
+		request.references = 1;
+		requests.put(request.key, request);
+		requestedCount++;
+		workers.execute(request);
+	}
+
+	/**
+	 * Loads an asset on the calling thread and takes a reference to it. If the asset was already requested the
+	 * pending request is finished instead.
+	 */
+	private Disposable loadNow(Request<?> request) throws GdxRuntimeException{
+		Request<?> previous = requests.get(request.key);
+
+		if(gpuMemory != null)
+			gpuMemory.claim(request.key);
+
+		if(previous != null){
+			previous.references++;
+			finish(previous);
+
+		}else if(cache.acquire(request.key) == null){
+			request.references = 1;
+			request.decode();
+			upload(request);
+		}
+
+		return cache.get(request.key);
+	}
+
+	/**
+	 * Finishes a pending request on the calling thread, waiting for the worker decoding it if there is one.
+	 */
+	private void finish(Request<?> request) throws GdxRuntimeException{
+		if(workers.remove(request)){
+			request.run();
+		}else{
+			try{
+				request.decodeDone.await();
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+				throw new GdxRuntimeException("Interrupted while loading: " + request.key.path, e);
+			}
+		}
+
+		decoded.remove(request);
+		upload(request);
+	}
+
+	/**
+	 * Creates the asset of a decoded request and moves it to the cache.
+	 */
+	private void upload(Request<?> request) throws GdxRuntimeException{
+		if(request.error != null)
+			throw new GdxRuntimeException("Couldn't load asset: " + request.key.path, request.error);
+
+		request.upload();
+
+		if(requests.remove(request.key) != null)
+			loadedCount++;
+	}
+
+	/**
+	 * Releases a reference to a pending or loaded asset. A pending request keeps loading and goes to the cache
+	 * without references.
+	 */
+	private void release(ResourceCache.Key key) throws IllegalStateException{
+		Request<?> request = requests.get(key);
+
+		if(request == null){
+			cache.release(key);
+		}else if(request.references > 0){
+			request.references--;
+		}else{
+			throw new IllegalStateException("Released more times than requested: " + key.toString());
+		}
+	}
+
+	/**
+	 * Gets a loaded asset.
+	 */
+	private Disposable get(ResourceCache.Key key) throws GdxRuntimeException{
+		Disposable asset = cache.get(key);
+
+		if(asset == null)
+			throw new GdxRuntimeException("Asset not loaded: " + key.toString());
+
+		return asset;
+	}
+
+	private static ResourceCache.Key fontKey(String path, int size){
+		return new ResourceCache.Key(path, BitmapFont.class, Integer.valueOf(size));
+	}
+
 	/**
 	 * Notifies all listener objects that this loader has finished it's work.
 	 */
@@ -180,7 +629,254 @@ public final class AsyncAssetLoader implements Disposable{
 
 	@Override
 	public void dispose(){
-		Gdx.app.log("ASYNC_LOADER", "Disposing asset manager.");
-		manager.dispose();
+		Gdx.app.log(TAG, "Disposing assets.");
+
+		// Let the workers finish what they are decoding so their results can be released.
+		workers.shutdownNow();
+		try{
+			if(!workers.awaitTermination(1, TimeUnit.SECONDS))
+				Gdx.app.error(TAG, CLASS_NAME + ".dispose(): Workers did not finish in time.");
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+
+		for(Request<?> request : requests.values())
+			request.discard();
+		requests.clear();
+		decoded.clear();
+
+		cache.dispose();
+	}
+
+	/**
+	 * An asset to load. Decoded by a worker thread and then uploaded by the rendering thread.
+	 */
+	private abstract class Request<T extends Disposable> implements Runnable, Comparable<Request<?>>{
+		protected final ResourceCache.Key key;
+		protected final FileHandle        file;
+		private final CountDownLatch      decodeDone;
+		private final int                 order;
+		private int                       priority;
+		private int                       references;
+		private volatile Throwable        error;
+
+		public Request(String path, Class<T> type, Object parameters, int priority){
+			this.key = new ResourceCache.Key(path, type, parameters);
+			this.file = Gdx.files.internal(path);
+			this.decodeDone = new CountDownLatch(1);
+			this.priority = priority;
+			this.order = sequence++;
+			references = 0;
+			error = null;
+		}
+
+		/**
+		 * Loads everything that doesn't need an OpenGL context. Called from a worker thread.
+		 */
+		protected abstract void decode();
+
+		/**
+		 * Creates the asset from the decoded data. Called from the rendering thread.
+		 */
+		protected abstract T create();
+
+		/**
+		 * @return How many bytes the created asset occupies.
+		 */
+		protected abstract long size(T asset);
+
+		/**
+		 * Releases the decoded data of an asset that was never created.
+		 */
+		protected abstract void discard();
+
+		@Override
+		public void run(){
+			try{
+				decode();
+			}catch(RuntimeException e){
+				error = e;
+			}
+
+			decodedCount.incrementAndGet();
+			decoded.add(this);
+			decodeDone.countDown();
+		}
+
+		/**
+		 * Creates the asset and gives it to the cache with the references taken so far.
+		 */
+		public void upload(){
+			T asset = create();
+
+			cache.put(key, asset, size(asset), references);
+		}
+
+		@Override
+		public int compareTo(Request<?> other){
+			if(priority != other.priority)
+				return priority < other.priority ? -1 : 1;
+
+			return order < other.order ? -1 : (order == other.order ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Decodes the image of a texture.
+	 */
+	private final class TextureRequest extends Request<Texture>{
+		private TextureData data;
+
+		public TextureRequest(String path, int priority){
+			super(path, Texture.class, null, priority);
+		}
+
+		@Override
+		protected void decode(){
+			TextureData data = new FileTextureData(file, null, null, false);
+
+			data.prepare();
+			this.data = data;
+		}
+
+		@Override
+		protected Texture create(){
+			return new Texture(data);
+		}
+
+		@Override
+		protected long size(Texture asset){
+			return ResourceSizes.of(asset);
+		}
+
+		@Override
+		protected void discard(){
+			if(data != null && data.isPrepared())
+				data.consumePixmap().dispose();
+		}
+	}
+
+	/**
+	 * Parses a texture atlas and decodes the images of all of it's pages.
+	 */
+	private final class AtlasRequest extends Request<TextureAtlas>{
+		private TextureAtlasData atlasData;
+		private TextureData[]    pages;
+
+		public AtlasRequest(String path, int priority){
+			super(path, TextureAtlas.class, null, priority);
+		}
+
+		@Override
+		protected void decode(){
+			TextureAtlasData atlasData = new TextureAtlasData(file, file.parent(), false);
+			TextureData[]    pages     = new TextureData[atlasData.getPages().size];
+			Page             page;
+
+			this.pages = pages;
+			for(int i = 0; i < pages.length; i++){
+				page = atlasData.getPages().get(i);
+				pages[i] = new FileTextureData(page.textureFile, null, page.format, page.useMipMaps);
+				pages[i].prepare();
+			}
+			this.atlasData = atlasData;
+		}
+
+		@Override
+		protected TextureAtlas create(){
+			// The atlas uses the textures already set in it's pages.
+			for(int i = 0; i < pages.length; i++)
+				atlasData.getPages().get(i).texture = new Texture(pages[i]);
+
+			return new TextureAtlas(atlasData);
+		}
+
+		@Override
+		protected long size(TextureAtlas asset){
+			return ResourceSizes.of(asset);
+		}
+
+		@Override
+		protected void discard(){
+			if(pages == null)
+				return;
+
+			for(TextureData page : pages){
+				if(page != null && page.isPrepared())
+					page.consumePixmap().dispose();
+			}
+		}
+	}
+
+	/**
+	 * Decodes a sound effect. The audio backends can create sounds from any thread.
+	 */
+	private final class SoundRequest extends Request<Sound>{
+		private Sound sound;
+		private long  bytes;
+
+		public SoundRequest(String path, int priority){
+			super(path, Sound.class, null, priority);
+		}
+
+		@Override
+		protected void decode(){
+			sound = Gdx.audio.newSound(file);
+			bytes = ResourceSizes.ofSound(file);
+		}
+
+		@Override
+		protected Sound create(){
+			return sound;
+		}
+
+		@Override
+		protected long size(Sound asset){
+			return bytes;
+		}
+
+		@Override
+		protected void discard(){
+			if(sound != null)
+				sound.dispose();
+		}
+	}
+
+	/**
+	 * Rasterizes a TrueType font, or reads it from the {@link FontAtlasCache}.
+	 */
+	private final class FontRequest extends Request<BitmapFont>{
+		private final FreeTypeFontParameter parameter;
+		private PreparedFont                font;
+
+		public FontRequest(String path, int size, int priority){
+			super(path, BitmapFont.class, Integer.valueOf(size), priority);
+
+			parameter = new FreeTypeFontParameter();
+			parameter.characters = FONT_CHARS;
+			parameter.size = size;
+			parameter.flip = false;
+		}
+
+		@Override
+		protected void decode(){
+			font = fontCache != null ? fontCache.prepare(file, parameter) : FontAtlasCache.rasterize(file, parameter);
+		}
+
+		@Override
+		protected BitmapFont create(){
+			return font.upload();
+		}
+
+		@Override
+		protected long size(BitmapFont asset){
+			return ResourceSizes.of(asset);
+		}
+
+		@Override
+		protected void discard(){
+			if(font != null)
+				font.dispose();
+		}
 	}
 }
@@ -0,0 +1,591 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.utils.managers;
+
+import java.io.BufferedReader;
+import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.PixmapIO;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.Texture.TextureFilter;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.BitmapFontData;
+import com.badlogic.gdx.graphics.g2d.BitmapFont.Glyph;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeBitmapFontData;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator.FreeTypeFontParameter;
+import com.badlogic.gdx.graphics.glutils.FileTextureData;
+import com.badlogic.gdx.graphics.glutils.PixmapTextureData;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Keeps the fonts rasterized by {@link FreeTypeFontGenerator} on disk, so every font is only rasterized the first
+ * time the game runs. Each font is stored in it's own directory as pages plus a text file with the metrics of the
+ * font and it's glyphs, modeled after the AngelCode BMFont format. Pages are stored with {@link PixmapIO#writeCIM}
+ * instead of as PNG files, as the PNG writer of libGDX does not compress them. The generator only draws white glyphs,
+ * so pages are stored as {@link Format#LuminanceAlpha}, which halves the time to load them and the memory they use.
+ * 
+ * Fonts are identified by the path of the TrueType file, the size, the characters, whether they are flipped and a
+ * hash of the contents of the TrueType file, so replacing a font file or changing it's parameters rasterizes it
+ * again. The complete key is stored with the metrics and checked on load, so a hash collision can't return the wrong
+ * font. A font whose files can't be read is rasterized and stored again.
+ * 
+ * Loading is split in {@link FontAtlasCache#prepare(FileHandle, FreeTypeFontParameter)}, which does all the work that
+ * needs no OpenGL context and can be called from any thread, and {@link PreparedFont#upload()}, which creates the
+ * textures on the rendering thread.
+ * 
+ * @author Miguel Astor
+ */
+public class FontAtlasCache{
+	/**
+	 * Tag used for logging.
+	 */
+	private static final String TAG          = "FONT_ATLAS_CACHE";
+
+	/**
+	 * Class name used for logging.
+	 */
+	private static final String CLASS_NAME   = FontAtlasCache.class.getSimpleName();
+
+	/**
+	 * Changes whenever the layout of the stored files changes, so fonts stored by older versions are ignored.
+	 */
+	private static final int    VERSION      = 1;
+
+	/**
+	 * The name of the metrics file of every font.
+	 */
+	private static final String METRICS_FILE = "font.fnt";
+
+	/**
+	 * The extension of the metrics file while it is being written. The metrics are written last, so a font is only
+	 * found once all of it's pages are complete.
+	 */
+	private static final String TEMP_SUFFIX  = ".tmp";
+
+	/**
+	 * The padding between glyphs in the pages, the same used by {@link FreeTypeFontGenerator}.
+	 */
+	private static final int    PADDING      = 2;
+
+	/**
+	 * The directory holding the directories of every font.
+	 */
+	private final FileHandle    directory;
+
+	// Statistics.
+	private int                 hits;
+	private int                 misses;
+
+	/**
+	 * Creates a cache.
+	 * 
+	 * @param directory The directory where fonts are stored. Created on demand.
+	 * @throws IllegalArgumentException If directory is null.
+	 */
+	public FontAtlasCache(FileHandle directory) throws IllegalArgumentException{
+		if(directory == null)
+			throw new IllegalArgumentException("Directory is null.");
+
+		this.directory = directory;
+		hits = 0;
+		misses = 0;
+	}
+
+	/**
+	 * Loads a font from the cache, or rasterizes and stores it if it is not there. Must be called from the rendering
+	 * thread.
+	 * 
+	 * @param file The TrueType file.
+	 * @param parameter The parameters of the font. The packer is ignored.
+	 * @return The font, which owns it's textures.
+	 * @throws GdxRuntimeException If the TrueType file can't be read.
+	 */
+	public BitmapFont load(FileHandle file, FreeTypeFontParameter parameter) throws GdxRuntimeException{
+		return prepare(file, parameter).upload();
+	}
+
+	/**
+	 * Reads a font from the cache, or rasterizes and stores it if it is not there, without creating it's textures.
+	 * Can be called from any thread, but the parameter must not be changed until this returns.
+	 * 
+	 * @param file The TrueType file.
+	 * @param parameter The parameters of the font. The packer is ignored.
+	 * @return The font, ready to be uploaded.
+	 * @throws GdxRuntimeException If the TrueType file can't be read.
+	 */
+	public PreparedFont prepare(FileHandle file, FreeTypeFontParameter parameter) throws GdxRuntimeException{
+		String       key       = createKey(file, parameter);
+		FileHandle   fontCache = directory.child(Long.toHexString(hash(key)));
+		PreparedFont font      = null;
+
+		if(fontCache.child(METRICS_FILE).exists()){
+			try{
+				font = read(fontCache, key, parameter);
+			}catch(IOException e){
+				Gdx.app.error(TAG, CLASS_NAME + ".prepare(): Discarding the stored copy of " + file.path(), e);
+			}catch(GdxRuntimeException e){
+				Gdx.app.error(TAG, CLASS_NAME + ".prepare(): Discarding the stored copy of " + file.path(), e);
+			}
+		}
+
+		count(font != null);
+		if(font != null)
+			return font;
+
+		return generate(file, parameter, fontCache, key);
+	}
+
+	/**
+	 * Rasterizes a font without storing it, for when there is no local storage. Can be called from any thread.
+	 * 
+	 * @param file The TrueType file.
+	 * @param parameter The parameters of the font. The packer is ignored.
+	 * @return The font, ready to be uploaded. It's textures are not managed.
+	 * @throws GdxRuntimeException If the TrueType file can't be read.
+	 */
+	public static PreparedFont rasterize(FileHandle file, FreeTypeFontParameter parameter) throws GdxRuntimeException{
+		FreeTypeFontGenerator generator = new FreeTypeFontGenerator(file);
+		PixmapPacker          packer    = createPacker(parameter);
+
+		try{
+			return fromPacker(generateData(generator, parameter, packer), packer, parameter);
+		}catch(GdxRuntimeException e){
+			packer.dispose();
+			throw e;
+		}finally{
+			generator.dispose();
+		}
+	}
+
+	/**
+	 * @return How many fonts were loaded from disk.
+	 */
+	public synchronized int getHits(){
+		return hits;
+	}
+
+	/**
+	 * @return How many fonts had to be rasterized.
+	 */
+	public synchronized int getMisses(){
+		return misses;
+	}
+
+	/**
+	 * Updates the statistics.
+	 */
+	private synchronized void count(boolean hit){
+		if(hit)
+			hits++;
+		else
+			misses++;
+	}
+
+	/**
+	 * Rasterizes a font and stores it. The stored copy is read back so the font uses managed textures, like any font
+	 * loaded from the cache. If it can't be stored the rasterized pages are used as they are.
+	 */
+	private PreparedFont generate(FileHandle file, FreeTypeFontParameter parameter, FileHandle fontCache, String key){
+		FreeTypeFontGenerator  generator = new FreeTypeFontGenerator(file);
+		PixmapPacker           packer    = createPacker(parameter);
+		FreeTypeBitmapFontData data;
+		PreparedFont           font      = null;
+
+		try{
+			data = generateData(generator, parameter, packer);
+		}catch(GdxRuntimeException e){
+			packer.dispose();
+			throw e;
+		}finally{
+			generator.dispose();
+		}
+
+		try{
+			write(fontCache, key, data, packer);
+			font = read(fontCache, key, parameter);
+		}catch(IOException e){
+			Gdx.app.error(TAG, CLASS_NAME + ".generate(): Could not store " + file.path(), e);
+		}catch(GdxRuntimeException e){
+			Gdx.app.error(TAG, CLASS_NAME + ".generate(): Could not store " + file.path(), e);
+		}
+
+		if(font != null){
+			packer.dispose();
+			return font;
+		}
+
+		fontCache.deleteDirectory();
+		return fromPacker(data, packer, parameter);
+	}
+
+	/**
+	 * Creates a packer big enough for most fonts to fit in a single page.
+	 */
+	private static PixmapPacker createPacker(FreeTypeFontParameter parameter){
+		int pageSize;
+
+		// Same heuristic as the generator, using the requested size as an estimate of the line height.
+		pageSize = MathUtils.nextPowerOfTwo((int)Math.ceil(Math.sqrt(parameter.size * parameter.size * parameter.characters.length())));
+		pageSize = Math.min(pageSize, FreeTypeFontGenerator.getMaxTextureSize());
+
+		return new PixmapPacker(pageSize, pageSize, Format.RGBA8888, PADDING, false);
+	}
+
+	/**
+	 * Rasterizes the glyphs of a font into the given packer.
+	 */
+	private static FreeTypeBitmapFontData generateData(FreeTypeFontGenerator generator, FreeTypeFontParameter parameter, PixmapPacker packer){
+		FreeTypeFontParameter packed = new FreeTypeFontParameter();
+
+		// Use a copy of the parameter so it can be shared between threads.
+		packed.size = parameter.size;
+		packed.characters = parameter.characters;
+		packed.kerning = parameter.kerning;
+		packed.flip = parameter.flip;
+		packed.genMipMaps = parameter.genMipMaps;
+		packed.minFilter = parameter.minFilter;
+		packed.magFilter = parameter.magFilter;
+		packed.packer = packer;
+
+		return generator.generateData(packed);
+	}
+
+	/**
+	 * Uses the pages of a packer as they are, without storing them. The pixmaps of the packer are owned by the font
+	 * from here on.
+	 */
+	private static PreparedFont fromPacker(BitmapFontData data, PixmapPacker packer, FreeTypeFontParameter parameter){
+		TextureData[] pages = new TextureData[packer.getPages().size];
+
+		for(int i = 0; i < pages.length; i++)
+			pages[i] = new PixmapTextureData(packer.getPages().get(i).getPixmap(), null, false, true);
+
+		return new PreparedFont(data, pages, parameter.minFilter, parameter.magFilter);
+	}
+
+	/**
+	 * Writes the pages and metrics of a rasterized font.
+	 */
+	private void write(FileHandle fontCache, String key, BitmapFontData data, PixmapPacker packer) throws IOException{
+		FileHandle temp = fontCache.child(METRICS_FILE + TEMP_SUFFIX);
+		Writer     writer;
+		int        pages = packer.getPages().size;
+
+		fontCache.deleteDirectory();
+		fontCache.mkdirs();
+
+		for(int i = 0; i < pages; i++)
+			writePage(fontCache.child(pageName(i)), packer.getPages().get(i).getPixmap(), usedHeight(data, i));
+
+		try{
+			writer = temp.writer(false, "UTF-8");
+		}catch(GdxRuntimeException e){
+			throw new IOException("Could not open " + temp.path(), e);
+		}
+
+		try{
+			writer.write("key " + key + "\n");
+			writer.write("common lineHeight=" + data.lineHeight + " capHeight=" + data.capHeight + " ascent=" + data.ascent + " descent=" + data.descent + " down=" + data.down);
+			writer.write(" spaceWidth=" + data.spaceWidth + " xHeight=" + data.xHeight + " scaleX=" + data.scaleX + " scaleY=" + data.scaleY + " pages=" + pages + "\n");
+
+			for(int i = 0; i < pages; i++)
+				writer.write("page id=" + i + " file=\"" + pageName(i) + "\"\n");
+
+			for(Glyph[] page : data.glyphs){
+				if(page == null)
+					continue;
+
+				for(Glyph glyph : page){
+					if(glyph == null)
+						continue;
+
+					writer.write("char id=" + glyph.id + " x=" + glyph.srcX + " y=" + glyph.srcY + " width=" + glyph.width + " height=" + glyph.height);
+					writer.write(" xoffset=" + glyph.xoffset + " yoffset=" + glyph.yoffset + " xadvance=" + glyph.xadvance + " page=" + glyph.page + "\n");
+				}
+			}
+
+			for(Glyph[] page : data.glyphs){
+				if(page == null)
+					continue;
+
+				for(Glyph glyph : page)
+					writeKerning(writer, glyph);
+			}
+		}finally{
+			writer.close();
+		}
+
+		temp.moveTo(fontCache.child(METRICS_FILE));
+	}
+
+	/**
+	 * Finds how many rows of a page are used by glyphs, rounded up to a power of two. The packer fills pages from the
+	 * top, so the rest of the page can be left out.
+	 */
+	private static int usedHeight(BitmapFontData data, int page){
+		int height = 1;
+
+		for(Glyph[] glyphs : data.glyphs){
+			if(glyphs == null)
+				continue;
+
+			for(Glyph glyph : glyphs){
+				if(glyph != null && glyph.page == page)
+					height = Math.max(height, glyph.srcY + glyph.height + PADDING);
+			}
+		}
+
+		return MathUtils.nextPowerOfTwo(height);
+	}
+
+	/**
+	 * Writes the top rows of an RGBA8888 page as {@link Format#LuminanceAlpha}, keeping the red and alpha channels.
+	 */
+	private void writePage(FileHandle file, Pixmap page, int height) throws IOException{
+		Pixmap     luminanceAlpha = new Pixmap(page.getWidth(), Math.min(height, page.getHeight()), Format.LuminanceAlpha);
+		ByteBuffer source         = page.getPixels();
+		ByteBuffer destination    = luminanceAlpha.getPixels();
+
+		try{
+			for(int i = 0, j = 0; j < destination.capacity(); i += 4, j += 2){
+				destination.put(j, source.get(i));
+				destination.put(j + 1, source.get(i + 3));
+			}
+
+			PixmapIO.writeCIM(file, luminanceAlpha);
+		}catch(GdxRuntimeException e){
+			throw new IOException("Could not write " + file.path(), e);
+		}finally{
+			luminanceAlpha.dispose();
+		}
+	}
+
+	/**
+	 * Writes the kerning pairs that start with a glyph, if any.
+	 */
+	private void writeKerning(Writer writer, Glyph glyph) throws IOException{
+		if(glyph == null || glyph.kerning == null)
+			return;
+
+		for(int i = 0; i < glyph.kerning.length; i++){
+			if(glyph.kerning[i] == null)
+				continue;
+
+			for(int j = 0; j < glyph.kerning[i].length; j++){
+				if(glyph.kerning[i][j] != 0)
+					writer.write("kerning first=" + glyph.id + " second=" + ((i * glyph.kerning[i].length) + j) + " amount=" + glyph.kerning[i][j] + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Reads a stored font.
+	 * 
+	 * @return The font, or null if the stored font has a different key.
+	 * @throws IOException If the metrics are malformed.
+	 * @throws GdxRuntimeException If a file can't be read.
+	 */
+	private PreparedFont read(FileHandle fontCache, String key, FreeTypeFontParameter parameter) throws IOException, GdxRuntimeException{
+		BufferedReader  reader = fontCache.child(METRICS_FILE).reader(512, "UTF-8");
+		BitmapFontData  data   = new BitmapFontData();
+		TextureData[]   pages  = null;
+		PreparedFont    font;
+		Glyph           glyph;
+		String          line;
+		String[]        fields;
+
+		data.flipped = parameter.flip;
+
+		try{
+			if(!("key " + key).equals(reader.readLine()))
+				return null;
+
+			while((line = reader.readLine()) != null){
+				fields = line.split(" ");
+
+				if(fields[0].equals("common")){
+					data.lineHeight = Float.parseFloat(value(fields, "lineHeight"));
+					data.capHeight = Float.parseFloat(value(fields, "capHeight"));
+					data.ascent = Float.parseFloat(value(fields, "ascent"));
+					data.descent = Float.parseFloat(value(fields, "descent"));
+					data.down = Float.parseFloat(value(fields, "down"));
+					data.spaceWidth = Float.parseFloat(value(fields, "spaceWidth"));
+					data.xHeight = Float.parseFloat(value(fields, "xHeight"));
+					data.scaleX = Float.parseFloat(value(fields, "scaleX"));
+					data.scaleY = Float.parseFloat(value(fields, "scaleY"));
+					pages = new TextureData[Integer.parseInt(value(fields, "pages"))];
+
+				}else if(fields[0].equals("char")){
+					glyph = new Glyph();
+					glyph.id = Integer.parseInt(value(fields, "id"));
+					glyph.srcX = Integer.parseInt(value(fields, "x"));
+					glyph.srcY = Integer.parseInt(value(fields, "y"));
+					glyph.width = Integer.parseInt(value(fields, "width"));
+					glyph.height = Integer.parseInt(value(fields, "height"));
+					glyph.xoffset = Integer.parseInt(value(fields, "xoffset"));
+					glyph.yoffset = Integer.parseInt(value(fields, "yoffset"));
+					glyph.xadvance = Integer.parseInt(value(fields, "xadvance"));
+					glyph.page = Integer.parseInt(value(fields, "page"));
+					data.setGlyph(glyph.id, glyph);
+
+				}else if(fields[0].equals("kerning")){
+					glyph = data.getGlyph((char)Integer.parseInt(value(fields, "first")));
+					if(glyph != null)
+						glyph.setKerning(Integer.parseInt(value(fields, "second")), Integer.parseInt(value(fields, "amount")));
+				}
+			}
+		}catch(NumberFormatException e){
+			throw new IOException("Malformed metrics in " + fontCache.path(), e);
+		}finally{
+			reader.close();
+		}
+
+		if(pages == null)
+			throw new IOException("Missing metrics in " + fontCache.path());
+
+		// Decode the pages here, so only the upload is left for the rendering thread.
+		font = new PreparedFont(data, pages, parameter.minFilter, parameter.magFilter);
+		try{
+			for(int i = 0; i < pages.length; i++){
+				pages[i] = new FileTextureData(fontCache.child(pageName(i)), null, null, false);
+				pages[i].prepare();
+			}
+		}catch(GdxRuntimeException e){
+			font.dispose();
+			throw e;
+		}
+
+		return font;
+	}
+
+	/**
+	 * @return The value of a key=value field, without quotes.
+	 * @throws IOException If there is no such field.
+	 */
+	private static String value(String[] fields, String name) throws IOException{
+		for(String field : fields){
+			if(field.length() > name.length() && field.startsWith(name) && field.charAt(name.length()) == '=')
+				return field.substring(name.length() + 1).replace("\"", "");
+		}
+
+		throw new IOException("Missing field " + name);
+	}
+
+	private static String pageName(int page){
+		return "page" + Integer.toString(page) + ".cim";
+	}
+
+	/**
+	 * @return Everything that identifies a rasterized font.
+	 */
+	private static String createKey(FileHandle file, FreeTypeFontParameter parameter){
+		return VERSION + "|" + file.path() + "|" + Long.toHexString(hash(file.readBytes())) + "|" + parameter.size + "|" + parameter.flip + "|" + parameter.kerning + "|" + parameter.characters;
+	}
+
+	private static long hash(String key){
+		try{
+			return hash(key.getBytes("UTF-8"));
+		}catch(UnsupportedEncodingException e){
+			throw new GdxRuntimeException(e);
+		}
+	}
+
+	/**
+	 * @return The 64 bit FNV-1a hash of the data.
+	 */
+	private static long hash(byte[] data){
+		long hash = 0xcbf29ce484222325L;
+
+		for(byte b : data){
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+
+		return hash;
+	}
+
+	/**
+	 * A font whose pages are in memory but not yet uploaded to the GPU.
+	 */
+	public static final class PreparedFont implements Disposable{
+		private final BitmapFontData data;
+		private final TextureData[]  pages;
+		private final TextureFilter  minFilter;
+		private final TextureFilter  magFilter;
+		private boolean              uploaded;
+
+		private PreparedFont(BitmapFontData data, TextureData[] pages, TextureFilter minFilter, TextureFilter magFilter){
+			this.data = data;
+			this.pages = pages;
+			this.minFilter = minFilter;
+			this.magFilter = magFilter;
+			uploaded = false;
+		}
+
+		/**
+		 * Creates the textures of the font. Must be called from the rendering thread, and only once.
+		 * 
+		 * @return The font, which owns it's textures.
+		 * @throws IllegalStateException If the font was already uploaded or disposed.
+		 */
+		public BitmapFont upload() throws IllegalStateException{
+			TextureRegion[] regions = new TextureRegion[pages.length];
+			BitmapFont      font;
+
+			if(uploaded)
+				throw new IllegalStateException("Font already uploaded.");
+
+			uploaded = true;
+			for(int i = 0; i < pages.length; i++){
+				regions[i] = new TextureRegion(new Texture(pages[i]));
+				regions[i].getTexture().setFilter(minFilter, magFilter);
+			}
+
+			font = new BitmapFont(data, regions, false);
+			font.setOwnsTexture(true);
+
+			return font;
+		}
+
+		/**
+		 * Releases the pages if the font was never uploaded.
+		 */
+		@Override
+		public void dispose(){
+			if(uploaded)
+				return;
+
+			uploaded = true;
+			for(TextureData page : pages){
+				if(page != null && page.isPrepared())
+					page.consumePixmap().dispose();
+			}
+		}
+	}
+}
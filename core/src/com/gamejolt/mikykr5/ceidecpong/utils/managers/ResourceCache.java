@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.utils.managers;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.Disposable;
+
+/**
+ * A cache of loaded resources keyed by path, type and loading parameters, so the same font can be cached with two
+ * different sizes. Every entry counts how many users hold it and how many bytes it occupies, see
+ * {@link ResourceSizes}.
+ * 
+ * Entries nobody holds are not disposed right away. They stay resident, so acquiring them again is a hit, until the
+ * bytes of all entries go over the budget. Then the least recently used entries nobody holds are evicted until the
+ * cache fits again. Entries in use are never evicted, so the budget can be exceeded while they are.
+ * 
+ * Not thread safe. Must be used from the rendering thread only, as evicting disposes OpenGL resources.
+ * 
+ * @author Miguel Astor
+ */
+public class ResourceCache implements Disposable{
+	/**
+	 * Tag used for logging.
+	 */
+	private static final String TAG = "RESOURCE_CACHE";
+
+	/**
+	 * Class name used for logging.
+	 */
+	private static final String CLASS_NAME = ResourceCache.class.getSimpleName();
+
+	/**
+	 * Identifies a resource.
+	 */
+	public static final class Key{
+		public final String   path;
+		public final Class<?> type;
+		public final Object   parameters;
+
+		/**
+		 * @param path The path of the resource.
+		 * @param type The class of the resource.
+		 * @param parameters Whatever else changes the loaded resource, compared with equals(). Null if nothing does.
+		 * @throws IllegalArgumentException If path or type are null.
+		 */
+		public Key(String path, Class<?> type, Object parameters) throws IllegalArgumentException{
+			if(path == null)
+				throw new IllegalArgumentException(CLASS_NAME + ": Path is null.");
+			if(type == null)
+				throw new IllegalArgumentException(CLASS_NAME + ": Type is null.");
+
+			this.path = path;
+			this.type = type;
+			this.parameters = parameters;
+		}
+
+		@Override
+		public boolean equals(Object other){
+			Key key;
+
+			if(!(other instanceof Key))
+				return false;
+
+			key = (Key)other;
+			return path.equals(key.path) && type == key.type && (parameters == null ? key.parameters == null : parameters.equals(key.parameters));
+		}
+
+		@Override
+		public int hashCode(){
+			return (path.hashCode() * 31 + type.hashCode()) * 31 + (parameters == null ? 0 : parameters.hashCode());
+		}
+
+		@Override
+		public String toString(){
+			return type.getSimpleName() + " " + path + (parameters == null ? "" : " " + parameters.toString());
+		}
+	}
+
+	/**
+	 * Receives every resident entry, see {@link ResourceCache#visit(Visitor)}.
+	 */
+	public interface Visitor{
+		/**
+		 * @param key The key of the entry.
+		 * @param resource The resource. Must not be disposed.
+		 * @param bytes How many bytes the resource occupies.
+		 * @param references How many users hold the resource.
+		 */
+		public void visit(Key key, Disposable resource, long bytes, int references);
+	}
+
+	/**
+	 * A resident resource.
+	 */
+	private static final class Entry{
+		public final Disposable resource;
+		public final long       bytes;
+		public int              references;
+
+		public Entry(Disposable resource, long bytes, int references){
+			this.resource = resource;
+			this.bytes = bytes;
+			this.references = references;
+		}
+	}
+
+	/**
+	 * Every resident entry, from the least to the most recently used.
+	 */
+	private final LinkedHashMap<Key, Entry> entries;
+
+	/**
+	 * How many bytes can be resident before entries nobody holds are evicted.
+	 */
+	private long budget;
+
+	// Statistics.
+	private long bytesResident;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Creates an empty cache.
+	 * 
+	 * @param budget How many bytes can be resident before entries nobody holds are evicted.
+	 */
+	public ResourceCache(long budget){
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+		this.budget = budget;
+		bytesResident = 0L;
+		hits = 0L;
+		misses = 0L;
+		evictions = 0L;
+	}
+
+	/**
+	 * Takes a reference to a resident resource.
+	 * 
+	 * @param key The key of the resource.
+	 * @return The resource, or null if it is not resident and must be loaded and then {@link #put(Key, Disposable, long, int)}.
+	 */
+	public Disposable acquire(Key key){
+		Entry entry = entries.get(key);
+
+		if(entry == null){
+			misses++;
+			return null;
+		}
+
+		hits++;
+		entry.references++;
+
+		return entry.resource;
+	}
+
+	/**
+	 * Adds a loaded resource. Evicts other entries if the budget is exceeded.
+	 * 
+	 * @param key The key of the resource.
+	 * @param resource The resource. Owned by the cache from now on.
+	 * @param bytes How many bytes the resource occupies.
+	 * @param references How many references to the resource are already taken. Can be zero.
+	 * @throws IllegalStateException If there already is a resource with the same key.
+	 */
+	public void put(Key key, Disposable resource, long bytes, int references) throws IllegalStateException{
+		if(entries.containsKey(key))
+			throw new IllegalStateException(CLASS_NAME + ": Already cached: " + key.toString());
+
+		entries.put(key, new Entry(resource, bytes, references));
+		bytesResident += bytes;
+
+		trim();
+	}
+
+	/**
+	 * Gets a resident resource without taking a reference to it.
+	 * 
+	 * @param key The key of the resource.
+	 * @return The resource, or null if it is not resident.
+	 */
+	public Disposable get(Key key){
+		Entry entry = entries.get(key);
+
+		return entry != null ? entry.resource : null;
+	}
+
+	/**
+	 * Releases a reference to a resource. If nobody else holds it it may be evicted from now on.
+	 * 
+	 * @param key The key of the resource.
+	 * @throws IllegalStateException If the resource is not resident or nobody holds it.
+	 */
+	public void release(Key key) throws IllegalStateException{
+		Entry entry = entries.get(key);
+
+		if(entry == null || entry.references <= 0)
+			throw new IllegalStateException(CLASS_NAME + ": Released more times than acquired: " + key.toString());
+
+		entry.references--;
+		if(entry.references == 0)
+			trim();
+	}
+
+	/**
+	 * Changes the budget, evicting entries right away if needed.
+	 * 
+	 * @param budget How many bytes can be resident before entries nobody holds are evicted.
+	 */
+	public void setBudget(long budget){
+		this.budget = budget;
+		trim();
+	}
+
+	public long getBudget(){
+		return budget;
+	}
+
+	/**
+	 * @return How many bytes all resident entries occupy, including the ones nobody holds.
+	 */
+	public long getBytesResident(){
+		return bytesResident;
+	}
+
+	public int getEntryCount(){
+		return entries.size();
+	}
+
+	public long getHits(){
+		return hits;
+	}
+
+	public long getMisses(){
+		return misses;
+	}
+
+	/**
+	 * @return The fraction of {@link #acquire(Key)} calls that found their resource resident, or 0 if there were none.
+	 */
+	public float getHitRate(){
+		return hits + misses > 0L ? (float)hits / (float)(hits + misses) : 0.0f;
+	}
+
+	/**
+	 * @return How many entries were disposed to fit in the budget.
+	 */
+	public long getEvictions(){
+		return evictions;
+	}
+
+	/**
+	 * Passes every resident entry to a visitor, from the least to the most recently used. Does not count as using
+	 * them. The visitor must not modify the cache.
+	 * 
+	 * @param visitor The visitor.
+	 */
+	public void visit(Visitor visitor){
+		Entry entry;
+
+		for(Map.Entry<Key, Entry> resident : entries.entrySet()){
+			entry = resident.getValue();
+			visitor.visit(resident.getKey(), entry.resource, entry.bytes, entry.references);
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries nobody holds, even if the cache fits in the budget.
+	 * 
+	 * @param bytes How many bytes to free at least.
+	 * @return How many bytes were freed. Less than requested if there were not enough entries nobody holds.
+	 */
+	public long evictUnreferenced(long bytes){
+		Iterator<Entry> iterator = entries.values().iterator();
+		Entry           entry;
+		long            freed = 0L;
+
+		while(freed < bytes && iterator.hasNext()){
+			entry = iterator.next();
+
+			if(entry.references > 0)
+				continue;
+
+			iterator.remove();
+			entry.resource.dispose();
+			bytesResident -= entry.bytes;
+			freed += entry.bytes;
+			evictions++;
+		}
+
+		return freed;
+	}
+
+	/**
+	 * Disposes every entry, held or not.
+	 */
+	@Override
+	public void dispose(){
+		Gdx.app.log(TAG, String.format("Disposing %d resources, %d bytes. Hit rate %.2f, %d evictions.", entries.size(), bytesResident, getHitRate(), evictions));
+
+		for(Entry entry : entries.values())
+			entry.resource.dispose();
+		entries.clear();
+		bytesResident = 0L;
+	}
+
+	/**
+	 * Evicts the least recently used entries nobody holds until the resident bytes fit in the budget.
+	 */
+	private void trim(){
+		if(bytesResident > budget)
+			evictUnreferenced(bytesResident - budget);
+	}
+}
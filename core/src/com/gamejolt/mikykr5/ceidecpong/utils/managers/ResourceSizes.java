@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.utils.managers;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FrameBuffer;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+/**
+ * Estimates how much memory resources occupy once loaded, for the accounting of the {@link ResourceCache} and the
+ * GPU memory tracker.
+ * 
+ * @author Miguel Astor
+ */
+public final class ResourceSizes{
+	/**
+	 * The size of an Ogg page header before it's segment table.
+	 */
+	private static final int OGG_PAGE_HEADER = 27;
+
+	private ResourceSizes(){ }
+
+	/**
+	 * @param texture A texture.
+	 * @return The bytes of video memory used by the texture, including it's mipmaps.
+	 */
+	public static long of(Texture texture){
+		TextureData data  = texture.getTextureData();
+		long        bytes = (long)texture.getWidth() * (long)texture.getHeight() * bytesPerPixel(data.getFormat());
+
+		// A full mipmap chain adds a third.
+		return data.useMipMaps() ? bytes + bytes / 3 : bytes;
+	}
+
+	/**
+	 * @param frameBuffer A frame buffer.
+	 * @param hasDepth Whether the frame buffer was created with a depth buffer, which is assumed to be 16 bits deep.
+	 * @return The bytes of video memory used by the color and depth buffers.
+	 */
+	public static long of(FrameBuffer frameBuffer, boolean hasDepth){
+		long bytes = of(frameBuffer.getColorBufferTexture());
+
+		return hasDepth ? bytes + (long)frameBuffer.getWidth() * (long)frameBuffer.getHeight() * 2L : bytes;
+	}
+
+	/**
+	 * @param atlas A texture atlas.
+	 * @return The bytes of video memory used by the pages of the atlas.
+	 */
+	public static long of(TextureAtlas atlas){
+		long bytes = 0L;
+
+		for(Texture page : atlas.getTextures())
+			bytes += of(page);
+
+		return bytes;
+	}
+
+	/**
+	 * @param font A bitmap font.
+	 * @return The bytes of video memory used by the glyph pages of the font.
+	 */
+	public static long of(BitmapFont font){
+		TextureRegion[] regions = font.getRegions();
+		long            bytes   = 0L;
+		boolean         counted;
+
+		for(int i = 0; i < regions.length; i++){
+			// Pages are usually few, so look for repeated textures in the regions already counted.
+			counted = false;
+			for(int j = 0; j < i && !counted; j++)
+				counted = regions[j].getTexture() == regions[i].getTexture();
+
+			if(!counted)
+				bytes += of(regions[i].getTexture());
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Computes the size of the 16 bit PCM samples a sound effect decodes to, which is what the audio backends keep in
+	 * memory. Reads the headers of Ogg Vorbis and WAV files, for other formats the size of the file is returned.
+	 * 
+	 * @param file A sound effect.
+	 * @return The bytes of decoded samples.
+	 */
+	public static long ofSound(FileHandle file){
+		String extension = file.extension().toLowerCase();
+		byte[] bytes;
+		long   size      = -1L;
+
+		try{
+			if(extension.equals("ogg")){
+				bytes = file.readBytes();
+				size = oggPcmBytes(bytes);
+			}else if(extension.equals("wav")){
+				bytes = file.readBytes();
+				size = wavPcmBytes(bytes);
+			}
+		}catch(GdxRuntimeException e){
+			size = -1L;
+		}
+
+		return size >= 0L ? size : file.length();
+	}
+
+	/**
+	 * @param format A pixel format. Can be null.
+	 * @return The bytes used by every pixel, assuming four if the format is not known.
+	 */
+	private static int bytesPerPixel(Format format){
+		if(format == null)
+			return 4;
+
+		switch(format){
+		case Alpha:
+		case Intensity:
+			return 1;
+		case LuminanceAlpha:
+		case RGB565:
+		case RGBA4444:
+			return 2;
+		case RGB888:
+			return 3;
+		default:
+			return 4;
+		}
+	}
+
+	/**
+	 * Reads the channels from the Vorbis identification header in the first page, and the number of samples from the
+	 * granule position of the last page.
+	 * 
+	 * @return The PCM bytes, or -1 if the file could not be understood.
+	 */
+	private static long oggPcmBytes(byte[] bytes){
+		int  packet, channels, last;
+		long samples;
+
+		if(bytes.length < OGG_PAGE_HEADER || !isOggPage(bytes, 0))
+			return -1L;
+
+		// The identification packet: type 1, "vorbis", a 32 bit version and then the channels.
+		packet = OGG_PAGE_HEADER + (bytes[26] & 0xFF);
+		if(packet + 12 > bytes.length || bytes[packet] != 1)
+			return -1L;
+		channels = bytes[packet + 11] & 0xFF;
+
+		for(last = bytes.length - OGG_PAGE_HEADER; last >= 0 && !isOggPage(bytes, last); last--);
+		if(last < 0)
+			return -1L;
+
+		samples = 0L;
+		for(int i = 7; i >= 0; i--)
+			samples = (samples << 8) | (bytes[last + 6 + i] & 0xFF);
+
+		return samples > 0L ? samples * channels * 2L : -1L;
+	}
+
+	private static boolean isOggPage(byte[] bytes, int offset){
+		return bytes[offset] == 'O' && bytes[offset + 1] == 'g' && bytes[offset + 2] == 'g' && bytes[offset + 3] == 'S';
+	}
+
+	/**
+	 * Looks for the data chunk of a RIFF WAVE file.
+	 * 
+	 * @return The PCM bytes, or -1 if the file could not be understood.
+	 */
+	private static long wavPcmBytes(byte[] bytes){
+		int  offset = 12;
+		long size;
+
+		if(bytes.length < offset || bytes[0] != 'R' || bytes[1] != 'I' || bytes[2] != 'F' || bytes[3] != 'F')
+			return -1L;
+
+		while(offset + 8 <= bytes.length){
+			size = (bytes[offset + 4] & 0xFFL) | (bytes[offset + 5] & 0xFFL) << 8 | (bytes[offset + 6] & 0xFFL) << 16 | (bytes[offset + 7] & 0xFFL) << 24;
+
+			if(bytes[offset] == 'd' && bytes[offset + 1] == 'a' && bytes[offset + 2] == 't' && bytes[offset + 3] == 'a')
+				return size;
+			if(size > bytes.length)
+				return -1L;
+
+			// Chunks are padded to an even size.
+			offset += 8 + (int)size + (int)(size & 1L);
+		}
+
+		return -1L;
+	}
+}
@@ -15,6 +15,7 @@
  */
 
 /**
- * This package contains assorted cached resource managers that can be used by the game to handle specific reusable assets.
+ * This package contains the caches of resources used by the game: the reference counted {@link com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceCache}
+ * of loaded assets and the {@link com.gamejolt.mikykr5.ceidecpong.utils.managers.FontAtlasCache} of fonts stored on disk.
  */
 package com.gamejolt.mikykr5.ceidecpong.utils.managers;
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.utils.profiling;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Keeps histograms of how long frames take, split by game state and by phase, and counts the frames that take
+ * longer than a budget. Uses a fixed amount of memory and does not allocate while recording, so it is always on.
+ * 
+ * Every frame is split in these phases:
+ * 
+ * <ul>
+ * <li>{@link #PHASE_FRAME}: the time between the start of a frame and the start of the next one, which is what the
+ * player sees and the only phase checked against the budget.</li>
+ * <li>{@link #PHASE_UPDATE}: the time the state spent on game logic, up to {@link #markUpdateDone()}. Zero for states
+ * that do not call it.</li>
+ * <li>{@link #PHASE_SUBMIT}: the rest of the time the state spent rendering, mostly building and submitting draw
+ * calls.</li>
+ * <li>{@link #PHASE_FADE}: the time spent on the fade effect between states.</li>
+ * </ul>
+ * 
+ * @author Miguel Astor
+ */
+public class FrameStatistics{
+	// Phases.
+	public static final int PHASE_FRAME  = 0;
+	public static final int PHASE_UPDATE = 1;
+	public static final int PHASE_SUBMIT = 2;
+	public static final int PHASE_FADE   = 3;
+	public static final int PHASE_COUNT  = 4;
+
+	/**
+	 * The names of the phases, as written by {@link #writeSummary(FileHandle, String[])}.
+	 */
+	private static final String[] PHASE_NAMES = {"frame", "update", "submit", "fade"};
+
+	/**
+	 * The histograms, indexed by state and phase.
+	 */
+	private final LogHistogram[][] histograms;
+
+	/**
+	 * The number of frames over the budget of every state.
+	 */
+	private final long[]           jankFrames;
+
+	/**
+	 * The frame time budget in nanoseconds.
+	 */
+	private final long             budget;
+
+	// The current frame.
+	private int                    state;
+	private long                   frameStart;
+	private long                   updateEnd;
+	private long                   stateEnd;
+
+	/**
+	 * Whether the time since the last frame must not be recorded.
+	 */
+	private boolean                skipFrame;
+
+	/**
+	 * Creates empty statistics.
+	 * 
+	 * @param stateCount The number of game states. States are identified by numbers in [0, stateCount).
+	 * @param budgetSeconds Frames taking longer than this many seconds are counted as jank.
+	 * @throws IllegalArgumentException If stateCount or budgetSeconds is not positive.
+	 */
+	public FrameStatistics(int stateCount, float budgetSeconds) throws IllegalArgumentException{
+		if(stateCount <= 0)
+			throw new IllegalArgumentException("State count must be positive.");
+
+		if(budgetSeconds <= 0.0f)
+			throw new IllegalArgumentException("Frame budget must be positive.");
+
+		histograms = new LogHistogram[stateCount][PHASE_COUNT];
+		for(int i = 0; i < stateCount; i++){
+			for(int j = 0; j < PHASE_COUNT; j++)
+				histograms[i][j] = new LogHistogram();
+		}
+
+		jankFrames = new long[stateCount];
+		budget = (long)(budgetSeconds * 1.0e9);
+		state = 0;
+		frameStart = 0L;
+		updateEnd = 0L;
+		stateEnd = 0L;
+		skipFrame = true;
+	}
+
+	/**
+	 * Marks the start of a frame, which is also the end of the previous one.
+	 * 
+	 * @param state The state being rendered in this frame.
+	 */
+	public void beginFrame(int state){
+		long now = TimeUtils.nanoTime();
+
+		if(!skipFrame && frameStart != 0L){
+			histograms[this.state][PHASE_FRAME].record(now - frameStart);
+			if(now - frameStart > budget)
+				jankFrames[this.state]++;
+		}
+
+		this.state = state;
+		frameStart = now;
+		updateEnd = 0L;
+		skipFrame = false;
+	}
+
+	/**
+	 * Marks the end of the game logic of the current state. Optional.
+	 */
+	public void markUpdateDone(){
+		updateEnd = TimeUtils.nanoTime();
+	}
+
+	/**
+	 * Marks the end of the rendering of the current state.
+	 */
+	public void endState(){
+		stateEnd = TimeUtils.nanoTime();
+
+		if(updateEnd != 0L){
+			histograms[state][PHASE_UPDATE].record(updateEnd - frameStart);
+			histograms[state][PHASE_SUBMIT].record(stateEnd - updateEnd);
+		}else{
+			histograms[state][PHASE_UPDATE].record(0L);
+			histograms[state][PHASE_SUBMIT].record(stateEnd - frameStart);
+		}
+	}
+
+	/**
+	 * Marks the end of the fade effect, which is drawn right after the state.
+	 */
+	public void endFade(){
+		histograms[state][PHASE_FADE].record(TimeUtils.nanoTime() - stateEnd);
+	}
+
+	/**
+	 * Keeps the time until the next frame out of the statistics. Used when the application is paused or resumed.
+	 */
+	public void skipFrame(){
+		skipFrame = true;
+	}
+
+	/**
+	 * @param state A state.
+	 * @param phase One of the phase constants.
+	 * @return The histogram of that phase of that state, in nanoseconds. Must not be modified.
+	 */
+	public LogHistogram getHistogram(int state, int phase){
+		return histograms[state][phase];
+	}
+
+	/**
+	 * @param state A state.
+	 * @return How many frames of that state took longer than the budget.
+	 */
+	public long getJankFrames(int state){
+		return jankFrames[state];
+	}
+
+	/**
+	 * Writes the statistics of every state that rendered at least one frame as comma separated values, one line
+	 * per state and phase, with times in milliseconds.
+	 * 
+	 * @param file The file to write.
+	 * @param stateNames The names of the states, indexed by state.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void writeSummary(FileHandle file, String[] stateNames) throws IOException{
+		Writer       writer;
+		LogHistogram histogram;
+
+		try{
+			writer = file.writer(false, "UTF-8");
+		}catch(GdxRuntimeException e){
+			throw new IOException("Could not open " + file.path(), e);
+		}
+
+		try{
+			writer.write("state,phase,frames,mean_ms,p50_ms,p95_ms,p99_ms,max_ms,jank_frames,budget_ms\n");
+
+			for(int i = 0; i < histograms.length; i++){
+				if(histograms[i][PHASE_FRAME].getCount() == 0L)
+					continue;
+
+				for(int j = 0; j < PHASE_COUNT; j++){
+					histogram = histograms[i][j];
+					writer.write(String.format(Locale.US, "%s,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%.3f\n", i < stateNames.length ? stateNames[i] : Integer.toString(i), PHASE_NAMES[j], histogram.getCount(), histogram.getMean() / 1.0e6, histogram.getPercentile(0.5) / 1.0e6, histogram.getPercentile(0.95) / 1.0e6, histogram.getPercentile(0.99) / 1.0e6, histogram.getMax() / 1.0e6, jankFrames[i], budget / 1.0e6));
+				}
+			}
+		}finally{
+			writer.close();
+		}
+	}
+}
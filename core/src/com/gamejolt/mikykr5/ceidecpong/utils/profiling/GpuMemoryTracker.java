@@ -0,0 +1,378 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.utils.profiling;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
+import com.badlogic.gdx.utils.Disposable;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceCache;
+import com.gamejolt.mikykr5.ceidecpong.utils.managers.ResourceSizes;
+
+/**
+ * Keeps account of the video memory used by the game and of who uses it. Two kinds of allocations are tracked:
+ * 
+ * <ul>
+ * <li>The textures, texture atlases and fonts in a {@link ResourceCache}, read from the cache whenever they are
+ * needed. Their owners are recorded with {@link #claim(ResourceCache.Key)} when they are requested.</li>
+ * <li>Textures and frame buffers created directly, which must be registered with
+ * {@link #track(Object, String, long)} and {@link #untrack(Object)}.</li>
+ * </ul>
+ * 
+ * Owners are small integers, like the values of the game states, set with {@link #setOwner(int)} while they
+ * allocate. An allocation shared by several owners counts fully for every one of them. Sizes are estimated with
+ * {@link ResourceSizes}.
+ * 
+ * The tracker doesn't free anything by itself. {@link #isOverBudget()} tells when it's user should.
+ * 
+ * @author Miguel Astor
+ */
+public class GpuMemoryTracker{
+	/**
+	 * The owner of allocations made outside of any owner.
+	 */
+	public static final int NO_OWNER   = -1;
+
+	/**
+	 * The highest owner that can be used.
+	 */
+	public static final int MAX_OWNER  = 30;
+
+	/**
+	 * The name of {@link #NO_OWNER} in the reports.
+	 */
+	private static final String NO_OWNER_NAME = "core";
+
+	/**
+	 * A directly created allocation.
+	 */
+	private static final class Allocation{
+		public final String name;
+		public final long   bytes;
+		public final int    owners;
+
+		public Allocation(String name, long bytes, int owners){
+			this.name = name;
+			this.bytes = bytes;
+			this.owners = owners;
+		}
+	}
+
+	/**
+	 * An allocation as listed by {@link GpuMemoryTracker#dump(String)}.
+	 */
+	private static final class Line{
+		public final String  name;
+		public final long    bytes;
+		public final int     owners;
+		public final boolean released;
+
+		public Line(String name, long bytes, int owners, boolean released){
+			this.name = name;
+			this.bytes = bytes;
+			this.owners = owners;
+			this.released = released;
+		}
+	}
+
+	/**
+	 * Sums the video memory of a cache, in total or for one owner.
+	 */
+	private final class CacheSum implements ResourceCache.Visitor{
+		private int  owner;
+		private long bytes;
+
+		public long sum(int owner){
+			this.owner = owner;
+			bytes = 0L;
+			cache.visit(this);
+
+			return bytes;
+		}
+
+		@Override
+		public void visit(ResourceCache.Key key, Disposable resource, long bytes, int references){
+			if(isOnGpu(key) && (owner == NO_OWNER || (ownersOf(key) & bit(owner)) != 0))
+				this.bytes += bytes;
+		}
+	}
+
+	/**
+	 * The cache of loaded assets. Can be null.
+	 */
+	private final ResourceCache                      cache;
+
+	/**
+	 * The names of the owners, used in the reports.
+	 */
+	private final String[]                           ownerNames;
+
+	/**
+	 * The allocations registered with {@link #track(Object, String, long)}.
+	 */
+	private final Map<Object, Allocation>            allocations;
+
+	/**
+	 * The owners of every cached asset ever claimed, as a bit set.
+	 */
+	private final Map<ResourceCache.Key, Integer>    cacheOwners;
+
+	private final CacheSum                           cacheSum;
+
+	/**
+	 * Whoever is allocating right now.
+	 */
+	private int                                      owner;
+
+	/**
+	 * How many bytes of video memory the game should use at most.
+	 */
+	private long                                     budget;
+
+	/**
+	 * Creates an empty tracker.
+	 * 
+	 * @param cache The cache of loaded assets to account for. Can be null.
+	 * @param ownerNames The names of the owners, indexed by owner. At most {@link #MAX_OWNER} + 1.
+	 * @param budget How many bytes of video memory the game should use at most.
+	 * @throws IllegalArgumentException If ownerNames is null or too long.
+	 */
+	public GpuMemoryTracker(ResourceCache cache, String[] ownerNames, long budget) throws IllegalArgumentException{
+		if(ownerNames == null)
+			throw new IllegalArgumentException("Owner names is null.");
+		if(ownerNames.length > MAX_OWNER + 1)
+			throw new IllegalArgumentException("Too many owners: " + Integer.toString(ownerNames.length));
+
+		this.cache = cache;
+		this.ownerNames = ownerNames;
+		this.budget = budget;
+		allocations = new IdentityHashMap<Object, Allocation>();
+		cacheOwners = new HashMap<ResourceCache.Key, Integer>();
+		cacheSum = new CacheSum();
+		owner = NO_OWNER;
+	}
+
+	/**
+	 * Sets who owns the allocations made from now on.
+	 * 
+	 * @param owner The owner, or {@link #NO_OWNER}.
+	 * @throws IllegalArgumentException If the owner is out of range.
+	 */
+	public void setOwner(int owner) throws IllegalArgumentException{
+		if(owner != NO_OWNER && (owner < 0 || owner >= ownerNames.length))
+			throw new IllegalArgumentException("Unknown owner: " + Integer.toString(owner));
+
+		this.owner = owner;
+	}
+
+	public int getOwner(){
+		return owner;
+	}
+
+	/**
+	 * Registers a texture or frame buffer created outside of the cache, owned by the current owner.
+	 * 
+	 * @param resource The resource.
+	 * @param name A description of the resource for the reports.
+	 * @param bytes How many bytes of video memory the resource uses.
+	 * @throws IllegalArgumentException If resource or name are null.
+	 * @throws IllegalStateException If the resource is already tracked.
+	 */
+	public void track(Object resource, String name, long bytes) throws IllegalArgumentException, IllegalStateException{
+		if(resource == null)
+			throw new IllegalArgumentException("Resource is null.");
+		if(name == null)
+			throw new IllegalArgumentException("Name is null.");
+		if(allocations.containsKey(resource))
+			throw new IllegalStateException("Already tracked: " + name);
+
+		allocations.put(resource, new Allocation(name, bytes, bit(owner)));
+	}
+
+	/**
+	 * Forgets a resource registered with {@link #track(Object, String, long)}. Call it when the resource is disposed.
+	 * 
+	 * @param resource The resource.
+	 * @throws IllegalStateException If the resource is not tracked.
+	 */
+	public void untrack(Object resource) throws IllegalStateException{
+		if(allocations.remove(resource) == null)
+			throw new IllegalStateException("Not tracked: " + String.valueOf(resource));
+	}
+
+	/**
+	 * Records that the current owner uses a cached asset.
+	 * 
+	 * @param key The key of the asset, which doesn't need to be loaded yet.
+	 */
+	public void claim(ResourceCache.Key key){
+		cacheOwners.put(key, Integer.valueOf(ownersOf(key) | bit(owner)));
+	}
+
+	/**
+	 * Forgets everything an owner claimed or tracked, for when it frees all of it's resources at once.
+	 * 
+	 * @param owner The owner.
+	 */
+	public void removeOwner(int owner){
+		int mask = ~bit(owner);
+
+		for(Map.Entry<ResourceCache.Key, Integer> entry : cacheOwners.entrySet())
+			entry.setValue(Integer.valueOf(entry.getValue().intValue() & mask));
+
+		for(Map.Entry<Object, Allocation> entry : allocations.entrySet()){
+			if((entry.getValue().owners & mask) != entry.getValue().owners)
+				entry.setValue(new Allocation(entry.getValue().name, entry.getValue().bytes, entry.getValue().owners & mask));
+		}
+	}
+
+	/**
+	 * @return How many bytes of video memory are in use, including the cached assets nobody holds.
+	 */
+	public long getBytes(){
+		return getBytes(NO_OWNER);
+	}
+
+	/**
+	 * @param owner An owner, or {@link #NO_OWNER} for everyone.
+	 * @return How many bytes of video memory the owner uses, including shared allocations.
+	 */
+	public long getBytes(int owner){
+		long bytes = cache != null ? cacheSum.sum(owner) : 0L;
+
+		for(Allocation allocation : allocations.values()){
+			if(owner == NO_OWNER || (allocation.owners & bit(owner)) != 0)
+				bytes += allocation.bytes;
+		}
+
+		return bytes;
+	}
+
+	public void setBudget(long budget){
+		this.budget = budget;
+	}
+
+	public long getBudget(){
+		return budget;
+	}
+
+	/**
+	 * @return True if more video memory than the budget is in use.
+	 */
+	public boolean isOverBudget(){
+		return getBytes() > budget;
+	}
+
+	/**
+	 * Lists every allocation from the largest to the smallest, with it's owners, followed by the totals of every
+	 * owner.
+	 * 
+	 * @param title The first line of the report.
+	 * @return The report, one allocation per line.
+	 */
+	public String dump(String title){
+		final List<Line> lines = new ArrayList<Line>();
+		StringBuilder    report = new StringBuilder();
+		long             total;
+
+		if(cache != null){
+			cache.visit(new ResourceCache.Visitor(){
+				@Override
+				public void visit(ResourceCache.Key key, Disposable resource, long bytes, int references){
+					if(isOnGpu(key))
+						lines.add(new Line(key.toString(), bytes, ownersOf(key), references == 0));
+				}
+			});
+		}
+		for(Allocation allocation : allocations.values())
+			lines.add(new Line(allocation.name, allocation.bytes, allocation.owners, false));
+
+		Collections.sort(lines, new Comparator<Line>(){
+			@Override
+			public int compare(Line a, Line b){
+				return a.bytes > b.bytes ? -1 : (a.bytes == b.bytes ? 0 : 1);
+			}
+		});
+
+		total = 0L;
+		for(Line line : lines)
+			total += line.bytes;
+
+		report.append(title).append(": ").append(megabytes(total)).append(" of ").append(megabytes(budget)).append(" in ").append(lines.size()).append(" allocations.");
+		for(Line line : lines)
+			report.append(String.format("%n  %10s  %-24s  %s", megabytes(line.bytes), line.released ? "released" : ownerList(line.owners), line.name));
+
+		report.append(String.format("%n  By owner:"));
+		for(int i = 0; i < ownerNames.length; i++){
+			if(ownerNames[i] != null)
+				report.append(i > 0 ? ", " : " ").append(ownerNames[i]).append(' ').append(megabytes(getBytes(i)));
+		}
+
+		return report.toString();
+	}
+
+	/**
+	 * @return The owners of a cached asset, as a bit set.
+	 */
+	private int ownersOf(ResourceCache.Key key){
+		Integer owners = cacheOwners.get(key);
+
+		return owners != null ? owners.intValue() : 0;
+	}
+
+	/**
+	 * @return The names of a set of owners, separated by commas.
+	 */
+	private String ownerList(int owners){
+		StringBuilder list = new StringBuilder();
+
+		if((owners & bit(NO_OWNER)) != 0)
+			list.append(NO_OWNER_NAME);
+
+		for(int i = 0; i < ownerNames.length; i++){
+			if((owners & bit(i)) != 0)
+				list.append(list.length() > 0 ? "," : "").append(ownerNames[i]);
+		}
+
+		return list.toString();
+	}
+
+	/**
+	 * @return The bit of an owner. {@link #NO_OWNER} uses the sign bit.
+	 */
+	private static int bit(int owner){
+		return owner == NO_OWNER ? 1 << 31 : 1 << owner;
+	}
+
+	/**
+	 * @return True if the cached asset lives in video memory.
+	 */
+	private static boolean isOnGpu(ResourceCache.Key key){
+		return key.type == Texture.class || key.type == TextureAtlas.class || key.type == BitmapFont.class;
+	}
+
+	private static String megabytes(long bytes){
+		return String.format("%.2f MB", bytes / (1024.0 * 1024.0));
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.utils.profiling;
+
+/**
+ * A histogram of non-negative long values with buckets of logarithmically growing width, so that a fixed and small
+ * amount of memory covers values from nanoseconds to hours with the same relative precision. Every power of two is
+ * split in {@link #SUB_BUCKETS} buckets, so percentiles are within about 3% of the exact value. Recording a value
+ * does not allocate memory.
+ * 
+ * @author Miguel Astor
+ */
+public class LogHistogram{
+	/**
+	 * The number of bits of precision kept from every value.
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	/**
+	 * The number of buckets every power of two is split in.
+	 */
+	public static final int  SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * The total number of buckets, enough for any positive long.
+	 */
+	private static final int BUCKET_COUNT = SUB_BUCKETS + ((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+
+	// The recorded values.
+	private final long[] buckets;
+	private long         count;
+	private long         total;
+	private long         min;
+	private long         max;
+
+	/**
+	 * Creates an empty histogram.
+	 */
+	public LogHistogram(){
+		buckets = new long[BUCKET_COUNT];
+		reset();
+	}
+
+	/**
+	 * Adds a value. Negative values are recorded as zero.
+	 * 
+	 * @param value The value.
+	 */
+	public void record(long value){
+		if(value < 0L)
+			value = 0L;
+
+		buckets[bucketOf(value)]++;
+		count++;
+		total += value;
+		if(value < min)
+			min = value;
+		if(value > max)
+			max = value;
+	}
+
+	/**
+	 * Adds all the values of another histogram.
+	 * 
+	 * @param other The histogram to add.
+	 */
+	public void add(LogHistogram other){
+		for(int i = 0; i < BUCKET_COUNT; i++)
+			buckets[i] += other.buckets[i];
+
+		count += other.count;
+		total += other.total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Forgets all values.
+	 */
+	public void reset(){
+		for(int i = 0; i < BUCKET_COUNT; i++)
+			buckets[i] = 0L;
+
+		count = 0L;
+		total = 0L;
+		min = Long.MAX_VALUE;
+		max = 0L;
+	}
+
+	/**
+	 * Finds the value below which the given fraction of the recorded values fall.
+	 * 
+	 * @param fraction The fraction, in [0, 1]. 0.5 is the median, 0.99 the 99th percentile.
+	 * @return The highest value of the bucket holding the percentile, clamped to the recorded maximum. Zero if the
+	 * histogram is empty.
+	 */
+	public long getPercentile(double fraction){
+		long rank, seen = 0L;
+
+		if(count == 0L)
+			return 0L;
+
+		rank = Math.max(1L, (long)Math.ceil(Math.min(Math.max(fraction, 0.0), 1.0) * count));
+
+		for(int i = 0; i < BUCKET_COUNT; i++){
+			seen += buckets[i];
+			if(seen >= rank)
+				return Math.min(highestValueOf(i), max);
+		}
+
+		return max;
+	}
+
+	/**
+	 * @return How many values were recorded.
+	 */
+	public long getCount(){
+		return count;
+	}
+
+	/**
+	 * @return The sum of the recorded values.
+	 */
+	public long getTotal(){
+		return total;
+	}
+
+	/**
+	 * @return The average of the recorded values, or zero if the histogram is empty.
+	 */
+	public double getMean(){
+		return count > 0L ? total / (double)count : 0.0;
+	}
+
+	/**
+	 * @return The smallest recorded value, or zero if the histogram is empty.
+	 */
+	public long getMin(){
+		return count > 0L ? min : 0L;
+	}
+
+	/**
+	 * @return The largest recorded value.
+	 */
+	public long getMax(){
+		return max;
+	}
+
+	/**
+	 * @return The bucket holding the given value.
+	 */
+	private static int bucketOf(long value){
+		int shift;
+
+		if(value < SUB_BUCKETS)
+			return (int)value;
+
+		// Keep the highest SUB_BUCKET_BITS + 1 bits, the first of which is always set.
+		shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+		return SUB_BUCKETS + (shift * SUB_BUCKETS) + (int)((value >>> shift) - SUB_BUCKETS);
+	}
+
+	/**
+	 * @return The highest value that falls in the given bucket.
+	 */
+	private static long highestValueOf(int bucket){
+		int shift;
+
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+
+		shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+
+		return (((long)(SUB_BUCKETS + ((bucket - SUB_BUCKETS) % SUB_BUCKETS) + 1)) << shift) - 1L;
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.utils.profiling;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Records how long the game takes to start. All times are measured from the creation of this object, which
+ * should happen before the backend is initialized so that creating the window and the GL context are counted.
+ * 
+ * <ul>
+ * <li>Time to first frame: until the first frame has been presented and the player sees something.</li>
+ * <li>Time to warm up: until every state has been constructed.</li>
+ * <li>Time to interactive: until the main menu is enabled and accepts input.</li>
+ * </ul>
+ * 
+ * Every milestone is recorded only the first time it is reached.
+ * 
+ * @author Miguel Astor
+ */
+public class StartupMetrics{
+	/**
+	 * The time this object was created, in nanoseconds.
+	 */
+	private final long origin;
+
+	// The milestones, in nanoseconds since the origin. Negative until reached.
+	private long       firstFrame;
+	private long       warmedUp;
+	private long       interactive;
+
+	/**
+	 * Starts measuring.
+	 */
+	public StartupMetrics(){
+		origin = TimeUtils.nanoTime();
+		firstFrame = -1L;
+		warmedUp = -1L;
+		interactive = -1L;
+	}
+
+	/**
+	 * Records that the first frame has been presented.
+	 * 
+	 * @return True if this is the first time it is recorded.
+	 */
+	public boolean markFirstFrame(){
+		if(firstFrame >= 0L)
+			return false;
+
+		firstFrame = TimeUtils.nanoTime() - origin;
+		return true;
+	}
+
+	/**
+	 * Records that every state has been constructed.
+	 * 
+	 * @return True if this is the first time it is recorded.
+	 */
+	public boolean markWarmedUp(){
+		if(warmedUp >= 0L)
+			return false;
+
+		warmedUp = TimeUtils.nanoTime() - origin;
+		return true;
+	}
+
+	/**
+	 * Records that the game accepts input.
+	 * 
+	 * @return True if this is the first time it is recorded.
+	 */
+	public boolean markInteractive(){
+		if(interactive >= 0L)
+			return false;
+
+		interactive = TimeUtils.nanoTime() - origin;
+		return true;
+	}
+
+	/**
+	 * @return The time to first frame in seconds, or a negative number if not reached yet.
+	 */
+	public float getTimeToFirstFrame(){
+		return toSeconds(firstFrame);
+	}
+
+	/**
+	 * @return The time until all states were constructed in seconds, or a negative number if not reached yet.
+	 */
+	public float getTimeToWarmUp(){
+		return toSeconds(warmedUp);
+	}
+
+	/**
+	 * @return The time to interactive in seconds, or a negative number if not reached yet.
+	 */
+	public float getTimeToInteractive(){
+		return toSeconds(interactive);
+	}
+
+	/**
+	 * @return True if every milestone has been reached.
+	 */
+	public boolean isComplete(){
+		return firstFrame >= 0L && warmedUp >= 0L && interactive >= 0L;
+	}
+
+	private static float toSeconds(long nanos){
+		return nanos < 0L ? -1.0f : nanos / 1.0e9f;
+	}
+}
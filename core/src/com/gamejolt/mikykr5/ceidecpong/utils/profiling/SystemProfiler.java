@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.utils.profiling;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+import com.badlogic.ashley.core.Engine;
+import com.badlogic.ashley.core.EntitySystem;
+import com.badlogic.ashley.utils.ImmutableArray;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.profiling.GLProfiler;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.AllocationMeter;
+
+/**
+ * Measures how long every {@link EntitySystem} takes to update and how much memory it allocates, along with the
+ * draw calls, texture bindings and pending inter system messages of every frame. The results can be drawn as an
+ * overlay and written to a CSV file.
+ * 
+ * When disabled the profiler only checks a flag before updating the systems the usual way, so it can be left in
+ * place in release builds. When enabled the systems of an {@link Engine} are updated one by one by the profiler
+ * instead of by the engine, and the OpenGL calls are counted through {@link GLProfiler}.
+ * 
+ * All methods must be called from the rendering thread.
+ * 
+ * @author Miguel Astor
+ */
+public class SystemProfiler{
+	/**
+	 * How often the text of the overlay is rebuilt, in seconds.
+	 */
+	private static final float OVERLAY_REFRESH_TIME = 0.5f;
+
+	/**
+	 * Measures the memory allocated by every system. Null if the platform can't do it.
+	 */
+	private final AllocationMeter       allocationMeter;
+
+	/**
+	 * Whether the profiler is measuring.
+	 */
+	private boolean                     enabled;
+
+	// Per system records, indexed by slot.
+	private final ObjectIntMap<Class<?>> slots;
+	private final Array<String>         names;
+	private final Array<LogHistogram>   times;
+	private final LongArray             allocatedBytes;
+
+	// Per frame records.
+	private final LogHistogram          frameTimes;
+	private final LogHistogram          renderCalls;
+	private final LogHistogram          textureBindings;
+	private final LogHistogram          queueDepths;
+	private long                        frameStart;
+	private int                         renderCallsAtFrameStart;
+
+	// Overlay.
+	private final StringBuilder         overlayText;
+	private float                       overlayAge;
+
+	/**
+	 * Creates a disabled profiler.
+	 * 
+	 * @param allocationMeter Measures the memory allocated by the systems. Can be null.
+	 */
+	public SystemProfiler(AllocationMeter allocationMeter){
+		this.allocationMeter = allocationMeter;
+		enabled = false;
+
+		slots = new ObjectIntMap<Class<?>>();
+		names = new Array<String>();
+		times = new Array<LogHistogram>();
+		allocatedBytes = new LongArray();
+
+		frameTimes = new LogHistogram();
+		renderCalls = new LogHistogram();
+		textureBindings = new LogHistogram();
+		queueDepths = new LogHistogram();
+		frameStart = 0L;
+		renderCallsAtFrameStart = 0;
+
+		overlayText = new StringBuilder(1024);
+		overlayAge = OVERLAY_REFRESH_TIME;
+	}
+
+	/**
+	 * Starts or stops measuring. Starting forgets the results of the previous run.
+	 * 
+	 * @param enabled True to start measuring.
+	 */
+	public void setEnabled(boolean enabled){
+		if(this.enabled == enabled)
+			return;
+
+		this.enabled = enabled;
+
+		if(enabled){
+			reset();
+			GLProfiler.enable();
+		}else{
+			GLProfiler.disable();
+		}
+	}
+
+	/**
+	 * @return True if the profiler is measuring.
+	 */
+	public boolean isEnabled(){
+		return enabled;
+	}
+
+	/**
+	 * Forgets all results.
+	 */
+	public void reset(){
+		for(int i = 0; i < times.size; i++){
+			times.get(i).reset();
+			allocatedBytes.items[i] = 0L;
+		}
+
+		frameTimes.reset();
+		renderCalls.reset();
+		textureBindings.reset();
+		queueDepths.reset();
+		frameStart = 0L;
+		overlayAge = OVERLAY_REFRESH_TIME;
+	}
+
+	/**
+	 * Marks the start of a frame.
+	 * 
+	 * @param batch The batch whose render calls are counted.
+	 */
+	public void beginFrame(SpriteBatch batch){
+		long now;
+
+		if(!enabled)
+			return;
+
+		now = TimeUtils.nanoTime();
+		if(frameStart != 0L)
+			frameTimes.record(now - frameStart);
+		frameStart = now;
+
+		renderCallsAtFrameStart = batch.totalRenderCalls;
+		GLProfiler.reset();
+	}
+
+	/**
+	 * Marks the end of the rendering of a frame, before the overlay is drawn.
+	 * 
+	 * @param batch The batch whose render calls are counted.
+	 */
+	public void endFrame(SpriteBatch batch){
+		if(!enabled)
+			return;
+
+		renderCalls.record(batch.totalRenderCalls - renderCallsAtFrameStart);
+		textureBindings.record(GLProfiler.textureBindings);
+	}
+
+	/**
+	 * Updates every system of an engine, measuring each one if the profiler is enabled.
+	 * 
+	 * While measuring the systems are updated directly instead of through {@link Engine#update(float)}, so
+	 * entities removed by a system are removed right away instead of after all systems were updated.
+	 * 
+	 * @param engine The engine to update.
+	 * @param deltaTime The time passed to the systems.
+	 */
+	public void updateEngine(Engine engine, float deltaTime){
+		ImmutableArray<EntitySystem> systems;
+		EntitySystem                 system;
+		int                          slot;
+		long                         start, allocated;
+
+		if(!enabled){
+			engine.update(deltaTime);
+			return;
+		}
+
+		systems = engine.getSystems();
+		for(int i = 0; i < systems.size(); i++){
+			system = systems.get(i);
+			if(!system.checkProcessing())
+				continue;
+
+			slot = slotOf(system);
+			allocated = allocationMeter != null ? allocationMeter.getAllocatedBytes() : 0L;
+			start = TimeUtils.nanoTime();
+			system.update(deltaTime);
+			record(slot, TimeUtils.nanoTime() - start, allocated);
+		}
+	}
+
+	/**
+	 * Updates a single system, measuring it if the profiler is enabled. Used for systems that are not updated by an
+	 * {@link Engine}, like the ones of a {@link com.gamejolt.mikykr5.ceidecpong.ecs.simulation.FixedStepSimulation}.
+	 * 
+	 * @param system The system to update.
+	 * @param deltaTime The time passed to the system.
+	 */
+	public void updateSystem(EntitySystem system, float deltaTime){
+		int  slot;
+		long start, allocated;
+
+		if(!enabled){
+			system.update(deltaTime);
+			return;
+		}
+
+		slot = slotOf(system);
+		allocated = allocationMeter != null ? allocationMeter.getAllocatedBytes() : 0L;
+		start = TimeUtils.nanoTime();
+		system.update(deltaTime);
+		record(slot, TimeUtils.nanoTime() - start, allocated);
+	}
+
+	/**
+	 * Records how many messages are waiting to be delivered.
+	 * 
+	 * @param pendingMessages The number of pending messages.
+	 */
+	public void recordQueueDepth(int pendingMessages){
+		if(enabled)
+			queueDepths.record(pendingMessages);
+	}
+
+	/**
+	 * Draws the results if the profiler is enabled. Must be called between {@link SpriteBatch#begin()} and
+	 * {@link SpriteBatch#end()}.
+	 * 
+	 * @param batch The batch to draw with.
+	 * @param font The font to draw with.
+	 * @param x The left border of the text.
+	 * @param y The top border of the text.
+	 */
+	public void draw(SpriteBatch batch, BitmapFont font, float x, float y){
+		if(!enabled)
+			return;
+
+		// Rebuilding the text allocates, so do it only a few times per second.
+		overlayAge += Gdx.graphics.getDeltaTime();
+		if(overlayAge >= OVERLAY_REFRESH_TIME){
+			overlayAge = 0.0f;
+			buildOverlayText();
+		}
+
+		font.drawMultiLine(batch, overlayText, x, y);
+	}
+
+	/**
+	 * Writes the results as comma separated values, one line per system and per frame statistic. System update times
+	 * and frame times are in nanoseconds, the other frame statistics are counts per frame.
+	 * 
+	 * @param file The file to write.
+	 * @throws IOException If the file can't be written.
+	 */
+	public void writeCsv(FileHandle file) throws IOException{
+		Writer writer;
+
+		try{
+			writer = file.writer(false, "UTF-8");
+		}catch(GdxRuntimeException e){
+			throw new IOException("Could not open " + file.path(), e);
+		}
+
+		try{
+			writer.write("name,count,mean,p50,p95,p99,max,allocated_bytes_per_call\n");
+
+			for(int i = 0; i < names.size; i++)
+				writeCsvLine(writer, names.get(i), times.get(i), allocationMeter != null ? allocatedBytes.get(i) / (double)Math.max(1L, times.get(i).getCount()) : -1.0);
+
+			writeCsvLine(writer, "frame_time_ns", frameTimes, -1.0);
+			writeCsvLine(writer, "render_calls", renderCalls, -1.0);
+			writeCsvLine(writer, "texture_bindings", textureBindings, -1.0);
+			writeCsvLine(writer, "queued_messages", queueDepths, -1.0);
+		}finally{
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return The slot of a system, creating it's records the first time it is seen.
+	 */
+	private int slotOf(EntitySystem system){
+		int slot = slots.get(system.getClass(), -1);
+
+		if(slot < 0){
+			slot = names.size;
+			slots.put(system.getClass(), slot);
+			names.add(system.getClass().getSimpleName());
+			times.add(new LogHistogram());
+			allocatedBytes.add(0L);
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Stores a measurement.
+	 */
+	private void record(int slot, long nanos, long allocatedBefore){
+		times.get(slot).record(nanos);
+
+		if(allocationMeter != null)
+			allocatedBytes.incr(slot, allocationMeter.getAllocatedBytes() - allocatedBefore);
+	}
+
+	/**
+	 * Writes the summary of a histogram.
+	 */
+	private static void writeCsvLine(Writer writer, String name, LogHistogram histogram, double allocatedPerCall) throws IOException{
+		writer.write(String.format(Locale.US, "%s,%d,%.1f,%d,%d,%d,%d,%.1f\n", name, histogram.getCount(), histogram.getMean(), histogram.getPercentile(0.5), histogram.getPercentile(0.95), histogram.getPercentile(0.99), histogram.getMax(), allocatedPerCall));
+	}
+
+	/**
+	 * Builds the text drawn by {@link #draw(SpriteBatch, BitmapFont, float, float)}.
+	 */
+	private void buildOverlayText(){
+		LogHistogram time;
+
+		overlayText.setLength(0);
+		overlayText.append(String.format("frame   p50 %.2f ms  p99 %.2f ms  max %.2f ms\n", frameTimes.getPercentile(0.5) / 1.0e6, frameTimes.getPercentile(0.99) / 1.0e6, frameTimes.getMax() / 1.0e6));
+		overlayText.append(String.format("draw calls %d  texture binds %d  queued messages %d max\n", renderCalls.getPercentile(0.5), textureBindings.getPercentile(0.5), queueDepths.getMax()));
+
+		for(int i = 0; i < names.size; i++){
+			time = times.get(i);
+			overlayText.append(String.format("%-32s mean %7.1f us  p99 %7.1f us", names.get(i), time.getMean() / 1.0e3, time.getPercentile(0.99) / 1.0e3));
+
+			if(allocationMeter != null)
+				overlayText.append(String.format("  %8.1f B/call", allocatedBytes.get(i) / (double)Math.max(1L, time.getCount())));
+
+			overlayText.append('\n');
+		}
+	}
+}
@@ -18,6 +18,8 @@ package com.gamejolt.mikykr5.ceidecpong.desktop;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
 import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
 import com.gamejolt.mikykr5.ceidecpong.GameCore;
+import com.gamejolt.mikykr5.ceidecpong.effects.CrossfadeTransition;
+import com.gamejolt.mikykr5.ceidecpong.effects.WipeTransition;
 
 public class DesktopLauncher {
 	public static void main (String[] arg) {
@@ -28,6 +30,25 @@ public class DesktopLauncher {
 		config.resizable = true;
 		config.title = "CEIDEC-Pong";
 
-		new LwjglApplication(new GameCore(), config);
+		GameCore game = new GameCore(ThreadAllocationMeter.create());
+
+		// Soak tests set this property to collect the frame times of the whole session.
+		game.setFrameStatisticsPath(System.getProperty("ceidecpong.frameStatistics"));
+
+		// Lets low end machines be simulated, in megabytes.
+		if(System.getProperty("ceidecpong.gpuMemoryBudget") != null)
+			game.setGpuMemoryBudget(Long.parseLong(System.getProperty("ceidecpong.gpuMemoryBudget")) << 20);
+
+		// Runs the simulation systems on other threads besides the render thread.
+		if(System.getProperty("ceidecpong.simulationWorkers") != null)
+			game.setSimulationWorkers(Integer.parseInt(System.getProperty("ceidecpong.simulationWorkers")));
+
+		// Selects the effect used to switch states.
+		if("wipe".equals(System.getProperty("ceidecpong.transition")))
+			game.setTransitionEffect(new WipeTransition(0.5f));
+		else if("crossfade".equals(System.getProperty("ceidecpong.transition")))
+			game.setTransitionEffect(new CrossfadeTransition(0.5f));
+
+		new LwjglApplication(game, config);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.HeadlessMatch;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.TrackingInputSource;
+
+/**
+ * Plays every match twice with the same seed and input and checks that both runs produce the same state hash on
+ * every step. Exits with {@link ProjectConstants#EXIT_FAILURE} if any step differs.
+ * 
+ * Usage: DeterminismCheck [matches] [steps]
+ * 
+ * @author Miguel Astor
+ */
+public class DeterminismCheck {
+	public static void main (String[] arg) {
+		int           matches  = arg.length > 0 ? Integer.parseInt(arg[0]) : 10;
+		long          steps    = arg.length > 1 ? Long.parseLong(arg[1]) : 120L * 60L * 5L;
+		MatchSettings settings = new MatchSettings();
+		HeadlessMatch first, second, other;
+		boolean       diverged;
+		int           failures = 0;
+
+		for(int i = 0; i < matches; i++){
+			settings.seed = i;
+			first = new HeadlessMatch(new TrackingInputSource(550.0f), settings);
+			second = new HeadlessMatch(new TrackingInputSource(550.0f), settings);
+			settings.seed = i + matches;
+			other = new HeadlessMatch(new TrackingInputSource(550.0f), settings);
+			diverged = false;
+
+			for(long step = 0; step < steps; step++){
+				first.step();
+				second.step();
+				other.step();
+
+				if(first.getStateHash() != second.getStateHash()){
+					System.out.println(String.format("Match %d: runs diverged at step %d (%016x != %016x)", i, step, first.getStateHash(), second.getStateHash()));
+					failures++;
+					break;
+				}
+
+				diverged = diverged || first.getStateHash() != other.getStateHash();
+			}
+
+			// A different seed must lead to a different match, or the hash is not covering the state.
+			if(!diverged){
+				System.out.println(String.format("Match %d: seeds %d and %d produced the same match", i, i, i + matches));
+				failures++;
+			}
+
+			first.dispose();
+			second.dispose();
+			other.dispose();
+		}
+
+		System.out.println(String.format("%d matches, %d steps each, %d failures", matches, steps, failures));
+		System.exit(failures == 0 ? ProjectConstants.EXIT_SUCCESS : ProjectConstants.EXIT_FAILURE);
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.BatchResults;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.BatchSimulator;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchInputSource;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.TrackingInputSource;
+
+/**
+ * Plays matches without a window, OpenGL context or audio device and prints their aggregated results.
+ * 
+ * Usage: HeadlessLauncher [matches] [target score] [threads] [computer speed] [ball acceleration]
+ * 
+ * @author Miguel Astor
+ */
+public class HeadlessLauncher {
+	/**
+	 * The speed at which the stand in for the human player moves its paddle, in pixels per second.
+	 */
+	private static final float HUMAN_SPEED = 550.0f;
+
+	public static void main (String[] arg) {
+		int            matches  = arg.length > 0 ? Integer.parseInt(arg[0]) : 100;
+		int            threads  = arg.length > 2 ? Integer.parseInt(arg[2]) : Runtime.getRuntime().availableProcessors();
+		MatchSettings  settings = new MatchSettings();
+		BatchSimulator simulator;
+		BatchResults   results;
+
+		if(arg.length > 1)
+			settings.targetScore = Integer.parseInt(arg[1]);
+		if(arg.length > 3)
+			settings.computerSpeed = Float.parseFloat(arg[3]);
+		if(arg.length > 4)
+			settings.ballAcceleration = Float.parseFloat(arg[4]);
+
+		simulator = new BatchSimulator(threads);
+		results = simulator.run(matches, settings, new BatchSimulator.InputSourceFactory(){
+			@Override
+			public MatchInputSource create(MatchSettings settings){
+				return new TrackingInputSource(HUMAN_SPEED);
+			}
+		});
+		simulator.dispose();
+
+		System.out.println(String.format("%d threads, %.3f s", threads, results.getWallTime()));
+		System.out.println(results.toString());
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.PooledEngine;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.Mappers;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PackedMotionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.PackedMotionSystem;
+import com.gamejolt.mikykr5.ceidecpong.ecs.systems.PositioningSystem;
+
+/**
+ * Compares moving entities with the {@link PositioningSystem}, which reads a {@link PositionComponent} and a
+ * {@link VelocityComponent} per entity, against the {@link PackedMotionSystem}, which moves packed arrays.
+ * 
+ * Usage: PackedMotionBenchmark [entities...]
+ * 
+ * Runs with 1000, 100000 and 1000000 entities by default. Both systems start from the same positions and
+ * velocities and must end at exactly the same positions.
+ * 
+ * @author Miguel Astor
+ */
+public class PackedMotionBenchmark {
+	private static final float STEP          = 1.0f / 120.0f;
+	private static final long  TARGET_NANOS  = 2000000000L;
+	private static final int   WARM_UP_STEPS = 50;
+
+	public static void main (String[] arg) {
+		int[]   sizes = arg.length > 0 ? new int[arg.length] : new int[] {1000, 100000, 1000000};
+		boolean equal = true;
+
+		for(int i = 0; i < arg.length; i++)
+			sizes[i] = Integer.parseInt(arg[i]);
+
+		for(int size : sizes)
+			equal &= run(size);
+
+		System.exit(equal ? ProjectConstants.EXIT_SUCCESS : ProjectConstants.EXIT_FAILURE);
+	}
+
+	private static boolean run(int size){
+		PooledEngine       engine  = new PooledEngine(size, size, size * 2, size * 2);
+		PositioningSystem  objects = new PositioningSystem();
+		PackedMotionSystem packed  = new PackedMotionSystem();
+		Entity[]           plain   = new Entity[size];
+		Entity             entity;
+		PositionComponent  position;
+		VelocityComponent  velocity;
+		int                slot;
+		long               steps;
+		double             objectNanos, packedNanos;
+		boolean            equal = true;
+
+		packed.ensureCapacity(size);
+		engine.addSystem(objects);
+		engine.addSystem(packed);
+
+		for(int i = 0; i < size; i++){
+			plain[i] = engine.createEntity();
+			position = engine.createComponent(PositionComponent.class);
+			velocity = engine.createComponent(VelocityComponent.class);
+			position.teleport(i % 1000, i / 1000);
+			velocity.setXY((i % 7) - 3.0f, (i % 11) - 5.0f);
+			plain[i].add(position);
+			plain[i].add(velocity);
+			engine.addEntity(plain[i]);
+
+			entity = engine.createEntity();
+			entity.add(engine.createComponent(PackedMotionComponent.class));
+			engine.addEntity(entity);
+			slot = packed.getSlot(entity);
+			packed.teleport(slot, position.x, position.y);
+			packed.setVelocity(slot, velocity.vx, velocity.vy);
+		}
+
+		// Both systems must take the same number of steps for the final positions to match.
+		for(int i = 0; i < WARM_UP_STEPS; i++){
+			objects.update(STEP);
+			packed.update(STEP);
+		}
+
+		steps = calibrate(objects);
+		packed.update(STEP);
+		objectNanos = time(objects, steps);
+		packedNanos = time(packed, steps);
+
+		for(int i = 0; i < size && equal; i++){
+			position = Mappers.positionMapper.get(plain[i]);
+			equal = position.x == packed.getX(i) && position.y == packed.getY(i);
+		}
+
+		System.out.println(String.format("%8d entities: components %6.2f ns per entity, packed %6.2f ns per entity, %.1fx faster, results %s", size, objectNanos / (steps * (double)size), packedNanos / (steps * (double)size), objectNanos / packedNanos, equal ? "equal" : "DIFFERENT"));
+
+		return equal;
+	}
+
+	/**
+	 * Finds how many steps of the component based system take about {@link #TARGET_NANOS}. Takes one step.
+	 */
+	private static long calibrate(PositioningSystem system){
+		long start = System.nanoTime();
+
+		system.update(STEP);
+
+		return Math.max(10L, TARGET_NANOS / Math.max(1L, System.nanoTime() - start));
+	}
+
+	private static double time(PositioningSystem system, long steps){
+		long start = System.nanoTime();
+
+		for(long i = 0; i < steps; i++)
+			system.update(STEP);
+
+		return System.nanoTime() - start;
+	}
+
+	private static double time(PackedMotionSystem system, long steps){
+		long start = System.nanoTime();
+
+		for(long i = 0; i < steps; i++)
+			system.update(STEP);
+
+		return System.nanoTime() - start;
+	}
+}
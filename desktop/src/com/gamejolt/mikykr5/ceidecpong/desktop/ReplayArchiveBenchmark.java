@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.HeadlessMatch;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.TrackingInputSource;
+import com.gamejolt.mikykr5.ceidecpong.replay.MatchSnapshot;
+import com.gamejolt.mikykr5.ceidecpong.replay.Replay;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayArchive;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayArchiveWriter;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayFormat;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayPlayer;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayRecorder;
+
+/**
+ * Measures how fast a replay archive is opened, listed, filtered and seeked.
+ * 
+ * Usage: ReplayArchiveBenchmark ARCHIVE [megabytes] [seeks]
+ * 
+ * If the archive does not exist it is first filled with copies of a few recorded headless matches until it
+ * reaches the given size, 1024 megabytes by default. Then random ticks of random matches are seeked twice,
+ * once only locating and decoding the nearest keyframe and once restoring it and fast forwarding a match to
+ * the exact tick.
+ * 
+ * @author Miguel Astor
+ */
+public class ReplayArchiveBenchmark {
+	private static final int   RECORDED_MATCHES = 8;
+	private static final float MATCH_SECONDS    = 600.0f;
+
+	public static void main (String[] arg) {
+		File          file;
+		long          megabytes;
+		int           seeks;
+		ReplayArchive archive;
+
+		if(arg.length < 1){
+			System.out.println("Usage: ReplayArchiveBenchmark ARCHIVE [megabytes] [seeks]");
+			System.exit(ProjectConstants.EXIT_FAILURE);
+		}
+
+		file = new File(arg[0]);
+		megabytes = arg.length > 1 ? Long.parseLong(arg[1]) : 1024L;
+		seeks = arg.length > 2 ? Integer.parseInt(arg[2]) : 1000;
+
+		try{
+			if(!file.exists())
+				generate(file, megabytes << 20);
+
+			archive = open(file);
+		}catch(IOException e){
+			System.out.println(file.getPath() + ": " + e.getMessage());
+			System.exit(ProjectConstants.EXIT_FAILURE);
+			return;
+		}catch(IllegalArgumentException e){
+			System.out.println(file.getPath() + ": " + e.getMessage());
+			System.exit(ProjectConstants.EXIT_FAILURE);
+			return;
+		}
+
+		list(archive);
+		seekKeyframes(archive, seeks);
+		seekTicks(archive, seeks);
+		archive.dispose();
+
+		System.exit(ProjectConstants.EXIT_SUCCESS);
+	}
+
+	private static void generate(File file, long bytes) throws IOException{
+		MatchSettings       settings = new MatchSettings();
+		Replay[]            replays  = new Replay[RECORDED_MATCHES];
+		ReplayArchiveWriter writer;
+		HeadlessMatch       match;
+		ReplayRecorder      recorder;
+		File                temp;
+		long                start, steps;
+
+		start = System.nanoTime();
+		steps = (long)(MATCH_SECONDS / settings.step);
+
+		for(int i = 0; i < RECORDED_MATCHES; i++){
+			settings.seed = i;
+			temp = File.createTempFile("match", ReplayFormat.EXTENSION);
+			temp.deleteOnExit();
+
+			match = new HeadlessMatch(new TrackingInputSource(550.0f), settings);
+			recorder = new ReplayRecorder(temp, settings, match.getInputSampler(), ReplayFormat.DEFAULT_KEYFRAME_INTERVAL);
+			match.getSimulation().addSystem(recorder);
+			for(long j = 0; j < steps; j++)
+				match.step();
+			recorder.dispose();
+			match.dispose();
+
+			if(recorder.getError() != null)
+				throw recorder.getError();
+
+			replays[i] = Replay.load(temp);
+		}
+
+		writer = new ReplayArchiveWriter(file);
+		try{
+			for(long id = 0; file.length() < bytes; id++)
+				writer.append(id, replays[(int)(id % RECORDED_MATCHES)]);
+			writer.flush();
+		}finally{
+			writer.dispose();
+		}
+
+		System.out.println(String.format("Generated %d matches, %d bytes in %.2f s", writer.getMatchCount(), file.length(), (System.nanoTime() - start) / 1.0e9));
+	}
+
+	private static ReplayArchive open(File file) throws IOException{
+		ReplayArchive archive;
+		long          start;
+
+		start = System.nanoTime();
+		archive = new ReplayArchive(file);
+		System.out.println(String.format("Opened %d matches, %d bytes in %.3f ms", archive.getMatchCount(), file.length(), (System.nanoTime() - start) / 1.0e6));
+
+		return archive;
+	}
+
+	private static void list(ReplayArchive archive){
+		IntArray found = new IntArray();
+		long     start, ticks = 0L;
+
+		start = System.nanoTime();
+		for(int i = 0; i < archive.getMatchCount(); i++)
+			ticks += archive.getDuration(i);
+		System.out.println(String.format("Listed %d matches, %d ticks in %.3f ms", archive.getMatchCount(), ticks, (System.nanoTime() - start) / 1.0e6));
+
+		start = System.nanoTime();
+		archive.findByScore(0, 5, Integer.MAX_VALUE, found);
+		System.out.println(String.format("Found %d matches with a human score of 5 or more in %.3f ms", found.size, (System.nanoTime() - start) / 1.0e6));
+	}
+
+	private static void seekKeyframes(ReplayArchive archive, int seeks){
+		Random        random   = new Random(0L);
+		MatchSnapshot snapshot = new MatchSnapshot();
+		Replay        replay;
+		long          start, total = 0L, worst = 0L, elapsed, tick;
+		int           match;
+
+		for(int i = 0; i < seeks; i++){
+			match = random.nextInt(archive.getMatchCount());
+			tick = archive.getFirstTick(match) + (long)(random.nextDouble() * archive.getDuration(match));
+
+			start = System.nanoTime();
+			replay = archive.getReplay(match);
+			replay.readKeyframe(replay.findKeyframe(tick), snapshot);
+			elapsed = System.nanoTime() - start;
+
+			total += elapsed;
+			worst = Math.max(worst, elapsed);
+		}
+
+		System.out.println(String.format("Keyframe seeks: %.1f us average, %.1f us worst", total / (seeks * 1.0e3), worst / 1.0e3));
+	}
+
+	private static void seekTicks(ReplayArchive archive, int seeks){
+		Random       random = new Random(1L);
+		ReplayPlayer player;
+		long         start, total = 0L, worst = 0L, elapsed, tick;
+		int          match;
+
+		for(int i = 0; i < seeks; i++){
+			match = random.nextInt(archive.getMatchCount());
+			tick = archive.getFirstTick(match) + (long)(random.nextDouble() * archive.getDuration(match));
+
+			start = System.nanoTime();
+			player = new ReplayPlayer(archive.getReplay(match));
+			player.seek(tick);
+			elapsed = System.nanoTime() - start;
+			player.dispose();
+
+			total += elapsed;
+			worst = Math.max(worst, elapsed);
+		}
+
+		System.out.println(String.format("Exact seeks: %.1f us average, %.1f us worst", total / (seeks * 1.0e3), worst / 1.0e3));
+	}
+}
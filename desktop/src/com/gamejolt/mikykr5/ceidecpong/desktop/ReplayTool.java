@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.HeadlessMatch;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.TrackingInputSource;
+import com.gamejolt.mikykr5.ceidecpong.replay.Replay;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayFormat;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayPlayer;
+import com.gamejolt.mikykr5.ceidecpong.replay.ReplayRecorder;
+
+/**
+ * Checks replay files without rendering them, or records headless matches to new replay files.
+ * 
+ * Usage: ReplayTool verify FILE...
+ *        ReplayTool record FILE [seed] [seconds]
+ * 
+ * Verifying fast forwards every replay, checking that every keyframe is reached. Recording plays a match
+ * against the tracking input source twice, with and without a recorder, and reports the cost of recording.
+ * 
+ * @author Miguel Astor
+ */
+public class ReplayTool {
+	public static void main (String[] arg) {
+		int failures = 0;
+
+		if(arg.length >= 2 && arg[0].equals("verify")){
+			for(int i = 1; i < arg.length; i++)
+				failures += verify(new File(arg[i])) ? 0 : 1;
+		}else if(arg.length >= 2 && arg[0].equals("record")){
+			failures += record(new File(arg[1]), arg.length > 2 ? Long.parseLong(arg[2]) : 0L, arg.length > 3 ? Float.parseFloat(arg[3]) : 600.0f) ? 0 : 1;
+		}else{
+			System.out.println("Usage: ReplayTool verify FILE...");
+			System.out.println("       ReplayTool record FILE [seed] [seconds]");
+			failures++;
+		}
+
+		System.exit(failures == 0 ? ProjectConstants.EXIT_SUCCESS : ProjectConstants.EXIT_FAILURE);
+	}
+
+	private static boolean verify(File file){
+		Replay       replay;
+		ReplayPlayer player;
+		long         start, elapsed;
+		int          failed;
+
+		try{
+			start = System.nanoTime();
+			replay = Replay.load(file);
+			elapsed = System.nanoTime() - start;
+		}catch(IOException e){
+			System.out.println(file.getPath() + ": " + e.getMessage());
+			return false;
+		}catch(IllegalArgumentException e){
+			System.out.println(file.getPath() + ": " + e.getMessage());
+			return false;
+		}
+
+		System.out.println(String.format("%s: %d bytes, %d ticks, %d keyframes, %s, loaded in %.2f ms", file.getPath(), file.length(), replay.getTotalTicks() - replay.getFirstTick(), replay.getKeyframeCount(), replay.isComplete() ? "complete" : "truncated", elapsed / 1.0e6));
+
+		player = new ReplayPlayer(replay);
+		start = System.nanoTime();
+		failed = player.verify();
+		elapsed = System.nanoTime() - start;
+
+		if(failed >= 0)
+			System.out.println(String.format("%s: diverged before the keyframe at tick %d", file.getPath(), replay.getKeyframeTick(failed)));
+		else
+			System.out.println(String.format("%s: verified at %.0f ticks per second, final score %d - %d", file.getPath(), (player.getTick() - replay.getFirstTick()) / (elapsed / 1.0e9), player.getMatch().getScore(0), player.getMatch().getScore(1)));
+
+		player.dispose();
+
+		return failed < 0;
+	}
+
+	private static boolean record(File file, long seed, float seconds){
+		MatchSettings  settings = new MatchSettings();
+		HeadlessMatch  match;
+		ReplayRecorder recorder;
+		long           steps, plain, recorded;
+
+		settings.seed = seed;
+		steps = (long)(seconds / settings.step);
+
+		// Reference run without recording.
+		match = new HeadlessMatch(new TrackingInputSource(550.0f), settings);
+		plain = System.nanoTime();
+		for(long i = 0; i < steps; i++)
+			match.step();
+		plain = System.nanoTime() - plain;
+		match.dispose();
+
+		match = new HeadlessMatch(new TrackingInputSource(550.0f), settings);
+		try{
+			recorder = new ReplayRecorder(file, settings, match.getInputSampler(), ReplayFormat.DEFAULT_KEYFRAME_INTERVAL);
+		}catch(IOException e){
+			System.out.println(file.getPath() + ": " + e.getMessage());
+			return false;
+		}
+
+		match.getSimulation().addSystem(recorder);
+		recorded = System.nanoTime();
+		for(long i = 0; i < steps; i++)
+			match.step();
+		recorder.dispose();
+		recorded = System.nanoTime() - recorded;
+		match.dispose();
+
+		if(recorder.getError() != null){
+			System.out.println(file.getPath() + ": " + recorder.getError().getMessage());
+			return false;
+		}
+
+		System.out.println(String.format("%s: %d ticks, %d bytes (%.1f bytes per tick)", file.getPath(), steps, file.length(), file.length() / (double)steps));
+		System.out.println(String.format("%.0f ns per tick without recording, %.0f ns per tick recording", plain / (double)steps, recorded / (double)steps));
+
+		return true;
+	}
+}
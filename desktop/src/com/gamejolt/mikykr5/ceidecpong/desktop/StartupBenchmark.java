@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input.Buttons;
+import com.badlogic.gdx.InputProcessor;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import com.gamejolt.mikykr5.ceidecpong.GameCore;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.states.LogoScreenState;
+
+/**
+ * Measures how long the game takes to start with the desktop backend.
+ * 
+ * Usage: StartupBenchmark [runs]
+ * 
+ * Every run starts the game in a new JVM, so nothing is warm but the caches kept on disk, and taps the logo as
+ * soon as it accepts input, like an impatient player would. The run ends when the main menu accepts input. The
+ * times to first frame, to warm up and to interactive are measured by the game itself from the creation of its
+ * {@link GameCore}; the launch time is measured by this process from the start of the JVM to interactive.
+ * 
+ * It needs a display, so it can't run on a headless machine.
+ * 
+ * @author Miguel Astor
+ */
+public class StartupBenchmark {
+	/**
+	 * The argument that makes the process start the game instead of the runs.
+	 */
+	private static final String CHILD_ARGUMENT = "--child";
+
+	/**
+	 * Prefixes the line with the results that a run prints.
+	 */
+	private static final String RESULT_PREFIX  = "STARTUP ";
+
+	public static void main (String[] arg) {
+		int       runs;
+		float[][] results;
+
+		if(arg.length > 0 && arg[0].equals(CHILD_ARGUMENT)){
+			launch();
+			return;
+		}
+
+		runs = arg.length > 0 ? Integer.parseInt(arg[0]) : 10;
+		results = new float[4][runs];
+
+		System.out.println("run first_frame_s warm_up_s interactive_s launch_s");
+		for(int i = 0; i < runs; i++){
+			try{
+				run(results, i);
+			}catch(IOException e){
+				System.out.println("Run " + Integer.toString(i) + " failed: " + e.getMessage());
+				System.exit(ProjectConstants.EXIT_FAILURE);
+			}
+			System.out.println(String.format("%d %.3f %.3f %.3f %.3f", i, results[0][i], results[1][i], results[2][i], results[3][i]));
+		}
+
+		for(float[] column : results)
+			Arrays.sort(column);
+		System.out.println(String.format("median %.3f %.3f %.3f %.3f", results[0][runs / 2], results[1][runs / 2], results[2][runs / 2], results[3][runs / 2]));
+
+		System.exit(ProjectConstants.EXIT_SUCCESS);
+	}
+
+	/**
+	 * Starts the game in a new JVM and waits until it prints its results.
+	 * 
+	 * @param results Where to store the results, one column per result.
+	 * @param index The row of the results of this run.
+	 * @throws IOException If the JVM can't be started or it ends without printing the results.
+	 */
+	private static void run(float[][] results, int index) throws IOException{
+		String         java  = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder;
+		Process        process;
+		BufferedReader reader;
+		String         line;
+		String[]       fields;
+		long           start;
+		boolean        done  = false;
+
+		builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), StartupBenchmark.class.getName(), CHILD_ARGUMENT);
+		builder.redirectErrorStream(true);
+
+		start = System.nanoTime();
+		process = builder.start();
+		reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+
+		try{
+			while((line = reader.readLine()) != null){
+				if(!done && line.startsWith(RESULT_PREFIX)){
+					results[3][index] = (System.nanoTime() - start) / 1.0e9f;
+					fields = line.substring(RESULT_PREFIX.length()).split(" ");
+					for(int i = 0; i < 3; i++)
+						results[i][index] = Float.parseFloat(fields[i]);
+					done = true;
+				}
+			}
+			process.waitFor();
+		}catch(InterruptedException e){
+			process.destroy();
+			throw new IOException("Interrupted.");
+		}finally{
+			reader.close();
+		}
+
+		if(!done)
+			throw new IOException("The game ended with code " + Integer.toString(process.exitValue()) + " without reaching the main menu.");
+	}
+
+	/**
+	 * Starts the game with the same configuration as {@link DesktopLauncher}, prints its startup times once it is
+	 * interactive and quits.
+	 */
+	private static void launch(){
+		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
+
+		config.width = 1024;
+		config.height = 768;
+		config.resizable = true;
+		config.title = "CEIDEC-Pong";
+
+		GameCore game = new GameCore(ThreadAllocationMeter.create()){
+			private boolean tapped = false;
+			private boolean quit   = false;
+
+			@Override
+			public void render(){
+				InputProcessor processor;
+
+				super.render();
+
+				// Tap the logo as soon as it accepts input.
+				processor = Gdx.input.getInputProcessor();
+				if(!tapped && processor instanceof LogoScreenState){
+					processor.touchDown(0, 0, 0, Buttons.LEFT);
+					tapped = true;
+				}
+
+				if(!quit && startupMetrics.isComplete()){
+					System.out.println(String.format(Locale.US, "%s%.4f %.4f %.4f", RESULT_PREFIX, startupMetrics.getTimeToFirstFrame(), startupMetrics.getTimeToWarmUp(), startupMetrics.getTimeToInteractive()));
+					System.out.flush();
+					Gdx.app.exit();
+					quit = true;
+				}
+			}
+		};
+
+		new LwjglApplication(game, config);
+	}
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import java.lang.management.ManagementFactory;
+
+import com.gamejolt.mikykr5.ceidecpong.interfaces.AllocationMeter;
+
+/**
+ * Measures the memory allocated by the calling thread with the HotSpot extension of
+ * {@link java.lang.management.ThreadMXBean}.
+ * 
+ * @author Miguel Astor
+ */
+public class ThreadAllocationMeter implements AllocationMeter{
+	private final com.sun.management.ThreadMXBean threads;
+
+	private ThreadAllocationMeter(com.sun.management.ThreadMXBean threads){
+		this.threads = threads;
+	}
+
+	/**
+	 * @return A meter, or null if the running virtual machine can't measure allocations.
+	 */
+	public static ThreadAllocationMeter create(){
+		com.sun.management.ThreadMXBean threads;
+
+		if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+			return null;
+
+		threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		if(!threads.isThreadAllocatedMemorySupported())
+			return null;
+
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		return new ThreadAllocationMeter(threads);
+	}
+
+	@Override
+	public long getAllocatedBytes(){
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplication;
+import com.badlogic.gdx.backends.lwjgl.LwjglApplicationConfiguration;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Pixmap.Format;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.utils.TimeUtils;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.effects.CrossfadeTransition;
+import com.gamejolt.mikykr5.ceidecpong.effects.FadeTransition;
+import com.gamejolt.mikykr5.ceidecpong.effects.TransitionRenderer;
+import com.gamejolt.mikykr5.ceidecpong.effects.WipeTransition;
+import com.gamejolt.mikykr5.ceidecpong.interfaces.TransitionEffect;
+
+/**
+ * Measures the GPU time of the transition effects with the desktop backend, against the screen sized RGBA4444
+ * texture the game used to fade with.
+ * 
+ * Usage: TransitionBenchmark [frames] [width] [height]
+ * 
+ * Every case draws a whole transition, covering and uncovering the screen, over the given number of frames. Each
+ * draw is bracketed by glFinish() calls, so the time measured is how long the GPU takes to execute it plus a small
+ * driver overhead. Draws of invisible frames, skipped by the {@link TransitionRenderer}, count as well. V-sync is
+ * disabled so frames are not throttled.
+ * 
+ * It needs a display, so it can't run on a headless machine.
+ * 
+ * @author Miguel Astor
+ */
+public class TransitionBenchmark extends ApplicationAdapter {
+	private static final String[] CASES = {"texture", "fade", "wipe", "crossfade"};
+
+	private final int          frames;
+	private final long[][]     times;
+	private SpriteBatch        batch;
+	private OrthographicCamera camera;
+	private Texture            fadeTexture;
+	private TransitionRenderer renderer;
+	private int                currentCase;
+	private int                frame;
+
+	public TransitionBenchmark(int frames){
+		this.frames = frames;
+		times = new long[CASES.length][frames];
+	}
+
+	public static void main (String[] arg) {
+		LwjglApplicationConfiguration config = new LwjglApplicationConfiguration();
+		int                           frames = arg.length > 0 ? Integer.parseInt(arg[0]) : 600;
+
+		config.width = arg.length > 2 ? Integer.parseInt(arg[1]) : 1920;
+		config.height = arg.length > 2 ? Integer.parseInt(arg[2]) : 1080;
+		config.resizable = false;
+		config.vSyncEnabled = false;
+		config.foregroundFPS = 0;
+		config.title = "CEIDEC-Pong transition benchmark";
+
+		new LwjglApplication(new TransitionBenchmark(frames), config);
+	}
+
+	@Override
+	public void create(){
+		Pixmap pixmap;
+
+		batch = new SpriteBatch();
+		camera = new OrthographicCamera(Gdx.graphics.getWidth(), Gdx.graphics.getHeight());
+
+		// The fade as it was drawn before the transition renderer.
+		pixmap = new Pixmap(Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), Format.RGBA4444);
+		pixmap.setColor(0, 0, 0, 1);
+		pixmap.fill();
+		fadeTexture = new Texture(pixmap);
+		pixmap.dispose();
+
+		renderer = new TransitionRenderer(new FadeTransition(), ProjectConstants.TRANSITION_FILL_BUDGET, null);
+		currentCase = 0;
+		frame = 0;
+	}
+
+	@Override
+	public void render(){
+		float coverage = 1.0f - Math.abs(2.0f * frame / (frames - 1) - 1.0f);
+		long  start;
+
+		if(frame == 0)
+			startCase();
+
+		// Something for the crossfade to capture.
+		Gdx.gl.glClearColor(0.2f, 0.2f, 0.5f, 1);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+		if(frame == 0)
+			renderer.capture();
+
+		Gdx.gl.glFinish();
+		start = TimeUtils.nanoTime();
+
+		batch.setProjectionMatrix(camera.combined);
+		batch.begin();{
+			if(currentCase == 0){
+				batch.setColor(1, 1, 1, coverage);
+				batch.draw(fadeTexture, -(Gdx.graphics.getWidth() / 2), -(Gdx.graphics.getHeight() / 2));
+				batch.setColor(1, 1, 1, 1);
+			}else{
+				renderer.draw(batch, coverage);
+			}
+		}batch.end();
+
+		Gdx.gl.glFinish();
+		times[currentCase][frame] = TimeUtils.nanoTime() - start;
+
+		if(++frame == frames){
+			renderer.finish();
+			frame = 0;
+
+			if(++currentCase == CASES.length){
+				report();
+				Gdx.app.exit();
+			}
+		}
+	}
+
+	@Override
+	public void dispose(){
+		renderer.dispose();
+		fadeTexture.dispose();
+		batch.dispose();
+	}
+
+	/**
+	 * Sets the effect of the case about to run.
+	 */
+	private void startCase(){
+		TransitionEffect effect;
+
+		if(currentCase == 2)
+			effect = new WipeTransition(0.5f);
+		else if(currentCase == 3)
+			effect = new CrossfadeTransition(0.5f);
+		else
+			effect = new FadeTransition();
+
+		renderer.setEffect(effect);
+	}
+
+	private void report(){
+		long[] sorted;
+
+		System.out.println(String.format(Locale.US, "%dx%d, %d frames per transition", Gdx.graphics.getWidth(), Gdx.graphics.getHeight(), frames));
+		System.out.println(String.format(Locale.US, "%-10s %10s %10s %10s", "case", "median ms", "p95 ms", "total ms"));
+
+		for(int i = 0; i < CASES.length; i++){
+			sorted = times[i].clone();
+			Arrays.sort(sorted);
+			System.out.println(String.format(Locale.US, "%-10s %10.3f %10.3f %10.1f", CASES[i], sorted[sorted.length / 2] / 1.0e6, sorted[(sorted.length * 95) / 100] / 1.0e6, sum(sorted) / 1.0e6));
+		}
+	}
+
+	private static long sum(long[] values){
+		long total = 0L;
+
+		for(long value : values)
+			total += value;
+
+		return total;
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2014, Miguel Angel Astor Romero
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * Read the LICENSE file for more details.
+ */
+package com.gamejolt.mikykr5.ceidecpong.desktop;
+
+import com.badlogic.ashley.core.Entity;
+import com.badlogic.ashley.core.PooledEngine;
+import com.gamejolt.mikykr5.ceidecpong.ProjectConstants;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.BoundingBoxComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PlayerComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.PositionComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.components.VelocityComponent;
+import com.gamejolt.mikykr5.ceidecpong.ecs.entities.PongEntityInitializer;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.HeadlessMatch;
+import com.gamejolt.mikykr5.ceidecpong.ecs.simulation.MatchSettings;
+
+/**
+ * Checks that the ball can't pass through a paddle no matter how fast it goes or how long the simulation step is.
+ * Every match puts a wall of paddles in front of each goal, covering the whole height of the screen, and throws
+ * the ball at {@link #SPEED} pixels per second with a step of {@link #STEP} seconds, so it moves more than half
+ * the width of the screen per step. The ball never speeds up. Exits with {@link ProjectConstants#EXIT_FAILURE}
+ * if any match scores a point, as the ball can only reach a goal by going through a wall.
+ * 
+ * Usage: TunnelingCheck [angles] [steps]
+ * 
+ * @author Miguel Astor
+ */
+public class TunnelingCheck {
+	private static final float SPEED     = 20000.0f;
+	private static final float STEP      = 1.0f / 15.0f;
+	private static final float MAX_ANGLE = 80.0f;
+
+	public static void main (String[] arg) {
+		int           angles   = arg.length > 0 ? Integer.parseInt(arg[0]) : 33;
+		long          steps    = arg.length > 1 ? Long.parseLong(arg[1]) : 15L * 60L;
+		MatchSettings settings = new MatchSettings();
+		HeadlessMatch match;
+		float         angle;
+		long          paddleHits = 0L;
+		int           failures   = 0;
+
+		settings.step = STEP;
+		settings.ballAcceleration = 1.0f;
+
+		// Throw the ball to both sides at angles spread between -MAX_ANGLE and MAX_ANGLE degrees.
+		for(int i = 0; i < 2 * angles; i++){
+			angle = -MAX_ANGLE + (2.0f * MAX_ANGLE * (i / 2) / Math.max(angles - 1, 1));
+			settings.seed = i;
+			match = new HeadlessMatch(null, settings);
+
+			addWall(match.getEngine(), -(ProjectConstants.FB_WIDTH / 2.0f) + PongEntityInitializer.HEADLESS_PADDLE_WIDTH);
+			addWall(match.getEngine(), (ProjectConstants.FB_WIDTH / 2.0f) - (2.0f * PongEntityInitializer.HEADLESS_PADDLE_WIDTH));
+			throwBall(match, i % 2 == 0 ? angle : 180.0f - angle);
+
+			for(long step = 0; step < steps; step++){
+				match.step();
+
+				if(match.getScore(PlayerComponent.HUMAN_PLAYER) != 0 || match.getScore(PlayerComponent.COMPUTER_PLAYER) != 0){
+					System.out.println(String.format("Match %d: the ball thrown at %.1f degrees went through a wall at step %d", i, i % 2 == 0 ? angle : 180.0f - angle, step));
+					failures++;
+					break;
+				}
+			}
+
+			paddleHits += match.getPaddleHits();
+			match.dispose();
+		}
+
+		System.out.println(String.format("%d matches, %d steps each, %d paddle hits, %d failures", 2 * angles, steps, paddleHits, failures));
+		System.exit(failures == 0 && paddleHits > 0L ? ProjectConstants.EXIT_SUCCESS : ProjectConstants.EXIT_FAILURE);
+	}
+
+	/**
+	 * Stacks static paddles from the bottom to the top of the screen.
+	 */
+	private static void addWall(PooledEngine engine, float x){
+		Entity               paddle;
+		PositionComponent    position;
+		BoundingBoxComponent bounds;
+
+		for(float y = -(ProjectConstants.FB_HEIGHT / 2.0f); y < ProjectConstants.FB_HEIGHT / 2.0f; y += PongEntityInitializer.HEADLESS_PADDLE_HEIGHT){
+			paddle = engine.createEntity();
+			position = engine.createComponent(PositionComponent.class);
+			bounds = engine.createComponent(BoundingBoxComponent.class);
+
+			position.teleport(x, y);
+			bounds.bbox.set(x, y, PongEntityInitializer.HEADLESS_PADDLE_WIDTH, PongEntityInitializer.HEADLESS_PADDLE_HEIGHT);
+			paddle.add(position);
+			paddle.add(bounds);
+			engine.addEntity(paddle);
+		}
+	}
+
+	/**
+	 * Centers the ball and sets it's velocity.
+	 */
+	private static void throwBall(HeadlessMatch match, float degrees){
+		Entity ball    = match.getBall();
+		double radians = Math.toRadians(degrees);
+
+		ball.getComponent(PositionComponent.class).teleport(-(PongEntityInitializer.HEADLESS_BALL_SIZE / 2.0f), -(PongEntityInitializer.HEADLESS_BALL_SIZE / 2.0f));
+		ball.getComponent(VelocityComponent.class).setXY(SPEED * (float)Math.cos(radians), SPEED * (float)Math.sin(radians));
+	}
+}